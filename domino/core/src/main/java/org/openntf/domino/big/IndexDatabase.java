@@ -30,6 +30,7 @@ import org.openntf.domino.Session;
 import org.openntf.domino.View;
 import org.openntf.domino.big.impl.IScannerStateManager;
 import org.openntf.domino.big.impl.IndexHit;
+import org.openntf.domino.big.impl.TermPostings;
 import org.openntf.domino.helpers.DocumentScanner;
 import org.openntf.domino.types.CaseInsensitiveString;
 
@@ -211,6 +212,8 @@ public interface IndexDatabase extends IScannerStateManager {
 
 	public abstract Map<CharSequence, Set<CharSequence>> getTermUnidMap(CharSequence term);
 
+	public abstract TermPostings getTermPostings(CharSequence term, Set<CharSequence> dbids, Set<CharSequence> itemNames);
+
 	//	public abstract void setLastIndexDate(Object mapKey, Date date);
 	//
 	//	public abstract Date getLastIndexDate(Object mapKey);
@@ -17,8 +17,16 @@ package org.openntf.domino.big.impl;
 
 import static org.openntf.domino.big.NoteCoordinate.Utils.getReplidFromLong;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.openntf.domino.Database;
 import org.openntf.domino.DbDirectory;
@@ -27,23 +35,169 @@ import org.openntf.domino.Session;
 import org.openntf.domino.utils.Factory;
 import org.openntf.domino.utils.Factory.SessionType;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A thread-safe cache of opened databases, keyed by server, replica id, user name and thread.
+ *
+ * <p>
+ * The key holds no Domino objects, so it does not keep the session of a request alive. A database is only returned to the thread that
+ * opened it, and only for the session it was opened with: sessions of the same user can differ in their access (e.g. a full access
+ * session), so a hit for another session is reopened like a dead database.
+ * </p>
+ *
+ * <p>
+ * Entries are bounded by count and by idle time. Domino objects belong to the thread that created them, so a database that is evicted
+ * by another thread is not recycled there; it is queued and recycled the next time its owning thread uses the cache. Databases that
+ * turn out to be dead on a hit (e.g. because their session was recycled at the end of a request) are dropped and reopened.
+ * </p>
+ */
 @SuppressWarnings("nls")
 public class DbCache {
-	private final Map<Long, Database> dbMap_ = new HashMap<Long, Database>();	//note: not Thread-safe yet.
-	private String defaultServerName_ = ""; //$NON-NLS-1$
+	private static final Logger log_ = Logger.getLogger(DbCache.class.getName());
 
-	public DbCache() {
+	public static final int DEFAULT_MAX_SIZE = 512;
+	public static final long DEFAULT_IDLE_MINUTES = 10;
+
+	private static final DbCache sharedInstance_ = new DbCache();
+
+	/**
+	 * @return the cache used by {@link NoteCoordinate#getDocument()}
+	 */
+	public static DbCache getSharedInstance() {
+		return sharedInstance_;
+	}
+
+	protected static class DbKey {
+		private final String server_;
+		private final long dbid_;
+		private final String userName_;
+		private final long threadId_;
+
+		protected DbKey(final String server, final long dbid, final String userName, final long threadId) {
+			server_ = server == null ? "" : server;
+			dbid_ = dbid;
+			userName_ = userName == null ? "" : userName;
+			threadId_ = threadId;
+		}
+
+		protected DbKey(final String server, final long dbid, final Session session) {
+			this(server, dbid, session.getEffectiveUserName(), Thread.currentThread().getId());
+		}
+
+		/**
+		 * @return whether both keys are for the same database and user, opened on any thread
+		 */
+		protected boolean isSameDatabase(final DbKey other) {
+			return dbid_ == other.dbid_ && server_.equalsIgnoreCase(other.server_) && userName_.equals(other.userName_);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = 31 + server_.toLowerCase().hashCode();
+			result = 31 * result + (int) (dbid_ ^ (dbid_ >>> 32));
+			result = 31 * result + userName_.hashCode();
+			return 31 * result + (int) (threadId_ ^ (threadId_ >>> 32));
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof DbKey)) {
+				return false;
+			}
+			DbKey other = (DbKey) obj;
+			return threadId_ == other.threadId_ && isSameDatabase(other);
+		}
 
+		@Override
+		public String toString() {
+			return server_ + "!!" + getReplidFromLong(dbid_) + " for " + userName_;
+		}
+	}
+
+	protected static class CachedDb {
+		private final Database database_;
+		private final WeakReference<Thread> owner_;
+
+		protected CachedDb(final Database database) {
+			database_ = database;
+			owner_ = new WeakReference<Thread>(Thread.currentThread());
+		}
+	}
+
+	private final Cache<DbKey, CachedDb> dbMap_;
+	private final Queue<CachedDb> pendingRecycle_ = new ConcurrentLinkedQueue<CachedDb>();
+	private final AtomicLong hitCount_ = new AtomicLong();
+	private final AtomicLong missCount_ = new AtomicLong();
+	private final AtomicLong deadCount_ = new AtomicLong();
+	private final AtomicLong evictionCount_ = new AtomicLong();
+	private final AtomicLong openFailureCount_ = new AtomicLong();
+	private final AtomicLong openNanos_ = new AtomicLong();
+	private final AtomicLong maxOpenNanos_ = new AtomicLong();
+	private volatile boolean recycleOnEviction_ = true;
+	private volatile String defaultServerName_ = ""; //$NON-NLS-1$
+
+	private final RemovalListener<DbKey, CachedDb> removalListener_ = new RemovalListener<DbKey, CachedDb>() {
+		@Override
+		public void onRemoval(final RemovalNotification<DbKey, CachedDb> notification) {
+			if (notification.wasEvicted()) {
+				evictionCount_.incrementAndGet();
+				CachedDb value = notification.getValue();
+				if (value != null && isRecycleOnEviction()) {
+					recycleOnOwner(value);
+				}
+			}
+		}
+	};
+
+	public DbCache() {
+		this("", DEFAULT_MAX_SIZE, DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
 	}
 
 	public DbCache(final String defaultServer) {
+		this(defaultServer, DEFAULT_MAX_SIZE, DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * @param defaultServer
+	 *            the server used when none is passed to {@link #getDatabase(long)}
+	 * @param maxSize
+	 *            the maximum number of open databases held
+	 * @param maxIdle
+	 *            how long a database may stay unused before it is evicted
+	 * @param unit
+	 *            the unit of maxIdle
+	 */
+	public DbCache(final String defaultServer, final int maxSize, final long maxIdle, final TimeUnit unit) {
 		defaultServerName_ = defaultServer;
+		dbMap_ = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterAccess(maxIdle, unit).removalListener(removalListener_)
+				.build();
 	}
 
 	public void setDefaultServer(final String defaultServer) {
 		defaultServerName_ = defaultServer;
 	}
 
+	public boolean isRecycleOnEviction() {
+		return recycleOnEviction_;
+	}
+
+	/**
+	 * @param value
+	 *            whether evicted databases are recycled on their owning thread. Defaults to true.
+	 */
+	public void setRecycleOnEviction(final boolean value) {
+		recycleOnEviction_ = value;
+	}
+
 	public Database getDatabase(final long dbid) {
 		return getDatabase(dbid, getDefaultServer());
 	}
@@ -53,14 +207,106 @@ public class DbCache {
 	}
 
 	public Database getDatabase(final long dbid, final String server, final Session session) {
-		Database result = dbMap_.get(dbid);
-		if (result == null) {
-			String replid = getReplidFromLong(dbid);
-			DbDirectory dir = session.getDbDirectory(server);
-			result = dir.openDatabaseByReplicaID(replid);
-			dbMap_.put(dbid, result);
+		drainPendingRecycle();
+		final DbKey key = new DbKey(server, dbid, session);
+		CachedDb cached = dbMap_.getIfPresent(key);
+		if (cached != null) {
+			if (!cached.database_.isDead() && cached.database_.getAncestorSession() == session) {
+				hitCount_.incrementAndGet();
+				return cached.database_;
+			}
+			deadCount_.incrementAndGet();
+			dbMap_.asMap().remove(key, cached);
+		}
+		try {
+			cached = dbMap_.get(key, new Callable<CachedDb>() {
+				@Override
+				public CachedDb call() throws Exception {
+					missCount_.incrementAndGet();
+					Database db = openDatabase(key, session);
+					return db == null ? null : new CachedDb(db);
+				}
+			});
+			return cached.database_;
+		} catch (InvalidCacheLoadException e) {
+			openFailureCount_.incrementAndGet();
+			return null;
+		} catch (ExecutionException e) {
+			openFailureCount_.incrementAndGet();
+			log_.log(Level.WARNING, "Unable to open database " + key, e.getCause());
+			return null;
+		} catch (UncheckedExecutionException e) {
+			openFailureCount_.incrementAndGet();
+			log_.log(Level.WARNING, "Unable to open database " + key, e.getCause());
+			return null;
+		}
+	}
+
+	protected Database openDatabase(final DbKey key, final Session session) {
+		long start = System.nanoTime();
+		try {
+			DbDirectory dir = session.getDbDirectory(key.server_);
+			return dir.openDatabaseByReplicaID(getReplidFromLong(key.dbid_));
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			openNanos_.addAndGet(elapsed);
+			long max;
+			while (elapsed > (max = maxOpenNanos_.get()) && !maxOpenNanos_.compareAndSet(max, elapsed)) {
+				// retry
+			}
+		}
+	}
+
+	/**
+	 * Removes a database from the cache on all threads, e.g. after it was deleted or replaced.
+	 */
+	public void invalidate(final long dbid, final String server, final Session session) {
+		final DbKey key = new DbKey(server, dbid, session);
+		Iterator<DbKey> it = dbMap_.asMap().keySet().iterator();
+		while (it.hasNext()) {
+			if (key.isSameDatabase(it.next())) {
+				it.remove();
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		dbMap_.invalidateAll();
+	}
+
+	private void recycleOnOwner(final CachedDb cached) {
+		if (cached.owner_.get() == Thread.currentThread()) {
+			recycle(cached);
+		} else {
+			pendingRecycle_.add(cached);
+		}
+	}
+
+	private void drainPendingRecycle() {
+		if (pendingRecycle_.isEmpty()) {
+			return;
+		}
+		Thread current = Thread.currentThread();
+		Iterator<CachedDb> it = pendingRecycle_.iterator();
+		while (it.hasNext()) {
+			CachedDb cached = it.next();
+			Thread owner = cached.owner_.get();
+			if (owner == current) {
+				it.remove();
+				recycle(cached);
+			} else if (owner == null || !owner.isAlive()) {
+				// the thread's Domino objects have been cleaned up with it
+				it.remove();
+			}
+		}
+	}
+
+	private void recycle(final CachedDb cached) {
+		try {
+			cached.database_.recycle();
+		} catch (Throwable t) {
+			log_.log(Level.FINE, "Unable to recycle evicted database", t);
 		}
-		return result;
 	}
 
 	public Document getDocument(final NoteCoordinate nc) {
@@ -86,4 +332,66 @@ public class DbCache {
 	public String getDefaultServer() {
 		return defaultServerName_;
 	}
+
+	public long getSize() {
+		return dbMap_.size();
+	}
+
+	public long getHitCount() {
+		return hitCount_.get();
+	}
+
+	public long getMissCount() {
+		return missCount_.get();
+	}
+
+	/**
+	 * @return the number of cached databases that were found dead, or opened with another session, and had to be reopened
+	 */
+	public long getDeadCount() {
+		return deadCount_.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount_.get();
+	}
+
+	public long getOpenFailureCount() {
+		return openFailureCount_.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount_.get();
+		long total = hits + missCount_.get();
+		return total == 0 ? 1.0 : (double) hits / total;
+	}
+
+	/**
+	 * @return the average time to open a database on a miss, in nanoseconds
+	 */
+	public long getAverageOpenNanos() {
+		long misses = missCount_.get();
+		return misses == 0 ? 0 : openNanos_.get() / misses;
+	}
+
+	public long getMaxOpenNanos() {
+		return maxOpenNanos_.get();
+	}
+
+	public void resetStatistics() {
+		hitCount_.set(0);
+		missCount_.set(0);
+		deadCount_.set(0);
+		evictionCount_.set(0);
+		openFailureCount_.set(0);
+		openNanos_.set(0);
+		maxOpenNanos_.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "DbCache [size=" + getSize() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", dead=" + getDeadCount()
+				+ ", evictions=" + getEvictionCount() + ", failures=" + getOpenFailureCount() + ", avgOpenMicros="
+				+ getAverageOpenNanos() / 1000 + ", maxOpenMicros=" + getMaxOpenNanos() / 1000 + "]";
+	}
 }
@@ -36,6 +36,7 @@ import org.openntf.domino.DbDirectory;
 import org.openntf.domino.Document;
 import org.openntf.domino.DocumentCollection;
 import org.openntf.domino.Item;
+import org.openntf.domino.NoteCollection;
 import org.openntf.domino.Session;
 import org.openntf.domino.View;
 import org.openntf.domino.ViewColumn;
@@ -60,6 +61,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 	protected Set<CharSequence> stopList_;
 	protected boolean caseSensitive_ = false;
 	protected boolean continue_ = true;
+	protected int scanParallelism_ = 1;
 
 	/*public static Set<CharSequence> toStringSet(final Object value) {
 		Set<CharSequence> result = new HashSet<CharSequence>();
@@ -135,6 +137,21 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		return caseSensitive_;
 	}
 
+	/**
+	 * Sets the number of Xots workers used to scan each database. Values greater than 1 scan a NoteCollection of modified documents in
+	 * note ID shards instead of sorting the modified documents by date first.
+	 *
+	 * @param value
+	 *            the number of shards to scan concurrently
+	 */
+	public void setScanParallelism(final int value) {
+		scanParallelism_ = value < 1 ? 1 : value;
+	}
+
+	public int getScanParallelism() {
+		return scanParallelism_;
+	}
+
 	@SuppressWarnings("unused")
 	private String indexApiPath_;
 
@@ -386,6 +403,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		scanner.setIgnoreDollar(true);
 		scanner.setStateManager(this, db.getReplicaID());
 		scanner.setCaseSensitive(getCaseSensitive());
+		scanner.setParallelism(getScanParallelism());
 		dbDoc.replaceItemValue(IndexDatabase.DB_TITLE_NAME, db.getTitle());
 		if (dbDoc.hasItem(DB_LAST_INDEX_NAME)) {
 			scanner.setLastScanDate(dbDoc.getItemValue(DB_LAST_INDEX_NAME, Date.class));
@@ -439,7 +457,13 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		}
 		int count = db.getModifiedNoteCount(last);
 
-		if (count > 0) {
+		if (count > 0 && scanner.getParallelism() > 1) {
+			NoteCollection nc = db.createNoteCollection(false);
+			nc.setSelectDocuments(true);
+			nc.setSinceTime(last);
+			nc.buildCollection();
+			scanner.processNoteCollection(nc);
+		} else if (count > 0) {
 			DocumentCollection rawColl = db.getModifiedDocuments(last);
 			DocumentSorter sorter = new DocumentSorter(rawColl, MOD_SORT_LIST);
 			System.out.println("Scanning database " + db.getApiPath() + " with last date of " + last.getTime() + " and found "
@@ -575,7 +599,9 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 				for (Object key : map.keySet()) {
 					Object val = map.get(key);
 					List<IndexHit> hits = null;
-					if (val instanceof Set) {
+					if (val instanceof PostingList) {
+						hits = getTermResultsForForms((PostingList) val, forms, term, dbid, key.toString());
+					} else if (val instanceof Set) {
 						//					System.out.println("Already have a set of " + ((Set) val).size() + " elements");
 						hits = getTermResultsForForms((Set) val, forms, term, dbid, key.toString());
 					} else {
@@ -592,7 +618,9 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 
 				Object val = map.get(key);
 				List<IndexHit> hits = null;
-				if (val instanceof Set) {
+				if (val instanceof PostingList) {
+					hits = getTermResultsForForms((PostingList) val, forms, term, dbid, key.toString());
+				} else if (val instanceof Set) {
 					hits = getTermResultsForForms((Set) val, forms, term, dbid, key.toString());
 				} else {
 					hits = getTermResultsForForms(org.openntf.domino.big.IndexDatabase.Utils.toStringSet(val), forms, term, dbid,
@@ -632,10 +660,83 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		return results;
 	}
 
+	protected List<IndexHit> getTermResultsForForms(final PostingList postings, final Set<CharSequence> forms, final CharSequence term,
+			final CharSequence dbid, final CharSequence item) {
+		List<IndexHit> results = new ArrayList<IndexHit>(postings.size());
+		PostingList.Cursor cursor = postings.cursor();
+		while (cursor.next()) {
+			if (forms == null || forms.isEmpty()) {
+				results.add(createHit(term, dbid, item, cursor));
+			} else {
+				String formName = cursor.getForm();
+				for (CharSequence form : forms) {
+					if (formName.equalsIgnoreCase(form.toString())) {
+						results.add(createHit(term, dbid, item, cursor));
+						break;
+					}
+				}
+			}
+		}
+		return results;
+	}
+
 	protected IndexHit createHit(final CharSequence term, final CharSequence dbid, final CharSequence item, final CharSequence unid) {
 		return new IndexHit(term, dbid, item, unid);
 	}
 
+	protected IndexHit createHit(final CharSequence term, final CharSequence dbid, final CharSequence item, final PostingList.Cursor cursor) {
+		return new IndexHit(term, dbid, item, cursor.getUnid(), cursor.hasReaders(), cursor.getForm());
+	}
+
+	/**
+	 * Reads the postings of a term without expanding them into address strings or IndexHits.
+	 *
+	 * @param term
+	 *            the term to look up
+	 * @param dbids
+	 *            the replica ids to include, or null/empty for all databases
+	 * @param itemNames
+	 *            the item names to include, or null/empty for all items. Postings of several items are merged per database.
+	 * @return the postings keyed by replica id
+	 */
+	@Override
+	public TermPostings getTermPostings(final CharSequence term, final Set<CharSequence> dbids, final Set<CharSequence> itemNames) {
+		TermPostings result = new TermPostings();
+		Document doc = getTermDocument(term);
+		List<String> itemList = new ArrayList<String>();
+		if (dbids == null || dbids.isEmpty()) {
+			for (Item item : doc.getItems()) {
+				if (item.getName().startsWith(TERM_MAP_PREFIX)) {
+					itemList.add(item.getName());
+				}
+			}
+		} else {
+			for (CharSequence dbid : dbids) {
+				itemList.add(TERM_MAP_PREFIX + dbid);
+			}
+		}
+		for (String itemName : itemList) {
+			if (doc.hasItem(itemName)) {
+				String dbid = itemName.substring(TERM_MAP_PREFIX.length());
+				Map termMap = doc.getItemValue(itemName, Map.class);
+				PostingList merged = null;
+				for (Object key : termMap.keySet()) {
+					if (itemNames == null || itemNames.isEmpty() || itemNames.contains(key)) {
+						Object val = termMap.get(key);
+						if (val instanceof Collection) {
+							PostingList postings = PostingList.fromAddresses((Collection) val);
+							merged = merged == null ? postings : merged.union(postings);
+						}
+					}
+				}
+				if (merged != null) {
+					result.put(dbid, merged);
+				}
+			}
+		}
+		return result;
+	}
+
 	/* (non-Javadoc)
 	 * @see org.openntf.domino.big.impl.IIndexDatabase#getTermUnidInDbsItems(java.lang.String, java.util.Collection, java.util.Collection)
 	 */
@@ -876,7 +977,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		Document doc = getTermDocument(token.toString());
 		String itemName = TERM_MAP_PREFIX + String.valueOf(mapKey);
 		if (doc.hasItem(itemName)) {
-			result = doc.getItemValue(itemName, Map.class);
+			result = PostingList.toLocationMap(doc.getItemValue(itemName, Map.class));
 		} else {
 			result = new ConcurrentHashMap<CaseInsensitiveString, Set<String>>(8, 0.9f, 1);
 		}
@@ -966,7 +1067,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 				String term = cis.toString();
 				Document termDoc = getTermDocument(term);
 				String itemName = TERM_MAP_PREFIX + String.valueOf(mapKey);
-				termDoc.replaceItemValue(itemName, tlValue);
+				termDoc.replaceItemValue(itemName, PostingList.toPostingMap(tlValue));
 				if (termDoc.save()) {
 					//					System.out.println("DEBUG: Saved term doc for " + term);
 				} else {
@@ -1098,7 +1199,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 		Document doc = getNameDocument(name.toString());
 		String itemName = TERM_MAP_PREFIX + String.valueOf(mapKey);
 		if (doc.hasItem(itemName)) {
-			result = doc.getItemValue(itemName, Map.class);
+			result = PostingList.toLocationMap(doc.getItemValue(itemName, Map.class));
 		} else {
 			result = new ConcurrentHashMap<CaseInsensitiveString, Set<String>>(8, 0.9f, 1);
 		}
@@ -1134,7 +1235,7 @@ public class IndexDatabase implements IScannerStateManager, org.openntf.domino.b
 			String name = cis.toString();
 			Document nameDoc = getNameDocument(name);
 			String itemName = TERM_MAP_PREFIX + String.valueOf(mapKey);
-			nameDoc.replaceItemValue(itemName, tlValue);
+			nameDoc.replaceItemValue(itemName, PostingList.toPostingMap(tlValue));
 			if (nameDoc.save()) {
 				//				System.out.println("Saved term doc for " + term);
 			}
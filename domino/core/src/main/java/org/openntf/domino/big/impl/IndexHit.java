@@ -66,6 +66,16 @@ public class IndexHit implements Externalizable {
 		}
 	}
 
+	public IndexHit(final CharSequence term, final CharSequence dbid, final CharSequence item, final CharSequence unid,
+			final boolean hasReaders, final CharSequence form) {
+		term_ = term;
+		dbid_ = dbid;
+		item_ = item;
+		unid_ = unid;
+		hasReaders_ = hasReaders;
+		form_ = form;
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
@@ -27,7 +27,6 @@ import java.io.ObjectOutput;
 import java.util.Map;
 
 import org.openntf.domino.Database;
-import org.openntf.domino.DbDirectory;
 import org.openntf.domino.Document;
 import org.openntf.domino.NoteCollection;
 import org.openntf.domino.Session;
@@ -146,10 +145,8 @@ public class NoteCoordinate implements org.openntf.domino.big.NoteCoordinate {
 	}
 
 	protected Database getDatabase(final String server) {
-		String replid = getReplidFromLong(db);
 		Session session = Factory.getSession(SessionType.CURRENT);
-		DbDirectory dir = session.getDbDirectory(server);
-		return dir.openDatabaseByReplicaID(replid);
+		return DbCache.getSharedInstance().getDatabase(db, server, session);
 	}
 
 	@Override
@@ -0,0 +1,729 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.big.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A compressed set of note ids.
+ *
+ * <p>
+ * Note ids are split into their high and low 16 bits. All ids with the same high bits share a container, which is either a sorted array
+ * of the low bits, while it holds at most {@value #ARRAY_MAX} ids, or a bitmap of 65536 bits. Sparse sets take two bytes per id and dense
+ * ranges, like the note ids of a large database, take one bit per possible id. {@link #and(NoteIdSet, NoteIdSet)},
+ * {@link #or(NoteIdSet, NoteIdSet)} and {@link #andNot(NoteIdSet, NoteIdSet)} work container by container, bitmaps word by word, without
+ * sorting or copying arrays of ids.
+ * </p>
+ *
+ * <p>
+ * Iteration is in ascending note id order. Note ids are treated as unsigned. A set is not thread-safe.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class NoteIdSet implements Iterable<Integer>, Externalizable, Cloneable {
+	private static final long serialVersionUID = 1L;
+	private static final int VERSION = 1;
+	/** the largest number of ids in an array container */
+	public static final int ARRAY_MAX = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	private abstract static class Container {
+		abstract int cardinality();
+
+		abstract boolean contains(char low);
+
+		/** @return this container or its replacement */
+		abstract Container add(char low);
+
+		/** @return this container or its replacement */
+		abstract Container remove(char low);
+
+		abstract Container and(Container other);
+
+		abstract Container or(Container other);
+
+		abstract Container andNot(Container other);
+
+		abstract Container copy();
+
+		/** writes the ids of the container to the array, starting at pos, and returns the new pos */
+		abstract int fill(int[] dest, int pos, int high);
+	}
+
+	private static final class ArrayContainer extends Container {
+		char[] content;
+		int card;
+
+		ArrayContainer(final int capacity) {
+			content = new char[Math.max(capacity, 4)];
+		}
+
+		ArrayContainer(final char[] content, final int card) {
+			this.content = content;
+			this.card = card;
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(final char low) {
+			return Arrays.binarySearch(content, 0, card, low) >= 0;
+		}
+
+		@Override
+		Container add(final char low) {
+			int idx = Arrays.binarySearch(content, 0, card, low);
+			if (idx >= 0) {
+				return this;
+			}
+			if (card >= ARRAY_MAX) {
+				return toBitmap().add(low);
+			}
+			idx = -idx - 1;
+			if (card == content.length) {
+				content = Arrays.copyOf(content, Math.min(ARRAY_MAX, card * 2));
+			}
+			System.arraycopy(content, idx, content, idx + 1, card - idx);
+			content[idx] = low;
+			card++;
+			return this;
+		}
+
+		@Override
+		Container remove(final char low) {
+			int idx = Arrays.binarySearch(content, 0, card, low);
+			if (idx >= 0) {
+				System.arraycopy(content, idx + 1, content, idx, card - idx - 1);
+				card--;
+			}
+			return this;
+		}
+
+		BitmapContainer toBitmap() {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < card; i++) {
+				result.set(content[i]);
+			}
+			return result;
+		}
+
+		@Override
+		Container and(final Container other) {
+			ArrayContainer result = new ArrayContainer(Math.min(card, other.cardinality()));
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				int i = 0, j = 0;
+				while (i < card && j < o.card) {
+					char a = content[i], b = o.content[j];
+					if (a < b) {
+						i++;
+					} else if (a > b) {
+						j++;
+					} else {
+						result.content[result.card++] = a;
+						i++;
+						j++;
+					}
+				}
+			} else {
+				for (int i = 0; i < card; i++) {
+					if (other.contains(content[i])) {
+						result.content[result.card++] = content[i];
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		Container or(final Container other) {
+			if (other instanceof BitmapContainer) {
+				return other.or(this);
+			}
+			ArrayContainer o = (ArrayContainer) other;
+			char[] merged = new char[card + o.card];
+			int i = 0, j = 0, k = 0;
+			while (i < card && j < o.card) {
+				char a = content[i], b = o.content[j];
+				if (a < b) {
+					merged[k++] = a;
+					i++;
+				} else if (a > b) {
+					merged[k++] = b;
+					j++;
+				} else {
+					merged[k++] = a;
+					i++;
+					j++;
+				}
+			}
+			while (i < card) {
+				merged[k++] = content[i++];
+			}
+			while (j < o.card) {
+				merged[k++] = o.content[j++];
+			}
+			ArrayContainer result = new ArrayContainer(merged, k);
+			return k > ARRAY_MAX ? result.toBitmap() : result;
+		}
+
+		@Override
+		Container andNot(final Container other) {
+			ArrayContainer result = new ArrayContainer(card);
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				int j = 0;
+				for (int i = 0; i < card; i++) {
+					char a = content[i];
+					while (j < o.card && o.content[j] < a) {
+						j++;
+					}
+					if (j >= o.card || o.content[j] != a) {
+						result.content[result.card++] = a;
+					}
+				}
+			} else {
+				for (int i = 0; i < card; i++) {
+					if (!other.contains(content[i])) {
+						result.content[result.card++] = content[i];
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		Container copy() {
+			return new ArrayContainer(Arrays.copyOf(content, Math.max(card, 4)), card);
+		}
+
+		@Override
+		int fill(final int[] dest, final int pos, final int high) {
+			int p = pos;
+			for (int i = 0; i < card; i++) {
+				dest[p++] = high | content[i];
+			}
+			return p;
+		}
+	}
+
+	private static final class BitmapContainer extends Container {
+		final long[] words;
+		int card;
+
+		BitmapContainer() {
+			words = new long[BITMAP_WORDS];
+		}
+
+		BitmapContainer(final long[] words) {
+			this.words = words;
+			for (long word : words) {
+				card += Long.bitCount(word);
+			}
+		}
+
+		void set(final char low) {
+			long before = words[low >>> 6];
+			long after = before | (1L << low);
+			if (before != after) {
+				words[low >>> 6] = after;
+				card++;
+			}
+		}
+
+		@Override
+		int cardinality() {
+			return card;
+		}
+
+		@Override
+		boolean contains(final char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		Container add(final char low) {
+			set(low);
+			return this;
+		}
+
+		@Override
+		Container remove(final char low) {
+			long before = words[low >>> 6];
+			long after = before & ~(1L << low);
+			if (before != after) {
+				words[low >>> 6] = after;
+				card--;
+			}
+			return card <= ARRAY_MAX ? toArrayContainer() : this;
+		}
+
+		ArrayContainer toArrayContainer() {
+			ArrayContainer result = new ArrayContainer(card);
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					result.content[result.card++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return result;
+		}
+
+		private static Container shrink(final BitmapContainer bitmap) {
+			return bitmap.card <= ARRAY_MAX ? bitmap.toArrayContainer() : bitmap;
+		}
+
+		@Override
+		Container and(final Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] o = ((BitmapContainer) other).words;
+			long[] result = new long[BITMAP_WORDS];
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				result[i] = words[i] & o[i];
+			}
+			return shrink(new BitmapContainer(result));
+		}
+
+		@Override
+		Container or(final Container other) {
+			long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				for (int i = 0; i < o.card; i++) {
+					char low = o.content[i];
+					result[low >>> 6] |= 1L << low;
+				}
+			} else {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					result[i] |= o[i];
+				}
+			}
+			return new BitmapContainer(result);
+		}
+
+		@Override
+		Container andNot(final Container other) {
+			long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+			if (other instanceof ArrayContainer) {
+				ArrayContainer o = (ArrayContainer) other;
+				for (int i = 0; i < o.card; i++) {
+					char low = o.content[i];
+					result[low >>> 6] &= ~(1L << low);
+				}
+			} else {
+				long[] o = ((BitmapContainer) other).words;
+				for (int i = 0; i < BITMAP_WORDS; i++) {
+					result[i] &= ~o[i];
+				}
+			}
+			return shrink(new BitmapContainer(result));
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer result = new BitmapContainer(Arrays.copyOf(words, BITMAP_WORDS));
+			return result;
+		}
+
+		@Override
+		int fill(final int[] dest, final int pos, final int high) {
+			int p = pos;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				long word = words[w];
+				while (word != 0) {
+					dest[p++] = high | ((w << 6) + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			return p;
+		}
+	}
+
+	private char[] keys_;
+	private Container[] containers_;
+	private int count_;
+
+	public NoteIdSet() {
+		keys_ = new char[4];
+		containers_ = new Container[4];
+	}
+
+	public NoteIdSet(final int[] noteids) {
+		this();
+		if (noteids != null) {
+			addAll(noteids);
+		}
+	}
+
+	public NoteIdSet(final Iterable<Integer> noteids) {
+		this();
+		for (Integer nid : noteids) {
+			add(nid);
+		}
+	}
+
+	private static char high(final int nid) {
+		return (char) (nid >>> 16);
+	}
+
+	private static char low(final int nid) {
+		return (char) nid;
+	}
+
+	private int findKey(final char key) {
+		return Arrays.binarySearch(keys_, 0, count_, key);
+	}
+
+	private void append(final char key, final Container container) {
+		if (count_ == keys_.length) {
+			keys_ = Arrays.copyOf(keys_, count_ * 2);
+			containers_ = Arrays.copyOf(containers_, count_ * 2);
+		}
+		keys_[count_] = key;
+		containers_[count_] = container;
+		count_++;
+	}
+
+	private void removeContainer(final int idx) {
+		System.arraycopy(keys_, idx + 1, keys_, idx, count_ - idx - 1);
+		System.arraycopy(containers_, idx + 1, containers_, idx, count_ - idx - 1);
+		count_--;
+		containers_[count_] = null;
+	}
+
+	/**
+	 * @return true if the id was not in the set
+	 */
+	public boolean add(final int nid) {
+		char key = high(nid);
+		int idx = findKey(key);
+		if (idx < 0) {
+			idx = -idx - 1;
+			append((char) 0, null); // makes room
+			System.arraycopy(keys_, idx, keys_, idx + 1, count_ - idx - 1);
+			System.arraycopy(containers_, idx, containers_, idx + 1, count_ - idx - 1);
+			keys_[idx] = key;
+			containers_[idx] = new ArrayContainer(4);
+		}
+		Container container = containers_[idx];
+		int before = container.cardinality();
+		containers_[idx] = container.add(low(nid));
+		return containers_[idx].cardinality() > before;
+	}
+
+	public void addAll(final int[] noteids) {
+		// sorted input fills each container in order, which makes the inserts appends
+		int[] sorted = noteids.clone();
+		Arrays.sort(sorted);
+		for (int nid : sorted) {
+			add(nid);
+		}
+	}
+
+	/**
+	 * @return true if the id was in the set
+	 */
+	public boolean remove(final int nid) {
+		int idx = findKey(high(nid));
+		if (idx < 0) {
+			return false;
+		}
+		Container container = containers_[idx];
+		int before = container.cardinality();
+		container = container.remove(low(nid));
+		if (container.cardinality() == 0) {
+			removeContainer(idx);
+		} else {
+			containers_[idx] = container;
+		}
+		return container.cardinality() < before;
+	}
+
+	public boolean contains(final int nid) {
+		int idx = findKey(high(nid));
+		return idx >= 0 && containers_[idx].contains(low(nid));
+	}
+
+	public int size() {
+		int result = 0;
+		for (int i = 0; i < count_; i++) {
+			result += containers_[i].cardinality();
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return count_ == 0;
+	}
+
+	public void clear() {
+		keys_ = new char[4];
+		containers_ = new Container[4];
+		count_ = 0;
+	}
+
+	/**
+	 * @return the ids in ascending order
+	 */
+	public int[] toArray() {
+		int[] result = new int[size()];
+		int pos = 0;
+		for (int i = 0; i < count_; i++) {
+			pos = containers_[i].fill(result, pos, keys_[i] << 16);
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new set with the ids that are in both sets
+	 */
+	public static NoteIdSet and(final NoteIdSet a, final NoteIdSet b) {
+		NoteIdSet result = new NoteIdSet();
+		int i = 0, j = 0;
+		while (i < a.count_ && j < b.count_) {
+			char ka = a.keys_[i], kb = b.keys_[j];
+			if (ka < kb) {
+				i++;
+			} else if (ka > kb) {
+				j++;
+			} else {
+				Container c = a.containers_[i].and(b.containers_[j]);
+				if (c.cardinality() > 0) {
+					result.append(ka, c);
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new set with the ids that are in either set
+	 */
+	public static NoteIdSet or(final NoteIdSet a, final NoteIdSet b) {
+		NoteIdSet result = new NoteIdSet();
+		int i = 0, j = 0;
+		while (i < a.count_ || j < b.count_) {
+			if (j >= b.count_ || (i < a.count_ && a.keys_[i] < b.keys_[j])) {
+				result.append(a.keys_[i], a.containers_[i].copy());
+				i++;
+			} else if (i >= a.count_ || b.keys_[j] < a.keys_[i]) {
+				result.append(b.keys_[j], b.containers_[j].copy());
+				j++;
+			} else {
+				result.append(a.keys_[i], a.containers_[i].or(b.containers_[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return a new set with the ids of the first set that are not in the second
+	 */
+	public static NoteIdSet andNot(final NoteIdSet a, final NoteIdSet b) {
+		NoteIdSet result = new NoteIdSet();
+		int j = 0;
+		for (int i = 0; i < a.count_; i++) {
+			char key = a.keys_[i];
+			while (j < b.count_ && b.keys_[j] < key) {
+				j++;
+			}
+			Container c = (j < b.count_ && b.keys_[j] == key) ? a.containers_[i].andNot(b.containers_[j]) : a.containers_[i].copy();
+			if (c.cardinality() > 0) {
+				result.append(key, c);
+			}
+		}
+		return result;
+	}
+
+	private void replaceWith(final NoteIdSet other) {
+		keys_ = other.keys_;
+		containers_ = other.containers_;
+		count_ = other.count_;
+	}
+
+	/**
+	 * Keeps only the ids that are also in the other set.
+	 */
+	public void retainAll(final NoteIdSet other) {
+		replaceWith(and(this, other));
+	}
+
+	public void addAll(final NoteIdSet other) {
+		replaceWith(or(this, other));
+	}
+
+	public void removeAll(final NoteIdSet other) {
+		replaceWith(andNot(this, other));
+	}
+
+	/**
+	 * @return true if all ids of the other set are in this set
+	 */
+	public boolean containsAll(final NoteIdSet other) {
+		return andNot(other, this).isEmpty();
+	}
+
+	@Override
+	public PrimitiveIterator.OfInt iterator() {
+		return new PrimitiveIterator.OfInt() {
+			private int container_ = 0;
+			// array containers: the index of the next value; bitmaps: the remaining bits of the current word
+			private int index_ = 0;
+			private int word_ = -1;
+			private long bits_ = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (container_ < count_) {
+					Container c = containers_[container_];
+					if (c instanceof ArrayContainer) {
+						if (index_ < ((ArrayContainer) c).card) {
+							return true;
+						}
+					} else {
+						long[] words = ((BitmapContainer) c).words;
+						while (bits_ == 0 && word_ < BITMAP_WORDS - 1) {
+							bits_ = words[++word_];
+						}
+						if (bits_ != 0) {
+							return true;
+						}
+					}
+					container_++;
+					index_ = 0;
+					word_ = -1;
+					bits_ = 0;
+				}
+				return false;
+			}
+
+			@Override
+			public int nextInt() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int high = keys_[container_] << 16;
+				Container c = containers_[container_];
+				if (c instanceof ArrayContainer) {
+					return high | ((ArrayContainer) c).content[index_++];
+				}
+				int result = high | ((word_ << 6) + Long.numberOfTrailingZeros(bits_));
+				bits_ &= bits_ - 1;
+				return result;
+			}
+		};
+	}
+
+	@Override
+	public NoteIdSet clone() {
+		NoteIdSet result = new NoteIdSet();
+		result.keys_ = Arrays.copyOf(keys_, Math.max(count_, 4));
+		result.containers_ = new Container[result.keys_.length];
+		for (int i = 0; i < count_; i++) {
+			result.containers_[i] = containers_[i].copy();
+		}
+		result.count_ = count_;
+		return result;
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NoteIdSet)) {
+			return false;
+		}
+		return Arrays.equals(toArray(), ((NoteIdSet) obj).toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		return "NoteIdSet [size=" + size() + ", containers=" + count_ + "]";
+	}
+
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		out.writeInt(VERSION);
+		out.writeInt(count_);
+		for (int i = 0; i < count_; i++) {
+			out.writeChar(keys_[i]);
+			Container c = containers_[i];
+			if (c instanceof ArrayContainer) {
+				ArrayContainer a = (ArrayContainer) c;
+				out.writeBoolean(false);
+				out.writeInt(a.card);
+				for (int j = 0; j < a.card; j++) {
+					out.writeChar(a.content[j]);
+				}
+			} else {
+				out.writeBoolean(true);
+				for (long word : ((BitmapContainer) c).words) {
+					out.writeLong(word);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported NoteIdSet version " + version);
+		}
+		clear();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			char key = in.readChar();
+			if (in.readBoolean()) {
+				long[] words = new long[BITMAP_WORDS];
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					words[w] = in.readLong();
+				}
+				append(key, new BitmapContainer(words));
+			} else {
+				int card = in.readInt();
+				char[] content = new char[Math.max(card, 4)];
+				for (int j = 0; j < card; j++) {
+					content[j] = in.readChar();
+				}
+				append(key, new ArrayContainer(content, card));
+			}
+		}
+	}
+}
@@ -0,0 +1,610 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.big.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.openntf.domino.big.NoteCoordinate;
+
+import com.google.common.primitives.UnsignedLongs;
+
+/**
+ * An immutable, compact list of index postings for a single term, item and database.
+ *
+ * <p>
+ * Each posting is a UNID split into the x/y longs used by {@link NoteCoordinate}, plus the readers flag and form name that the
+ * {@link org.openntf.domino.helpers.DocumentScanner} encodes into its address strings. Postings are kept sorted by unsigned (x, y) and
+ * stored delta-encoded as variable length longs; form names are kept once in a small dictionary. {@link #intersect(PostingList)} and
+ * {@link #union(PostingList)} walk two encoded lists side by side and write the result directly, without decoding into objects.
+ * </p>
+ *
+ * <p>
+ * The list is also a read-only {@code Set<CharSequence>} of address strings (UNID + readers flag + form), so code that reads the
+ * legacy {@code Map<item, Set<address>>} format of term documents keeps working.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class PostingList extends AbstractSet<CharSequence> implements Externalizable {
+	private static final long serialVersionUID = 1L;
+	private static final int VERSION = 1;
+	private static final String[] NO_FORMS = new String[0];
+	private static final byte[] NO_DATA = new byte[0];
+
+	private String[] forms_;
+	private byte[] data_;
+	private int length_;
+	private int size_;
+
+	/**
+	 * @deprecated needed for {@link Externalizable} - do not use!
+	 */
+	@Deprecated
+	public PostingList() {
+		forms_ = NO_FORMS;
+		data_ = NO_DATA;
+	}
+
+	PostingList(final String[] forms, final byte[] data, final int length, final int size) {
+		forms_ = forms;
+		data_ = data;
+		length_ = length;
+		size_ = size;
+	}
+
+	/**
+	 * Builds a posting list from DocumentScanner address strings. Addresses that are already a PostingList are returned as is.
+	 *
+	 * @param addresses
+	 *            a collection of UNID + readers flag + form strings
+	 * @return the encoded posting list
+	 */
+	public static PostingList fromAddresses(final Collection<?> addresses) {
+		if (addresses instanceof PostingList) {
+			return (PostingList) addresses;
+		}
+		Builder builder = new Builder(addresses == null ? 0 : addresses.size());
+		if (addresses != null) {
+			for (Object address : addresses) {
+				if (address instanceof CharSequence) {
+					builder.addAddress((CharSequence) address);
+				}
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Converts an item to posting map as stored in a term document into the mutable form the DocumentScanner appends to.
+	 *
+	 * @param stored
+	 *            the map read from the term document, with either PostingList or legacy Set values
+	 * @return a concurrent map of concurrent sets
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static Map<CharSequence, Set<CharSequence>> toLocationMap(final Map stored) {
+		Map<CharSequence, Set<CharSequence>> result = new ConcurrentHashMap<CharSequence, Set<CharSequence>>(8, 0.9f, 1);
+		if (stored != null) {
+			for (Object entry : stored.entrySet()) {
+				Object key = ((Map.Entry) entry).getKey();
+				Object value = ((Map.Entry) entry).getValue();
+				if (key instanceof CharSequence && value instanceof Collection) {
+					Set<CharSequence> set = new ConcurrentSkipListSet<CharSequence>();
+					for (Object address : (Collection) value) {
+						set.add(address instanceof CharSequence ? ((CharSequence) address).toString() : String.valueOf(address));
+					}
+					result.put((CharSequence) key, set);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Converts an item to address set map into the compact form stored in a term document.
+	 *
+	 * @param locations
+	 *            the map built by the DocumentScanner
+	 * @return a map with the same keys and PostingList values
+	 */
+	public static Map<CharSequence, PostingList> toPostingMap(final Map<CharSequence, Set<CharSequence>> locations) {
+		Map<CharSequence, PostingList> result = new LinkedHashMap<CharSequence, PostingList>();
+		for (Map.Entry<CharSequence, Set<CharSequence>> entry : locations.entrySet()) {
+			result.put(entry.getKey(), fromAddresses(entry.getValue()));
+		}
+		return result;
+	}
+
+	@Override
+	public int size() {
+		return size_;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size_ == 0;
+	}
+
+	/**
+	 * @return the number of bytes used by the encoded postings
+	 */
+	public int getEncodedLength() {
+		return length_;
+	}
+
+	/**
+	 * @return a new cursor positioned before the first posting
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	public boolean contains(final long x, final long y) {
+		Cursor cursor = cursor();
+		while (cursor.next()) {
+			int cmp = compare(cursor.x_, cursor.y_, x, y);
+			if (cmp == 0) {
+				return true;
+			} else if (cmp > 0) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		if (o instanceof CharSequence && ((CharSequence) o).length() >= 32) {
+			CharSequence address = (CharSequence) o;
+			try {
+				Cursor cursor = cursor();
+				long x = parseHex(address, 0);
+				long y = parseHex(address, 16);
+				while (cursor.next()) {
+					int cmp = compare(cursor.x_, cursor.y_, x, y);
+					if (cmp == 0) {
+						return address.length() == 32 || address.toString().equals(cursor.getAddress());
+					} else if (cmp > 0) {
+						return false;
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<CharSequence> iterator() {
+		return new Iterator<CharSequence>() {
+			private final Cursor cursor_ = cursor();
+			private int returned_ = 0;
+
+			@Override
+			public boolean hasNext() {
+				return returned_ < size_;
+			}
+
+			@Override
+			public CharSequence next() {
+				if (!cursor_.next()) {
+					throw new NoSuchElementException();
+				}
+				returned_++;
+				return cursor_.getAddress();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns the postings whose UNID is in both lists. Form and readers flag are taken from this list.
+	 *
+	 * @param other
+	 *            the list to intersect with
+	 * @return a new posting list
+	 */
+	public PostingList intersect(final PostingList other) {
+		Encoder encoder = new Encoder(Math.min(length_, other.length_));
+		Cursor left = cursor();
+		Cursor right = other.cursor();
+		boolean hasLeft = left.next();
+		boolean hasRight = right.next();
+		while (hasLeft && hasRight) {
+			int cmp = compare(left.x_, left.y_, right.x_, right.y_);
+			if (cmp == 0) {
+				encoder.append(left.x_, left.y_, left.form_, left.readers_);
+				hasLeft = left.next();
+				hasRight = right.next();
+			} else if (cmp < 0) {
+				hasLeft = left.next();
+			} else {
+				hasRight = right.next();
+			}
+		}
+		return encoder.toPostingList(forms_);
+	}
+
+	/**
+	 * Returns the postings whose UNID is in either list. Where both lists contain a UNID, form and readers flag are taken from this list.
+	 *
+	 * @param other
+	 *            the list to merge with
+	 * @return a new posting list
+	 */
+	public PostingList union(final PostingList other) {
+		if (other.isEmpty()) {
+			return this;
+		} else if (isEmpty()) {
+			return other;
+		}
+		Map<String, Integer> formIndex = new LinkedHashMap<String, Integer>();
+		for (String form : forms_) {
+			formIndex.put(form, formIndex.size());
+		}
+		int[] remap = new int[other.forms_.length];
+		for (int i = 0; i < remap.length; i++) {
+			Integer idx = formIndex.get(other.forms_[i]);
+			if (idx == null) {
+				idx = formIndex.size();
+				formIndex.put(other.forms_[i], idx);
+			}
+			remap[i] = idx;
+		}
+		Encoder encoder = new Encoder(length_ + other.length_);
+		Cursor left = cursor();
+		Cursor right = other.cursor();
+		boolean hasLeft = left.next();
+		boolean hasRight = right.next();
+		while (hasLeft || hasRight) {
+			int cmp = !hasRight ? -1 : !hasLeft ? 1 : compare(left.x_, left.y_, right.x_, right.y_);
+			if (cmp <= 0) {
+				encoder.append(left.x_, left.y_, left.form_, left.readers_);
+				hasLeft = left.next();
+				if (cmp == 0) {
+					hasRight = right.next();
+				}
+			} else {
+				encoder.append(right.x_, right.y_, remap[right.form_], right.readers_);
+				hasRight = right.next();
+			}
+		}
+		return encoder.toPostingList(formIndex.keySet().toArray(new String[formIndex.size()]));
+	}
+
+	/**
+	 * @return the encoded form of this list, as read by {@link #fromByteArray(byte[])}
+	 */
+	public byte[] toByteArray() {
+		Encoder out = new Encoder(length_ + 16 + forms_.length * 16);
+		out.writeVarLong(VERSION);
+		out.writeVarLong(forms_.length);
+		for (String form : forms_) {
+			byte[] bytes = form.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+			out.writeVarLong(bytes.length);
+			out.writeBytes(bytes, 0, bytes.length);
+		}
+		out.writeVarLong(size_);
+		out.writeVarLong(length_);
+		out.writeBytes(data_, 0, length_);
+		return Arrays.copyOf(out.buffer_, out.length_);
+	}
+
+	public static PostingList fromByteArray(final byte[] bytes) {
+		int[] pos = new int[1];
+		int version = (int) readVarLong(bytes, pos);
+		if (version != VERSION) {
+			throw new IllegalArgumentException("Unsupported posting list version " + version);
+		}
+		String[] forms = new String[(int) readVarLong(bytes, pos)];
+		for (int i = 0; i < forms.length; i++) {
+			int len = (int) readVarLong(bytes, pos);
+			forms[i] = new String(bytes, pos[0], len, java.nio.charset.StandardCharsets.UTF_8);
+			pos[0] += len;
+		}
+		int size = (int) readVarLong(bytes, pos);
+		int length = (int) readVarLong(bytes, pos);
+		return new PostingList(forms, Arrays.copyOfRange(bytes, pos[0], pos[0] + length), length, size);
+	}
+
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		out.writeByte(VERSION);
+		out.writeInt(forms_.length);
+		for (String form : forms_) {
+			out.writeUTF(form);
+		}
+		out.writeInt(size_);
+		out.writeInt(length_);
+		out.write(data_, 0, length_);
+	}
+
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported posting list version " + version);
+		}
+		forms_ = new String[in.readInt()];
+		for (int i = 0; i < forms_.length; i++) {
+			forms_[i] = in.readUTF();
+		}
+		size_ = in.readInt();
+		length_ = in.readInt();
+		data_ = new byte[length_];
+		in.readFully(data_);
+	}
+
+	/**
+	 * Compares two UNIDs given as x/y longs, treating both halves as unsigned.
+	 */
+	public static int compare(final long x1, final long y1, final long x2, final long y2) {
+		int result = UnsignedLongs.compare(x1, x2);
+		return result != 0 ? result : UnsignedLongs.compare(y1, y2);
+	}
+
+	static long parseHex(final CharSequence chars, final int start) {
+		long result = 0;
+		for (int i = start; i < start + 16; i++) {
+			int digit = Character.digit(chars.charAt(i), 16);
+			if (digit < 0) {
+				throw new IllegalArgumentException("Not a hex UNID: " + chars);
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	static long readVarLong(final byte[] bytes, final int[] pos) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[pos[0]++];
+			result |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * A forward-only reader over the encoded postings. Reading a posting allocates nothing; {@link #getUnid()} and {@link #getAddress()}
+	 * build Strings on request.
+	 */
+	public class Cursor {
+		private final int[] pos_ = new int[1];
+		private int index_ = -1;
+		long x_;
+		long y_;
+		int form_;
+		boolean readers_;
+
+		protected Cursor() {
+		}
+
+		public boolean next() {
+			if (index_ + 1 >= size_) {
+				return false;
+			}
+			long dx = readVarLong(data_, pos_);
+			if (index_ < 0 || dx != 0) {
+				x_ += dx;
+				y_ = readFixedLong();
+			} else {
+				y_ += readVarLong(data_, pos_);
+			}
+			int flags = (int) readVarLong(data_, pos_);
+			form_ = flags >>> 1;
+			readers_ = (flags & 1) == 1;
+			index_++;
+			return true;
+		}
+
+		private long readFixedLong() {
+			long result = 0;
+			for (int i = 0; i < 8; i++) {
+				result = (result << 8) | (data_[pos_[0]++] & 0xFF);
+			}
+			return result;
+		}
+
+		public long getX() {
+			return x_;
+		}
+
+		public long getY() {
+			return y_;
+		}
+
+		public boolean hasReaders() {
+			return readers_;
+		}
+
+		public String getForm() {
+			return forms_[form_];
+		}
+
+		public String getUnid() {
+			return NoteCoordinate.Utils.getUnidFromLongs(x_, y_);
+		}
+
+		public String getAddress() {
+			return getUnid() + (readers_ ? "1" : "0") + forms_[form_];
+		}
+	}
+
+	/**
+	 * Collects postings in any order and encodes them sorted and de-duplicated.
+	 */
+	public static class Builder {
+		private long[] xs_;
+		private long[] ys_;
+		private int[] flags_;
+		private int count_;
+		private final Map<String, Integer> forms_ = new LinkedHashMap<String, Integer>();
+
+		public Builder() {
+			this(16);
+		}
+
+		public Builder(final int capacity) {
+			int cap = Math.max(capacity, 4);
+			xs_ = new long[cap];
+			ys_ = new long[cap];
+			flags_ = new int[cap];
+		}
+
+		public Builder add(final long x, final long y, final CharSequence form, final boolean readers) {
+			String formName = form == null ? "" : form.toString();
+			Integer idx = forms_.get(formName);
+			if (idx == null) {
+				idx = forms_.size();
+				forms_.put(formName, idx);
+			}
+			if (count_ == xs_.length) {
+				int cap = count_ * 2;
+				xs_ = Arrays.copyOf(xs_, cap);
+				ys_ = Arrays.copyOf(ys_, cap);
+				flags_ = Arrays.copyOf(flags_, cap);
+			}
+			xs_[count_] = x;
+			ys_[count_] = y;
+			flags_[count_] = (idx << 1) | (readers ? 1 : 0);
+			count_++;
+			return this;
+		}
+
+		/**
+		 * @param address
+		 *            a DocumentScanner address: 32 hex digits of UNID, '1' or '0' for the readers flag, then the form name
+		 */
+		public Builder addAddress(final CharSequence address) {
+			if (address.length() < 32) {
+				throw new IllegalArgumentException("Not a valid index address: " + address);
+			}
+			boolean readers = address.length() > 32 && address.charAt(32) == '1';
+			CharSequence form = address.length() > 33 ? address.subSequence(33, address.length()) : "";
+			return add(parseHex(address, 0), parseHex(address, 16), form, readers);
+		}
+
+		public PostingList build() {
+			Integer[] order = new Integer[count_];
+			for (int i = 0; i < count_; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new java.util.Comparator<Integer>() {
+				@Override
+				public int compare(final Integer o1, final Integer o2) {
+					return PostingList.compare(xs_[o1], ys_[o1], xs_[o2], ys_[o2]);
+				}
+			});
+			Encoder encoder = new Encoder(count_ * 6);
+			for (int i = 0; i < count_; i++) {
+				int cur = order[i];
+				if (i > 0) {
+					int prev = order[i - 1];
+					if (xs_[cur] == xs_[prev] && ys_[cur] == ys_[prev]) {
+						continue;
+					}
+				}
+				encoder.append(xs_[cur], ys_[cur], flags_[cur] >>> 1, (flags_[cur] & 1) == 1);
+			}
+			return encoder.toPostingList(forms_.keySet().toArray(new String[forms_.size()]));
+		}
+	}
+
+	/**
+	 * Appends postings in ascending order to a growable byte buffer.
+	 */
+	static class Encoder {
+		private byte[] buffer_;
+		private int length_;
+		private int count_;
+		private long prevX_;
+		private long prevY_;
+
+		Encoder(final int capacity) {
+			buffer_ = new byte[Math.max(capacity, 16)];
+		}
+
+		void append(final long x, final long y, final int form, final boolean readers) {
+			long dx = x - prevX_;
+			if (count_ == 0 || dx != 0) {
+				writeVarLong(dx);
+				writeFixedLong(y);
+			} else {
+				writeVarLong(0);
+				writeVarLong(y - prevY_);
+			}
+			writeVarLong(((long) form << 1) | (readers ? 1 : 0));
+			prevX_ = x;
+			prevY_ = y;
+			count_++;
+		}
+
+		void writeVarLong(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				buffer_[length_++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			buffer_[length_++] = (byte) value;
+		}
+
+		void writeFixedLong(final long value) {
+			ensure(8);
+			for (int i = 7; i >= 0; i--) {
+				buffer_[length_++] = (byte) (value >>> (i * 8));
+			}
+		}
+
+		void writeBytes(final byte[] bytes, final int offset, final int len) {
+			ensure(len);
+			System.arraycopy(bytes, offset, buffer_, length_, len);
+			length_ += len;
+		}
+
+		private void ensure(final int extra) {
+			if (length_ + extra > buffer_.length) {
+				buffer_ = Arrays.copyOf(buffer_, Math.max(buffer_.length * 2, length_ + extra));
+			}
+		}
+
+		PostingList toPostingList(final String[] forms) {
+			if (count_ == 0) {
+				return new PostingList(NO_FORMS, NO_DATA, 0, 0);
+			}
+			return new PostingList(forms, Arrays.copyOf(buffer_, length_), length_, count_);
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.big.impl;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+import org.openntf.domino.big.NoteCoordinate;
+
+/**
+ * The postings of one term across databases, keyed by the 64-bit replica id as returned by
+ * {@link NoteCoordinate.Utils#getLongFromReplid(CharSequence)}. Replica keys are held in a sorted {@code long[]}, so lookups and the
+ * per-database {@link #intersect(TermPostings)} and {@link #union(TermPostings)} operations never box a key.
+ */
+public class TermPostings implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private long[] replicas_;
+	private PostingList[] postings_;
+	private int count_;
+
+	public TermPostings() {
+		this(4);
+	}
+
+	public TermPostings(final int capacity) {
+		replicas_ = new long[Math.max(capacity, 1)];
+		postings_ = new PostingList[replicas_.length];
+	}
+
+	/**
+	 * Adds the postings for a database. If the database already has postings the two lists are merged.
+	 *
+	 * @param replica
+	 *            the replica id as a long
+	 * @param postings
+	 *            the postings to add
+	 */
+	public void put(final long replica, final PostingList postings) {
+		if (postings == null || postings.isEmpty()) {
+			return;
+		}
+		int idx = Arrays.binarySearch(replicas_, 0, count_, replica);
+		if (idx >= 0) {
+			postings_[idx] = postings_[idx].union(postings);
+			return;
+		}
+		int insert = -(idx + 1);
+		if (count_ == replicas_.length) {
+			replicas_ = Arrays.copyOf(replicas_, count_ * 2);
+			postings_ = Arrays.copyOf(postings_, count_ * 2);
+		}
+		System.arraycopy(replicas_, insert, replicas_, insert + 1, count_ - insert);
+		System.arraycopy(postings_, insert, postings_, insert + 1, count_ - insert);
+		replicas_[insert] = replica;
+		postings_[insert] = postings;
+		count_++;
+	}
+
+	public void put(final CharSequence replicaId, final PostingList postings) {
+		put(NoteCoordinate.Utils.getLongFromReplid(replicaId), postings);
+	}
+
+	public PostingList get(final long replica) {
+		int idx = Arrays.binarySearch(replicas_, 0, count_, replica);
+		return idx >= 0 ? postings_[idx] : null;
+	}
+
+	public PostingList get(final CharSequence replicaId) {
+		return get(NoteCoordinate.Utils.getLongFromReplid(replicaId));
+	}
+
+	/**
+	 * @return the replica ids with postings, in ascending order
+	 */
+	public long[] getReplicaLongs() {
+		return Arrays.copyOf(replicas_, count_);
+	}
+
+	public int getReplicaCount() {
+		return count_;
+	}
+
+	/**
+	 * @return the total number of postings over all databases
+	 */
+	public int getHitCount() {
+		int result = 0;
+		for (int i = 0; i < count_; i++) {
+			result += postings_[i].size();
+		}
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return count_ == 0;
+	}
+
+	/**
+	 * Returns the documents that are in both this and another term, per database.
+	 *
+	 * @param other
+	 *            the postings of another term
+	 * @return new postings containing only databases and documents present in both
+	 */
+	public TermPostings intersect(final TermPostings other) {
+		TermPostings result = new TermPostings(Math.min(count_, other.count_));
+		int i = 0;
+		int j = 0;
+		while (i < count_ && j < other.count_) {
+			if (replicas_[i] == other.replicas_[j]) {
+				result.append(replicas_[i], postings_[i].intersect(other.postings_[j]));
+				i++;
+				j++;
+			} else if (replicas_[i] < other.replicas_[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the documents that are in this or another term, per database.
+	 *
+	 * @param other
+	 *            the postings of another term
+	 * @return new postings containing all databases and documents of both
+	 */
+	public TermPostings union(final TermPostings other) {
+		TermPostings result = new TermPostings(count_ + other.count_);
+		int i = 0;
+		int j = 0;
+		while (i < count_ || j < other.count_) {
+			if (j >= other.count_ || (i < count_ && replicas_[i] < other.replicas_[j])) {
+				result.append(replicas_[i], postings_[i]);
+				i++;
+			} else if (i >= count_ || other.replicas_[j] < replicas_[i]) {
+				result.append(other.replicas_[j], other.postings_[j]);
+				j++;
+			} else {
+				result.append(replicas_[i], postings_[i].union(other.postings_[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	private void append(final long replica, final PostingList postings) {
+		if (postings.isEmpty()) {
+			return;
+		}
+		if (count_ == replicas_.length) {
+			replicas_ = Arrays.copyOf(replicas_, count_ * 2);
+			postings_ = Arrays.copyOf(postings_, count_ * 2);
+		}
+		replicas_[count_] = replica;
+		postings_[count_] = postings;
+		count_++;
+	}
+
+	@Override
+	public void writeExternal(final ObjectOutput out) throws IOException {
+		out.writeInt(count_);
+		for (int i = 0; i < count_; i++) {
+			out.writeLong(replicas_[i]);
+			postings_[i].writeExternal(out);
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+		count_ = in.readInt();
+		replicas_ = new long[Math.max(count_, 1)];
+		postings_ = new PostingList[replicas_.length];
+		for (int i = 0; i < count_; i++) {
+			replicas_[i] = in.readLong();
+			postings_[i] = new PostingList();
+			postings_[i].readExternal(in);
+		}
+	}
+}
@@ -33,7 +33,9 @@ public class ServerConfiguration extends ConfigurationObject {
 				"ServerName", 		String.class,  //$NON-NLS-1$
 				"ServerAlias", 		String.class, //$NON-NLS-1$
 				"XotsTasks", 		Integer.class, //$NON-NLS-1$
-				"XotsStopDelay", 	Integer.class //$NON-NLS-1$
+				"XotsStopDelay", 	Integer.class, //$NON-NLS-1$
+				"XotsScheduledTasks", Integer.class, //$NON-NLS-1$
+				"XotsBulkTasks", 	Integer.class //$NON-NLS-1$
 		};
 		// @formatter:on
 	}
@@ -54,6 +56,25 @@ public class ServerConfiguration extends ConfigurationObject {
 		return get("XotsStopDelay", 15); //$NON-NLS-1$
 	}
 
+	/**
+	 * Returns the number of threads for delayed and periodic tasks. If &gt; 0, the XotsTasks threads run the ready tasks in an interactive
+	 * and a bulk lane.
+	 * 
+	 * @return the number of threads, 0 if lanes are disabled
+	 */
+	public int getXotsScheduledTasks() {
+		return get("XotsScheduledTasks", 0); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns how many of the XotsTasks threads may run bulk tasks at the same time
+	 * 
+	 * @return the number of threads, 0 for all but one
+	 */
+	public int getXotsBulkTasks() {
+		return get("XotsBulkTasks", 0); //$NON-NLS-1$
+	}
+
 	/**
 	 * Returns the document for this server
 	 * 
@@ -19,18 +19,36 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import lotus.notes.internal.MessageQueue;
 
 import org.openntf.domino.extmgr.events.EMEventIds;
 import org.openntf.domino.xots.Xots;
 
+/**
+ * Reads the events of the Extension Manager bridge from the MQ$DOTS message queue and delivers them to the subscribers.
+ *
+ * <p>
+ * The listener thread reads the message queue into the dispatch queue. When the dispatch queue is full, the listener waits, which leaves
+ * new events in the message queue, and only drops an event when there is still no room after {@link #MESSAGE_WAIT_TIME} ms. The
+ * dispatcher hands every event to a separate queue for each subscriber, see {@link EMBridgeSubscriberLane}, so a slow subscriber does not
+ * hold up the others. Dropped events are counted, see {@link #getStatistics()}.
+ * </p>
+ *
+ * <p>
+ * Duplicate note updates can be coalesced with {@link #setCoalescing(boolean)} and {@link #setCoalesceWindow(long)}.
+ * </p>
+ */
 public enum EMBridgeMessageQueue {
 	INSTANCE;
 
@@ -40,12 +58,19 @@ public enum EMBridgeMessageQueue {
 	public static final int MESSAGE_SIZE = 256;
 	public static final int MESSAGE_WAIT_TIME = 1000;
 	public static final int MQ_SIZE = 10000;
+	/** the number of events that can wait for a single subscriber */
+	public static final int SUBSCRIBER_QUEUE_SIZE = 10000;
 
 	private QueueListener listener_;
 	private QueueDispatcher dispatcher_;
 	private MessageQueue queue_;
 	private Map<EMEventIds, List<IEMBridgeSubscriber>> subscribers_ = new EnumMap<EMEventIds, List<IEMBridgeSubscriber>>(EMEventIds.class);
-	private boolean stopOrdered_;
+	private final Map<IEMBridgeSubscriber, EMBridgeSubscriberLane> lanes_ = new ConcurrentHashMap<IEMBridgeSubscriber, EMBridgeSubscriberLane>();
+	private final AtomicLong receivedCount_ = new AtomicLong();
+	private final AtomicLong droppedCount_ = new AtomicLong();
+	private volatile boolean coalescing_ = false;
+	private volatile long coalesceWindow_ = 0;
+	private volatile boolean stopOrdered_;
 	private boolean statReport_ = false;
 	long priorMaxEventCount_ = 0;
 	long lastTimeoutTime_ = new Date().getTime();
@@ -75,8 +100,10 @@ public enum EMBridgeMessageQueue {
 							List<IEMBridgeSubscriber> subscribers = bridge_.getSubscriberList(id);
 							if (subscribers != null && !subscribers.isEmpty()) {
 								for (IEMBridgeSubscriber subscriber : subscribers) {
-									subscriber.handleMessage(id, event);
-									//								System.out.println("TEMP DEBUG: Dispatcher thread dispatched an event " + id.toString() + ": " + event);
+									EMBridgeSubscriberLane lane = bridge_.lanes_.get(subscriber);
+									if (lane != null) {
+										lane.offer(id, event);
+									}
 								}
 							}
 						}
@@ -89,8 +116,18 @@ public enum EMBridgeMessageQueue {
 			}
 		}
 
-		public void queueEvent(final String event) {
-			queue_.offer(event);
+		/**
+		 * Waits up to {@link #MESSAGE_WAIT_TIME} ms for room in the queue.
+		 */
+		public void queueEvent(final String event) throws InterruptedException {
+			bridge_.receivedCount_.incrementAndGet();
+			if (!queue_.offer(event, MESSAGE_WAIT_TIME, TimeUnit.MILLISECONDS)) {
+				bridge_.droppedCount_.incrementAndGet();
+			}
+		}
+
+		public int size() {
+			return queue_.size();
 		}
 	}
 
@@ -175,6 +212,52 @@ public enum EMBridgeMessageQueue {
 		INSTANCE.stopOrdered_ = true;
 	}
 
+	public boolean isCoalescing() {
+		return coalescing_;
+	}
+
+	/**
+	 * @param coalescing
+	 *            true to skip note update events for a subscriber while an update of the same note is still waiting for it
+	 */
+	public static void setCoalescing(final boolean coalescing) {
+		INSTANCE.coalescing_ = coalescing;
+	}
+
+	/**
+	 * @return the minimum time in ms events are held before they are delivered. 0 if coalescing is off
+	 */
+	public long getCoalesceWindow() {
+		return coalescing_ ? coalesceWindow_ : 0;
+	}
+
+	/**
+	 * @param millis
+	 *            the minimum time events are held before they are delivered, so that duplicate note updates within that time are
+	 *            coalesced. Only used when coalescing is on
+	 */
+	public static void setCoalesceWindow(final long millis) {
+		INSTANCE.coalesceWindow_ = Math.max(0, millis);
+	}
+
+	/**
+	 * @return the number of events received and dropped by the dispatcher, and the counters of each subscriber
+	 */
+	@SuppressWarnings("nls")
+	public static Map<String, Object> getStatistics() {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("received", INSTANCE.receivedCount_.get());
+		result.put("dropped", INSTANCE.droppedCount_.get());
+		QueueDispatcher dispatcher = INSTANCE.getDispatcher();
+		result.put("queued", dispatcher == null ? 0 : dispatcher.size());
+		List<Map<String, Object>> lanes = new ArrayList<Map<String, Object>>();
+		for (EMBridgeSubscriberLane lane : INSTANCE.lanes_.values()) {
+			lanes.add(lane.getStatistics());
+		}
+		result.put("subscribers", lanes);
+		return result;
+	}
+
 	@SuppressWarnings("nls")
 	public void reportStats(final long eventCount) throws InterruptedException {
 		if (statReport_) {
@@ -185,35 +268,53 @@ public enum EMBridgeMessageQueue {
 			System.out.println(MessageFormat.format(
 					"STAT: EMBridgeMessageQueue has processed {0} events since starting and {1} events since last queue timeout {2}ms ago.",
 					eventCount, (eventCount - priorMaxEventCount_), msSinceLastTimeout));
+			long laneDrops = 0;
+			for (EMBridgeSubscriberLane lane : lanes_.values()) {
+				laneDrops += lane.getDroppedCount();
+			}
+			if (droppedCount_.get() > 0 || laneDrops > 0) {
+				System.out.println(MessageFormat.format("STAT: EMBridgeMessageQueue dropped {0} events in dispatch and {1} in subscriber queues.",
+						droppedCount_.get(), laneDrops));
+			}
 			priorMaxEventCount_ = eventCount;
 			lastTimeoutTime_ = new Date().getTime();
 		}
 	}
 
 	public static void addSubscriber(final IEMBridgeSubscriber subscriber) {
-		for (EMEventIds id : subscriber.getSubscribedEventIds()) {
-			List<IEMBridgeSubscriber> list = INSTANCE.subscribers_.get(id);
-			if (list == null) {
-				list = new ArrayList<IEMBridgeSubscriber>();
-				INSTANCE.subscribers_.put(id, list);
+		INSTANCE.lanes_.putIfAbsent(subscriber, new EMBridgeSubscriberLane(subscriber, SUBSCRIBER_QUEUE_SIZE));
+		synchronized (INSTANCE.subscribers_) {
+			for (EMEventIds id : subscriber.getSubscribedEventIds()) {
+				List<IEMBridgeSubscriber> list = INSTANCE.subscribers_.get(id);
+				if (list == null) {
+					// the dispatcher reads the list while subscribers are added
+					list = new CopyOnWriteArrayList<IEMBridgeSubscriber>();
+					INSTANCE.subscribers_.put(id, list);
+				}
+				list.add(subscriber);
 			}
-			list.add(subscriber);
 		}
 	}
 
 	public static void removeSubscriber(final IEMBridgeSubscriber subscriber) {
-		for (EMEventIds id : subscriber.getSubscribedEventIds()) {
-			List<IEMBridgeSubscriber> list = INSTANCE.subscribers_.get(id);
-			if (list == null) {
-				//not subscribed
-			} else {
-				list.remove(subscriber);
+		synchronized (INSTANCE.subscribers_) {
+			for (EMEventIds id : subscriber.getSubscribedEventIds()) {
+				List<IEMBridgeSubscriber> list = INSTANCE.subscribers_.get(id);
+				if (list == null) {
+					//not subscribed
+				} else {
+					list.remove(subscriber);
+				}
 			}
 		}
+		// events that are already queued for the subscriber are still delivered
+		INSTANCE.lanes_.remove(subscriber);
 	}
 
 	protected List<IEMBridgeSubscriber> getSubscriberList(final EMEventIds eventid) {
-		return subscribers_.get(eventid);
+		synchronized (subscribers_) {
+			return subscribers_.get(eventid);
+		}
 	}
 
 }
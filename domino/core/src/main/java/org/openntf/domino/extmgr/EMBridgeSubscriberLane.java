@@ -0,0 +1,203 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.extmgr;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openntf.domino.extmgr.events.EMEventIds;
+import org.openntf.domino.xots.Xots;
+
+/**
+ * The events waiting for one subscriber.
+ *
+ * <p>
+ * Each subscriber has its own bounded queue, so a slow subscriber only delays its own events. The queue is drained by a Xots task that is
+ * started when the first event arrives and ends when the queue is empty, so idle subscribers don't hold a thread. Events are delivered in
+ * the order they were received. When the queue is full, the event is dropped for this subscriber and counted.
+ * </p>
+ *
+ * <p>
+ * With coalescing, a note update is not queued again while an update of the same note is still waiting, because the waiting event is
+ * delivered after both changes. A coalescing window holds events for at least that many milliseconds before they are delivered, so that
+ * more duplicates are caught. While the oldest event is held, the drain task is scheduled again for the rest of the window instead of
+ * waiting on a Xots thread.
+ * </p>
+ *
+ * <p>
+ * If Xots rejects the drain task (e.g. while it shuts down or restarts), the failure is counted and the next event starts a new one.
+ * </p>
+ */
+@SuppressWarnings("nls")
+class EMBridgeSubscriberLane implements Runnable {
+	/** the number of events delivered before the drain task makes room for other Xots tasks */
+	private static final int DRAIN_BATCH = 256;
+
+	private static class Entry {
+		final EMEventIds id;
+		final String event;
+		final String coalesceKey;
+		final long received;
+
+		Entry(final EMEventIds id, final String event, final String coalesceKey) {
+			this.id = id;
+			this.event = event;
+			this.coalesceKey = coalesceKey;
+			this.received = System.currentTimeMillis();
+		}
+	}
+
+	private final IEMBridgeSubscriber subscriber_;
+	private final BlockingQueue<Entry> queue_;
+	private final Set<String> pendingKeys_ = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean scheduled_ = new AtomicBoolean(false);
+	private final AtomicLong deliveredCount_ = new AtomicLong();
+	private final AtomicLong droppedCount_ = new AtomicLong();
+	private final AtomicLong coalescedCount_ = new AtomicLong();
+	private final AtomicLong failedCount_ = new AtomicLong();
+	private final AtomicLong scheduleFailedCount_ = new AtomicLong();
+
+	EMBridgeSubscriberLane(final IEMBridgeSubscriber subscriber, final int capacity) {
+		subscriber_ = subscriber;
+		queue_ = new LinkedBlockingQueue<Entry>(capacity);
+	}
+
+	/*
+	 * Note updates are identified by the database path and note id, the first two parameters of the event
+	 */
+	static String getCoalesceKey(final EMEventIds id, final String event) {
+		if (EMEventIds.EM_NSFNOTEUPDATE.equals(id) || EMEventIds.EM_NSFNOTEUPDATEXTENDED.equals(id)) {
+			int start = event.indexOf(';');
+			if (start >= 0) {
+				int dbEnd = event.indexOf(',', start + 1);
+				int noteEnd = dbEnd < 0 ? -1 : event.indexOf(',', dbEnd + 1);
+				if (noteEnd > 0) {
+					return id.getId() + ":" + event.substring(start + 1, noteEnd);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Queues an event for the subscriber. Never blocks.
+	 */
+	void offer(final EMEventIds id, final String event) {
+		String key = EMBridgeMessageQueue.INSTANCE.isCoalescing() ? getCoalesceKey(id, event) : null;
+		if (key != null && !pendingKeys_.add(key)) {
+			coalescedCount_.incrementAndGet();
+			return;
+		}
+		if (!queue_.offer(new Entry(id, event, key))) {
+			if (key != null) {
+				pendingKeys_.remove(key);
+			}
+			droppedCount_.incrementAndGet();
+			return;
+		}
+		schedule();
+	}
+
+	private void schedule() {
+		if (scheduled_.compareAndSet(false, true)) {
+			submit(0);
+		}
+	}
+
+	/*
+	 * Hands the drain task to Xots, which must not fail into the dispatcher or leave the lane marked as scheduled
+	 */
+	private void submit(final long delay) {
+		try {
+			if (delay > 0) {
+				Xots.schedule(this, delay, TimeUnit.MILLISECONDS);
+			} else {
+				Xots.execute(this);
+			}
+		} catch (RuntimeException e) {
+			// e.g. a RejectedExecutionException while Xots shuts down
+			scheduleFailedCount_.incrementAndGet();
+			scheduled_.set(false);
+		}
+	}
+
+	@Override
+	public void run() {
+		int delivered = 0;
+		while (!EMBridgeMessageQueue.INSTANCE.isStopOrdered()) {
+			Entry entry = queue_.peek();
+			if (entry == null) {
+				scheduled_.set(false);
+				// an event may have been queued after the peek and before the flag was cleared
+				if (queue_.isEmpty() || !scheduled_.compareAndSet(false, true)) {
+					return;
+				}
+				continue;
+			}
+			if (delivered >= DRAIN_BATCH) {
+				submit(0);
+				return;
+			}
+			long window = EMBridgeMessageQueue.INSTANCE.getCoalesceWindow();
+			long wait = entry.received + window - System.currentTimeMillis();
+			if (wait > 0) {
+				submit(wait);
+				return;
+			}
+			queue_.poll();
+			if (entry.coalesceKey != null) {
+				// from now on a new update of the note has to be delivered on its own
+				pendingKeys_.remove(entry.coalesceKey);
+			}
+			try {
+				subscriber_.handleMessage(entry.id, entry.event);
+				deliveredCount_.incrementAndGet();
+			} catch (Throwable t) {
+				failedCount_.incrementAndGet();
+				t.printStackTrace();
+			}
+			delivered++;
+		}
+		scheduled_.set(false);
+	}
+
+	IEMBridgeSubscriber getSubscriber() {
+		return subscriber_;
+	}
+
+	Map<String, Object> getStatistics() {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("subscriber", subscriber_.getClass().getName());
+		result.put("queued", queue_.size());
+		result.put("delivered", deliveredCount_.get());
+		result.put("dropped", droppedCount_.get());
+		result.put("coalesced", coalescedCount_.get());
+		result.put("failed", failedCount_.get());
+		result.put("scheduleFailed", scheduleFailedCount_.get());
+		return result;
+	}
+
+	long getDroppedCount() {
+		return droppedCount_.get();
+	}
+}
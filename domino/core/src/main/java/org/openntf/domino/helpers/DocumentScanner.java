@@ -15,9 +15,12 @@
  */
 package org.openntf.domino.helpers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
@@ -28,6 +31,8 @@ import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,9 +43,14 @@ import org.openntf.domino.RichTextItem;
 import org.openntf.domino.Session;
 import org.openntf.domino.big.impl.IScannerStateManager;
 import org.openntf.domino.big.impl.IScannerStateManager.ScanStatus;
+import org.openntf.domino.thread.AbstractDominoCallable;
 import org.openntf.domino.types.CaseInsensitiveString;
 import org.openntf.domino.utils.DominoUtils;
+import org.openntf.domino.utils.Factory;
+import org.openntf.domino.utils.Factory.SessionType;
 import org.openntf.domino.utils.TypeUtils;
+import org.openntf.domino.xots.Tasklet;
+import org.openntf.domino.xots.Xots;
 
 @SuppressWarnings({"unchecked", "rawtypes", "nls"})
 public class DocumentScanner extends Observable {
@@ -95,6 +105,9 @@ public class DocumentScanner extends Observable {
 	protected long tokenCount_ = 0l;
 	protected int reportDocCount_ = 100;
 
+	protected int parallelism_ = 1;
+	protected Date shardDocModDate_;
+
 	public void setCaseSensitive(final boolean value) {
 		caseSensitive_ = value;
 	}
@@ -118,6 +131,25 @@ public class DocumentScanner extends Observable {
 		reportDocCount_ = reportDocCount;
 	}
 
+	/**
+	 * @return the number of Xots workers used by {@link #processNoteCollection()}
+	 */
+	public int getParallelism() {
+		return parallelism_;
+	}
+
+	/**
+	 * Sets the number of shards a NoteCollection is split into. Each shard covers a contiguous note ID range and is scanned on its own
+	 * Xots worker with private maps, which are merged back into this scanner on the calling thread. A value of 1 (the default) scans on
+	 * the calling thread.
+	 *
+	 * @param parallelism
+	 *            the number of shards to scan concurrently
+	 */
+	public void setParallelism(final int parallelism) {
+		parallelism_ = parallelism < 1 ? 1 : parallelism;
+	}
+
 	/**
 	 * @return the docLimit
 	 */
@@ -456,6 +488,10 @@ public class DocumentScanner extends Observable {
 
 	public void processNoteCollection() {
 		//		System.out.println("DEBUG: Scanning a collection of " + collection_.getCount());
+		if (getParallelism() > 1 && Xots.isStarted()) {
+			processNoteCollectionParallel();
+			return;
+		}
 		docsToProcess_ = noteCollection_.getCount();
 		for (String nid : noteCollection_) {
 			if (docCount_ < docLimit_) {
@@ -472,6 +508,238 @@ public class DocumentScanner extends Observable {
 		complete();
 	}
 
+	/**
+	 * Splits the NoteCollection into contiguous note ID ranges and scans each range on a Xots worker. Workers fill private scanners,
+	 * which are merged into this one on the calling thread as the shards finish, so the state manager and the observers only ever see
+	 * the Notes objects of the calling thread. The last document modification date only moves forward when every document of the
+	 * collection was scanned. A scan that was cut off by the docLimit, stopped or interrupted is repeated from the previous index date.
+	 */
+	protected void processNoteCollectionParallel() {
+		int[] nids = noteCollection_.getNoteIDs();
+		Arrays.sort(nids);
+		int total = Math.min(nids.length, docLimit_);
+		docsToProcess_ = total;
+		setLastDocModDate(getLastScanDate());
+		shardDocModDate_ = null;
+		if (total > 0) {
+			String apiPath = noteCollection_.getAncestorDatabase().getApiPath();
+			int shardCount = Math.min(getParallelism(), total);
+			List<ScanShard> shards = new ArrayList<ScanShard>(shardCount);
+			List<Future<DocumentScanner>> futures = new ArrayList<Future<DocumentScanner>>(shardCount);
+			int from = 0;
+			for (int i = 0; i < shardCount; i++) {
+				int to = (int) ((long) total * (i + 1) / shardCount);
+				ScanShard shard = new ScanShard(createShardScanner(), apiPath, Arrays.copyOfRange(nids, from, to));
+				shards.add(shard);
+				futures.add(Xots.submit(shard));
+				from = to;
+			}
+			boolean success = total == nids.length;
+			long scanned = 0;
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					mergeShard(futures.get(i).get());
+					scanned += shards.get(i).getScanned();
+				} catch (InterruptedException e) {
+					for (Future<DocumentScanner> f : futures) {
+						f.cancel(true);
+					}
+					success = false;
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					errCount_++;
+					success = false;
+					System.err.println("Document scanner shard failed due to an " + e.getCause().getClass().getName() + " with message "
+							+ e.getCause().getMessage());
+				}
+			}
+			if (success && scanned == nids.length && shardDocModDate_ != null) {
+				setLastDocModDate(shardDocModDate_);
+			}
+		}
+		complete();
+	}
+
+	/**
+	 * Creates an empty scanner with the same tracking configuration as this one, but without a state manager.
+	 *
+	 * @return a scanner for a single shard
+	 */
+	protected DocumentScanner createShardScanner() {
+		DocumentScanner result = new DocumentScanner();
+		result.trackFieldTokens_ = trackFieldTokens_;
+		result.trackTokenLocation_ = trackTokenLocation_;
+		result.trackNameLocation_ = trackNameLocation_;
+		result.trackValueLocation_ = trackValueLocation_;
+		result.trackRichTextLocation_ = trackRichTextLocation_;
+		result.trackFieldValues_ = trackFieldValues_;
+		result.trackFieldTypes_ = trackFieldTypes_;
+		result.trackTokenFreq_ = trackTokenFreq_;
+		result.splitNameTokens_ = splitNameTokens_;
+		result.ignoreDollar_ = ignoreDollar_;
+		result.caseSensitive_ = caseSensitive_;
+		result.stopTokenList_ = getStopTokenList();
+		return result;
+	}
+
+	/**
+	 * Merges the maps and counters of a shard scanner into this scanner and clears the shard. The merge goes through the usual
+	 * get*LocationMap accessors, so previously saved state is restored from the state manager before new locations are added. Must be
+	 * called on the thread that owns the state manager.
+	 *
+	 * @param shard
+	 *            a scanner created by {@link #createShardScanner()}
+	 */
+	protected void mergeShard(final DocumentScanner shard) {
+		if (shard.tokenLocationMap_ != null) {
+			for (Map.Entry<CharSequence, Map<CharSequence, Set<CharSequence>>> entry : shard.tokenLocationMap_.entrySet()) {
+				mergeLocations(getTokenLocationMap(entry.getKey()), entry.getValue());
+			}
+			shard.tokenLocationMap_.clear();
+		}
+		if (shard.nameLocationMap_ != null) {
+			for (Map.Entry<CharSequence, Map<CharSequence, Set<CharSequence>>> entry : shard.nameLocationMap_.entrySet()) {
+				mergeLocations(getNameLocationMap(entry.getKey()), entry.getValue());
+			}
+			shard.nameLocationMap_.clear();
+		}
+		if (shard.valueLocationMap_ != null) {
+			for (Map.Entry<CharSequence, Map<CharSequence, Set<CharSequence>>> entry : shard.valueLocationMap_.entrySet()) {
+				mergeLocations(getValueLocationMap(entry.getKey()), entry.getValue());
+			}
+			shard.valueLocationMap_.clear();
+		}
+		if (shard.richTextLocationMap_ != null) {
+			for (Map.Entry<CharSequence, Map<CharSequence, CharSequence>> entry : shard.richTextLocationMap_.entrySet()) {
+				getRichTextLocationMap(entry.getKey()).putAll(entry.getValue());
+			}
+			shard.richTextLocationMap_.clear();
+		}
+		if (shard.fieldTokenMap_ != null) {
+			Map<CharSequence, NavigableSet<CharSequence>> tmap = getFieldTokenMap();
+			for (Map.Entry<CharSequence, NavigableSet<CharSequence>> entry : shard.fieldTokenMap_.entrySet()) {
+				NavigableSet<CharSequence> tokenSet = tmap.get(entry.getKey());
+				if (tokenSet == null) {
+					tokenSet = new ConcurrentSkipListSet<CharSequence>();
+					tmap.put(entry.getKey(), tokenSet);
+				}
+				tokenSet.addAll(entry.getValue());
+			}
+			shard.fieldTokenMap_.clear();
+		}
+		if (shard.fieldValueMap_ != null) {
+			Map<CharSequence, NavigableSet<Comparable>> vmap = getFieldValueMap();
+			for (Map.Entry<CharSequence, NavigableSet<Comparable>> entry : shard.fieldValueMap_.entrySet()) {
+				NavigableSet<Comparable> valueSet = vmap.get(entry.getKey());
+				if (valueSet == null) {
+					valueSet = new ConcurrentSkipListSet<Comparable>();
+					vmap.put(entry.getKey(), valueSet);
+				}
+				valueSet.addAll(entry.getValue());
+			}
+			shard.fieldValueMap_.clear();
+		}
+		if (shard.fieldTypeMap_ != null) {
+			Map<CharSequence, Item.Type> typeMap = getFieldTypeMap();
+			for (Map.Entry<CharSequence, Item.Type> entry : shard.fieldTypeMap_.entrySet()) {
+				if (!typeMap.containsKey(entry.getKey())) {
+					typeMap.put(entry.getKey(), entry.getValue());
+				}
+			}
+			shard.fieldTypeMap_.clear();
+		}
+		if (shard.tokenFreqMap_ != null) {
+			Map<CharSequence, Integer> tfmap = getTokenFreqMap();
+			for (Map.Entry<CharSequence, Integer> entry : shard.tokenFreqMap_.entrySet()) {
+				Integer cur = tfmap.get(entry.getKey());
+				tfmap.put(entry.getKey(), cur == null ? entry.getValue() : cur + entry.getValue());
+			}
+			shard.tokenFreqMap_.clear();
+		}
+		getNonText().addAll(shard.getNonText());
+		shard.getNonText().clear();
+
+		long before = docCount_;
+		docCount_ += shard.docCount_;
+		itemCount_ += shard.itemCount_;
+		tokenCount_ += shard.tokenCount_;
+		errCount_ += shard.errCount_;
+		zeroDocCount_ += shard.zeroDocCount_;
+		shard.docCount_ = 0;
+		shard.itemCount_ = 0;
+		shard.tokenCount_ = 0;
+		shard.errCount_ = 0;
+		shard.zeroDocCount_ = 0;
+		if (shard.lastDocModDate_ != null && (shardDocModDate_ == null || shard.lastDocModDate_.after(shardDocModDate_))) {
+			shardDocModDate_ = shard.lastDocModDate_;
+		}
+		if (docCount_ / getReportDocCount() > before / getReportDocCount()) {
+			System.out.println("Document scanner has indexed " + docCount_ + " documents so far.");
+		}
+		setChanged();
+		notifyObservers(ScanStatus.RUNNING);
+	}
+
+	protected static void mergeLocations(final Map<CharSequence, Set<CharSequence>> target,
+			final Map<CharSequence, Set<CharSequence>> source) {
+		for (Map.Entry<CharSequence, Set<CharSequence>> entry : source.entrySet()) {
+			Set<CharSequence> tllist = target.get(entry.getKey());
+			if (tllist == null) {
+				tllist = new ConcurrentSkipListSet<CharSequence>();
+				target.put(entry.getKey(), tllist);
+			}
+			tllist.addAll(entry.getValue());
+		}
+	}
+
+	/**
+	 * Scans one note ID range of a NoteCollection into a private scanner. The parent merges the returned scanner on its own thread.
+	 */
+	@Tasklet(session = Tasklet.Session.CLONE, priority = Tasklet.Priority.BULK)
+	protected static class ScanShard extends AbstractDominoCallable<DocumentScanner> {
+		private static final long serialVersionUID = 1L;
+
+		private final transient DocumentScanner shard_;
+		private final String apiPath_;
+		private final int[] noteIds_;
+		private volatile int scanned_;
+
+		public ScanShard(final DocumentScanner shard, final String apiPath, final int[] noteIds) {
+			shard_ = shard;
+			apiPath_ = apiPath;
+			noteIds_ = noteIds;
+		}
+
+		@Override
+		public String getDescription() {
+			return super.getDescription() + ":" + apiPath_ + "[" + noteIds_.length + "]";
+		}
+
+		/**
+		 * @return the number of note IDs of this shard that were scanned. Less than the range, if the shard was stopped
+		 */
+		public int getScanned() {
+			return scanned_;
+		}
+
+		@Override
+		public DocumentScanner call() throws Exception {
+			Session session = Factory.getSession(SessionType.CURRENT);
+			Database db = session.getDatabase(apiPath_);
+			int scanned = 0;
+			for (int nid : noteIds_) {
+				if (shouldStop() || Thread.interrupted()) {
+					break;
+				}
+				shard_.processDocument(db.getDocumentByID(nid));
+				scanned++;
+			}
+			scanned_ = scanned;
+			return shard_;
+		}
+	}
+
 	public org.openntf.domino.DocumentCollection getCollection() {
 		return collection_;
 	}
@@ -15,19 +15,29 @@
  */
 package org.openntf.domino.helpers;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.Externalizable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.security.AccessController;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Vector;
-import java.util.concurrent.ConcurrentSkipListSet;
 
 import org.openntf.domino.Database;
 import org.openntf.domino.Document;
@@ -35,20 +45,39 @@ import org.openntf.domino.DocumentCollection;
 import org.openntf.domino.iterators.DocumentList;
 import org.openntf.domino.types.Null;
 
+/**
+ * Sorts a DocumentCollection by the values of items or formulas.
+ *
+ * <p>
+ * The sort keys of all documents are read first, and then sorted with a parallel merge sort. When there are more documents than
+ * {@link #getMaxInMemory()}, the keys are sorted in runs of that size, each run is written to a temporary file, and the runs are merged
+ * into the result. The memory used is then independent of the size of the collection, apart from the note ids of the result. Call
+ * {@link #clear()} to delete the temporary files when the sorter is no longer needed.
+ * </p>
+ *
+ * <p>
+ * Reading the keys is not parallel, because documents belong to the thread of their session.
+ * </p>
+ */
 @SuppressWarnings("nls")
 public class DocumentSorter implements Externalizable {
 	private static final long serialVersionUID = 1L;
 	private static boolean debug = false;
+	/** the default maximum number of sort keys held in memory */
+	public static final int DEFAULT_MAX_IN_MEMORY = 262144;
+	/** the number of keys after which the object stream of a run is reset, so that it doesn't hold on to them */
+	private static final int RUN_RESET_INTERVAL = 1024;
+
 	private DocumentData[] dataset_;
-	private SortedSet<DocumentData> treeSet_ = new TreeSet<DocumentData>();
-	private SortedSet<DocumentData> skipListSet_ = new ConcurrentSkipListSet<DocumentData>();
+	private transient List<File> runs_;
+	private int count_;
+	private int maxInMemory_ = DEFAULT_MAX_IN_MEMORY;
 
 	public static class DocumentData implements Comparable<DocumentData>, Externalizable {
 		private static boolean debug = false;
 		private int nid_;
 		//		private String replid_;
 		//		private String unid_;
-		private final byte[] address_ = new byte[48];
 		//		private List<Serializable> values_;	//houses the results of the comparison criteria
 		private Serializable[] values_;
 
@@ -67,10 +96,6 @@ public class DocumentSorter implements Externalizable {
 			nid_ = Integer.valueOf(document.getNoteID(), 16);
 			//			replid_ = document.getAncestorDatabase().getReplicaID();
 			//			unid_ = document.getUniversalID();
-			String rid = document.getAncestorDatabase().getReplicaID();
-			System.arraycopy(rid.getBytes(), 0, address_, 0, 16);
-			String unid = document.getUniversalID();
-			System.arraycopy(unid.getBytes(), 0, address_, 16, 32);
 			//			values_ = new ArrayList<Serializable>();
 			values_ = new Serializable[criteria.size()];
 			if (criteria != null && !criteria.isEmpty()) {
@@ -108,11 +133,11 @@ public class DocumentSorter implements Externalizable {
 		}
 
 		public Document getDocument(final Database db) {
-			if (nid_ != 0) {
-				return db.getDocumentByID(Integer.toString(nid_, 16));
-			} else {
-				return db.getDocumentByUNID(new String(address_, 16, 32));
-			}
+			return db.getDocumentByID(Integer.toString(nid_, 16));
+		}
+
+		public int getNoteID() {
+			return nid_;
 		}
 
 		@Override
@@ -240,6 +265,22 @@ public class DocumentSorter implements Externalizable {
 	public void setSourceCollection(final DocumentCollection coll) {
 		sourceColl_ = coll;
 		dataset_ = null;
+		deleteRuns();
+	}
+
+	public int getMaxInMemory() {
+		return maxInMemory_;
+	}
+
+	/**
+	 * @param maxInMemory
+	 *            the maximum number of sort keys held in memory. Larger collections are sorted in runs in temporary files
+	 */
+	public void setMaxInMemory(final int maxInMemory) {
+		if (maxInMemory < 1) {
+			throw new IllegalArgumentException("The number of keys in memory must be positive");
+		}
+		maxInMemory_ = maxInMemory;
 	}
 
 	protected void _normalize() {
@@ -252,12 +293,25 @@ public class DocumentSorter implements Externalizable {
 				throw new IllegalStateException(
 						"Cannot sort from a null DocumentCollection. Please add a DocumentCollection that you want to sort...");
 			}
+			deleteRuns();
 			//		System.out.println("Normalizing collection of " + sourceColl_.getCount() + " docs");
 			long startTime = System.nanoTime();
 			int docCount = 0;
-			dataset_ = new DocumentData[sourceColl_.getCount()];
+			int bufferCount = 0;
+			DocumentData[] buffer = new DocumentData[Math.min(sourceColl_.getCount(), maxInMemory_)];
 			for (Document doc : sourceColl_) {
-				dataset_[docCount++] = new DocumentData(doc, criteria);
+				if (bufferCount == buffer.length) {
+					if (buffer.length < maxInMemory_) {
+						// the collection grew while we read it
+						buffer = Arrays.copyOf(buffer, Math.min(maxInMemory_, buffer.length * 2 + 16));
+					} else {
+						_arraySort(buffer, bufferCount);
+						_spill(buffer, bufferCount);
+						bufferCount = 0;
+					}
+				}
+				buffer[bufferCount++] = new DocumentData(doc, criteria);
+				docCount++;
 				//			System.out.println("Processed " + ++docCount + " documents");
 				if (debug) {
 					if (docCount % 50000 == 0) {
@@ -265,6 +319,8 @@ public class DocumentSorter implements Externalizable {
 					}
 				}
 			}
+			dataset_ = bufferCount == buffer.length ? buffer : Arrays.copyOf(buffer, bufferCount);
+			count_ = docCount;
 			long endTime = System.nanoTime();
 			if (debug) {
 				System.out.println("Normalized dataset of " + docCount + " in " + (endTime - startTime) / 1000000 + "ms");
@@ -274,43 +330,252 @@ public class DocumentSorter implements Externalizable {
 
 	protected void _sort() {
 		_normalize();
-		if (debug) {
-			//			_treeSort();
-			//			_skipListSort();
-		}
-		_arraySort();
+		// the keys in memory are the last run; the ones on disk are sorted already
+		_arraySort(dataset_, dataset_.length);
 		//		System.out.println("Done normalizing to a set of size " + size() + " after iterating over " + docCount + " docs.");
 	}
 
-	@SuppressWarnings("unused")
-	private void _treeSort() {
+	private void _arraySort(final DocumentData[] data, final int length) {
 		long startTime = System.nanoTime();
-		treeSet_.addAll(Arrays.asList(dataset_));
+		Arrays.parallelSort(data, 0, length);
 		long endTime = System.nanoTime();
 		if (debug) {
-			System.out.println("Tree sorted dataset of " + treeSet_.size() + " in " + (endTime - startTime) / 1000000 + "ms");
+			System.out.println("Array sorted dataset of " + length + " in " + (endTime - startTime) / 1000000 + "ms");
 		}
 	}
 
-	@SuppressWarnings("unused")
-	private void _skipListSort() {
-		long startTime = System.nanoTime();
-		skipListSet_.addAll(Arrays.asList(dataset_));
-		long endTime = System.nanoTime();
-		if (debug) {
-			System.out.println("SkipList sorted dataset of " + skipListSet_.size() + " in " + (endTime - startTime) / 1000000 + "ms");
+	private static <T> T doPrivileged(final PrivilegedExceptionAction<T> action) throws IOException {
+		try {
+			return AccessController.doPrivileged(action);
+		} catch (PrivilegedActionException e) {
+			Exception cause = e.getException();
+			throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
 		}
 	}
 
-	private void _arraySort() {
+	/*
+	 * Writes a sorted run to a temporary file
+	 */
+	private void _spill(final DocumentData[] data, final int length) {
 		long startTime = System.nanoTime();
-		Arrays.sort(dataset_);
+		try {
+			final File file = doPrivileged(new PrivilegedExceptionAction<File>() {
+				@Override
+				public File run() throws Exception {
+					// no deleteOnExit: it keeps every path until the JVM ends, deleteRuns() removes the files
+					return File.createTempFile("docsort", ".run");
+				}
+			});
+			if (runs_ == null) {
+				runs_ = new ArrayList<File>();
+			}
+			runs_.add(file);
+			ObjectOutputStream out = doPrivileged(new PrivilegedExceptionAction<ObjectOutputStream>() {
+				@Override
+				public ObjectOutputStream run() throws Exception {
+					return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+				}
+			});
+			try {
+				out.writeInt(length);
+				for (int i = 0; i < length; i++) {
+					data[i].writeExternal(out);
+					data[i] = null;
+					if (i % RUN_RESET_INTERVAL == RUN_RESET_INTERVAL - 1) {
+						out.reset();
+					}
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			deleteRuns();
+			throw new RuntimeException("Unable to write a sort run to a temporary file", e);
+		}
 		long endTime = System.nanoTime();
 		if (debug) {
-			System.out.println("Array sorted dataset of " + dataset_.length + " in " + (endTime - startTime) / 1000000 + "ms");
+			System.out.println("Wrote sorted run of " + length + " in " + (endTime - startTime) / 1000000 + "ms");
+		}
+	}
+
+	/**
+	 * Drops the sort keys and deletes the temporary files of the runs. The runs are kept after {@link #sort()}, so that the sorter can
+	 * still be serialized.
+	 */
+	public void clear() {
+		dataset_ = null;
+		count_ = 0;
+		deleteRuns();
+	}
+
+	private void deleteRuns() {
+		if (runs_ != null) {
+			for (final File file : runs_) {
+				try {
+					doPrivileged(new PrivilegedExceptionAction<Boolean>() {
+						@Override
+						public Boolean run() throws Exception {
+							return file.delete();
+						}
+					});
+				} catch (IOException e) {
+					// it is deleted on exit
+				}
+			}
+			runs_ = null;
+		}
+	}
+
+	/*
+	 * A sorted sequence of keys, from memory or from a run file
+	 */
+	private static abstract class RunSource implements Comparable<RunSource> {
+		DocumentData head_;
+
+		/**
+		 * @return false if the run is exhausted
+		 */
+		abstract boolean advance() throws IOException;
+
+		void close() {
+		}
+
+		@Override
+		public int compareTo(final RunSource o) {
+			return head_.compareTo(o.head_);
+		}
+	}
+
+	private static class ArraySource extends RunSource {
+		private final DocumentData[] data_;
+		private int pos_;
+
+		ArraySource(final DocumentData[] data) {
+			data_ = data;
+		}
+
+		@Override
+		boolean advance() {
+			if (pos_ < data_.length) {
+				head_ = data_[pos_++];
+				return true;
+			}
+			head_ = null;
+			return false;
+		}
+	}
+
+	private static class FileSource extends RunSource {
+		private final ObjectInputStream in_;
+		private int remaining_;
+
+		FileSource(final File file) throws IOException {
+			in_ = doPrivileged(new PrivilegedExceptionAction<ObjectInputStream>() {
+				@Override
+				public ObjectInputStream run() throws Exception {
+					return new ObjectInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+				}
+			});
+			remaining_ = in_.readInt();
+		}
+
+		@Override
+		boolean advance() throws IOException {
+			if (remaining_ <= 0) {
+				head_ = null;
+				return false;
+			}
+			remaining_--;
+			DocumentData data = new DocumentData();
+			try {
+				data.readExternal(in_);
+			} catch (ClassNotFoundException e) {
+				throw new IOException(e);
+			}
+			head_ = data;
+			return true;
+		}
+
+		@Override
+		void close() {
+			try {
+				in_.close();
+			} catch (IOException e) {
+				// nothing to do
+			}
 		}
 	}
 
+	/*
+	 * Iterates the sorted keys. With runs on disk this is a k-way merge of the runs and the keys in memory
+	 */
+	private Iterator<DocumentData> sortedIterator() {
+		if (dataset_ == null) {
+			return new ArrayList<DocumentData>().iterator();
+		}
+		if (runs_ == null) {
+			return Arrays.asList(dataset_).iterator();
+		}
+		final PriorityQueue<RunSource> queue = new PriorityQueue<RunSource>(runs_.size() + 1);
+		final List<RunSource> sources = new ArrayList<RunSource>();
+		try {
+			sources.add(new ArraySource(dataset_));
+			for (File file : runs_) {
+				sources.add(new FileSource(file));
+			}
+			for (RunSource source : sources) {
+				if (source.advance()) {
+					queue.add(source);
+				} else {
+					source.close();
+				}
+			}
+		} catch (IOException e) {
+			for (RunSource source : sources) {
+				source.close();
+			}
+			throw new RuntimeException("Unable to read a sort run from a temporary file", e);
+		}
+		return new Iterator<DocumentData>() {
+			@Override
+			public boolean hasNext() {
+				return !queue.isEmpty();
+			}
+
+			@Override
+			public DocumentData next() {
+				RunSource source = queue.poll();
+				if (source == null) {
+					throw new NoSuchElementException();
+				}
+				DocumentData result = source.head_;
+				try {
+					if (source.advance()) {
+						queue.add(source);
+					} else {
+						source.close();
+					}
+				} catch (IOException e) {
+					source.close();
+					for (RunSource other : queue) {
+						other.close();
+					}
+					queue.clear();
+					throw new RuntimeException("Unable to read a sort run from a temporary file", e);
+				}
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * @return the sorted keys. Only complete if the collection fit into memory
+	 */
 	public DocumentData[] _debugGetDataset() {
 		return dataset_;
 	}
@@ -318,12 +583,15 @@ public class DocumentSorter implements Externalizable {
 	public DocumentCollection sort() {
 		long startMemory = Runtime.getRuntime().freeMemory();
 		_sort();
-		int[] nids = new int[dataset_.length];
+		int[] nids = new int[count_];
 		//		System.out.println("Beginning merge of " + dataset_.length + " DocumentDatas");
-		for (int i = 0; i < nids.length; i++) {
-			nids[i] = dataset_[i].nid_;
+		Iterator<DocumentData> it = sortedIterator();
+		int i = 0;
+		while (it.hasNext() && i < nids.length) {
+			nids[i++] = it.next().nid_;
 		}
 		DocumentCollection result = new DocumentList(nids, database_);
+		((DocumentList) result).setSorted(true);
 		//		for (DocumentData data : dataset_) {
 		//			result.merge(data.nid_);
 		//		}
@@ -336,7 +604,7 @@ public class DocumentSorter implements Externalizable {
 	}
 
 	public int getCount() {
-		return dataset_.length;
+		return count_;
 	}
 
 	public List<String> getCriteria() {
@@ -363,15 +631,18 @@ public class DocumentSorter implements Externalizable {
 		for (int i = 0; i < dataset_.length; i++) {
 			dataset_[i] = (DocumentData) arg0.readObject();
 		}
+		count_ = dLen;
 		//		System.out.println("Completed deserialization of a DocumentSorter with " + dLen + " in the dataset");
 	}
 
 	@Override
 	public void writeExternal(final ObjectOutput arg0) throws IOException {
 		arg0.writeObject(criteria_);
-		arg0.writeInt(dataset_.length);
-		for (int i = 0; i < dataset_.length; i++) {
-			arg0.writeObject(dataset_[i]);
+		arg0.writeInt(count_);
+		// keys that were sorted on disk are written in their sorted order
+		Iterator<DocumentData> it = sortedIterator();
+		while (it.hasNext()) {
+			arg0.writeObject(it.next());
 		}
 	}
 
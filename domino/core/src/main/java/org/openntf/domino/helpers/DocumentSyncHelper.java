@@ -15,9 +15,20 @@
  */
 package org.openntf.domino.helpers;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openntf.domino.Database;
@@ -28,7 +39,16 @@ import org.openntf.domino.DocumentCollection;
 import org.openntf.domino.Item;
 import org.openntf.domino.Session;
 import org.openntf.domino.View;
+import org.openntf.domino.ViewColumn;
+import org.openntf.domino.ViewEntry;
+import org.openntf.domino.ViewNavigator;
+import org.openntf.domino.big.impl.NoteIdSet;
+import org.openntf.domino.thread.AbstractDominoCallable;
 import org.openntf.domino.transactions.DatabaseTransaction;
+import org.openntf.domino.utils.Factory;
+import org.openntf.domino.utils.Factory.SessionType;
+import org.openntf.domino.xots.Tasklet;
+import org.openntf.domino.xots.Xots;
 
 /**
  * DocumentSyncHelper class
@@ -75,11 +95,14 @@ import org.openntf.domino.transactions.DatabaseTransaction;
  *
  * Map has key Controls.TARGET_SERVER=ServerName will look for an Item called ServerName on the control document to retrieve the server name
  * to use in the DocumentSyncHelper
+ *
+ * For large syncs, {@link #setBatchLookup(boolean)} resolves the keys of all source documents in one pass over the target view instead of
+ * one lookup per source document, and {@link #setParallelism(int)} writes the target documents on Xots threads.
  */
+@SuppressWarnings("nls")
 public class DocumentSyncHelper {
 
 	/** The Constant log_. */
-	@SuppressWarnings("unused")
 	private static final Logger log_ = Logger.getLogger(DocumentSyncHelper.class.getName());
 
 	/**
@@ -157,6 +180,12 @@ public class DocumentSyncHelper {
 	/** The sync map_. */
 	private Map<Formula, String> syncMap_;
 
+	private boolean batchLookup_;
+
+	private int parallelism_ = 1;
+
+	private int writeBatchSize_ = 500;
+
 	/**
 	 * Instantiates a new document sync helper.
 	 *
@@ -329,6 +358,10 @@ public class DocumentSyncHelper {
 		Database targetDb = session.getDatabase(getTargetServer(), getTargetFilepath());
 		View targetView = targetDb.getView(getTargetLookupView());
 		Strategy strategy = getStrategy();
+		if (isBatchLookup()) {
+			processBatch(coll, targetDb, targetView, strategy);
+			return;
+		}
 		DatabaseTransaction txn = null;
 		if (getTransactionRule() == TransactionRule.COMMIT_AT_END) {
 			txn = targetDb.startTransaction();
@@ -381,38 +414,19 @@ public class DocumentSyncHelper {
 		if (getTransactionRule() == TransactionRule.COMMIT_EVERY_SOURCE) {
 			txn = targetDb.startTransaction();
 		}
-		DateTime sourceLastMod = source.getLastModified();
 		// Object lookupKey = Factory.wrappedEvaluate(session, getSourceKeyFormula(), source);
 		Object lookupKey = getSourceKeyFormula().getValue(source);
 		DocumentCollection targetColl = targetView.getAllDocumentsByKey(lookupKey, true);
-		for (Document target : targetColl) {
-			// boolean targetDirty = false;
-			for (Map.Entry<Formula, String> entry : getSyncMap().entrySet()) {
-				String targetItemName = entry.getValue();
-				java.util.Vector<?> sourceValue = entry.getKey().getValue(source);
-				// Factory.wrappedEvaluate(session, entry.getKey(), source);
-				if (strategy == Strategy.CREATE_AND_REPLACE) {
-					target.replaceItemValue(targetItemName, sourceValue);
-					// targetDirty = true;
-				} else {
-					Item targetItem = target.getFirstItem(targetItemName);
-					if (strategy == Strategy.REPLACE_IF_NEWER) {
-						DateTime itemLastMod = targetItem.getLastModified();
-						if (sourceLastMod.isAfter(itemLastMod)) {
-							targetItem.setValues(sourceValue);
-							// targetDirty = true;
-						}
-					} else if (strategy == Strategy.REPLACE_ONLY) {
-						if (targetItem != null) {
-							targetItem.setValues(sourceValue);
-							// targetDirty = true;
-						}
-					}
+		if (targetColl.getCount() > 0) {
+			// the values are the same for every target, so the formulas are only evaluated once
+			Map<String, Vector<Object>> values = evaluateSyncMap(source);
+			Date sourceLastMod = source.getLastModifiedDate();
+			for (Document target : targetColl) {
+				applyValues(target, values, strategy, sourceLastMod);
+				if (getTransactionRule() == TransactionRule.NO_TRANSACTION || txn == null) {
+					target.save();
 				}
 			}
-			if (getTransactionRule() == TransactionRule.NO_TRANSACTION || txn == null) {
-				target.save();
-			}
 		}
 		if (getTransactionRule() == TransactionRule.COMMIT_EVERY_SOURCE && txn != null) {
 			txn.commit();
@@ -421,6 +435,388 @@ public class DocumentSyncHelper {
 		return txn;
 	}
 
+	/**
+	 * Evaluates the sync map against a source document
+	 *
+	 * @param source
+	 *            Document to sync from
+	 * @return Map of target Item names to the values to write, in the order of the sync map
+	 */
+	protected Map<String, Vector<Object>> evaluateSyncMap(final Document source) {
+		Map<String, Vector<Object>> result = new LinkedHashMap<String, Vector<Object>>();
+		for (Map.Entry<Formula, String> entry : getSyncMap().entrySet()) {
+			// Factory.wrappedEvaluate(session, entry.getKey(), source);
+			result.put(entry.getValue(), entry.getKey().getValue(source));
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the values of a source document to a target document, without saving it
+	 *
+	 * @param target
+	 *            Document to sync to
+	 * @param values
+	 *            Map of target Item names to values, from {@link #evaluateSyncMap(Document)}
+	 * @param strategy
+	 *            Strategy to sync Items
+	 * @param sourceLastMod
+	 *            the last modification of the source document, for {@link Strategy#REPLACE_IF_NEWER}
+	 */
+	protected static void applyValues(final Document target, final Map<String, Vector<Object>> values, final Strategy strategy,
+			final Date sourceLastMod) {
+		for (Map.Entry<String, Vector<Object>> entry : values.entrySet()) {
+			String targetItemName = entry.getKey();
+			Vector<Object> sourceValue = entry.getValue();
+			if (strategy == Strategy.CREATE_AND_REPLACE) {
+				target.replaceItemValue(targetItemName, sourceValue);
+			} else {
+				Item targetItem = target.getFirstItem(targetItemName);
+				if (targetItem == null) {
+					// neither strategy creates items
+					continue;
+				}
+				if (strategy == Strategy.REPLACE_IF_NEWER) {
+					Date itemLastMod = targetItem.getLastModifiedDate();
+					if (itemLastMod == null || sourceLastMod.after(itemLastMod)) {
+						targetItem.setValues(sourceValue);
+					}
+				} else if (strategy == Strategy.REPLACE_ONLY) {
+					targetItem.setValues(sourceValue);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Lookup keys are compared the way exact view lookups do: text ignoring case, numbers by value and dates by time
+	 */
+	private static Object normalizeKey(final Object value) {
+		if (value instanceof String) {
+			return ((String) value).toLowerCase(Locale.ROOT);
+		} else if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		} else if (value instanceof DateTime) {
+			return ((DateTime) value).toJavaDate().getTime();
+		} else if (value instanceof Date) {
+			return ((Date) value).getTime();
+		}
+		return value;
+	}
+
+	/*
+	 * Values that are handed to other threads must not be tied to the session of this one
+	 */
+	private static Map<String, Vector<Object>> toPortable(final Map<String, Vector<Object>> values) {
+		for (Vector<Object> value : values.values()) {
+			if (value != null) {
+				for (int i = 0; i < value.size(); i++) {
+					if (value.get(i) instanceof DateTime) {
+						value.set(i, ((DateTime) value.get(i)).toJavaDate());
+					}
+				}
+			}
+		}
+		return values;
+	}
+
+	/*
+	 * The position of the first sorted column in the column values, which is the column that single value keys are looked up in
+	 */
+	private static int getKeyColumnIndex(final View view) {
+		for (ViewColumn column : view.getColumns()) {
+			if (column.isSorted()) {
+				return column.getColumnValuesIndex();
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * The source documents that share a lookup key, and the target documents found for it
+	 */
+	private static class KeyGroup {
+		int[] sourceNids_ = new int[1];
+		int sourceCount_;
+		int[] targetNids_ = new int[0];
+		int targetCount_;
+		/** the key as the formula returned it */
+		final Vector<Object> lookupKey_;
+		/** whether the key can't be matched in the view pass and is looked up on its own */
+		boolean separate_;
+
+		KeyGroup(final Vector<Object> lookupKey) {
+			lookupKey_ = lookupKey;
+		}
+
+		void addSource(final int nid) {
+			if (sourceCount_ == sourceNids_.length) {
+				sourceNids_ = Arrays.copyOf(sourceNids_, sourceCount_ * 2);
+			}
+			sourceNids_[sourceCount_++] = nid;
+		}
+
+		void addTarget(final int nid) {
+			if (targetCount_ == targetNids_.length) {
+				targetNids_ = Arrays.copyOf(targetNids_, Math.max(4, targetCount_ * 2));
+			}
+			targetNids_[targetCount_++] = nid;
+		}
+
+		int[] getTargets() {
+			return Arrays.copyOf(targetNids_, targetCount_);
+		}
+	}
+
+	/**
+	 * The values of one source document to write to its target documents
+	 */
+	protected static class WriteJob implements Serializable {
+		private static final long serialVersionUID = 1L;
+		final int[] targetNids_;
+		final Map<String, Vector<Object>> values_;
+		final Date sourceLastMod_;
+
+		WriteJob(final int[] targetNids, final Map<String, Vector<Object>> values, final Date sourceLastMod) {
+			targetNids_ = targetNids;
+			values_ = values;
+			sourceLastMod_ = sourceLastMod;
+		}
+	}
+
+	/**
+	 * Writes a batch of jobs to the target database in a session of its own.
+	 */
+	@Tasklet(session = Tasklet.Session.CLONE, priority = Tasklet.Priority.BULK)
+	protected static class SyncWriter extends AbstractDominoCallable<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		private final String apiPath_;
+		private final Strategy strategy_;
+		private final List<WriteJob> jobs_;
+
+		public SyncWriter(final String apiPath, final Strategy strategy, final List<WriteJob> jobs) {
+			apiPath_ = apiPath;
+			strategy_ = strategy;
+			jobs_ = jobs;
+		}
+
+		@Override
+		public String getDescription() {
+			return super.getDescription() + ":" + apiPath_ + "[" + jobs_.size() + "]";
+		}
+
+		@Override
+		public Integer call() throws Exception {
+			Session session = Factory.getSession(SessionType.CURRENT);
+			Database db = session.getDatabase(apiPath_);
+			int written = 0;
+			for (WriteJob job : jobs_) {
+				for (int nid : job.targetNids_) {
+					if (shouldStop() || Thread.interrupted()) {
+						return written;
+					}
+					Document target = db.getDocumentByID(nid);
+					if (target != null) {
+						applyValues(target, job.values_, strategy_, job.sourceLastMod_);
+						target.save();
+						written++;
+					}
+				}
+			}
+			return written;
+		}
+	}
+
+	/**
+	 * Submits the writers and keeps at most {@link #getParallelism()} of them running
+	 */
+	private class ParallelWriter {
+		private final String apiPath_;
+		private final Strategy strategy_;
+		private final LinkedList<Future<Integer>> running_ = new LinkedList<Future<Integer>>();
+		private final NoteIdSet assigned_ = new NoteIdSet();
+		private List<WriteJob> pending_ = new ArrayList<WriteJob>();
+		private int pendingTargets_;
+		private int written_;
+
+		ParallelWriter(final Database targetDb, final Strategy strategy) {
+			apiPath_ = targetDb.getApiPath();
+			strategy_ = strategy;
+		}
+
+		void add(final WriteJob job) {
+			boolean overlaps = false;
+			for (int nid : job.targetNids_) {
+				if (!assigned_.add(nid)) {
+					overlaps = true;
+				}
+			}
+			if (overlaps) {
+				// a target of more than one key must be written in order, so everything before has to be done first
+				submit();
+				await(0);
+				assigned_.clear();
+				for (int nid : job.targetNids_) {
+					assigned_.add(nid);
+				}
+			}
+			pending_.add(job);
+			pendingTargets_ += job.targetNids_.length;
+			if (pendingTargets_ >= getWriteBatchSize()) {
+				submit();
+			}
+		}
+
+		private void submit() {
+			if (!pending_.isEmpty()) {
+				await(getParallelism() - 1);
+				running_.add(Xots.submit(new SyncWriter(apiPath_, strategy_, pending_)));
+				pending_ = new ArrayList<WriteJob>();
+				pendingTargets_ = 0;
+			}
+		}
+
+		private void await(final int maxRunning) {
+			while (running_.size() > maxRunning) {
+				Future<Integer> future = running_.removeFirst();
+				try {
+					written_ += future.get();
+				} catch (InterruptedException e) {
+					for (Future<Integer> f : running_) {
+						f.cancel(true);
+					}
+					running_.clear();
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for sync writers", e);
+				} catch (ExecutionException e) {
+					log_.log(Level.WARNING, "A sync writer for " + apiPath_ + " failed", e.getCause());
+				}
+			}
+		}
+
+		int finish() {
+			submit();
+			await(0);
+			return written_;
+		}
+	}
+
+	/**
+	 * Processes a collection with the keys resolved in one pass over the target view
+	 *
+	 * @param coll
+	 *            DocumentCollection of source documents
+	 * @param targetDb
+	 *            Database to retrieve documents to sync to
+	 * @param targetView
+	 *            View to retrieve documents to sync to
+	 * @param strategy
+	 *            Strategy to sync Items
+	 */
+	protected void processBatch(final DocumentCollection coll, final Database targetDb, final View targetView, final Strategy strategy) {
+		Database sourceDb = coll.getAncestorDatabase();
+		// 1. the key of every source document, grouped by key
+		Map<Object, KeyGroup> groups = new LinkedHashMap<Object, KeyGroup>();
+		int separateCount = 0;
+		for (Document source : coll) {
+			Vector<Object> lookupKey = getSourceKeyFormula().getValue(source);
+			if (lookupKey == null || lookupKey.isEmpty()) {
+				continue;
+			}
+			Object groupKey = lookupKey.size() == 1 ? normalizeKey(lookupKey.get(0)) : lookupKey;
+			KeyGroup group = groups.get(groupKey);
+			if (group == null) {
+				group = new KeyGroup(lookupKey);
+				groups.put(groupKey, group);
+				if (lookupKey.size() > 1) {
+					// a multi column key is looked up on its own
+					group.separate_ = true;
+					separateCount++;
+				}
+			}
+			group.addSource(Integer.valueOf(source.getNoteID(), 16));
+		}
+
+		// 2. the targets of all single value keys in one pass over the view
+		int keyColumn = getKeyColumnIndex(targetView);
+		if (keyColumn < 0) {
+			for (KeyGroup group : groups.values()) {
+				group.separate_ = true;
+			}
+		} else if (groups.size() > separateCount) {
+			ViewNavigator nav = targetView.createViewNav();
+			nav.setCacheGuidance(400, ViewNavigator.VN_CACHEGUIDANCE_READALL);
+			ViewEntry entry = nav.getFirstDocument();
+			while (entry != null) {
+				Vector<Object> columnValues = entry.getColumnValues();
+				if (columnValues != null && keyColumn < columnValues.size()) {
+					KeyGroup group = groups.get(normalizeKey(columnValues.get(keyColumn)));
+					if (group != null && !group.separate_) {
+						group.addTarget(entry.getNoteIDAsInt());
+					}
+				}
+				entry = nav.getNextDocument();
+			}
+		}
+		for (KeyGroup group : groups.values()) {
+			if (group.separate_) {
+				for (Document target : targetView.getAllDocumentsByKey(group.lookupKey_, true)) {
+					group.addTarget(Integer.valueOf(target.getNoteID(), 16));
+				}
+			}
+		}
+
+		// 3. the values of each source document, written to its targets
+		boolean parallel = getParallelism() > 1 && Xots.isStarted() && getTransactionRule() == TransactionRule.NO_TRANSACTION;
+		ParallelWriter writer = parallel ? new ParallelWriter(targetDb, strategy) : null;
+		DatabaseTransaction txn = null;
+		if (!parallel && getTransactionRule() == TransactionRule.COMMIT_AT_END) {
+			txn = targetDb.startTransaction();
+		}
+		for (KeyGroup group : groups.values()) {
+			if (group.targetCount_ == 0) {
+				continue;
+			}
+			int[] targets = group.getTargets();
+			for (int i = 0; i < group.sourceCount_; i++) {
+				Document source = sourceDb.getDocumentByID(group.sourceNids_[i]);
+				if (source == null) {
+					continue;
+				}
+				Map<String, Vector<Object>> values = evaluateSyncMap(source);
+				Date sourceLastMod = source.getLastModifiedDate();
+				if (parallel) {
+					writer.add(new WriteJob(targets, toPortable(values), sourceLastMod));
+					continue;
+				}
+				if (getTransactionRule() == TransactionRule.COMMIT_EVERY_SOURCE) {
+					txn = targetDb.startTransaction();
+				}
+				for (int nid : targets) {
+					Document target = targetDb.getDocumentByID(nid);
+					if (target != null) {
+						applyValues(target, values, strategy, sourceLastMod);
+						if (getTransactionRule() == TransactionRule.NO_TRANSACTION || txn == null) {
+							target.save();
+						}
+					}
+				}
+				if (getTransactionRule() == TransactionRule.COMMIT_EVERY_SOURCE && txn != null) {
+					txn.commit();
+					txn = null;
+				}
+			}
+		}
+		if (parallel) {
+			writer.finish();
+		}
+		if (getTransactionRule() == TransactionRule.COMMIT_AT_END && txn != null) {
+			txn.commit();
+			txn = null;
+		}
+	}
+
 	/**
 	 * Sets the target View (and so also Database and Server) from which to retrieve documents
 	 *
@@ -595,6 +991,72 @@ public class DocumentSyncHelper {
 		transactionRule_ = rule;
 	}
 
+	/**
+	 * Whether the keys of a collection are resolved in one pass over the target view
+	 *
+	 * @return true if batch lookups are used
+	 * @since ODA 4.5.0
+	 */
+	public boolean isBatchLookup() {
+		return batchLookup_;
+	}
+
+	/**
+	 * Sets whether the keys of a collection are resolved in one pass over the target view, instead of one lookup per source document.
+	 * The pass reads the whole view, so this pays off when a large part of the view is synced. Keys with one value are matched against
+	 * the first sorted column of the view, keys with several values are still looked up on their own.
+	 *
+	 * @param batchLookup
+	 *            true to use batch lookups
+	 * @since ODA 4.5.0
+	 */
+	public void setBatchLookup(final boolean batchLookup) {
+		batchLookup_ = batchLookup;
+	}
+
+	/**
+	 * Gets the number of threads that write target documents in batch mode
+	 *
+	 * @return int the parallelism
+	 * @since ODA 4.5.0
+	 */
+	public int getParallelism() {
+		return parallelism_;
+	}
+
+	/**
+	 * Sets the number of Xots threads that write target documents in batch mode. Each thread works in a session of its own, so parallel
+	 * writes are only used with {@link TransactionRule#NO_TRANSACTION} and when Xots is started.
+	 *
+	 * @param parallelism
+	 *            int the number of writer threads
+	 * @since ODA 4.5.0
+	 */
+	public void setParallelism(final int parallelism) {
+		parallelism_ = parallelism < 1 ? 1 : parallelism;
+	}
+
+	/**
+	 * Gets the number of target documents a writer thread takes at once
+	 *
+	 * @return int the write batch size
+	 * @since ODA 4.5.0
+	 */
+	public int getWriteBatchSize() {
+		return writeBatchSize_;
+	}
+
+	/**
+	 * Sets the number of target documents a writer thread takes at once
+	 *
+	 * @param writeBatchSize
+	 *            int the write batch size
+	 * @since ODA 4.5.0
+	 */
+	public void setWriteBatchSize(final int writeBatchSize) {
+		writeBatchSize_ = writeBatchSize < 1 ? 1 : writeBatchSize;
+	}
+
 	/**
 	 * Gets the sync map of Item names or Formulas to apply to the source document and Item names on the target documents into which to
 	 * store the result
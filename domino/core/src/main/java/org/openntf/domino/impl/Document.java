@@ -4428,7 +4428,7 @@ implements org.openntf.domino.Document {
 				if (i == chunks - 1 && lastChunkSize > 0) {
 					//					System.out.println("DEBUG: Writing last chunk");
 					byte[] lastBuffer = new byte[lastChunkSize];
-					System.arraycopy(data, lastChunkSize, lastBuffer, 0, lastBuffer.length);
+					System.arraycopy(data, i * chunkSize, lastBuffer, 0, lastBuffer.length);
 					writeBinaryChunk(name, i, lastBuffer);
 				} else {
 					System.arraycopy(data, i * chunkSize, buffer, 0, buffer.length);
@@ -4436,8 +4436,11 @@ implements org.openntf.domino.Document {
 				}
 			}
 		}
-		while (hasItem(name + "$" + (++i))) {
-			removeItem(name + "$" + i);
+		// remove the chunks that are left from longer data written before
+		int stale = Math.max(i, 1);
+		while (hasItem(name + "$" + stale)) {
+			removeItem(name + "$" + stale);
+			stale++;
 		}
 
 	}
@@ -3213,21 +3213,32 @@ public class View extends BaseResurrectable<org.openntf.domino.View, lotus.domin
 		return null;
 	}
 
+	/**
+	 * @return the categories of the view, see {@link #getCategoryTree(int)}. Null if the view is not categorized
+	 */
 	public Map<Object, Object> getCategoryTree() {
+		return getCategoryTree(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param depth
+	 *            the number of category levels to include
+	 * @return each category mapped to a map of its subcategories, or to its document count if it has no subcategories or is at the depth
+	 *         limit. Null if the view is not categorized
+	 */
+	public Map<Object, Object> getCategoryTree(final int depth) {
+		ViewCategoryTree tree = getCategoryTreeModel();
+		return tree == null ? null : tree.toMap(depth);
+	}
+
+	/**
+	 * @return the cached categories of the view, which loads subcategories when they are asked for. Null if the view is not categorized
+	 */
+	public ViewCategoryTree getCategoryTreeModel() {
 		if (!isCategorized()) {
 			return null;
 		}
-		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
-		Vector<ViewColumn> columns = getColumns();
-		@SuppressWarnings("unused")
-		int categoryCount = 0;
-		for (ViewColumn column : columns) {
-			if (column.isCategory()) {
-				categoryCount++;
-			}
-		}
-		//		for ()
-		return result;
+		return new ViewCategoryTree(this);
 	}
 
 	int[] categoryColumnPositions_ = null;
@@ -0,0 +1,433 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openntf.domino.Database;
+import org.openntf.domino.DateTime;
+import org.openntf.domino.Document;
+import org.openntf.domino.DocumentCollection;
+import org.openntf.domino.ViewEntry;
+import org.openntf.domino.ViewNavigator;
+import org.openntf.domino.utils.DominoUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * The categories of a categorized view, loaded level by level as they are asked for.
+ *
+ * <p>
+ * The loaded categories are cached for each view and user, and shared between requests. When the tree is obtained, the modification
+ * times of the database and the view design and the entry count of the view are compared to the ones the cache was checked with. If the
+ * design changed, the cache is dropped. If documents changed, only the loaded levels are read again: categories that contain a modified
+ * document or whose document count changed are updated, and the loaded subcategories of all others are kept.
+ * </p>
+ *
+ * <p>
+ * A tree uses the view it was created with to load categories, so it belongs to the thread of that view. The {@link CategoryNode}s it
+ * returns are plain values and may be kept.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class ViewCategoryTree {
+	public static final int DEFAULT_MAX_SIZE = 256;
+	public static final long DEFAULT_IDLE_MINUTES = 30;
+	/** with more modified documents than this, all loaded categories are read again instead of looking up each document */
+	public static final int MAX_MODIFIED_DOCUMENTS = 1000;
+
+	private static final char SEPARATOR = '.';
+
+	private static final Cache<String, TreeState> cache_ = CacheBuilder.newBuilder().maximumSize(DEFAULT_MAX_SIZE)
+			.expireAfterAccess(DEFAULT_IDLE_MINUTES, TimeUnit.MINUTES).build();
+
+	/**
+	 * A category of the view. The root node stands for the view itself and has no value.
+	 */
+	public static class CategoryNode {
+		private final CategoryNode parent_;
+		private final Object value_;
+		private final int level_;
+		private volatile int documentCount_;
+		private volatile String position_;
+		private volatile List<CategoryNode> children_;
+
+		CategoryNode(final CategoryNode parent, final Object value, final int documentCount, final String position) {
+			parent_ = parent;
+			value_ = value;
+			level_ = parent == null ? -1 : parent.level_ + 1;
+			documentCount_ = documentCount;
+			position_ = position;
+		}
+
+		public CategoryNode getParent() {
+			return parent_;
+		}
+
+		public Object getValue() {
+			return value_;
+		}
+
+		/**
+		 * @return the indent level of the category, or -1 for the root
+		 */
+		public int getLevel() {
+			return level_;
+		}
+
+		/**
+		 * @return the number of documents in the category, as of the last check
+		 */
+		public int getDocumentCount() {
+			return documentCount_;
+		}
+
+		/**
+		 * @return true if the subcategories were loaded
+		 */
+		public boolean isLoaded() {
+			return children_ != null;
+		}
+
+		/**
+		 * @return the values from the top level category down to this one
+		 */
+		public List<Object> getPath() {
+			LinkedList<Object> result = new LinkedList<Object>();
+			for (CategoryNode node = this; node.parent_ != null; node = node.parent_) {
+				result.addFirst(node.value_);
+			}
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "CategoryNode [path=" + getPath() + ", documentCount=" + documentCount_ + "]";
+		}
+	}
+
+	/*
+	 * The shared part of the trees of one view and user
+	 */
+	private static class TreeState {
+		CategoryNode root_ = new CategoryNode(null, null, 0, "");
+		long dbModified_;
+		long viewModified_;
+		int entryCount_ = -1;
+	}
+
+	private final View view_;
+	private final TreeState state_;
+	private ViewNavigator nav_;
+
+	public static void clearCache() {
+		cache_.invalidateAll();
+	}
+
+	ViewCategoryTree(final View view) {
+		view_ = view;
+		Database db = view.getAncestorDatabase();
+		String key = db.getServer() + "!!" + view.getMetaversalID() + "|" + view.getAncestorSession().getEffectiveUserName();
+		TreeState state = cache_.getIfPresent(key);
+		if (state == null) {
+			state = new TreeState();
+			TreeState existing = cache_.asMap().putIfAbsent(key, state);
+			if (existing != null) {
+				state = existing;
+			}
+		}
+		state_ = state;
+		synchronized (state_) {
+			refresh(db);
+		}
+	}
+
+	private ViewNavigator getNavigator() {
+		if (nav_ == null) {
+			nav_ = view_.createViewNav();
+		}
+		return nav_;
+	}
+
+	private static long toMillis(final Date date) {
+		return date == null ? 0 : date.getTime();
+	}
+
+	private void refresh(final Database db) {
+		long dbModified = toMillis(db.getLastModifiedDate());
+		DateTime viewModifiedDt = view_.getLastModified();
+		long viewModified = viewModifiedDt == null ? 0 : toMillis(viewModifiedDt.toJavaDate());
+		int entryCount = view_.getEntryCount();
+		if (dbModified == state_.dbModified_ && viewModified == state_.viewModified_ && entryCount == state_.entryCount_) {
+			return;
+		}
+		if (viewModified != state_.viewModified_ || state_.entryCount_ < 0) {
+			// a new design may have different categories, so nothing can be kept
+			state_.root_ = new CategoryNode(null, null, entryCount, "");
+		} else if (state_.root_.isLoaded()) {
+			Set<List<Object>> dirtyPaths = getDirtyPaths(db, state_.dbModified_);
+			update(state_.root_, dirtyPaths);
+		}
+		state_.root_.documentCount_ = entryCount;
+		state_.dbModified_ = dbModified;
+		state_.viewModified_ = viewModified;
+		state_.entryCount_ = entryCount;
+	}
+
+	/*
+	 * The category paths of the documents modified since the last check, including all parent categories.
+	 * Null if there are too many to look up.
+	 */
+	private Set<List<Object>> getDirtyPaths(final Database db, final long since) {
+		if (since == 0) {
+			return null;
+		}
+		DocumentCollection modified = db.getModifiedDocuments(new Date(since));
+		if (modified == null || modified.getCount() > MAX_MODIFIED_DOCUMENTS) {
+			return null;
+		}
+		Set<List<Object>> result = new HashSet<List<Object>>();
+		ViewNavigator nav = getNavigator();
+		for (Document doc : modified) {
+			if (!nav.gotoEntry(doc)) {
+				// not in the view (anymore), so only the document counts can tell where it was
+				continue;
+			}
+			LinkedList<Object> path = new LinkedList<Object>();
+			ViewEntry parent = nav.getParent(nav.getCurrent());
+			while (parent != null) {
+				if (parent.isCategory()) {
+					path.addFirst(getValueKey(parent.getCategoryValue()));
+				}
+				parent = nav.getParent(parent);
+			}
+			while (!path.isEmpty()) {
+				result.add(new ArrayList<Object>(path));
+				path.removeLast();
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Reads the subcategories of a loaded node again. Subcategories that are unchanged keep their loaded levels, changed ones are updated
+	 * the same way.
+	 */
+	private void update(final CategoryNode node, final Set<List<Object>> dirtyPaths) {
+		if (node.children_ == null) {
+			return;
+		}
+		Map<Object, CategoryNode> previous = new HashMap<Object, CategoryNode>();
+		for (CategoryNode child : node.children_) {
+			previous.put(getValueKey(child.value_), child);
+		}
+		List<CategoryNode> current = readChildren(node);
+		List<CategoryNode> result = new ArrayList<CategoryNode>(current.size());
+		for (CategoryNode fresh : current) {
+			CategoryNode old = previous.get(getValueKey(fresh.value_));
+			if (old == null) {
+				result.add(fresh);
+				continue;
+			}
+			boolean dirty = dirtyPaths == null || dirtyPaths.contains(getKeyPath(old)) || old.documentCount_ != fresh.documentCount_;
+			if (dirty) {
+				old.documentCount_ = fresh.documentCount_;
+				old.position_ = fresh.position_;
+				update(old, dirtyPaths);
+			} else if (!old.position_.equals(fresh.position_)) {
+				// the contents are the same, so the positions inside only change their prefix
+				reposition(old, old.position_, fresh.position_);
+			}
+			result.add(old);
+		}
+		node.children_ = Collections.unmodifiableList(result);
+	}
+
+	private static void reposition(final CategoryNode node, final String oldPrefix, final String newPrefix) {
+		node.position_ = newPrefix + node.position_.substring(oldPrefix.length());
+		List<CategoryNode> children = node.children_;
+		if (children != null) {
+			for (CategoryNode child : children) {
+				reposition(child, oldPrefix, newPrefix);
+			}
+		}
+	}
+
+	/*
+	 * Category values are compared by their string form, because date values don't compare equal across reads
+	 */
+	private static Object getValueKey(final Object value) {
+		if (value == null || value instanceof String || value instanceof Number) {
+			return value;
+		}
+		return String.valueOf(value);
+	}
+
+	private static List<Object> getKeyPath(final CategoryNode node) {
+		List<Object> result = new ArrayList<Object>();
+		for (Object value : node.getPath()) {
+			result.add(getValueKey(value));
+		}
+		return result;
+	}
+
+	private static boolean isSameValue(final Object a, final Object b) {
+		Object keyA = getValueKey(a);
+		Object keyB = getValueKey(b);
+		return keyA == null ? keyB == null : keyA.equals(keyB);
+	}
+
+	/*
+	 * Subcategories are not limited to the categorized columns, values like "A\B" make subcategories inside one column. So the children are
+	 * read until there are no more categories below the node. Documents are skipped with getNextCategory, which leaves the node once the
+	 * next category has the indent level of the node or less.
+	 */
+	private List<CategoryNode> readChildren(final CategoryNode node) {
+		List<CategoryNode> result = new ArrayList<CategoryNode>();
+		ViewNavigator nav = getNavigator();
+		ViewEntry entry;
+		if (node.parent_ == null) {
+			entry = nav.getFirst();
+		} else {
+			ViewEntry nodeEntry = findEntry(node);
+			entry = nodeEntry == null ? null : nav.getChild(nodeEntry);
+		}
+		while (entry != null) {
+			if (entry.isCategory()) {
+				if (entry.getIndentLevel() <= node.level_) {
+					break;
+				}
+				result.add(new CategoryNode(node, entry.getCategoryValue(), entry.getDescendantCount(), entry.getPosition(SEPARATOR)));
+				entry = nav.getNextSibling(entry);
+			} else {
+				entry = nav.gotoEntry(entry) ? nav.getNextCategory() : null;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Finds the entry of a category by its position, or by its path if the position is no longer right
+	 */
+	private ViewEntry findEntry(final CategoryNode node) {
+		ViewNavigator nav = getNavigator();
+		ViewEntry entry = nav.getPos(node.position_, SEPARATOR);
+		if (entry != null && entry.isCategory() && entry.getIndentLevel() == node.level_
+				&& isSameValue(entry.getCategoryValue(), node.value_)) {
+			return entry;
+		}
+		entry = null;
+		for (Object value : node.getPath()) {
+			entry = entry == null ? nav.getFirst() : nav.getChild(entry);
+			while (entry != null && !(entry.isCategory() && isSameValue(entry.getCategoryValue(), value))) {
+				entry = nav.getNextSibling(entry);
+			}
+			if (entry == null) {
+				return null;
+			}
+		}
+		if (entry != null) {
+			node.position_ = entry.getPosition(SEPARATOR);
+		}
+		return entry;
+	}
+
+	public CategoryNode getRoot() {
+		return state_.root_;
+	}
+
+	/**
+	 * @param node
+	 *            a node of this tree, or null for the root
+	 * @return the subcategories of the node, which are loaded if they weren't yet
+	 */
+	public List<CategoryNode> getChildren(final CategoryNode node) {
+		CategoryNode target = node == null ? state_.root_ : node;
+		List<CategoryNode> result = target.children_;
+		if (result == null) {
+			synchronized (state_) {
+				result = target.children_;
+				if (result == null) {
+					try {
+						result = Collections.unmodifiableList(readChildren(target));
+					} catch (Throwable t) {
+						DominoUtils.handleException(t);
+						return Collections.emptyList();
+					}
+					target.children_ = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param path
+	 *            the category values from the top level down
+	 * @return the category, or null if there is none with that path
+	 */
+	public CategoryNode getNode(final Object... path) {
+		CategoryNode result = state_.root_;
+		for (Object value : path) {
+			CategoryNode next = null;
+			for (CategoryNode child : getChildren(result)) {
+				if (isSameValue(child.value_, value)) {
+					next = child;
+					break;
+				}
+			}
+			if (next == null) {
+				return null;
+			}
+			result = next;
+		}
+		return result;
+	}
+
+	/**
+	 * @param depth
+	 *            the number of category levels to include
+	 * @return each category mapped to a map of its subcategories, or to its document count if it has no subcategories or is at the depth
+	 *         limit
+	 */
+	public Map<Object, Object> toMap(final int depth) {
+		return toMap(state_.root_, depth);
+	}
+
+	private Map<Object, Object> toMap(final CategoryNode node, final int depth) {
+		Map<Object, Object> result = new LinkedHashMap<Object, Object>();
+		for (CategoryNode child : getChildren(node)) {
+			if (depth > 1) {
+				Map<Object, Object> sub = toMap(child, depth - 1);
+				result.put(child.value_, sub.isEmpty() ? Integer.valueOf(child.documentCount_) : sub);
+			} else {
+				result.put(child.value_, child.documentCount_);
+			}
+		}
+		return result;
+	}
+}
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PrimitiveIterator;
 import java.util.Vector;
 
 import lotus.domino.NotesException;
@@ -34,6 +35,7 @@ import org.openntf.domino.DateTime;
 import org.openntf.domino.DocumentCollection;
 import org.openntf.domino.View;
 import org.openntf.domino.annotations.Incomplete;
+import org.openntf.domino.big.impl.NoteIdSet;
 import org.openntf.domino.exceptions.UnimplementedException;
 import org.openntf.domino.utils.CollectionUtils;
 import org.openntf.domino.utils.DominoUtils;
@@ -41,16 +43,14 @@ import org.openntf.domino.utils.TypeUtils;
 
 @SuppressWarnings("nls")
 public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>implements org.openntf.domino.DocumentList {
+	/** the number of entries of nids_ that are in use. The array grows and shrinks in blocks */
 	protected int realNidLength_;
-	/*TODO 
-	 * NTF for maximum performance, we really should track the length
-	 * of the intended noteid array, rather than use nids_.length. This would allow us
-	 * to grow and shrink the array in blocks, rather than each time we need to make a change
-	 */
-
+	/** the note ids in the order of the list */
 	protected int[] nids_;
-	protected boolean usingList_;
-	protected List<Integer> nidList_;
+	/** true if nids_ was handed out or passed in, so it must be copied before it is changed */
+	protected boolean nidsShared_;
+	/** the same note ids as nids_, for lookups and set operations */
+	protected NoteIdSet nidSet_;
 	protected int walkPos = -1;
 	protected int walkNid = 0;
 	protected boolean sorted_ = false;
@@ -77,26 +77,13 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	public static int[] intersectNids(final int[] nids1, final int[] nids2) {
 		boolean largerIs1 = nids1.length >= nids2.length;
-		int[] search = null;
-		int[] temp = new int[Math.max(nids1.length, nids2.length)];
-		if (largerIs1) {
-			search = Arrays.copyOf(nids1, nids1.length);
-		} else {
-			search = Arrays.copyOf(nids2, nids2.length);
-		}
-		Arrays.sort(search);
+		NoteIdSet search = new NoteIdSet(largerIs1 ? nids1 : nids2);
+		int[] probe = largerIs1 ? nids2 : nids1;
+		int[] temp = new int[probe.length];
 		int hitCount = 0;
-		if (largerIs1) {
-			for (int nid : nids2) {
-				if (Arrays.binarySearch(search, nid) >= 0) {
-					temp[hitCount++] = nid;
-				}
-			}
-		} else {
-			for (int nid : nids1) {
-				if (Arrays.binarySearch(search, nid) >= 0) {
-					temp[hitCount++] = nid;
-				}
+		for (int nid : probe) {
+			if (search.contains(nid)) {
+				temp[hitCount++] = nid;
 			}
 		}
 		int[] result = Arrays.copyOf(temp, hitCount);
@@ -110,26 +97,13 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	public static int[] diffNids(final int[] nids1, final int[] nids2) {
 		boolean largerIs1 = nids1.length >= nids2.length;
-		int[] search = null;
-		int[] temp = new int[Math.max(nids1.length, nids2.length)];
-		if (largerIs1) {
-			search = Arrays.copyOf(nids1, nids1.length);
-		} else {
-			search = Arrays.copyOf(nids2, nids2.length);
-		}
-		Arrays.sort(search);
+		NoteIdSet search = new NoteIdSet(largerIs1 ? nids1 : nids2);
+		int[] probe = largerIs1 ? nids2 : nids1;
+		int[] temp = new int[probe.length];
 		int missCount = 0;
-		if (largerIs1) {
-			for (int nid : nids2) {
-				if (Arrays.binarySearch(search, nid) < 0) {
-					temp[missCount++] = nid;
-				}
-			}
-		} else {
-			for (int nid : nids1) {
-				if (Arrays.binarySearch(search, nid) < 0) {
-					temp[missCount++] = nid;
-				}
+		for (int nid : probe) {
+			if (!search.contains(nid)) {
+				temp[missCount++] = nid;
 			}
 		}
 		int[] result = Arrays.copyOf(temp, missCount);
@@ -237,8 +211,7 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	public static List<Integer> toNidsList(final lotus.domino.DocumentCollection collection) {
 		if (collection instanceof DocumentList) {
-			List<Integer> list = ((DocumentList) collection).getNidList();
-			return new ArrayList<Integer>(list);
+			return ((DocumentList) collection).getNidList();
 		} else {
 			int[] nids = CollectionUtils.getNoteIDs(collection);
 			List<Integer> result = new ArrayList<Integer>(nids.length);
@@ -259,46 +232,126 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 	}
 
 	public DocumentList(final lotus.domino.DocumentCollection delegate, final org.openntf.domino.Database parent) {
+		database = parent;
 		try {
 			setSorted(delegate.isSorted());
 		} catch (NotesException ne) {
 			DominoUtils.handleException(ne);
 		}
+		setNids(CollectionUtils.getNoteIDs(delegate));
 	}
 
 	public DocumentList(final int[] nids, final org.openntf.domino.Database parent) {
 		database = parent;
-		nids_ = nids;
+		setNids(nids);
+	}
+
+	protected DocumentList(final DocumentList source) {
+		database = source.database;
+		sorted_ = source.sorted_;
+		nids_ = Arrays.copyOf(source.nids_, source.realNidLength_);
+		realNidLength_ = nids_.length;
+		nidSet_ = source.nidSet_.clone();
+	}
+
+	/*
+	 * Uses the array as the ids of the list. The array belongs to the caller and is copied when the list changes.
+	 */
+	protected void setNids(final int[] nids) {
+		nids_ = nids == null ? new int[0] : nids;
+		realNidLength_ = nids_.length;
+		nidsShared_ = true;
+		nidSet_ = new NoteIdSet(nids_);
 	}
 
+	/**
+	 * @return the note ids in the order of the list. The array must not be changed
+	 */
 	public int[] getNids() {
-		if (usingList_) {
-			return TypeUtils.toIntArray(getNidList());
-		} else {
-			return nids_;
+		if (nids_.length != realNidLength_) {
+			nids_ = Arrays.copyOf(nids_, realNidLength_);
 		}
+		nidsShared_ = true;
+		return nids_;
 	}
 
+	/**
+	 * @return the note ids of the list as a set. The set must not be changed
+	 */
+	public NoteIdSet getNidSet() {
+		return nidSet_;
+	}
+
+	/**
+	 * @return a copy of the note ids in the order of the list
+	 */
 	public List<Integer> getNidList() {
-		if (nidList_ == null) {
-			nidList_ = new ArrayList<Integer>();
-			if (nids_ != null && nids_.length > 0) {
-				for (int nid : nids_) {
-					nidList_.add(nid);
-				}
+		List<Integer> result = new ArrayList<Integer>(realNidLength_);
+		for (int i = 0; i < realNidLength_; i++) {
+			result.add(nids_[i]);
+		}
+		return result;
+	}
+
+	private void ensureOwnNids() {
+		if (nidsShared_) {
+			nids_ = Arrays.copyOf(nids_, Math.max(nids_.length, realNidLength_));
+			nidsShared_ = false;
+		}
+	}
+
+	/*
+	 * Appends a note id that is not in the list yet
+	 */
+	private void appendNid(final int nid) {
+		if (nidSet_.add(nid)) {
+			ensureOwnNids();
+			if (realNidLength_ == nids_.length) {
+				nids_ = Arrays.copyOf(nids_, Math.max(16, realNidLength_ + (realNidLength_ >> 1)));
 			}
+			nids_[realNidLength_++] = nid;
 		}
-		return nidList_;
+	}
+
+	/*
+	 * Removes the ids that are no longer in the set from the ordered ids, in place
+	 */
+	private void compactNids() {
+		ensureOwnNids();
+		int pos = 0;
+		for (int i = 0; i < realNidLength_; i++) {
+			int nid = nids_[i];
+			if (nidSet_.contains(nid)) {
+				nids_[pos++] = nid;
+			}
+		}
+		realNidLength_ = pos;
+		if (nids_.length > 64 && realNidLength_ < nids_.length / 4) {
+			nids_ = Arrays.copyOf(nids_, realNidLength_);
+		}
+	}
+
+	private int nidAt(final int pos) {
+		if (pos < 0 || pos >= realNidLength_) {
+			throw new ArrayIndexOutOfBoundsException(pos);
+		}
+		return nids_[pos];
+	}
+
+	private int indexOfNid(final int nid) {
+		for (int i = 0; i < realNidLength_; i++) {
+			if (nids_[i] == nid) {
+				return i;
+			}
+		}
+		return -1;
 	}
 
 	@Override
 	public void addDocument(final lotus.domino.Document doc) {
-		usingList_ = true;
 		int nid = getNid(doc);
 		if (nid != 0) {
-			if (!getNidList().contains(nid)) {
-				getNidList().add(nid);
-			}
+			appendNid(nid);
 		}
 	}
 
@@ -309,53 +362,22 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public org.openntf.domino.DocumentCollection cloneCollection() {
-		if (usingList_) {
-			return new DocumentList(TypeUtils.toIntArray(nidList_), getParent());
-		} else {
-			return new DocumentList(Arrays.copyOf(nids_, nids_.length), getParent());
-		}
+		return new DocumentList(this);
 	}
 
 	@Override
 	public boolean contains(final int noteid) {
-		if (usingList_) {
-			return getNidList().contains(noteid);
-		} else {
-			return hasNid(nids_, noteid);
-		}
+		return nidSet_.contains(noteid);
 	}
 
 	@Override
 	public boolean contains(final lotus.domino.Base base) {
 		if (base instanceof lotus.domino.Document) {
-			int nid = getNid((lotus.domino.Document) base);
-			if (usingList_) {
-				return getNidList().contains(nid);
-			} else {
-				return hasNid(nids_, nid);
-			}
+			return nidSet_.contains(getNid((lotus.domino.Document) base));
 		} else if (base instanceof lotus.domino.DocumentCollection) {
-			if (usingList_) {
-				if (getSize((lotus.domino.DocumentCollection) base) > getNidList().size())
-					return false;
-			} else {
-				if (getSize((lotus.domino.DocumentCollection) base) > nids_.length)
-					return false;
-			}
-			int[] nids = CollectionUtils.getNoteIDs((lotus.domino.DocumentCollection) base);
-			if (usingList_) {
-				List<Integer> list = new ArrayList<Integer>();
-				for (int n : nids) {
-					list.add(n);
-				}
-				return getNidList().containsAll(list);
-			} else {
-				for (int nid : nids) {
-					if (!hasNid(nids_, nid))
-						return false;
-				}
-				return true;
-			}
+			if (getSize((lotus.domino.DocumentCollection) base) > getCount())
+				return false;
+			return nidSet_.containsAll(CollectionUtils.getNoteIdSet((lotus.domino.DocumentCollection) base));
 		} else {
 			throw new IllegalArgumentException("Cannot check a DocumentList to see if it contains a " + base.getClass().getName());
 		}
@@ -369,12 +391,7 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public void deleteDocument(final lotus.domino.Document doc) {
-		int nid = getNid(doc);
-		usingList_ = true;
-		List<Integer> tlist = new ArrayList<Integer>();
-		tlist.add(nid);
-		// NTF Why? because otherwise we'll be calling .remove(int) which removes the element by POSITION rather than value
-		getNidList().removeAll(tlist);
+		subtract(getNid(doc));
 	}
 
 	@Override
@@ -391,11 +408,7 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public int getCount() {
-		if (usingList_) {
-			return getNidList().size();
-		} else {
-			return nids_.length;
-		}
+		return realNidLength_;
 	}
 
 	@Override
@@ -406,75 +419,39 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public org.openntf.domino.Document getFirstDocument() {
-		walkPos = -1;
-		if (usingList_) {
-			walkNid = getNidList().get(++walkPos);
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		} else {
-			walkNid = nids_[++walkPos];
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		}
+		walkPos = 0;
+		walkNid = nidAt(walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
 	public org.openntf.domino.Document getLastDocument() {
-		if (usingList_) {
-			walkPos = getNidList().size() - 1;
-			walkNid = getNidList().get(walkPos);
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		} else {
-			walkPos = nids_.length - 1;
-			walkNid = nids_[walkPos];
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		}
+		walkPos = realNidLength_ - 1;
+		walkNid = nidAt(walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
 	public org.openntf.domino.Document getNextDocument() {
-		if (usingList_) {
-			walkNid = getNidList().get(++walkPos);
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		} else {
-			walkNid = nids_[++walkPos];
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		}
+		walkNid = nidAt(++walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
 	public org.openntf.domino.Document getNextDocument(final lotus.domino.Document doc) {
 		int nid = getNid(doc);
-		if (nid == walkNid) {
-			if (usingList_) {
-				walkNid = getNidList().get(++walkPos);
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			} else {
-				walkNid = nids_[++walkPos];
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			}
-		} else {
-			if (usingList_) {
-				walkPos = getNidList().indexOf(nid);
-				walkNid = getNidList().get(++walkPos);
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			} else {
-				walkPos = findNid(nids_, nid);
-				walkNid = nids_[++walkPos];
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			}
+		if (nid != walkNid) {
+			walkPos = indexOfNid(nid);
 		}
+		walkNid = nidAt(++walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
 	public org.openntf.domino.Document getNthDocument(final int n) {
-		if (usingList_) {
-			walkPos = n;
-			walkNid = getNidList().get(n);
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		} else {
-			walkPos = n;
-			walkNid = nids_[n];
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		}
+		walkPos = n;
+		walkNid = nidAt(n);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	/*
@@ -489,37 +466,18 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public org.openntf.domino.Document getPrevDocument() {
-		if (usingList_) {
-			walkNid = getNidList().get(--walkPos);
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		} else {
-			walkNid = nids_[--walkPos];
-			return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-		}
+		walkNid = nidAt(--walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
 	public org.openntf.domino.Document getPrevDocument(final lotus.domino.Document doc) {
 		int nid = getNid(doc);
-		if (nid == walkNid) {
-			if (usingList_) {
-				walkNid = getNidList().get(--walkPos);
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			} else {
-				walkNid = nids_[--walkPos];
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			}
-		} else {
-			if (usingList_) {
-				walkPos = getNidList().indexOf(nid);
-				walkNid = getNidList().get(--walkPos);
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			} else {
-				walkPos = findNid(nids_, nid);
-				walkNid = nids_[--walkPos];
-				return getParent().getDocumentByID(Integer.toString(walkNid, 16));
-			}
+		if (nid != walkNid) {
+			walkPos = indexOfNid(nid);
 		}
+		walkNid = nidAt(--walkPos);
+		return getParent().getDocumentByID(Integer.toString(walkNid, 16));
 	}
 
 	@Override
@@ -536,43 +494,27 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public void intersect(final int noteid) {
-		if (usingList_) {
-			if (getNidList().contains(noteid)) {
-				getNidList().clear();
-				getNidList().add(noteid);
-			} else {
-				getNidList().clear();
-			}
+		if (nidSet_.contains(noteid)) {
+			setNids(new int[] { noteid });
 		} else {
-			if (hasNid(nids_, noteid)) {
-				nids_ = new int[1];
-				nids_[0] = noteid;
-			} else {
-				nids_ = new int[0];
-			}
+			setNids(new int[0]);
 		}
 	}
 
 	public void intersect(final int[] noteids) {
-		if (usingList_) {
-			List<Integer> curList = getNidList();
-			List<Integer> paramList = new ArrayList<Integer>();
-			for (int n : noteids) {
-				paramList.add(n);
-			}
-			curList.retainAll(paramList);
-		} else {
-			nids_ = intersectNids(nids_, noteids);
-		}
+		intersect(new NoteIdSet(noteids));
 	}
 
 	public void intersect(final Collection<Integer> paramList) {
-		if (usingList_) {
-			List<Integer> curList = getNidList();
-			curList.retainAll(paramList);
-		} else {
-			nids_ = intersectNids(nids_, paramList);
-		}
+		intersect(new NoteIdSet(paramList));
+	}
+
+	/**
+	 * Keeps the documents whose note ids are in the set, in their current order.
+	 */
+	public void intersect(final NoteIdSet noteids) {
+		nidSet_.retainAll(noteids);
+		compactNids();
 	}
 
 	@Override
@@ -581,8 +523,7 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 			int nid = getNid((lotus.domino.Document) doc);
 			intersect(nid);
 		} else if (doc instanceof lotus.domino.DocumentCollection) {
-			int[] nids = CollectionUtils.getNoteIDs((lotus.domino.DocumentCollection) doc);
-			intersect(nids);
+			intersect(CollectionUtils.getNoteIdSet((lotus.domino.DocumentCollection) doc));
 		} else {
 			//TODO why not a View, ViewEntryCollection, NoteCollection, Iterable<Document>, ViewEntry,
 			throw new IllegalArgumentException("Cannot intersect a DocumentList with a " + doc.getClass().getName());
@@ -630,30 +571,25 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public void merge(final int noteid) {
-		if (usingList_) {
-			if (!getNidList().contains(noteid))
-				getNidList().add(noteid);
-		} else {
-			if (!hasNid(nids_, noteid)) {
-				nids_ = Arrays.copyOf(nids_, nids_.length + 1);
-				nids_[nids_.length] = noteid;
-			}
-		}
+		appendNid(noteid);
 	}
 
+	/**
+	 * Appends the note ids that are not in the list yet, in the order of the array.
+	 */
 	public void merge(final int[] noteids) {
-		if (usingList_) {
-			for (int noteid : noteids) {
-				if (!getNidList().contains(noteid))
-					getNidList().add(noteid);
-			}
-		} else {
-			int origLength = nids_.length;
-			int[] newNids = diffNids(nids_, noteids);
-			nids_ = Arrays.copyOf(nids_, origLength + newNids.length);
-			for (int i = 0; i < newNids.length; i++) {
-				nids_[i + origLength] = newNids[i];
-			}
+		for (int noteid : noteids) {
+			appendNid(noteid);
+		}
+	}
+
+	/**
+	 * Appends the note ids that are not in the list yet, in note id order.
+	 */
+	public void merge(final NoteIdSet noteids) {
+		PrimitiveIterator.OfInt it = NoteIdSet.andNot(noteids, nidSet_).iterator();
+		while (it.hasNext()) {
+			appendNid(it.nextInt());
 		}
 	}
 
@@ -717,42 +653,18 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 
 	@Override
 	public void subtract(final int noteid) {
-		if (usingList_) {
-			List<Integer> tlist = new ArrayList<Integer>();
-			tlist.add(noteid);
-			// NTF Why? because otherwise we'll be calling .remove(int) which removes the element by POSITION rather than value
-			getNidList().removeAll(tlist);
-		} else {
-			int pos = findNid(nids_, noteid);
-			int[] result = new int[nids_.length - 1];
-			System.arraycopy(nids_, 0, result, 0, pos);
-			System.arraycopy(nids_, pos + 1, result, pos, result.length - pos);
-			//TODO NTF This should be optimized to an in-place copy like 
-			//System.arraycopy(nids_,pos+1,nids_,pos,nids_.length-1-pos);
-			//but that will necessitate that we keep track of the "real" end of the array independent of the length
-			//if we want to more highly optimize our performance, we can do this, 
-			//but at that point, why not just punt to using the List<Integer> instead?
-			//All depends on the size of the memory footprint
-			nids_ = result;
+		if (nidSet_.remove(noteid)) {
+			compactNids();
 		}
 	}
 
 	public void subtract(final int[] noteids) {
-		if (usingList_) {
-			List<Integer> tlist = new ArrayList<Integer>();
-			for (int noteid : noteids) {
-				tlist.add(noteid);
-			}
-			getNidList().removeAll(tlist);
-		} else {
-			int[] posSet = findOnlyMatchedNids(nids_, noteids);
-			Arrays.sort(posSet);
-			for (int pos : posSet) {
-				System.arraycopy(nids_, pos + 1, nids_, pos, nids_.length - 1 - pos);
-			}
-			int[] result = Arrays.copyOf(nids_, nids_.length - posSet.length);
-			nids_ = result;
-		}
+		subtract(new NoteIdSet(noteids));
+	}
+
+	public void subtract(final NoteIdSet noteids) {
+		nidSet_.removeAll(noteids);
+		compactNids();
 	}
 
 	@Override
@@ -760,7 +672,7 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 		if (doc instanceof lotus.domino.Document) {
 			subtract(getNid((lotus.domino.Document) doc));
 		} else if (doc instanceof lotus.domino.DocumentCollection) {
-			subtract(CollectionUtils.getNoteIDs((lotus.domino.DocumentCollection) doc));
+			subtract(CollectionUtils.getNoteIdSet((lotus.domino.DocumentCollection) doc));
 		} else {
 			//TODO why not a View, ViewEntryCollection, NoteCollection, Iterable<Document>, ViewEntry,
 			throw new IllegalArgumentException("Cannot subtract from a DocumentList with a " + doc.getClass().getName());
@@ -927,10 +839,11 @@ public class DocumentList extends BaseImpl<lotus.domino.DocumentCollection>imple
 		walkPos = arg0.readInt();
 		walkNid = arg0.readInt();
 		int nLen = arg0.readInt();
-		nids_ = new int[nLen];
+		int[] nids = new int[nLen];
 		for (int i = 0; i < nLen; i++) {
-			nids_[i] = arg0.readInt();
+			nids[i] = arg0.readInt();
 		}
+		setNids(nids);
 	}
 
 	@Override
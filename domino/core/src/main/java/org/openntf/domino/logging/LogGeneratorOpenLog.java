@@ -19,10 +19,16 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
@@ -33,12 +39,20 @@ import org.openntf.domino.Document;
 import org.openntf.domino.ExceptionDetails;
 import org.openntf.domino.Session;
 import org.openntf.domino.exceptions.OpenNTFNotesException;
+import org.openntf.domino.transactions.DatabaseTransaction;
 import org.openntf.domino.utils.Factory;
+import org.openntf.domino.xots.Xots;
 
 /**
  * Used by the LogHandlerOpenLog to write log messages to an OpenLog database. This is a considerably simplified version of BaseOpenLogItem
  * for use in the new logging mechanism.
  *
+ * <p>
+ * The data of a log record is collected on the logging thread, because it depends on its session. Writing the document is left to a
+ * {@link LogTaskletOpenLog}, which takes the records from a bounded queue and writes them in batches, one transaction per batch. So the
+ * logging thread never waits for the log database. When the queue is full, the {@link OverflowPolicy} decides what happens. If Xots is not
+ * running or the queue size is 0, the records are written on the logging thread.
+ * </p>
  */
 @SuppressWarnings("nls")
 public class LogGeneratorOpenLog {
@@ -49,6 +63,21 @@ public class LogGeneratorOpenLog {
 	//	private static final String _xotsDemonClassName = "org.openntf.domino.xots.XotsDaemon";
 	//	private static final String _xotsDemonToQueueMethodName = "addToQueue";
 
+	/**
+	 * What happens to a log record when the queue is full
+	 */
+	public enum OverflowPolicy {
+		/** the new record is dropped */
+		DROP,
+		/** the oldest waiting record is dropped to make room */
+		DROP_OLDEST,
+		/** the logging thread waits up to {@link LogGeneratorOpenLog#BLOCK_TIMEOUT} ms for room, then the record is dropped */
+		BLOCK
+	}
+
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final long BLOCK_TIMEOUT = 1000;
+
 	/*-------------------------------------------------------------*/
 	class OL_LogRecord {
 		LogRecord _logRec;
@@ -70,55 +99,55 @@ public class LogGeneratorOpenLog {
 		}
 	}
 
-	public class OL_EntryToWrite {
-		public LogGeneratorOpenLog _logGenerator;
-		public OL_LogRecord _logRec;
-
-		OL_EntryToWrite(final LogGeneratorOpenLog logGenerator, final OL_LogRecord logRec) {
-			_logGenerator = logGenerator;
-			_logRec = logRec;
-		}
-	}
-
 	/*-------------------------------------------------------------*/
 	private String _logDBPath;
 	public Date _startTime;
 	public OL_Writer _olWriter;
 
+	private final BlockingQueue<OL_LogRecord> _queue;
+	private final OverflowPolicy _overflowPolicy;
+	private final int _batchSize;
+	private final AtomicBoolean _scheduled = new AtomicBoolean(false);
+	private volatile Thread _writerThread;
+
+	private final AtomicLong _queuedCount = new AtomicLong();
+	private final AtomicLong _writtenCount = new AtomicLong();
+	private final AtomicLong _droppedCount = new AtomicLong();
+	private final AtomicLong _failedCount = new AtomicLong();
+	private final AtomicLong _batchCount = new AtomicLong();
+	/** records dropped since the last notice in the log database */
+	private final AtomicLong _unreportedDrops = new AtomicLong();
+	/** records logged by the writer thread itself, written with the next batch. Only used by the writer thread */
+	private final List<OL_LogRecord> _ownRecords = new ArrayList<OL_LogRecord>();
+	/** true while the writer writes a batch that contains its own records. Only used by the writer thread */
+	private boolean _writingOwn;
+
 	/*-------------------------------------------------------------*/
 	public LogGeneratorOpenLog(final String logDBPath) {
+		this(logDBPath, 0, DEFAULT_BATCH_SIZE, OverflowPolicy.BLOCK);
+	}
+
+	/**
+	 * @param logDBPath
+	 *            path to the OpenLog database
+	 * @param queueSize
+	 *            the number of records that may wait for the writer. 0 writes every record on the logging thread
+	 * @param batchSize
+	 *            the number of records written in one transaction
+	 * @param overflowPolicy
+	 *            what happens when the queue is full
+	 */
+	public LogGeneratorOpenLog(final String logDBPath, final int queueSize, final int batchSize, final OverflowPolicy overflowPolicy) {
 		_startTime = new Date();
 		_logDBPath = logDBPath;
 		_olWriter = new OL_Writer(_logDBPath);
+		_queue = queueSize > 0 ? new ArrayBlockingQueue<OL_LogRecord>(queueSize) : null;
+		_batchSize = batchSize < 1 ? 1 : batchSize;
+		_overflowPolicy = overflowPolicy == null ? OverflowPolicy.BLOCK : overflowPolicy;
 	}
 
 	/*-------------------------------------------------------------*/
-	public static LinkedBlockingQueue<LogGeneratorOpenLog.OL_EntryToWrite> _olQueue = null;
-
-	//	private static boolean _xInitDone = false;
-
-	/*-------------------------------------------------------------*/
-	//	private static void doStaticStartUp() {
-	//		ClassLoader loader = Thread.currentThread().getContextClassLoader();
-	//		try {
-	//			Class<?> xotsDemonClass = Class.forName(_xotsDemonClassName, true, loader);
-	//			Method xotsDemonToQueueMethod = xotsDemonClass.getMethod(_xotsDemonToQueueMethodName, Runnable.class);
-	//			LogTaskletOpenLog tol = new LogTaskletOpenLog();
-	//			_olQueue = new LinkedBlockingQueue<LogGeneratorOpenLog.OL_EntryToWrite>();
-	//			xotsDemonToQueueMethod.invoke(null, tol);
-	//		} catch (Exception e) {
-	//			System.out.println("Can't make Xots-LogDB-Thread: " + e.getMessage());
-	//			_olQueue = null;
-	//		} finally {
-	//			_xInitDone = true;
-	//		}
-	//	}
-
-	/*-------------------------------------------------------------*/
-	// TODO RPR: remove synchronized
-	synchronized void log(final Session sess, LogRecord logRec, final LogRecordAdditionalInfo lrai) {
-		//		if (!_xInitDone)
-		//			doStaticStartUp();
+	void log(final Session sess, LogRecord logRec, final LogRecordAdditionalInfo lrai) {
 		OL_LogRecord ollr = new OL_LogRecord(logRec, lrai.getExceptionDetails(), lrai.getLastWrappedDocs());
 		Exception localExc = null;
 		try {
@@ -144,11 +173,7 @@ public class LogGeneratorOpenLog {
 			ollr._clientVersion = new String[] { "Exception while collecting logg data!", "See next LogEntry for details." };
 			localExc = e;
 		}
-		if (_olQueue != null) {
-			_olQueue.add(new OL_EntryToWrite(this, ollr));
-		} else {
-			_olWriter.writeLogRecToDB(sess, ollr, _startTime);
-		}
+		enqueue(sess, ollr);
 		if (localExc == null) {
 			return;
 		}
@@ -158,13 +183,204 @@ public class LogGeneratorOpenLog {
 		ollr = new OL_LogRecord(logRec, null, null);
 		ollr._agentName = "LogGeneratorOpenLog"; //$NON-NLS-1$
 		ollr._dbPath = _logDBPath;
-		if (_olQueue != null) {
-			_olQueue.add(new OL_EntryToWrite(this, ollr));
+		enqueue(sess, ollr);
+	}
+
+	/*-------------------------------------------------------------*/
+	private void enqueue(final Session sess, final OL_LogRecord ollr) {
+		if (_queue != null && Thread.currentThread() == _writerThread) {
+			// the writer must not wait for room in its own queue
+			if (_writingOwn) {
+				// a record about writing its own records would keep the writer busy forever. Counted, but not reported
+				_droppedCount.incrementAndGet();
+			} else if (_ownRecords.size() >= _batchSize) {
+				recordDrop();
+			} else {
+				_ownRecords.add(ollr);
+			}
+			return;
+		}
+		if (_queue == null || !Xots.isStarted()) {
+			synchronized (_olWriter) {
+				_olWriter.writeLogRecToDB(sess, ollr, _startTime);
+			}
+			return;
+		}
+		boolean added;
+		switch (_overflowPolicy) {
+		case BLOCK:
+			try {
+				added = _queue.offer(ollr, BLOCK_TIMEOUT, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				added = false;
+			}
+			break;
+		case DROP_OLDEST:
+			added = _queue.offer(ollr);
+			while (!added) {
+				if (_queue.poll() != null) {
+					recordDrop();
+				}
+				added = _queue.offer(ollr);
+			}
+			break;
+		default:
+			added = _queue.offer(ollr);
+			break;
+		}
+		if (added) {
+			_queuedCount.incrementAndGet();
 		} else {
-			_olWriter.writeLogRecToDB(sess, ollr, _startTime);
+			recordDrop();
+		}
+		schedule();
+	}
+
+	private void recordDrop() {
+		_droppedCount.incrementAndGet();
+		_unreportedDrops.incrementAndGet();
+	}
+
+	private void schedule() {
+		if (_scheduled.compareAndSet(false, true)) {
+			try {
+				Xots.execute(new LogTaskletOpenLog(this));
+			} catch (RuntimeException e) {
+				_scheduled.set(false);
+				printException(e);
+			}
 		}
 	}
 
+	/**
+	 * Writes the waiting records until the queue is empty. Called by the {@link LogTaskletOpenLog} in its own session. Records that could
+	 * not be queued are reported with one summary record per batch.
+	 */
+	void drain(final Session sess) {
+		_writerThread = Thread.currentThread();
+		try {
+			List<OL_LogRecord> batch = new ArrayList<OL_LogRecord>(_batchSize);
+			while (true) {
+				boolean own = !_ownRecords.isEmpty();
+				batch.addAll(_ownRecords);
+				_ownRecords.clear();
+				_queue.drainTo(batch, _batchSize);
+				long drops = _unreportedDrops.getAndSet(0);
+				if (drops > 0) {
+					LogRecord dropRec = new LogRecord(Level.WARNING,
+							drops + " log records were dropped because the OpenLog queue was full (Overflow=" + _overflowPolicy + ")");
+					dropRec.setMillis(System.currentTimeMillis());
+					OL_LogRecord dropOllr = new OL_LogRecord(dropRec, null, null);
+					dropOllr._agentName = "LogGeneratorOpenLog"; //$NON-NLS-1$
+					dropOllr._dbPath = _logDBPath;
+					batch.add(dropOllr);
+				}
+				if (batch.isEmpty()) {
+					_scheduled.set(false);
+					// a record may have been queued after the drain and before the flag was cleared
+					if (_queue.isEmpty() || !_scheduled.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+				_writingOwn = own;
+				writeBatch(sess, batch);
+				_writingOwn = false;
+				batch.clear();
+			}
+		} finally {
+			_writingOwn = false;
+			_ownRecords.clear();
+			_writerThread = null;
+		}
+	}
+
+	/**
+	 * Called when the writer failed, so the next record starts a new one
+	 */
+	void writerFailed() {
+		_scheduled.set(false);
+	}
+
+	private void writeBatch(final Session sess, final List<OL_LogRecord> batch) {
+		Database logDB = null;
+		try {
+			logDB = sess.getDatabase(_logDBPath);
+		} catch (Exception e) {
+			printException(e);
+		}
+		if (logDB == null) {
+			_failedCount.addAndGet(batch.size());
+			return;
+		}
+		DatabaseTransaction txn = logDB.startTransaction();
+		int filled = 0;
+		for (OL_LogRecord ollr : batch) {
+			try {
+				_olWriter.fillLogDoc(logDB.createDocument(), ollr, _startTime);
+				filled++;
+			} catch (Exception e) {
+				_failedCount.incrementAndGet();
+				printException(e);
+			}
+		}
+		try {
+			txn.commit();
+			_writtenCount.addAndGet(filled);
+			_batchCount.incrementAndGet();
+		} catch (Exception e) {
+			_failedCount.addAndGet(filled);
+			printException(e);
+			try {
+				txn.rollback();
+			} catch (Exception e1) {
+				// the transaction is gone anyway
+			}
+		}
+	}
+
+	/**
+	 * Waits until the waiting records are written
+	 *
+	 * @param timeout
+	 *            the maximum time to wait in ms
+	 * @return true if the queue is empty
+	 */
+	boolean flush(final long timeout) {
+		if (_queue == null || Thread.currentThread() == _writerThread) {
+			return true;
+		}
+		long end = System.currentTimeMillis() + timeout;
+		while (_scheduled.get() || !_queue.isEmpty()) {
+			if (!Xots.isStarted() || System.currentTimeMillis() >= end) {
+				return false;
+			}
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the counters of the queue
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("logDB", _logDBPath);
+		result.put("waiting", _queue == null ? 0 : _queue.size());
+		result.put("queued", _queuedCount.get());
+		result.put("written", _writtenCount.get());
+		result.put("batches", _batchCount.get());
+		result.put("dropped", _droppedCount.get());
+		result.put("failed", _failedCount.get());
+		return result;
+	}
+
 	/*-------------------------------------------------------------*/
 	private String getAccessLevel(final Database currDB) {
 		int acl = currDB.getCurrentAccessLevel();
@@ -229,70 +445,75 @@ public class LogGeneratorOpenLog {
 				return;
 			}
 			try {
-				olDoc.replaceItemValue("Form", _logFormName); //$NON-NLS-1$
-				Throwable t = ollr._logRec.getThrown();
-				if (t != null) {
-					StackTraceElement[] sttr = t.getStackTrace();
-					int interestingInd = (sttr.length == 0) ? -11 : 0;
-					NotesException ne = null;
-					if (t instanceof NotesException) {
-						ne = (NotesException) t;
-					} else if (t instanceof OpenNTFNotesException && t.getCause() instanceof NotesException) {
-						ne = (NotesException) t.getCause();
-						interestingInd++;
-					}
-					if (ne != null) {
-						olDoc.replaceItemValue("LogErrorNumber", ne.id); //$NON-NLS-1$
-						olDoc.replaceItemValue("LogErrorMessage", ne.text); //$NON-NLS-1$
+				fillLogDoc(olDoc, ollr, logStartTime);
+				olDoc.save(true);
+			} catch (Exception e) {
+				printException(e);
+			}
+		}
 
-					} else {
-						olDoc.replaceItemValue("LogErrorMessage", getMessage(ollr._logRec)); //$NON-NLS-1$
-					}
-					if (interestingInd >= 0) {
-						StackTraceElement ste = sttr[interestingInd];
-						olDoc.replaceItemValue("LogErrorLine", ste.getLineNumber()); //$NON-NLS-1$
-						olDoc.replaceItemValue("LogFromMethod", ste.getClassName() + "." + ste.getMethodName()); //$NON-NLS-1$
-					}
-				}
-				olDoc.replaceItemValue("LogStackTrace", getStackTrace(t)); //$NON-NLS-1$
-				Level l = ollr._logRec.getLevel();
-				if (l == null) {
-					l = Level.WARNING;
+		/*-------------------------------------------------------------*/
+		void fillLogDoc(final Document olDoc, final OL_LogRecord ollr, final Date logStartTime) {
+			olDoc.replaceItemValue("Form", _logFormName); //$NON-NLS-1$
+			Throwable t = ollr._logRec.getThrown();
+			if (t != null) {
+				StackTraceElement[] sttr = t.getStackTrace();
+				int interestingInd = (sttr.length == 0) ? -11 : 0;
+				NotesException ne = null;
+				if (t instanceof NotesException) {
+					ne = (NotesException) t;
+				} else if (t instanceof OpenNTFNotesException && t.getCause() instanceof NotesException) {
+					ne = (NotesException) t.getCause();
+					interestingInd++;
 				}
-				olDoc.replaceItemValue("LogSeverity", l.getName()); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogEventTime", new Date(ollr._logRec.getMillis())); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogEventType", "Log"); //$NON-NLS-1$ //$NON-NLS-2$
-				olDoc.replaceItemValue("LogMessage", getMessage(ollr._logRec)); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogFromDatabase", ollr._dbPath); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogFromServer", ollr._serverName); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogFromAgent", ollr._agentName); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogAgentLanguage", "Java"); //$NON-NLS-1$ //$NON-NLS-2$
-				olDoc.replaceItemValue("LogUserName", ollr._userName); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogEffectiveName", ollr._effectiveUserName); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogAccessLevel", ollr._accessLevel); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogUserRoles", ollr._userRoles); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogClientVersion", ollr._clientVersion); //$NON-NLS-1$
-				olDoc.replaceItemValue("LogAgentStartTime", logStartTime); //$NON-NLS-1$
-				if (ollr._exceptionDetails == null) {
-					olDoc.replaceItemValue("LogExceptionDetails", "* Not available *"); //$NON-NLS-1$ //$NON-NLS-2$
+				if (ne != null) {
+					olDoc.replaceItemValue("LogErrorNumber", ne.id); //$NON-NLS-1$
+					olDoc.replaceItemValue("LogErrorMessage", ne.text); //$NON-NLS-1$
+
 				} else {
-					int sz = ollr._exceptionDetails.size();
-					String[] excds = new String[sz];
-					for (int i = 0; i < sz; i++) {
-						excds[i] = ollr._exceptionDetails.get(i).toString();
-					}
-					olDoc.replaceItemValue("LogExceptionDetails", excds); //$NON-NLS-1$
+					olDoc.replaceItemValue("LogErrorMessage", getMessage(ollr._logRec)); //$NON-NLS-1$
 				}
-				if (ollr._lastWrappedDocs == null) {
-					olDoc.replaceItemValue("LogLastWrappedDocuments", "* Not available *"); //$NON-NLS-1$ //$NON-NLS-2$
-				} else {
-					olDoc.replaceItemValue("LogLastWrappedDocuments", ollr._lastWrappedDocs); //$NON-NLS-1$
+				if (interestingInd >= 0) {
+					StackTraceElement ste = sttr[interestingInd];
+					olDoc.replaceItemValue("LogErrorLine", ste.getLineNumber()); //$NON-NLS-1$
+					olDoc.replaceItemValue("LogFromMethod", ste.getClassName() + "." + ste.getMethodName()); //$NON-NLS-1$
 				}
-				olDoc.replaceItemValue("$PublicAccess", "1"); //$NON-NLS-1$ //$NON-NLS-2$
-				olDoc.save(true);
-			} catch (Exception e) {
-				printException(e);
 			}
+			olDoc.replaceItemValue("LogStackTrace", getStackTrace(t)); //$NON-NLS-1$
+			Level l = ollr._logRec.getLevel();
+			if (l == null) {
+				l = Level.WARNING;
+			}
+			olDoc.replaceItemValue("LogSeverity", l.getName()); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogEventTime", new Date(ollr._logRec.getMillis())); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogEventType", "Log"); //$NON-NLS-1$ //$NON-NLS-2$
+			olDoc.replaceItemValue("LogMessage", getMessage(ollr._logRec)); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogFromDatabase", ollr._dbPath); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogFromServer", ollr._serverName); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogFromAgent", ollr._agentName); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogAgentLanguage", "Java"); //$NON-NLS-1$ //$NON-NLS-2$
+			olDoc.replaceItemValue("LogUserName", ollr._userName); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogEffectiveName", ollr._effectiveUserName); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogAccessLevel", ollr._accessLevel); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogUserRoles", ollr._userRoles); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogClientVersion", ollr._clientVersion); //$NON-NLS-1$
+			olDoc.replaceItemValue("LogAgentStartTime", logStartTime); //$NON-NLS-1$
+			if (ollr._exceptionDetails == null) {
+				olDoc.replaceItemValue("LogExceptionDetails", "* Not available *"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else {
+				int sz = ollr._exceptionDetails.size();
+				String[] excds = new String[sz];
+				for (int i = 0; i < sz; i++) {
+					excds[i] = ollr._exceptionDetails.get(i).toString();
+				}
+				olDoc.replaceItemValue("LogExceptionDetails", excds); //$NON-NLS-1$
+			}
+			if (ollr._lastWrappedDocs == null) {
+				olDoc.replaceItemValue("LogLastWrappedDocuments", "* Not available *"); //$NON-NLS-1$ //$NON-NLS-2$
+			} else {
+				olDoc.replaceItemValue("LogLastWrappedDocuments", ollr._lastWrappedDocs); //$NON-NLS-1$
+			}
+			olDoc.replaceItemValue("$PublicAccess", "1"); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 
 		String getMessage(final LogRecord logRec) {
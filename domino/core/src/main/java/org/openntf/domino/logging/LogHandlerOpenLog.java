@@ -16,11 +16,13 @@
 package org.openntf.domino.logging;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.logging.Formatter;
 import java.util.logging.Handler;
 import java.util.logging.LogRecord;
 
 import org.openntf.domino.Session;
+import org.openntf.domino.logging.LogGeneratorOpenLog.OverflowPolicy;
 import org.openntf.domino.utils.Factory;
 import org.openntf.domino.utils.Factory.SessionType;
 
@@ -33,6 +35,15 @@ import org.openntf.domino.utils.Factory.SessionType;
  * <dt>LogDB</dt>
  * <dd>Path to the OpenLog database where the log messages will be saved. The handler will create on document for each log message.
  * Required.</dd>
+ * <dt>QueueSize</dt>
+ * <dd>The number of log messages that may wait to be written. If set, the messages are written in the background by a Xots tasklet, so
+ * the logging thread doesn't wait for the database. Default 0, which writes each message on the logging thread.</dd>
+ * <dt>BatchSize</dt>
+ * <dd>The number of messages written in one transaction. Default 50.</dd>
+ * <dt>Overflow</dt>
+ * <dd>What happens to a message when the queue is full: DROP drops it, DROP_OLDEST drops the oldest waiting message, BLOCK waits up to a
+ * second for room and drops it then. Dropped messages are counted and reported with a summary message in the OpenLog database. Default
+ * BLOCK.</dd>
  * </dl>
  * </p>
  * <h5>Example configuration</h5>
@@ -45,7 +56,7 @@ import org.openntf.domino.utils.Factory.SessionType;
  * Handlers=HLogDB
  * Handler.HLogDB.Class=org.openntf.domino.logging.LogHandlerOpenLog
  * Handler.HLogDB.MinimalLevel=INFO
- * Handler.HLogDB.Props=LogDB=OpenLog.nsf
+ * Handler.HLogDB.Props=LogDB=OpenLog.nsf,QueueSize=1024,Overflow=BLOCK
  * </pre>
  *
  */
@@ -54,9 +65,15 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 
 	private static class LHOLConfig implements LogHandlerConfigIF {
 		String _logDB;
+		int _queueSize;
+		int _batchSize;
+		OverflowPolicy _overflow;
 
 		LHOLConfig() {
 			_logDB = null;
+			_queueSize = 0;
+			_batchSize = LogGeneratorOpenLog.DEFAULT_BATCH_SIZE;
+			_overflow = OverflowPolicy.BLOCK;
 		}
 
 		@Override
@@ -64,7 +81,8 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 			if (!(other instanceof LHOLConfig)) {
 				return false;
 			}
-			return _logDB.equals(((LHOLConfig) other)._logDB);
+			LHOLConfig o = (LHOLConfig) other;
+			return _logDB.equals(o._logDB) && _queueSize == o._queueSize && _batchSize == o._batchSize && _overflow == o._overflow;
 		}
 	}
 
@@ -87,6 +105,24 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 					ret._logDB = propValue;
 					break;
 				}
+				try {
+					if (propKey.equals("QueueSize")) {
+						ret._queueSize = Integer.parseInt(propValue);
+						if (ret._queueSize >= 0) {
+							break;
+						}
+					} else if (propKey.equals("BatchSize")) {
+						ret._batchSize = Integer.parseInt(propValue);
+						if (ret._batchSize > 0) {
+							break;
+						}
+					} else if (propKey.equals("Overflow")) {
+						ret._overflow = OverflowPolicy.valueOf(propValue.toUpperCase());
+						break;
+					}
+				} catch (IllegalArgumentException e) {
+					// reported below
+				}
 				ind = -1;
 				break;
 			}
@@ -122,6 +158,8 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 		// Nothing to do here
 	}
 
+	private static final long FLUSH_TIMEOUT = 5000;
+
 	/** The ol_. */
 	private LogGeneratorOpenLog _olGenerator;
 
@@ -134,7 +172,14 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 	 * @since org.openntf.domino 1.0.0
 	 */
 	public LogHandlerOpenLog(final LHOLConfig config) {
-		_olGenerator = new LogGeneratorOpenLog(config._logDB);
+		_olGenerator = new LogGeneratorOpenLog(config._logDB, config._queueSize, config._batchSize, config._overflow);
+	}
+
+	/**
+	 * @return the counters of the log queue: messages queued, written, dropped and failed
+	 */
+	public Map<String, Object> getStatistics() {
+		return _olGenerator.getStatistics();
 	}
 
 	/*
@@ -144,15 +189,19 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 	 */
 	@Override
 	public void close() {
+		flush();
 	}
 
 	/*
 	 * (non-Javadoc)
 	 *
+	 * Waits a while for the queued messages to be written
+	 *
 	 * @see java.util.logging.Handler#flush()
 	 */
 	@Override
 	public void flush() {
+		_olGenerator.flush(FLUSH_TIMEOUT);
 	}
 
 	/*
@@ -163,7 +212,7 @@ public class LogHandlerOpenLog extends Handler implements LogHandlerUpdateIF {
 	 * @see java.util.logging.Handler#publish(java.util.logging.LogRecord)
 	 */
 	@Override
-	public synchronized void publish(final LogRecord record) {
+	public void publish(final LogRecord record) {
 		if (publishing_.get() == Boolean.TRUE) {
 			return;
 		}
@@ -15,38 +15,38 @@
  */
 package org.openntf.domino.logging;
 
+import org.openntf.domino.Session;
 import org.openntf.domino.thread.AbstractDominoRunnable;
 import org.openntf.domino.utils.Factory;
 import org.openntf.domino.utils.Factory.SessionType;
+import org.openntf.domino.xots.Tasklet;
 
-@SuppressWarnings({ "serial", "nls" })
+/**
+ * Writes the queued records of a {@link LogGeneratorOpenLog} to its database. The tasklet is started when a record is queued and ends when
+ * the queue is empty, so there is at most one writer per log database and no thread is held while nothing is logged.
+ */
+@Tasklet(session = Tasklet.Session.NATIVE, threadConfig = Tasklet.ThreadConfig.STRICT)
+@SuppressWarnings("nls")
 public class LogTaskletOpenLog extends AbstractDominoRunnable {
+	private static final long serialVersionUID = 1L;
+
+	private final transient LogGeneratorOpenLog logGenerator_;
 
-	public LogTaskletOpenLog() {
+	public LogTaskletOpenLog(final LogGeneratorOpenLog logGenerator) {
 		super();
+		logGenerator_ = logGenerator;
 	}
 
 	@Override
 	public void run() {
-		// TODO RPr Review this!
-		while (!shouldStop()) {
-			LogGeneratorOpenLog.OL_EntryToWrite oletw;
-			try {
-				oletw = LogGeneratorOpenLog._olQueue.take();
-				if (oletw != null)
-					oletw._logGenerator._olWriter.writeLogRecToDB(Factory.getSession(SessionType.CURRENT), oletw._logRec,
-							oletw._logGenerator._startTime);
-			} catch (InterruptedException e) {
-				System.out.println("LogTaskletOpenLog: Caught an InterruptedException; finishing ...");
-				break;
-			} catch (Throwable t) {
-				System.err.println("LogTaskletOpenLog: Caught an unexpected exception " + t.getClass().getName() + ":");
-				t.printStackTrace();
-				System.err.println("LogTaskletOpenLog: Aborting.");
-				break;
-			}
+		try {
+			Session session = Factory.getSession(SessionType.CURRENT);
+			logGenerator_.drain(session);
+		} catch (Throwable t) {
+			System.err.println("LogTaskletOpenLog: Caught an unexpected exception " + t.getClass().getName() + ":");
+			t.printStackTrace();
+			logGenerator_.writerFailed();
 		}
-		LogGeneratorOpenLog._olQueue = null;
 	}
 
 }
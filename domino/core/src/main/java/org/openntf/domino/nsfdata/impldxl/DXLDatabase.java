@@ -15,13 +15,8 @@
  */
 package org.openntf.domino.nsfdata.impldxl;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -30,58 +25,57 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 
 import org.openntf.domino.nsfdata.NSFDatabase;
 import org.openntf.domino.nsfdata.NSFNote;
-import org.openntf.domino.utils.xml.XMLDocument;
 import org.xml.sax.SAXException;
 
+/**
+ * An in-memory view of all notes of a DXL export.
+ *
+ * <p>
+ * The export is read with a {@link DXLNoteReader}, so only one note at a time is held as DOM. The lookup maps by note id and UNID are
+ * built on the first lookup. To process large exports without keeping all notes, use {@link #readNotes(InputStream)} instead.
+ * </p>
+ */
 public class DXLDatabase implements Serializable, NSFDatabase {
 	private static final long serialVersionUID = 1L;
 
 	private Set<NSFNote> notes_ = new LinkedHashSet<NSFNote>();
-	private transient Map<Integer, NSFNote> notesByNoteId_ = new TreeMap<Integer, NSFNote>();
-	private transient Map<String, NSFNote> notesByUniversalId_ = new TreeMap<String, NSFNote>();
+	private transient volatile Map<Integer, NSFNote> notesByNoteId_;
+	private transient volatile Map<String, NSFNote> notesByUniversalId_;
+
+	/**
+	 * Returns a reader that yields the notes of a DXL export one by one, without keeping them.
+	 *
+	 * @param is
+	 *            the DXL
+	 * @return a reader that can be iterated once
+	 */
+	public static DXLNoteReader readNotes(final InputStream is) throws IOException {
+		try {
+			return new DXLNoteReader(is);
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		} catch (ParserConfigurationException e) {
+			throw new IOException(e);
+		}
+	}
 
 	public DXLDatabase(final InputStream is) throws IOException, SAXException, ParserConfigurationException {
-		BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-
-		boolean inNote = false;
-		ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		while (reader.ready()) {
-			String aLine = reader.readLine();
-
-			// Assume that we don't have multiple notes per line, but one may end and another may start
-			int startIndex = aLine.indexOf("<note "); //$NON-NLS-1$
-			int endIndex = aLine.indexOf("</note>"); //$NON-NLS-1$
-
-			// We may be in a note
-			if (inNote) {
-				String remainder = aLine.substring(startIndex > -1 ? startIndex : 0, endIndex > -1 ? (endIndex + 7) : aLine.length());
-				bos.write(remainder.getBytes());
-			}
-
-			// See if we ended
-			if (endIndex > -1) {
-				ByteArrayInputStream bis = new ByteArrayInputStream(bos.toByteArray());
-				XMLDocument xml = new XMLDocument();
-				xml.loadInputStream(bis);
-
-				DXLNote note = DXLNote.create(xml.getDocumentElement());
-				notes_.add(note);
-				notesByNoteId_.put(note.getNoteId(), note);
-				notesByUniversalId_.put(note.getUniversalId(), note);
-
-				inNote = false;
-			}
-
-			if (startIndex > -1) {
-				String outputLine = aLine.substring(startIndex, endIndex > -1 ? (endIndex + 7) : aLine.length());
-				bos.reset();
-				bos.write(outputLine.getBytes());
-
-				inNote = true;
+		try {
+			DXLNoteReader reader = new DXLNoteReader(is);
+			try {
+				DXLNote note;
+				while ((note = reader.readNext()) != null) {
+					notes_.add(note);
+				}
+			} finally {
+				reader.close();
 			}
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
 		}
 	}
 
@@ -98,7 +92,11 @@ public class DXLDatabase implements Serializable, NSFDatabase {
 	 */
 	@Override
 	public NSFNote getNoteById(final int noteId) {
-		return notesByNoteId_.get(noteId);
+		Map<Integer, NSFNote> byNoteId = notesByNoteId_;
+		if (byNoteId == null) {
+			byNoteId = buildIndexes();
+		}
+		return byNoteId.get(noteId);
 	}
 
 	/* (non-Javadoc)
@@ -106,21 +104,27 @@ public class DXLDatabase implements Serializable, NSFDatabase {
 	 */
 	@Override
 	public NSFNote getNoteByUniversalId(final String universalId) {
+		if (notesByUniversalId_ == null) {
+			buildIndexes();
+		}
 		return notesByUniversalId_.get(universalId);
 	}
 
 	/*
-	 * Reconstruct the ID views for fast access
+	 * Builds the ID views for fast access. They are not serialized and rebuilt on demand after deserialization
 	 */
-	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
-		in.defaultReadObject();
-
-		notesByNoteId_ = new TreeMap<Integer, NSFNote>();
-		notesByUniversalId_ = new TreeMap<String, NSFNote>();
-
+	private synchronized Map<Integer, NSFNote> buildIndexes() {
+		if (notesByNoteId_ != null) {
+			return notesByNoteId_;
+		}
+		Map<Integer, NSFNote> byNoteId = new TreeMap<Integer, NSFNote>();
+		Map<String, NSFNote> byUniversalId = new TreeMap<String, NSFNote>();
 		for (NSFNote note : notes_) {
-			notesByNoteId_.put(note.getNoteId(), note);
-			notesByUniversalId_.put(note.getUniversalId(), note);
+			byNoteId.put(note.getNoteId(), note);
+			byUniversalId.put(note.getUniversalId(), note);
 		}
+		notesByUniversalId_ = byUniversalId;
+		notesByNoteId_ = byNoteId;
+		return byNoteId;
 	}
 }
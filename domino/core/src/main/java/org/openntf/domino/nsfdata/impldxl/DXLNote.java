@@ -19,7 +19,6 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,6 +35,8 @@ import org.openntf.domino.nsfdata.impldxl.item.DXLItemFactory;
 import org.openntf.domino.nsfdata.structs.cd.CDFILEHEADER;
 import org.openntf.domino.nsfdata.structs.cd.CDFILESEGMENT;
 import org.openntf.domino.nsfdata.structs.cd.CDRecord;
+import org.openntf.domino.nsfdata.structs.cd.CDRecordCursor;
+import org.openntf.domino.nsfdata.structs.cd.CDSignature;
 import org.openntf.domino.nsfdata.structs.cd.CData;
 import org.openntf.domino.utils.xml.XMLNode;
 
@@ -190,26 +191,17 @@ public class DXLNote implements NSFNote, Serializable {
 		int totalSegments = 0;
 		for (NSFItem item : items) {
 			if (item instanceof DXLItemComposite) {
-				CData cdata = ((DXLItemComposite) item).getValue();
-
-				int breaker = 0;
-				for (CDRecord record : cdata) {
-					if (breaker++ > 1000) {
-						System.out.println("we went too deep!");
-						break;
-					}
-
-					if (record instanceof CDFILEHEADER) {
-						CDFILEHEADER header = (CDFILEHEADER) record;
+				CDRecordCursor cursor = ((DXLItemComposite) item).getCursor();
+				while (cursor.next()) {
+					if (cursor.getSignature() == CDSignature.FILEHEADER) {
+						CDFILEHEADER header = (CDFILEHEADER) cursor.getRecord();
 						totalSegments = (int) header.SegCount.get();
 						segmentCount = 0;
-					}
-					if (record instanceof CDFILESEGMENT) {
-						CDFILESEGMENT seg = (CDFILESEGMENT) record;
-						ByteBuffer data = ByteBuffer.wrap(seg.getFileData());
-						data.order(ByteOrder.LITTLE_ENDIAN);
+					} else if (cursor.getSignature() == CDSignature.FILESEGMENT) {
+						CDFILESEGMENT seg = (CDFILESEGMENT) cursor.getRecord();
+						ByteBuffer data = seg.getFileDataBuffer();
 						try {
-							os.write(data.array(), data.position(), data.limit() - data.position());
+							os.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
 						} catch (IOException e) {
 							throw new RuntimeException(e);
 						}
@@ -223,7 +215,6 @@ public class DXLNote implements NSFNote, Serializable {
 						}
 					}
 				}
-
 			}
 		}
 	}
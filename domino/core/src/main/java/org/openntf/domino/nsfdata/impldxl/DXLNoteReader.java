@@ -0,0 +1,202 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.nsfdata.impldxl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.openntf.domino.nsfdata.NSFNote;
+import org.openntf.domino.utils.xml.XMLNode;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Reads the notes of a DXL export one at a time.
+ *
+ * <p>
+ * The stream is pulled with StAX and only the <code>&lt;note&gt;</code> element that is currently read is turned into a DOM, so memory
+ * use depends on the size of the largest note and not on the size of the export. Notes are not kept by the reader; a caller that needs
+ * all of them in memory should use {@link DXLDatabase}.
+ * </p>
+ *
+ * <p>
+ * Building the DOM of each note still costs CPU. It is kept because {@link DXLNote} and the item classes read their values with XPath
+ * lookups on the note's {@link XMLNode}.
+ * </p>
+ *
+ * <p>
+ * A reader is not thread-safe. Iterator methods wrap parse errors in a {@link RuntimeException}, use {@link #readNext()} to get them as
+ * {@link XMLStreamException}.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class DXLNoteReader implements Iterator<NSFNote>, Iterable<NSFNote>, Closeable {
+	private static final String NOTE_ELEMENT = "note";
+
+	private final XMLStreamReader reader_;
+	private final DocumentBuilder builder_;
+	private DXLNote next_;
+	private boolean done_;
+
+	public DXLNoteReader(final InputStream is) throws XMLStreamException, ParserConfigurationException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, Boolean.TRUE);
+		// DXL exports reference domino_x_y.dtd, which is not available here
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		reader_ = factory.createXMLStreamReader(is);
+
+		DocumentBuilderFactory fac = DocumentBuilderFactory.newInstance();
+		fac.setValidating(false);
+		builder_ = fac.newDocumentBuilder();
+	}
+
+	/**
+	 * Reads the next note from the stream.
+	 *
+	 * @return the note, or null if there are no more notes
+	 * @throws XMLStreamException
+	 *             if the DXL is not well-formed
+	 */
+	public DXLNote readNext() throws XMLStreamException {
+		if (next_ != null) {
+			DXLNote result = next_;
+			next_ = null;
+			return result;
+		}
+		if (done_) {
+			return null;
+		}
+		while (reader_.hasNext()) {
+			if (reader_.next() == XMLStreamConstants.START_ELEMENT && NOTE_ELEMENT.equals(reader_.getLocalName())) {
+				return DXLNote.create(new XMLNode(readElement()));
+			}
+		}
+		done_ = true;
+		return null;
+	}
+
+	/*
+	 * Builds a DOM of the element the reader is positioned on, including all descendants. The reader is left on the matching end element.
+	 *
+	 * Elements are created without namespace, the same way the previous line-based reader saw them, so the XPath expressions in DXLNote
+	 * and the item classes keep working.
+	 */
+	private Element readElement() throws XMLStreamException {
+		Document doc = builder_.newDocument();
+		Element root = createElement(doc);
+		doc.appendChild(root);
+
+		Node current = root;
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader_.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				Element child = createElement(doc);
+				current.appendChild(child);
+				current = child;
+				depth++;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				current = current.getParentNode();
+				depth--;
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				current.appendChild(doc.createTextNode(reader_.getText()));
+				break;
+			case XMLStreamConstants.CDATA:
+				current.appendChild(doc.createCDATASection(reader_.getText()));
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				throw new XMLStreamException("Unexpected end of DXL inside a note", reader_.getLocation());
+			default:
+				// comments and processing instructions are not relevant for notes
+				break;
+			}
+		}
+		return root;
+	}
+
+	private Element createElement(final Document doc) {
+		Element element = doc.createElement(reader_.getLocalName());
+		for (int i = 0, count = reader_.getAttributeCount(); i < count; i++) {
+			element.setAttribute(reader_.getAttributeLocalName(i), reader_.getAttributeValue(i));
+		}
+		return element;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next_ == null && !done_) {
+			try {
+				next_ = readNext();
+			} catch (XMLStreamException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return next_ != null;
+	}
+
+	@Override
+	public NSFNote next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		DXLNote result = next_;
+		next_ = null;
+		return result;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns this reader, so it can be used in a for-each loop. The stream can only be read once.
+	 */
+	@Override
+	public Iterator<NSFNote> iterator() {
+		return this;
+	}
+
+	/**
+	 * Closes the StAX reader. The underlying input stream is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		done_ = true;
+		try {
+			reader_.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -17,6 +17,7 @@ package org.openntf.domino.nsfdata.impldxl.item;
 
 import java.nio.ByteBuffer;
 
+import org.openntf.domino.nsfdata.structs.cd.CDRecordCursor;
 import org.openntf.domino.nsfdata.structs.cd.CData;
 import org.openntf.domino.utils.xml.XMLNode;
 
@@ -31,4 +32,11 @@ public class DXLItemComposite extends DXLItemRaw {
 	public CData getValue() {
 		return new CData(ByteBuffer.wrap(getBytes()));
 	}
+
+	/**
+	 * @return a cursor over the CD records of this item, which does not copy or keep them
+	 */
+	public CDRecordCursor getCursor() {
+		return new CDRecordCursor(getBytes());
+	}
 }
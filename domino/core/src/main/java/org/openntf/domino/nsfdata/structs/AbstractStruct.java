@@ -74,6 +74,18 @@ public abstract class AbstractStruct extends Struct implements Externalizable {
 		return length;
 	}
 
+	/**
+	 * @return a view of the variable data that follows the fixed part of the struct. The bytes are not copied, so changes to the view
+	 *         change the struct.
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		ByteBuffer data = getData().duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int start = data.position() + size();
+		data.limit((int) (start + getVariableSize()));
+		data.position(start);
+		return data;
+	}
+
 	public byte[] getBytes() {
 		ByteBuffer data = getData().duplicate();
 		//		int size = data.limit() - data.position();
@@ -15,6 +15,8 @@
  */
 package org.openntf.domino.nsfdata.structs.cd;
 
+import java.nio.ByteBuffer;
+
 import org.openntf.domino.nsfdata.structs.LSIG;
 import org.openntf.domino.nsfdata.structs.SIG;
 
@@ -55,6 +57,17 @@ public class CDFILESEGMENT extends CDRecord {
 		return (byte[]) getVariableElement("FileData");
 	}
 
+	/**
+	 * @return A view of the file bits for this segment, without copying them
+	 */
+	public ByteBuffer getFileDataBuffer() {
+		ByteBuffer data = getData().duplicate();
+		int start = data.position() + size();
+		data.limit(start + DataSize.get());
+		data.position(start);
+		return data;
+	}
+
 	public void setFileData(final byte[] fileData) {
 		setVariableElement("FileData", fileData);
 	}
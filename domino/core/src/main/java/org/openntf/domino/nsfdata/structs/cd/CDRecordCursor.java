@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.nsfdata.structs.cd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.openntf.domino.nsfdata.structs.ODSConstants.RecordLength;
+
+/**
+ * A forward-only cursor over the CD records in a buffer of composite data.
+ *
+ * <p>
+ * Unlike {@link CData}, the cursor neither copies the data nor keeps the records it has passed. It holds one {@link CDRecord} instance per
+ * record type and points it at the current record on every call to {@link #getRecord()}, so the record, as well as the buffers returned
+ * by {@link #getRecordData()} and {@link #getPayload()}, are only valid until {@link #next()} is called again. Records that are needed
+ * later must be copied, e.g. with {@link CDRecord#getBytes()}.
+ * </p>
+ *
+ * <p>
+ * A cursor is not thread-safe.
+ * </p>
+ *
+ * <pre>
+ * CDRecordCursor cursor = new CDRecordCursor(buffer);
+ * while (cursor.next()) {
+ * 	if (cursor.getSignature() == CDSignature.FILESEGMENT) {
+ * 		CDFILESEGMENT seg = (CDFILESEGMENT) cursor.getRecord();
+ * 		channel.write(seg.getFileDataBuffer());
+ * 	}
+ * }
+ * </pre>
+ */
+@SuppressWarnings("nls")
+public class CDRecordCursor {
+	private final ByteBuffer data_;
+	private final int start_;
+	private final int limit_;
+
+	private final CDRecord[] records_ = new CDRecord[CDSignature.values().length];
+	private final ByteBuffer[] recordViews_ = new ByteBuffer[records_.length];
+	private ByteBuffer recordData_;
+	private ByteBuffer payload_;
+
+	private int position_;
+	private int recordPosition_ = -1;
+	private int recordLength_;
+	private int headerSize_;
+	private CDSignature signature_;
+
+	/**
+	 * Creates a cursor over the remaining bytes of the buffer. The position of the buffer is not changed.
+	 *
+	 * @param data
+	 *            composite data, starting with the header of the first record
+	 */
+	public CDRecordCursor(final ByteBuffer data) {
+		data_ = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		start_ = data_.position();
+		limit_ = data_.limit();
+		position_ = start_;
+	}
+
+	public CDRecordCursor(final byte[] data) {
+		this(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Maps a file of composite data into memory and creates a cursor over it. The file is closed right away, the mapping stays valid until
+	 * it is garbage collected.
+	 *
+	 * @param file
+	 *            the file, at most 2GB
+	 * @return a cursor over the whole file
+	 */
+	public static CDRecordCursor map(final Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new CDRecordCursor(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Moves to the next record.
+	 *
+	 * @return false, if there are no more records
+	 * @throws IllegalStateException
+	 *             if the record header is truncated or its length is out of range
+	 */
+	public boolean next() {
+		if (recordPosition_ >= 0) {
+			position_ = recordPosition_ + recordLength_ + (recordLength_ % 2);
+		}
+		if (position_ + 2 > limit_) {
+			recordPosition_ = -1;
+			position_ = limit_;
+			signature_ = null;
+			return false;
+		}
+
+		int lowOrder = data_.get(position_) & 0xFF;
+		int highOrder = data_.get(position_ + 1) & 0xFF;
+		signature_ = CDSignature.sigForBytes(lowOrder, highOrder);
+
+		// Unknown records can still be skipped, their header type is given by the high order byte
+		RecordLength headerType = signature_ != null ? signature_.getEffectiveRecordLength() : RecordLength.valueOf(highOrder);
+		long length;
+		switch (headerType) {
+		case BYTE:
+			headerSize_ = 2;
+			length = highOrder;
+			break;
+		case WORD:
+			headerSize_ = 4;
+			length = position_ + 4 <= limit_ ? data_.getShort(position_ + 2) & 0xFFFF : -1;
+			break;
+		default:
+			headerSize_ = 6;
+			length = position_ + 6 <= limit_ ? data_.getInt(position_ + 2) & 0xFFFFFFFFL : -1;
+			break;
+		}
+		if (length < headerSize_ || position_ + length > limit_) {
+			throw new IllegalStateException("Invalid record length " + length + " at offset " + (position_ - start_));
+		}
+
+		recordPosition_ = position_;
+		recordLength_ = (int) length;
+		return true;
+	}
+
+	/**
+	 * @return the signature of the current record, or null if it is not known
+	 */
+	public CDSignature getSignature() {
+		return signature_;
+	}
+
+	/**
+	 * @return the offset of the current record from the start of the data
+	 */
+	public int getOffset() {
+		checkRecord();
+		return recordPosition_ - start_;
+	}
+
+	/**
+	 * @return the length of the current record as given in its header, including the header but not the pad byte
+	 */
+	public int getRecordLength() {
+		checkRecord();
+		return recordLength_;
+	}
+
+	/**
+	 * Returns the current record. The instance is shared with all other records of the same type and only valid until the next call to
+	 * {@link #next()}.
+	 *
+	 * @return the record, or null if there is no implementing class for its signature
+	 */
+	public CDRecord getRecord() {
+		checkRecord();
+		if (signature_ == null || signature_.getInstanceClass() == null) {
+			return null;
+		}
+		int idx = signature_.ordinal();
+		CDRecord record = records_[idx];
+		if (record == null) {
+			try {
+				record = signature_.getInstanceClass().newInstance();
+			} catch (Exception e) {
+				throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+			}
+			records_[idx] = record;
+			recordViews_[idx] = data_.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		// The struct accessors read relative to both the struct position and the buffer position, so keep the two in line
+		// Like CData, the record sees its pad byte, if there is one
+		int end = Math.min(recordPosition_ + recordLength_ + (recordLength_ % 2), limit_);
+		record.setByteBuffer(reposition(recordViews_[idx], recordPosition_, end), recordPosition_);
+		return record;
+	}
+
+	/**
+	 * @return a view of the whole current record, including its header. Valid until the next call to {@link #next()}
+	 */
+	public ByteBuffer getRecordData() {
+		checkRecord();
+		if (recordData_ == null) {
+			recordData_ = data_.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return reposition(recordData_, recordPosition_, recordPosition_ + recordLength_);
+	}
+
+	/**
+	 * Returns the bytes of the current record that follow the fixed part of its structure. For records without an implementing class,
+	 * this is everything after the header.
+	 *
+	 * @return a view of the payload, valid until the next call to {@link #next()}
+	 */
+	public ByteBuffer getPayload() {
+		checkRecord();
+		int fixedSize = headerSize_;
+		CDRecord record = getRecord();
+		if (record != null) {
+			fixedSize = Math.min(record.size(), recordLength_);
+		}
+		if (payload_ == null) {
+			payload_ = data_.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return reposition(payload_, recordPosition_ + fixedSize, recordPosition_ + recordLength_);
+	}
+
+	/**
+	 * Moves the cursor back to the start of the data.
+	 */
+	public void reset() {
+		position_ = start_;
+		recordPosition_ = -1;
+		signature_ = null;
+	}
+
+	private ByteBuffer reposition(final ByteBuffer view, final int position, final int limit) {
+		view.limit(limit_);
+		view.position(position);
+		view.limit(limit);
+		return view;
+	}
+
+	private void checkRecord() {
+		if (recordPosition_ < 0) {
+			throw new IllegalStateException("The cursor is not positioned on a record");
+		}
+	}
+}
@@ -157,6 +157,21 @@ public enum CDSignature {
 
 	ALTERNATEBEGIN(WORD, 198, null), ALTERNATEEND(BYTE, 199, null), OLERTMARKER(WORD, 200, null);
 
+	/*
+	 * Signatures by declared record length and base value. Some base values are defined twice (e.g. ACTION and VMPOLYLINE), the first
+	 * definition wins, as it did with the linear search.
+	 */
+	private static final CDSignature[][] BY_VALUE = new CDSignature[RecordLength.values().length][256];
+
+	static {
+		for (CDSignature cdSig : values()) {
+			CDSignature[] byValue = BY_VALUE[cdSig.getRecordLength().ordinal()];
+			if (byValue[cdSig.getBaseValue()] == null) {
+				byValue[cdSig.getBaseValue()] = cdSig;
+			}
+		}
+	}
+
 	private final RecordLength recordLength_;
 	private final int baseValue_;
 	private final RecordLength trueRecordLength_;
@@ -272,74 +287,42 @@ public enum CDSignature {
 				+ ")");
 	}
 
+	/**
+	 * Finds the signature for the first two bytes of a record header.
+	 *
+	 * @param lowOrder
+	 *            the first byte, which identifies the record type
+	 * @param highOrder
+	 *            the second byte, which identifies the header type (or holds the length for BSIG records)
+	 * @return the signature, or null if it is unknown
+	 */
+	public static CDSignature sigForBytes(final int lowOrder, final int highOrder) {
+		RecordLength length = RecordLength.valueOf(highOrder & 0xFF);
+		return BY_VALUE[length.ordinal()][lowOrder & 0xFF];
+	}
+
 	public static SIG sigForData(final ByteBuffer data) {
 		ByteBuffer sigData = data.duplicate().order(ByteOrder.LITTLE_ENDIAN);
 		//		System.out.println("reading sig at position: " + data.position());
-		byte lowOrderByte = sigData.get(sigData.position());
-		int lowOrder = lowOrderByte & 0xFF;                          // low order = type
+		int lowOrder = sigData.get(sigData.position()) & 0xFF;       // low order = type
 		int highOrder = sigData.get(sigData.position() + 1) & 0xFF;  // high order = record length
-		//		System.out.println("low order: " + lowOrder);
-		//		System.out.println("low order byte: " + lowOrderByte);
-		//		System.out.println("high order: " + highOrder);
-
-		RecordLength length = RecordLength.valueOf(highOrder);
 
-		//		int value = lowOrder | highOrder;
-		for (CDSignature cdSig : values()) {
-			if (lowOrder == cdSig.getBaseValue() && length == cdSig.getRecordLength()) {
-				//				System.out.println("matched signature " + cdSig);
-				// Now determine which SIG to return based on the record length
-				SIG result = null;
-				switch (cdSig.getEffectiveRecordLength()) {
-				case BYTE:
-					//					System.out.println("matched BSIG " + cdSig + " for " + lowOrder);
-					result = new BSIG();
-					result.init(data);
-					return result;
-				case WORD:
-					//					System.out.println("matched WSIG " + cdSig + " for " + lowOrder);
-					result = new WSIG();
-					result.init(data);
-					return result;
-				case LONG:
-					//					System.out.println("matched LSIG " + cdSig + " for " + lowOrder);
-					result = new LSIG();
-					result.init(data);
-					return result;
-				default:
-					break;
-				}
+		CDSignature cdSig = sigForBytes(lowOrder, highOrder);
+		if (cdSig != null) {
+			SIG result = cdSig.getSig();
+			if (result != null) {
+				result.init(data);
+				return result;
 			}
 		}
-		throw new IllegalArgumentException("Unknown sig value " + lowOrder + " for length " + length);
+		throw new IllegalArgumentException("Unknown sig value " + lowOrder + " for length " + RecordLength.valueOf(highOrder));
 	}
 
 	public static CDSignature sigForShort(final short value) {
-		ByteBuffer sigData = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN);
-		sigData.putShort(value);
-		sigData.position(0);
-
-		byte lowOrderByte = sigData.get(sigData.position());
-		int lowOrder = lowOrderByte & 0xFF;                          // low order = type
-		int highOrder = sigData.get(sigData.position() + 1) & 0xFF;  // high order = record length
-
-		RecordLength length = RecordLength.valueOf(highOrder);
-		for (CDSignature cdSig : values()) {
-			if (lowOrder == cdSig.getBaseValue() && length == cdSig.getRecordLength()) {
-				//				System.out.println("matched signature " + cdSig);
-				// Now determine which SIG to return based on the record length
-				switch (cdSig.getEffectiveRecordLength()) {
-				case BYTE:
-					return cdSig;
-				case WORD:
-					return cdSig;
-				case LONG:
-					return cdSig;
-				default:
-					break;
-				}
-			}
+		CDSignature cdSig = sigForBytes(value & 0xFF, (value >> 8) & 0xFF);
+		if (cdSig != null) {
+			return cdSig;
 		}
-		throw new IllegalArgumentException("Unknown sig value " + lowOrder + " for length " + length);
+		throw new IllegalArgumentException("Unknown sig value " + (value & 0xFF) + " for length " + RecordLength.valueOf((value >> 8) & 0xFF));
 	}
-}
\ No newline at end of file
+}
@@ -23,6 +23,7 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Observable;
@@ -41,6 +42,7 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,6 +50,7 @@ import java.util.logging.Logger;
 import org.openntf.domino.annotations.Incomplete;
 import org.openntf.domino.events.IDominoListener;
 import org.openntf.domino.utils.Factory;
+import org.openntf.domino.xots.Tasklet;
 
 /**
  * A ThreadPoolExecutor for Domino runnables. It sets up a shutdown hook for proper termination.
@@ -84,6 +87,20 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 		ERROR
 	}
 
+	/**
+	 * The lane of a task, if lanes are enabled with {@link AbstractDominoExecutor#enableLanes(int, int, int)}
+	 */
+	public enum Lane {
+		/** Delayed and periodic tasks. They run on the threads of the executor */
+		SCHEDULED,
+
+		/** Ready tasks with {@link Tasklet.Priority#INTERACTIVE} */
+		INTERACTIVE,
+
+		/** Ready tasks with {@link Tasklet.Priority#BULK} */
+		BULK
+	}
+
 	private static final Logger log_ = Logger.getLogger(AbstractDominoExecutor.class.getName());
 
 	/** This list contains ALL tasks */
@@ -119,12 +136,15 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 
 	private String executorName_;
 
+	/** the workers for the ready tasks. Null if lanes are not enabled */
+	private volatile TaskLanes lanes_;
+
 	protected Calendar getNow() {
 		now_.clear();
 		return now_;
 	}
 
-	private static ThreadFactory createThreadFactory() {
+	static ThreadFactory createThreadFactory() {
 		try {
 			return Executors.privilegedThreadFactory();
 		} catch (Throwable t) {
@@ -146,6 +166,56 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 		Factory.addShutdownHook(shutdownHook);
 	}
 
+	/**
+	 * Runs the ready tasks on separate worker threads, divided into an interactive and a bulk lane with fair scheduling between the
+	 * modules. The threads of this executor only run the delayed and periodic tasks afterwards.
+	 * 
+	 * @param scheduledThreads
+	 *            the number of threads for delayed and periodic tasks
+	 * @param workers
+	 *            the number of worker threads for the interactive and bulk lane, at least 2
+	 * @param maxBulk
+	 *            the maximum number of workers that run bulk tasks at the same time. Must be less than <code>workers</code>, so bulk
+	 *            tasks never take all workers
+	 * @throws IllegalArgumentException
+	 *             if the number of workers or bulk workers is out of range
+	 */
+	public synchronized void enableLanes(final int scheduledThreads, final int workers, final int maxBulk) {
+		if (lanes_ != null) {
+			throw new IllegalStateException("Lanes are already enabled"); //$NON-NLS-1$
+		}
+		setCorePoolSize(Math.max(1, scheduledThreads));
+		lanes_ = new TaskLanes(this, workers, maxBulk, createThreadFactory());
+	}
+
+	/**
+	 * Returns the counters of each lane (queued, running, submitted and completed tasks, waiting and run times)
+	 * 
+	 * @return the counters by lane. Empty, if lanes are not enabled
+	 */
+	@SuppressWarnings("nls")
+	public Map<Lane, Map<String, Object>> getLaneStatistics() {
+		Map<Lane, Map<String, Object>> ret = new LinkedHashMap<Lane, Map<String, Object>>();
+		TaskLanes lanes = lanes_;
+		if (lanes != null) {
+			for (Lane lane : Lane.values()) {
+				int queued = lane == Lane.SCHEDULED ? super.getQueue().size() : lanes.getQueuedCount(lane);
+				Map<String, Object> stats = lanes.getStatistics(lane).toMap(queued);
+				if (lane == Lane.SCHEDULED) {
+					stats.put("threads", getCorePoolSize());
+				} else {
+					stats.put("modules", lanes.getModuleCount(lane));
+					stats.put("threads", lane == Lane.BULK ? lanes.getMaxBulk() : lanes.getWorkerCount());
+					if (lane == Lane.INTERACTIVE) {
+						stats.put("spareThreads", lanes.getSpareCount());
+					}
+				}
+				ret.put(lane, stats);
+			}
+		}
+		return ret;
+	}
+
 	/**
 	 * A FutureTask for {@link WrappedCallable}s and {@link WrappedRunnable}s. It is nearly identical with
 	 * {@link ScheduledThreadPoolExecutor.ScheduledFutureTask} But ScheduledFutureTask is private, so that we cannot inherit
@@ -166,6 +236,9 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 		private TaskState state = TaskState.QUEUED;
 		private Object objectState;
 		private Thread runner;
+		private Lane lane = Lane.SCHEDULED;
+		private long queuedNanos = System.nanoTime();
+		private volatile long startedNanos;
 
 		/**
 		 * Sets the new state of this Thread
@@ -194,6 +267,79 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 			return sequenceNumber;
 		}
 
+		/**
+		 * Returns the lane of this task
+		 * 
+		 * @return the {@link Lane}
+		 */
+		public Lane getLane() {
+			return lane;
+		}
+
+		/**
+		 * Returns the module (NSF or bundle) of this task
+		 * 
+		 * @return the module name or null
+		 */
+		public String getModuleName() {
+			return wrappedTask.getModuleName();
+		}
+
+		/**
+		 * Returns how long this task waited in its lane, or is waiting if not yet started. Delayed and periodic tasks count from the
+		 * scheduled time.
+		 * 
+		 * @param unit
+		 *            the unit of the result
+		 * @return the waiting time
+		 */
+		public long getWaitingTime(final TimeUnit unit) {
+			if (lane == Lane.SCHEDULED) {
+				return Math.max(0, -getDelay(unit));
+			}
+			long started = startedNanos;
+			return unit.convert((started == 0 ? System.nanoTime() : started) - queuedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * Waits for the result. If called on a lane worker, a spare worker runs the queued tasks meanwhile
+		 */
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			TaskLanes lanes = lanes_;
+			if (lanes == null || isDone() || !lanes.beginBlocking()) {
+				return super.get();
+			}
+			try {
+				return super.get();
+			} finally {
+				lanes.endBlocking();
+			}
+		}
+
+		@Override
+		public T get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			TaskLanes lanes = lanes_;
+			if (lanes == null || isDone() || !lanes.beginBlocking()) {
+				return super.get(timeout, unit);
+			}
+			try {
+				return super.get(timeout, unit);
+			} finally {
+				lanes.endBlocking();
+			}
+		}
+
+		void assignLane(final Lane lane) {
+			this.lane = lane;
+			this.queuedNanos = System.nanoTime();
+		}
+
+		long markStarted(final long now) {
+			startedNanos = now;
+			return now - queuedNanos;
+		}
+
 		public DominoFutureTask(final IWrappedCallable<T> callable, final Scheduler scheduler) {
 			super(callable);
 			this.wrappedTask = callable;
@@ -236,6 +382,7 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 
 			if (success && (!isShutdown() || ((getContinueExistingPeriodicTasksAfterShutdownPolicy()) && (!isTerminating())))) {
 				scheduler.eventStop(getNow());
+				countScheduled();
 				getQueue().add(this);
 			}
 		}
@@ -313,7 +460,7 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 		@Override
 		public String toString() {
 			// TODO increment Period/Time 
-			return sequenceNumber + "State: " + getState() + " Task: " + wrappedTask + " objectState: " + objectState;
+			return sequenceNumber + "State: " + getState() + " Lane: " + lane + " Task: " + wrappedTask + " objectState: " + objectState;
 		}
 
 		@Override
@@ -378,6 +525,11 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 			DominoFutureTask<?> task = (DominoFutureTask<?>) runnable;
 			thread.setName(executorName_ + ": " + task.getWrappedTask().getDescription() + " - " + new Date()); //$NON-NLS-1$ //$NON-NLS-2$
 			task.setState(TaskState.RUNNING);
+			TaskLanes lanes = lanes_;
+			if (lanes != null && task.getLane() == Lane.SCHEDULED) {
+				lanes.getStatistics(Lane.SCHEDULED).started(task.getWaitingTime(TimeUnit.NANOSECONDS));
+				task.markStarted(System.nanoTime());
+			}
 		} else {
 			thread.setName(executorName_ + ": #" + thread.getId()); //$NON-NLS-1$
 		}
@@ -389,6 +541,10 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 
 		if (runnable instanceof DominoFutureTask) {
 			DominoFutureTask<?> task = (DominoFutureTask<?>) runnable;
+			TaskLanes lanes = lanes_;
+			if (lanes != null && task.getLane() == Lane.SCHEDULED) {
+				lanes.getStatistics(Lane.SCHEDULED).finished(System.nanoTime() - task.startedNanos);
+			}
 			if (task.isDone()) {
 				if (error == null) {
 					task.setState(TaskState.DONE);
@@ -418,6 +574,59 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 	//		return listener;
 	//	}
 
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		TaskLanes lanes = lanes_;
+		if (lanes != null) {
+			lanes.shutdown();
+		}
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		List<Runnable> ret = super.shutdownNow();
+		TaskLanes lanes = lanes_;
+		if (lanes != null) {
+			ret.addAll(lanes.shutdownNow());
+		}
+		return ret;
+	}
+
+	@Override
+	public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		if (!super.awaitTermination(timeout, unit)) {
+			return false;
+		}
+		TaskLanes lanes = lanes_;
+		return lanes == null || lanes.awaitTermination(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public boolean isTerminated() {
+		TaskLanes lanes = lanes_;
+		return super.isTerminated() && (lanes == null || lanes.isTerminated());
+	}
+
+	@Override
+	public int getActiveCount() {
+		TaskLanes lanes = lanes_;
+		return super.getActiveCount() + (lanes == null ? 0 : lanes.getActiveCount());
+	}
+
+	@Override
+	public boolean remove(final Runnable task) {
+		TaskLanes lanes = lanes_;
+		if (lanes != null && lanes.remove(task)) {
+			if (task instanceof DominoFutureTask) {
+				tasks.remove(((DominoFutureTask<?>) task).sequenceNumber);
+			}
+			return true;
+		}
+		return super.remove(task);
+	}
+
 	//	@Override
 	//	public void shutdown() {
 	//		//Factory.removeShutdownHook(shutdownHook);
@@ -444,12 +653,36 @@ public abstract class AbstractDominoExecutor extends ScheduledThreadPoolExecutor
 			tasks.put(dft.sequenceNumber, dft);
 			if (dft.getDelay(TimeUnit.NANOSECONDS) > 0) {
 				dft.setState(TaskState.SLEEPING);
+				dft.assignLane(Lane.SCHEDULED);
+			} else if (dft.isPeriodic()) {
+				dft.assignLane(Lane.SCHEDULED);
+			} else if (dft.getWrappedTask().getPriority() == Tasklet.Priority.BULK) {
+				dft.assignLane(Lane.BULK);
+			} else {
+				dft.assignLane(Lane.INTERACTIVE);
 			}
+			TaskLanes lanes = lanes_;
+			if (lanes != null && dft.getLane() != Lane.SCHEDULED) {
+				lanes.dispatch(dft);
+				return future;
+			}
+			countScheduled();
 		}
 		super.getQueue().add(future);
 		return future;
 	}
 
+	/*
+	 * Counts a task that is queued in the scheduled lane. The other lanes count in TaskLanes.dispatch. Each run of a periodic task is
+	 * counted, like it is counted as completed.
+	 */
+	private void countScheduled() {
+		TaskLanes lanes = lanes_;
+		if (lanes != null) {
+			lanes.getStatistics(Lane.SCHEDULED).submitted_.incrementAndGet();
+		}
+	}
+
 	@Override
 	public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit timeUnit) {
 		return queue(new DominoFutureTask<V>(wrap(callable), new PeriodicScheduler(delay, 0L, timeUnit)));
@@ -39,6 +39,7 @@ public abstract class AbstractWrappedTask implements IWrappedTask {
 
 	protected Tasklet.Scope scope;
 	protected Tasklet.Context context;
+	protected Tasklet.Priority priority;
 	protected ISessionFactory sessionFactory;
 	protected Factory.ThreadConfig sourceThreadConfig;
 
@@ -148,6 +149,9 @@ public abstract class AbstractWrappedTask implements IWrappedTask {
 			if (scope == null) {
 				scope = Tasklet.Scope.NONE;
 			}
+			if (priority == null) {
+				priority = annot.priority();
+			}
 			if (sourceThreadConfig == null) {
 				switch (annot.threadConfig()) {
 				case CLONE:
@@ -197,6 +201,11 @@ public abstract class AbstractWrappedTask implements IWrappedTask {
 		}
 	}
 
+	@Override
+	public Tasklet.Priority getPriority() {
+		return priority == null ? Tasklet.Priority.INTERACTIVE : priority;
+	}
+
 	@Override
 	public String getDescription() {
 		Object task = getWrappedTask();
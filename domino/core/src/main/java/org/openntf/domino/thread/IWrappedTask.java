@@ -17,6 +17,8 @@ package org.openntf.domino.thread;
 
 import java.util.Observer;
 
+import org.openntf.domino.xots.Tasklet;
+
 public interface IWrappedTask {
 
 	void addObserver(Observer o);
@@ -25,4 +27,22 @@ public interface IWrappedTask {
 
 	String getDescription();
 
+	/**
+	 * Returns the module (NSF or bundle) the task belongs to. Tasks of the same module share a fair share of the executor
+	 * 
+	 * @return the module name, or null for tasks of the plugin
+	 */
+	default String getModuleName() {
+		return null;
+	}
+
+	/**
+	 * Returns the priority from the {@link Tasklet} annotation of the wrapped task
+	 * 
+	 * @return the priority
+	 */
+	default Tasklet.Priority getPriority() {
+		return Tasklet.Priority.INTERACTIVE;
+	}
+
 }
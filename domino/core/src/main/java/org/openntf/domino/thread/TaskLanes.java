@@ -0,0 +1,482 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.thread;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openntf.domino.thread.AbstractDominoExecutor.DominoFutureTask;
+import org.openntf.domino.thread.AbstractDominoExecutor.Lane;
+
+/**
+ * Runs the ready tasks of an {@link AbstractDominoExecutor} on worker threads of its own, while the scheduled and delayed tasks stay on the
+ * threads of the executor.
+ *
+ * <p>
+ * Ready tasks are queued in the interactive or the bulk lane. Within a lane, each module (NSF or bundle) has its own queue and the modules
+ * are served round robin, so a module that submits thousands of tasks only delays its own tasks. This also applies to tasks submitted by a
+ * running task. Workers take interactive tasks first. Bulk tasks never occupy more than <code>maxBulk</code> workers.
+ * </p>
+ *
+ * <p>
+ * A worker that waits for the result of another task (e.g. a task that splits its work into shards and collects them) starts a spare
+ * worker for the time it is blocked and gives back its bulk slot, so the tasks it waits for can always run. Spare workers end as soon as
+ * they are no longer needed.
+ * </p>
+ */
+@SuppressWarnings("nls")
+class TaskLanes {
+	private static final Logger log_ = Logger.getLogger(TaskLanes.class.getName());
+
+	/** the key for tasks without module */
+	private static final String PLUGIN_MODULE = "";
+
+	/**
+	 * The tasks of one lane, with one queue per module. The modules are served round robin
+	 */
+	static class FairQueue {
+		private final Map<String, Queue<DominoFutureTask<?>>> modules_ = new HashMap<String, Queue<DominoFutureTask<?>>>();
+		private final ArrayDeque<String> ring_ = new ArrayDeque<String>();
+		private int size_;
+
+		synchronized void add(final String module, final DominoFutureTask<?> task) {
+			Queue<DominoFutureTask<?>> queue = modules_.get(module);
+			if (queue == null) {
+				queue = new ArrayDeque<DominoFutureTask<?>>();
+				modules_.put(module, queue);
+				ring_.addLast(module);
+			}
+			queue.add(task);
+			size_++;
+		}
+
+		synchronized DominoFutureTask<?> poll() {
+			String module = ring_.pollFirst();
+			if (module == null) {
+				return null;
+			}
+			Queue<DominoFutureTask<?>> queue = modules_.get(module);
+			DominoFutureTask<?> task = queue.poll();
+			if (queue.isEmpty()) {
+				modules_.remove(module);
+			} else {
+				ring_.addLast(module);
+			}
+			size_--;
+			return task;
+		}
+
+		synchronized boolean remove(final Runnable task) {
+			for (Iterator<Map.Entry<String, Queue<DominoFutureTask<?>>>> it = modules_.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, Queue<DominoFutureTask<?>>> entry = it.next();
+				if (entry.getValue().remove(task)) {
+					if (entry.getValue().isEmpty()) {
+						it.remove();
+						ring_.remove(entry.getKey());
+					}
+					size_--;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		synchronized List<DominoFutureTask<?>> drain() {
+			List<DominoFutureTask<?>> ret = new ArrayList<DominoFutureTask<?>>(size_);
+			for (String module : ring_) {
+				ret.addAll(modules_.get(module));
+			}
+			modules_.clear();
+			ring_.clear();
+			size_ = 0;
+			return ret;
+		}
+
+		synchronized int size() {
+			return size_;
+		}
+
+		synchronized int moduleCount() {
+			return ring_.size();
+		}
+	}
+
+	/**
+	 * The counters of one lane
+	 */
+	static class LaneStatistics {
+		final AtomicLong submitted_ = new AtomicLong();
+		final AtomicLong started_ = new AtomicLong();
+		final AtomicLong completed_ = new AtomicLong();
+		final AtomicInteger running_ = new AtomicInteger();
+		final AtomicLong waitNanos_ = new AtomicLong();
+		final AtomicLong maxWaitNanos_ = new AtomicLong();
+		final AtomicLong runNanos_ = new AtomicLong();
+
+		void started(final long waitNanos) {
+			started_.incrementAndGet();
+			running_.incrementAndGet();
+			waitNanos_.addAndGet(waitNanos);
+			long max = maxWaitNanos_.get();
+			while (waitNanos > max && !maxWaitNanos_.compareAndSet(max, waitNanos)) {
+				max = maxWaitNanos_.get();
+			}
+		}
+
+		void finished(final long runNanos) {
+			running_.decrementAndGet();
+			completed_.incrementAndGet();
+			runNanos_.addAndGet(runNanos);
+		}
+
+		Map<String, Object> toMap(final int queued) {
+			Map<String, Object> result = new LinkedHashMap<String, Object>();
+			long started = started_.get();
+			long completed = completed_.get();
+			result.put("queued", queued);
+			result.put("running", running_.get());
+			result.put("submitted", submitted_.get());
+			result.put("completed", completed);
+			result.put("avgWaitMillis", started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos_.get() / started));
+			result.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos_.get()));
+			result.put("avgRunMillis", completed == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(runNanos_.get() / completed));
+			return result;
+		}
+	}
+
+	private class Worker implements Runnable {
+		final boolean spare_;
+		Thread thread_;
+		/** true while the running task holds a bulk slot */
+		boolean bulk_;
+
+		Worker(final boolean spare) {
+			spare_ = spare;
+		}
+
+		@Override
+		public void run() {
+			currentWorker_.set(this);
+			try {
+				while (!stopNow_) {
+					if (spare_ && retireSpare()) {
+						return;
+					}
+					DominoFutureTask<?> task = nextTask();
+					if (task == null) {
+						if (stopped_ && isEmpty()) {
+							return;
+						}
+						try {
+							signal_.tryAcquire(1, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							// woken up by shutdownNow
+						}
+						continue;
+					}
+					signal_.tryAcquire();
+					runTask(this, task);
+					if (!stopNow_) {
+						// an interrupt meant for the task must not hit the next one
+						Thread.interrupted();
+					}
+				}
+			} finally {
+				currentWorker_.remove();
+				if (spare_) {
+					spareWorkers_.remove(this);
+				}
+			}
+		}
+	}
+
+	private final AbstractDominoExecutor executor_;
+	private final ThreadFactory threadFactory_;
+	private final Worker[] workers_;
+	private final Set<Worker> spareWorkers_ = ConcurrentHashMap.newKeySet();
+	private final int maxBulk_;
+	private final FairQueue interactive_ = new FairQueue();
+	private final FairQueue bulk_ = new FairQueue();
+	private final LaneStatistics[] statistics_ = new LaneStatistics[Lane.values().length];
+	private final AtomicInteger runningBulk_ = new AtomicInteger();
+	private final AtomicInteger blocked_ = new AtomicInteger();
+	private final AtomicInteger spares_ = new AtomicInteger();
+	private final Semaphore signal_ = new Semaphore(0);
+	private final ThreadLocal<Worker> currentWorker_ = new ThreadLocal<Worker>();
+	private volatile boolean stopped_;
+	private volatile boolean stopNow_;
+
+	/**
+	 * Creates and starts the workers
+	 *
+	 * @param executor
+	 *            the executor whose ready tasks are run
+	 * @param workers
+	 *            the number of worker threads, at least 2
+	 * @param maxBulk
+	 *            the maximum number of workers that run bulk tasks at the same time. At least 1 and less than <code>workers</code>
+	 * @param threadFactory
+	 *            the factory for the worker threads
+	 */
+	TaskLanes(final AbstractDominoExecutor executor, final int workers, final int maxBulk, final ThreadFactory threadFactory) {
+		if (workers < 2) {
+			throw new IllegalArgumentException("Lanes need at least 2 workers, got " + workers);
+		}
+		if (maxBulk < 1 || maxBulk >= workers) {
+			throw new IllegalArgumentException("Bulk tasks must be limited to 1.." + (workers - 1) + " workers, got " + maxBulk);
+		}
+		executor_ = executor;
+		threadFactory_ = threadFactory;
+		maxBulk_ = maxBulk;
+		for (int i = 0; i < statistics_.length; i++) {
+			statistics_[i] = new LaneStatistics();
+		}
+		workers_ = new Worker[workers];
+		for (int i = 0; i < workers_.length; i++) {
+			Worker worker = new Worker(false);
+			worker.thread_ = threadFactory.newThread(worker);
+			workers_[i] = worker;
+		}
+		for (Worker worker : workers_) {
+			worker.thread_.start();
+		}
+	}
+
+	LaneStatistics getStatistics(final Lane lane) {
+		return statistics_[lane.ordinal()];
+	}
+
+	/**
+	 * Queues a ready task in its lane
+	 */
+	void dispatch(final DominoFutureTask<?> task) {
+		getStatistics(task.getLane()).submitted_.incrementAndGet();
+		String module = task.getWrappedTask().getModuleName();
+		if (module == null) {
+			module = PLUGIN_MODULE;
+		}
+		(task.getLane() == Lane.BULK ? bulk_ : interactive_).add(module, task);
+		signal_.release();
+	}
+
+	/**
+	 * Called before a thread waits for the result of a task. If the thread is a worker, a spare worker takes its place and its bulk slot
+	 * is given back until {@link #endBlocking()}.
+	 *
+	 * @return true if the thread is a worker and {@link #endBlocking()} must be called after the wait
+	 */
+	boolean beginBlocking() {
+		Worker worker = currentWorker_.get();
+		if (worker == null) {
+			return false;
+		}
+		if (worker.bulk_) {
+			runningBulk_.decrementAndGet();
+		}
+		int blocked = blocked_.incrementAndGet();
+		int spares = spares_.get();
+		while (spares < blocked && !stopped_) {
+			if (spares_.compareAndSet(spares, spares + 1)) {
+				Worker spare = new Worker(true);
+				spare.thread_ = threadFactory_.newThread(spare);
+				spareWorkers_.add(spare);
+				spare.thread_.start();
+				break;
+			}
+			spares = spares_.get();
+		}
+		signal_.release();
+		return true;
+	}
+
+	/**
+	 * Called after a wait that was started with {@link #beginBlocking()}. The bulk slot is taken back, even if this exceeds
+	 * <code>maxBulk</code> until the task ends.
+	 */
+	void endBlocking() {
+		Worker worker = currentWorker_.get();
+		blocked_.decrementAndGet();
+		if (worker != null && worker.bulk_) {
+			runningBulk_.incrementAndGet();
+		}
+	}
+
+	private boolean retireSpare() {
+		int spares = spares_.get();
+		while (spares > blocked_.get()) {
+			if (spares_.compareAndSet(spares, spares - 1)) {
+				return true;
+			}
+			spares = spares_.get();
+		}
+		return false;
+	}
+
+	private boolean reserveBulk() {
+		int running = runningBulk_.get();
+		while (running < maxBulk_) {
+			if (runningBulk_.compareAndSet(running, running + 1)) {
+				return true;
+			}
+			running = runningBulk_.get();
+		}
+		return false;
+	}
+
+	private DominoFutureTask<?> nextTask() {
+		DominoFutureTask<?> task = interactive_.poll();
+		if (task != null) {
+			return task;
+		}
+		if (bulk_.size() > 0 && reserveBulk()) {
+			task = bulk_.poll();
+			if (task != null) {
+				return task;
+			}
+			runningBulk_.decrementAndGet();
+		}
+		return null;
+	}
+
+	private void runTask(final Worker worker, final DominoFutureTask<?> task) {
+		LaneStatistics stats = getStatistics(task.getLane());
+		long start = System.nanoTime();
+		stats.started(task.markStarted(start));
+		worker.bulk_ = task.getLane() == Lane.BULK;
+		Throwable error = null;
+		executor_.beforeExecute(worker.thread_, task);
+		try {
+			task.run();
+		} catch (Throwable t) {
+			error = t;
+			log_.log(Level.WARNING, "Task '" + task.getWrappedTask().getDescription() + "' failed: " + t.toString(), t);
+		} finally {
+			if (worker.bulk_) {
+				runningBulk_.decrementAndGet();
+				worker.bulk_ = false;
+			}
+			stats.finished(System.nanoTime() - start);
+			executor_.afterExecute(task, error);
+		}
+	}
+
+	boolean remove(final Runnable task) {
+		return interactive_.remove(task) || bulk_.remove(task);
+	}
+
+	boolean isEmpty() {
+		return interactive_.size() == 0 && bulk_.size() == 0;
+	}
+
+	int getQueuedCount(final Lane lane) {
+		return lane == Lane.BULK ? bulk_.size() : lane == Lane.INTERACTIVE ? interactive_.size() : 0;
+	}
+
+	int getActiveCount() {
+		return statistics_[Lane.INTERACTIVE.ordinal()].running_.get() + statistics_[Lane.BULK.ordinal()].running_.get();
+	}
+
+	int getWorkerCount() {
+		return workers_.length;
+	}
+
+	int getSpareCount() {
+		return spareWorkers_.size();
+	}
+
+	int getMaxBulk() {
+		return maxBulk_;
+	}
+
+	int getModuleCount(final Lane lane) {
+		return lane == Lane.BULK ? bulk_.moduleCount() : lane == Lane.INTERACTIVE ? interactive_.moduleCount() : 0;
+	}
+
+	private List<Worker> allWorkers() {
+		List<Worker> ret = new ArrayList<Worker>(workers_.length + spareWorkers_.size());
+		for (Worker worker : workers_) {
+			ret.add(worker);
+		}
+		ret.addAll(spareWorkers_);
+		return ret;
+	}
+
+	/**
+	 * Lets the workers finish the queued tasks and end
+	 */
+	void shutdown() {
+		stopped_ = true;
+		signal_.release(workers_.length + spareWorkers_.size());
+	}
+
+	/**
+	 * Stops the workers and returns the tasks that were not started
+	 */
+	List<Runnable> shutdownNow() {
+		stopped_ = true;
+		stopNow_ = true;
+		List<Runnable> ret = new ArrayList<Runnable>();
+		ret.addAll(interactive_.drain());
+		ret.addAll(bulk_.drain());
+		for (Worker worker : allWorkers()) {
+			worker.thread_.interrupt();
+		}
+		return ret;
+	}
+
+	/**
+	 * Waits for the workers to end
+	 *
+	 * @return true if all workers ended
+	 */
+	boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long end = System.nanoTime() + unit.toNanos(timeout);
+		for (Worker worker : allWorkers()) {
+			long remaining = end - System.nanoTime();
+			if (remaining > 0) {
+				TimeUnit.NANOSECONDS.timedJoin(worker.thread_, remaining);
+			}
+			if (worker.thread_.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean isTerminated() {
+		for (Worker worker : allWorkers()) {
+			if (worker.thread_.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -28,6 +28,7 @@ import java.util.Vector;
 import lotus.domino.NotesException;
 
 import org.openntf.domino.Document;
+import org.openntf.domino.big.impl.NoteIdSet;
 import org.openntf.domino.iterators.DocumentList;
 
 /**
@@ -504,6 +505,7 @@ public enum CollectionUtils {
 			} else {
 				lotus.domino.Database db = collection.getParent();
 				lotus.domino.NoteCollection nc = db.createNoteCollection(false);
+				nc.add(collection);
 				result = nc.getNoteIDs();
 				nc.recycle();
 			}
@@ -512,4 +514,34 @@ public enum CollectionUtils {
 		}
 		return result;
 	}
+
+	/**
+	 * Returns the Note IDs of the given (Notes) collection as a set
+	 * 
+	 * @param collection
+	 *            the DocumentCollection
+	 * @return a new set of NoteIDs, that can be changed by the caller
+	 */
+	public static NoteIdSet getNoteIdSet(final lotus.domino.DocumentCollection collection) {
+		if (collection instanceof DocumentList) {
+			return ((DocumentList) collection).getNidSet().clone();
+		}
+		return new NoteIdSet(getNoteIDs(collection));
+	}
+
+	/**
+	 * Returns the Note IDs of the given (Notes) NoteCollection as a set
+	 * 
+	 * @param collection
+	 *            the NoteCollection
+	 * @return a new set of NoteIDs, that can be changed by the caller
+	 */
+	public static NoteIdSet getNoteIdSet(final lotus.domino.NoteCollection collection) {
+		try {
+			return new NoteIdSet(collection.getNoteIDs());
+		} catch (NotesException e) {
+			DominoUtils.handleException(e);
+			return new NoteIdSet();
+		}
+	}
 }
@@ -15,12 +15,11 @@
  */
 package org.openntf.domino.utils;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
 import java.io.Externalizable;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -33,7 +32,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 import org.openntf.domino.Database;
 import org.openntf.domino.Document;
@@ -109,16 +107,22 @@ public enum Documents {
 	 *             the throwable
 	 */
 	@SuppressWarnings("unchecked")
-	public static Object restoreState(final Document doc, final String itemName, final MIMEEntity entity) throws Exception {
+	public static Object restoreState(final Document doc, final String itemName, MIMEEntity entity) throws Exception {
 		Session session = doc.getAncestorSession();
 		Object result = null;
+		if (entity == null) {
+			entity = doc.getMIMEEntity(itemName);
+			if (entity == null) {
+				return null;
+			}
+		}
 		Stream mimeStream = session.createStream();
-		Class<?> chkClass = null;
+		String className = null;
 		String allHeaders = entity.getHeaders();
 		MIMEHeader javaClassHeader = entity.getNthHeader("X-Java-Class");
 		if (javaClassHeader != null) {
-			String className = javaClassHeader.getHeaderVal();
-			chkClass = DominoUtils.getClass(className);
+			className = javaClassHeader.getHeaderVal();
+			Class<?> chkClass = DominoUtils.getClass(className);
 			if (chkClass == null) {
 				log_.log(Level.SEVERE, "Unable to load class " + className + " from currentThread classLoader"
 						+ " so object deserialization is likely to fail...");
@@ -135,40 +139,41 @@ public enum Documents {
 		//		byte[] stateBytes = streamOut.toByteArray();
 		//		ByteArrayInputStream byteStream = new ByteArrayInputStream(stateBytes);
 		InputStream is = new Streams.MIMEBufferedInputStream(mimeStream);
-		ObjectInputStream objectStream;
 
 		if (allHeaders == null) {
 			//			System.out.println("No headers available. Testing gzip by experimentation...");
-			try {
-				GZIPInputStream zipStream = new GZIPInputStream(is);
-				objectStream = new LoaderObjectInputStream(zipStream);
-			} catch (Exception ioe) {
-				objectStream = new LoaderObjectInputStream(is);
+			is = new BufferedInputStream(is);
+			is.mark(2);
+			int magic = is.read() | (is.read() << 8);
+			is.reset();
+			if (magic == GZIPInputStream.GZIP_MAGIC) {
+				is = new GZIPInputStream(is);
 			}
 		} else if (allHeaders.toLowerCase().contains("content-encoding: gzip")) {
-			//			GZIPInputStream zipStream = new GZIPInputStream(byteStream);
-			GZIPInputStream zipStream = new GZIPInputStream(is);
-			objectStream = new LoaderObjectInputStream(zipStream);
-		} else {
-			objectStream = new LoaderObjectInputStream(is);
+			is = new GZIPInputStream(is);
 		}
 
 		// There are three potential storage forms: Externalizable, Serializable, and StateHolder, distinguished by type or header
 		if ("x-java-externalized-object".equals(entity.getContentSubType())) {
-			Class<Externalizable> externalizableClass = (Class<Externalizable>) DominoUtils.getClass(entity.getNthHeader("X-Java-Class")
-					.getHeaderVal());
+			Class<Externalizable> externalizableClass = (Class<Externalizable>) DominoUtils.getClass(className);
 			Externalizable restored = externalizableClass.newInstance();
-			restored.readExternal(objectStream);
+			restored.readExternal(new LoaderObjectInputStream(is));
 			result = restored;
 		} else {
+			MIMEHeader codecHeader = entity.getNthHeader(MIMEBeanCodecs.CODEC_HEADER);
+			String codecName = codecHeader == null ? null : codecHeader.getHeaderVal();
 			Object restored = null;
 			try {
-				restored = objectStream.readObject();
+				MIMEBeanCodec codec = MIMEBeanCodecs.getCodec(codecName);
+				if (codec == null) {
+					throw new ClassNotFoundException("No MIMEBean codec registered with name " + codecName);
+				}
+				restored = codec.decode(is);
 			} catch (Throwable t) {
 				int curCount = RESTORE_ERR_COUNT.incrementAndGet();
 				if (curCount < 20) {
-					System.err.println("Unable to restore an object from item " + itemName + " with expect class " + chkClass.getName()
-							+ " due to a " + t.getClass().getSimpleName() + " for the " + curCount + " time. Message: " + t.getMessage());
+					System.err.println("Unable to restore an object from item " + itemName + " with expect class " + className + " due to a "
+							+ t.getClass().getSimpleName() + " for the " + curCount + " time. Message: " + t.getMessage());
 					t.printStackTrace();
 				}
 			}
@@ -286,24 +291,28 @@ public enum Documents {
 				}
 			}
 		}
-		ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-		ObjectOutputStream objectStream = compress ? new ObjectOutputStream(new GZIPOutputStream(byteStream)) : new ObjectOutputStream(
-				byteStream);
+		// The value is written straight into the Notes stream, in blocks
+		Stream mimeStream = session.createStream();
+		OutputStream out = new Streams.MIMEBufferedOutputStream(mimeStream);
+		if (compress) {
+			out = MIMEBeanCodecs.newCompressingStream(out);
+		}
 		String contentType = null;
+		MIMEBeanCodec codec = null;
 		// Prefer externalization if available
 		if (object instanceof Externalizable) {
+			ObjectOutputStream objectStream = new ObjectOutputStream(out);
 			((Externalizable) object).writeExternal(objectStream);
+			objectStream.flush();
 			contentType = "application/x-java-externalized-object";
 		} else {
 			//			System.out.println("TEMP DEBUG Writing a " + object.getClass().getName() + " to a MIME Bean");
-			objectStream.writeObject(object);
+			codec = MIMEBeanCodecs.getCodecFor(object);
+			codec.encode(object, out);
 			contentType = "application/x-java-serialized-object";
 		}
+		out.close();
 
-		objectStream.flush();
-		objectStream.close();
-
-		Stream mimeStream = session.createStream();
 		MIMEEntity previousState = doc.getMIMEEntity(itemName);
 		MIMEEntity entity = null;
 		if (previousState == null) {
@@ -323,6 +332,7 @@ public enum Documents {
 		try {
 			MIMEHeader javaClass = entity.getNthHeader("X-Java-Class");
 			MIMEHeader contentEncoding = entity.getNthHeader("Content-Encoding");
+			MIMEHeader storageCodec = entity.getNthHeader(MIMEBeanCodecs.CODEC_HEADER);
 			if (javaClass == null) {
 				javaClass = entity.createHeader("X-Java-Class");
 			} else {
@@ -354,6 +364,16 @@ public enum Documents {
 				}
 			}
 
+			// Java serialization is written without the header, so older versions can still read the value
+			if (codec != null && !MIMEBeanCodecs.JAVA.equals(codec.getName())) {
+				if (storageCodec == null) {
+					storageCodec = entity.createHeader(MIMEBeanCodecs.CODEC_HEADER);
+				}
+				storageCodec.setHeaderVal(codec.getName());
+			} else if (storageCodec != null) {
+				storageCodec.remove();
+			}
+
 			// javaClass.recycle();
 
 			if (headers != null) {
@@ -366,10 +386,7 @@ public enum Documents {
 					// paramHeader.recycle();
 				}
 			}
-			byte[] bytes = byteStream.toByteArray();
-			ByteArrayInputStream byteIn = new ByteArrayInputStream(bytes);
-
-			mimeStream.setContents(byteIn);
+			mimeStream.setPosition(0);
 			entity.setContentFromBytes(mimeStream, contentType, MIMEEntity.ENC_NONE);
 		} finally {
 			// entity.recycle();
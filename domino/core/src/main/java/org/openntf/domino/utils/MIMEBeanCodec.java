@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * Writes and reads the value of a MIMEBean.
+ *
+ * <p>
+ * The name of the codec is stored in the X-Storage-Codec header of the MIME entity, so a value is always read with the codec it was written
+ * with. Codecs are registered with {@link MIMEBeanCodecs#register(MIMEBeanCodec)}. Compression is applied around the codec, so codecs
+ * only deal with the uncompressed bytes.
+ * </p>
+ */
+public interface MIMEBeanCodec {
+
+	/**
+	 * @return the name stored in the MIME header. Must be unique
+	 */
+	public String getName();
+
+	/**
+	 * @param object
+	 *            the value to be saved
+	 * @return true if the codec can write the value and read it back as an equal object
+	 */
+	public boolean canEncode(Serializable object);
+
+	/**
+	 * Writes the value. The stream must not be closed.
+	 */
+	public void encode(Serializable object, OutputStream out) throws IOException;
+
+	/**
+	 * Reads a value written by {@link #encode(Serializable, OutputStream)}.
+	 */
+	public Object decode(InputStream in) throws IOException, ClassNotFoundException;
+}
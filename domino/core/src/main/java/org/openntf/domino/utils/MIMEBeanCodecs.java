@@ -0,0 +1,507 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.openntf.domino.utils.DominoUtils.LoaderObjectInputStream;
+
+/**
+ * The codecs for MIMEBean values, and the settings that decide how new values are written.
+ *
+ * <p>
+ * Two codecs are built in. {@link #JAVA} is standard Java serialization and can write any Serializable. {@link #COMPACT} writes a tagged
+ * binary format for strings, boxed primitives, dates, byte and String arrays, and the common JDK lists, sets and maps of those. It needs no
+ * class descriptors and no reflection, so values like the $$ItemInfo map are smaller and much faster to read than with Java
+ * serialization. Values it can't represent exactly are written with Java serialization instead.
+ * </p>
+ *
+ * <p>
+ * The default codec is {@link #JAVA}, because values written with another codec can't be read by older versions of the API. Call
+ * {@link #setDefaultCodec(String)} with {@link #COMPACT} once all readers are up to date.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public enum MIMEBeanCodecs {
+	;
+
+	/** the header that holds the codec name. Values without it were written with Java serialization */
+	public static final String CODEC_HEADER = "X-Storage-Codec";
+	public static final String JAVA = "java";
+	public static final String COMPACT = "compact";
+
+	private static final Map<String, MIMEBeanCodec> codecs_ = new ConcurrentHashMap<String, MIMEBeanCodec>();
+	private static volatile MIMEBeanCodec defaultCodec_;
+	private static volatile int compressionLevel_ = Deflater.DEFAULT_COMPRESSION;
+
+	static {
+		register(new JavaCodec());
+		register(new CompactCodec());
+		defaultCodec_ = codecs_.get(JAVA);
+	}
+
+	public static void register(final MIMEBeanCodec codec) {
+		codecs_.put(codec.getName(), codec);
+	}
+
+	/**
+	 * @return the codec with the name, or null if none is registered. A null name is Java serialization
+	 */
+	public static MIMEBeanCodec getCodec(final String name) {
+		return codecs_.get(name == null ? JAVA : name);
+	}
+
+	public static MIMEBeanCodec getDefaultCodec() {
+		return defaultCodec_;
+	}
+
+	/**
+	 * @param name
+	 *            the name of a registered codec to write new values with
+	 */
+	public static void setDefaultCodec(final String name) {
+		MIMEBeanCodec codec = getCodec(name);
+		if (codec == null) {
+			throw new IllegalArgumentException("No MIMEBean codec registered with name " + name);
+		}
+		defaultCodec_ = codec;
+	}
+
+	/**
+	 * @return the default codec if it can write the object, Java serialization otherwise
+	 */
+	public static MIMEBeanCodec getCodecFor(final Serializable object) {
+		MIMEBeanCodec codec = defaultCodec_;
+		if (codec.canEncode(object)) {
+			return codec;
+		}
+		return codecs_.get(JAVA);
+	}
+
+	public static int getCompressionLevel() {
+		return compressionLevel_;
+	}
+
+	/**
+	 * @param level
+	 *            the deflate level of compressed values, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+	 *            {@link Deflater#DEFAULT_COMPRESSION}. BEST_SPEED is several times faster than the default for about 10% more bytes
+	 */
+	public static void setCompressionLevel(final int level) {
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level " + level);
+		}
+		compressionLevel_ = level;
+	}
+
+	/**
+	 * @return a gzip stream with the configured compression level
+	 */
+	public static GZIPOutputStream newCompressingStream(final OutputStream out) throws IOException {
+		return new LevelGZIPOutputStream(out, compressionLevel_);
+	}
+
+	private static class LevelGZIPOutputStream extends GZIPOutputStream {
+		LevelGZIPOutputStream(final OutputStream out, final int level) throws IOException {
+			super(out, 8192);
+			def.setLevel(level);
+		}
+	}
+
+	/**
+	 * Standard Java serialization. This is how MIMEBeans were always written.
+	 */
+	public static class JavaCodec implements MIMEBeanCodec {
+		@Override
+		public String getName() {
+			return JAVA;
+		}
+
+		@Override
+		public boolean canEncode(final Serializable object) {
+			return true;
+		}
+
+		@Override
+		public void encode(final Serializable object, final OutputStream out) throws IOException {
+			ObjectOutputStream objectStream = new ObjectOutputStream(out);
+			objectStream.writeObject(object);
+			objectStream.flush();
+		}
+
+		@Override
+		public Object decode(final InputStream in) throws IOException, ClassNotFoundException {
+			return new LoaderObjectInputStream(in).readObject();
+		}
+	}
+
+	/**
+	 * A tagged binary format for plain values. Collections are only written if their class is one that can be created again as is, and
+	 * each collection may occur only once in the value, so shared and cyclic references go to Java serialization.
+	 */
+	public static class CompactCodec implements MIMEBeanCodec {
+		private static final int VERSION = 1;
+		private static final int MAX_DEPTH = 64;
+
+		private static final byte NULL = 0;
+		private static final byte STRING = 1;
+		private static final byte INTEGER = 2;
+		private static final byte LONG = 3;
+		private static final byte DOUBLE = 4;
+		private static final byte FLOAT = 5;
+		private static final byte SHORT = 6;
+		private static final byte BYTE = 7;
+		private static final byte TRUE = 8;
+		private static final byte FALSE = 9;
+		private static final byte CHARACTER = 10;
+		private static final byte DATE = 11;
+		private static final byte BYTES = 12;
+		private static final byte STRINGS = 13;
+		private static final byte LIST = 14;
+		private static final byte SET = 15;
+		private static final byte MAP = 16;
+		/** a string that was written before, by its index */
+		private static final byte STRING_REF = 17;
+
+		private static final List<Class<?>> LIST_CLASSES = Arrays.<Class<?>> asList(ArrayList.class, LinkedList.class,
+				Vector.class);
+		private static final List<Class<?>> SET_CLASSES = Arrays.<Class<?>> asList(HashSet.class, LinkedHashSet.class,
+				TreeSet.class);
+		private static final List<Class<?>> MAP_CLASSES = Arrays.<Class<?>> asList(HashMap.class, LinkedHashMap.class,
+				TreeMap.class, Hashtable.class);
+
+		@Override
+		public String getName() {
+			return COMPACT;
+		}
+
+		@Override
+		public boolean canEncode(final Serializable object) {
+			return isSupported(object, new IdentityHashMap<Object, Boolean>(), 0);
+		}
+
+		private static boolean isSupported(final Object value, final Map<Object, Boolean> seen, final int depth) {
+			if (value == null) {
+				return true;
+			}
+			Class<?> clazz = value.getClass();
+			if (clazz == String.class || clazz == Integer.class || clazz == Long.class || clazz == Double.class || clazz == Float.class
+					|| clazz == Short.class || clazz == Byte.class || clazz == Boolean.class || clazz == Character.class
+					|| clazz == Date.class || clazz == byte[].class) {
+				return true;
+			}
+			if (clazz == String[].class) {
+				for (String s : (String[]) value) {
+					if (s == null) {
+						return false;
+					}
+				}
+				return true;
+			}
+			if (depth >= MAX_DEPTH || seen.put(value, Boolean.TRUE) != null) {
+				return false;
+			}
+			if (LIST_CLASSES.contains(clazz) || SET_CLASSES.contains(clazz)) {
+				if (clazz == TreeSet.class && ((TreeSet<?>) value).comparator() != null) {
+					return false;
+				}
+				for (Object element : (Collection<?>) value) {
+					if (!isSupported(element, seen, depth + 1)) {
+						return false;
+					}
+				}
+				return true;
+			}
+			if (MAP_CLASSES.contains(clazz)) {
+				if (clazz == TreeMap.class && ((TreeMap<?, ?>) value).comparator() != null) {
+					return false;
+				}
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+					if (!isSupported(entry.getKey(), seen, depth + 1) || !isSupported(entry.getValue(), seen, depth + 1)) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void encode(final Serializable object, final OutputStream out) throws IOException {
+			DataOutputStream data = new DataOutputStream(out);
+			data.writeByte(VERSION);
+			write(data, object, new HashMap<String, Integer>());
+			data.flush();
+		}
+
+		/*
+		 * Item names, class names and map keys repeat a lot, so each string is written once and referred to by its index after that
+		 */
+		private static void writeString(final DataOutputStream data, final String value, final Map<String, Integer> strings)
+				throws IOException {
+			Integer index = strings.get(value);
+			if (index == null) {
+				strings.put(value, strings.size());
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				data.writeByte(STRING);
+				data.writeInt(bytes.length);
+				data.write(bytes);
+			} else {
+				data.writeByte(STRING_REF);
+				data.writeInt(index);
+			}
+		}
+
+		private static void write(final DataOutputStream data, final Object value, final Map<String, Integer> strings)
+				throws IOException {
+			if (value == null) {
+				data.writeByte(NULL);
+				return;
+			}
+			Class<?> clazz = value.getClass();
+			if (clazz == String.class) {
+				writeString(data, (String) value, strings);
+			} else if (clazz == Integer.class) {
+				data.writeByte(INTEGER);
+				data.writeInt((Integer) value);
+			} else if (clazz == Long.class) {
+				data.writeByte(LONG);
+				data.writeLong((Long) value);
+			} else if (clazz == Double.class) {
+				data.writeByte(DOUBLE);
+				data.writeDouble((Double) value);
+			} else if (clazz == Float.class) {
+				data.writeByte(FLOAT);
+				data.writeFloat((Float) value);
+			} else if (clazz == Short.class) {
+				data.writeByte(SHORT);
+				data.writeShort((Short) value);
+			} else if (clazz == Byte.class) {
+				data.writeByte(BYTE);
+				data.writeByte((Byte) value);
+			} else if (clazz == Boolean.class) {
+				data.writeByte((Boolean) value ? TRUE : FALSE);
+			} else if (clazz == Character.class) {
+				data.writeByte(CHARACTER);
+				data.writeChar((Character) value);
+			} else if (clazz == Date.class) {
+				data.writeByte(DATE);
+				data.writeLong(((Date) value).getTime());
+			} else if (clazz == byte[].class) {
+				byte[] bytes = (byte[]) value;
+				data.writeByte(BYTES);
+				data.writeInt(bytes.length);
+				data.write(bytes);
+			} else if (clazz == String[].class) {
+				String[] array = (String[]) value;
+				data.writeByte(STRINGS);
+				data.writeInt(array.length);
+				for (String s : array) {
+					writeString(data, s, strings);
+				}
+			} else if (LIST_CLASSES.contains(clazz) || SET_CLASSES.contains(clazz)) {
+				Collection<?> collection = (Collection<?>) value;
+				boolean isList = LIST_CLASSES.contains(clazz);
+				data.writeByte(isList ? LIST : SET);
+				data.writeByte(isList ? LIST_CLASSES.indexOf(clazz) : SET_CLASSES.indexOf(clazz));
+				data.writeInt(collection.size());
+				for (Object element : collection) {
+					write(data, element, strings);
+				}
+			} else if (MAP_CLASSES.contains(clazz)) {
+				Map<?, ?> map = (Map<?, ?>) value;
+				data.writeByte(MAP);
+				data.writeByte(MAP_CLASSES.indexOf(clazz));
+				data.writeInt(map.size());
+				for (Map.Entry<?, ?> entry : map.entrySet()) {
+					write(data, entry.getKey(), strings);
+					write(data, entry.getValue(), strings);
+				}
+			} else {
+				throw new IOException("The compact MIMEBean codec cannot write a " + clazz.getName());
+			}
+		}
+
+		@Override
+		public Object decode(final InputStream in) throws IOException, ClassNotFoundException {
+			DataInputStream data = new DataInputStream(in);
+			int version = data.readUnsignedByte();
+			if (version != VERSION) {
+				throw new StreamCorruptedException("Unknown compact MIMEBean version " + version);
+			}
+			return read(data, new ArrayList<String>());
+		}
+
+		private static String readString(final DataInputStream data, final byte tag, final List<String> strings) throws IOException {
+			if (tag == STRING_REF) {
+				int index = data.readInt();
+				if (index < 0 || index >= strings.size()) {
+					throw new StreamCorruptedException("Invalid string reference " + index);
+				}
+				return strings.get(index);
+			} else if (tag == STRING) {
+				byte[] bytes = new byte[data.readInt()];
+				data.readFully(bytes);
+				String result = new String(bytes, StandardCharsets.UTF_8);
+				strings.add(result);
+				return result;
+			}
+			throw new StreamCorruptedException("Expected a string but found tag " + tag);
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private static Object read(final DataInputStream data, final List<String> strings) throws IOException {
+			byte tag = data.readByte();
+			switch (tag) {
+			case NULL:
+				return null;
+			case STRING:
+			case STRING_REF:
+				return readString(data, tag, strings);
+			case INTEGER:
+				return data.readInt();
+			case LONG:
+				return data.readLong();
+			case DOUBLE:
+				return data.readDouble();
+			case FLOAT:
+				return data.readFloat();
+			case SHORT:
+				return data.readShort();
+			case BYTE:
+				return data.readByte();
+			case TRUE:
+				return Boolean.TRUE;
+			case FALSE:
+				return Boolean.FALSE;
+			case CHARACTER:
+				return data.readChar();
+			case DATE:
+				return new Date(data.readLong());
+			case BYTES: {
+				byte[] bytes = new byte[data.readInt()];
+				data.readFully(bytes);
+				return bytes;
+			}
+			case STRINGS: {
+				String[] array = new String[data.readInt()];
+				for (int i = 0; i < array.length; i++) {
+					array[i] = readString(data, data.readByte(), strings);
+				}
+				return array;
+			}
+			case LIST:
+			case SET: {
+				int kind = data.readByte();
+				int size = data.readInt();
+				Collection collection;
+				if (tag == LIST) {
+					switch (kind) {
+					case 0:
+						collection = new ArrayList(size);
+						break;
+					case 1:
+						collection = new LinkedList();
+						break;
+					case 2:
+						collection = new Vector(size);
+						break;
+					default:
+						throw new StreamCorruptedException("Unknown list kind " + kind);
+					}
+				} else {
+					switch (kind) {
+					case 0:
+						collection = new HashSet(capacity(size));
+						break;
+					case 1:
+						collection = new LinkedHashSet(capacity(size));
+						break;
+					case 2:
+						collection = new TreeSet();
+						break;
+					default:
+						throw new StreamCorruptedException("Unknown set kind " + kind);
+					}
+				}
+				for (int i = 0; i < size; i++) {
+					collection.add(read(data, strings));
+				}
+				return collection;
+			}
+			case MAP: {
+				int kind = data.readByte();
+				int size = data.readInt();
+				Map map;
+				switch (kind) {
+				case 0:
+					map = new HashMap(capacity(size));
+					break;
+				case 1:
+					map = new LinkedHashMap(capacity(size));
+					break;
+				case 2:
+					map = new TreeMap();
+					break;
+				case 3:
+					map = new Hashtable(capacity(size));
+					break;
+				default:
+					throw new StreamCorruptedException("Unknown map kind " + kind);
+				}
+				for (int i = 0; i < size; i++) {
+					Object key = read(data, strings);
+					map.put(key, read(data, strings));
+				}
+				return map;
+			}
+			default:
+				throw new StreamCorruptedException("Unknown compact MIMEBean tag " + tag);
+			}
+		}
+
+		private static int capacity(final int size) {
+			return size < 3 ? 4 : (int) (size / 0.75f) + 1;
+		}
+	}
+}
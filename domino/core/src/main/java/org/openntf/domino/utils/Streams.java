@@ -17,6 +17,8 @@ package org.openntf.domino.utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import lotus.domino.NotesException;
 import lotus.domino.Stream;
@@ -219,6 +221,74 @@ public enum Streams {
 		}
 	}
 
+	/**
+	 * Writes to a Stream in blocks, so that the data never has to be held in memory as a whole.
+	 */
+	public static class MIMEBufferedOutputStream extends OutputStream {
+		private static final int DEFAULT_BUFFER_SIZE = 16384;
+
+		private Stream os;
+		private byte[] buffer;
+		private int buffered;
+
+		public MIMEBufferedOutputStream(final Stream os, final int size) {
+			this.os = os;
+			this.buffer = new byte[size];
+		}
+
+		public MIMEBufferedOutputStream(final Stream os) {
+			this(os, DEFAULT_BUFFER_SIZE);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			if (buffered == buffer.length) {
+				flushBuffer();
+			}
+			buffer[buffered++] = (byte) b;
+		}
+
+		@Override
+		public void write(final byte[] array, int off, int length) throws IOException {
+			while (length > 0) {
+				if (buffered == buffer.length) {
+					flushBuffer();
+				}
+				int toWrite = Math.min(length, buffer.length - buffered);
+				System.arraycopy(array, off, buffer, buffered, toWrite);
+				buffered += toWrite;
+				off += toWrite;
+				length -= toWrite;
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			if (buffered > 0) {
+				try {
+					// Stream.write always writes the whole array
+					os.write(buffered == buffer.length ? buffer : Arrays.copyOf(buffer, buffered));
+				} catch (NotesException ne) {
+					DominoUtils.handleException(ne);
+					throw new IOException("Unable to write to stream");
+				}
+				buffered = 0;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+		}
+
+		/**
+		 * Writes the remaining bytes. The Stream stays open, so it can be handed to a MIMEEntity.
+		 */
+		@Override
+		public void close() throws IOException {
+			flushBuffer();
+		}
+	}
+
 	public static int getStreamBytes(final Stream stream) {
 		try {
 			return stream.getBytes();
@@ -39,8 +39,10 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
@@ -80,7 +82,7 @@ public enum TypeUtils {
 	;
 
 	public static final String[] DEFAULT_STR_ARRAY = { "" };
-	protected static final List<CustomConverter> converterList_ = new ArrayList<CustomConverter>();
+	protected static final List<CustomConverter> converterList_ = new CopyOnWriteArrayList<CustomConverter>();
 	//	protected static final List<Class<?>> converterFromList_ = new ArrayList<Class<?>>();
 
 	private static final ThreadLocal<SimpleDateFormat> DEFAULT_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss")); //$NON-NLS-1$
@@ -124,8 +126,26 @@ public enum TypeUtils {
 		}
 	}
 
+	/* the converter found for a class, replaced whenever the list changes */
+	private static volatile ClassValue<Optional<CustomConverter>> customConverterCache_ = newCustomConverterCache();
+
+	private static ClassValue<Optional<CustomConverter>> newCustomConverterCache() {
+		return new ClassValue<Optional<CustomConverter>>() {
+			@Override
+			protected Optional<CustomConverter> computeValue(final Class<?> fromClass) {
+				for (CustomConverter converter : converterList_) {
+					if (converter.isCompatible(fromClass)) {
+						return Optional.of(converter);
+					}
+				}
+				return Optional.empty();
+			}
+		};
+	}
+
 	public static synchronized void addCustomConverter(final CustomConverter converter) {
 		converterList_.add(converter);
+		customConverterCache_ = newCustomConverterCache();
 		//		System.out.println("TEMP DEBUG added custom converter");
 		//		converterFromList_.add(converter.getFrom());
 
@@ -133,6 +153,7 @@ public enum TypeUtils {
 
 	public static synchronized void removeCustomConverter(final CustomConverter converter) {
 		converterList_.remove(converter);
+		customConverterCache_ = newCustomConverterCache();
 	}
 
 	public static List<CustomConverter> getConverterList() {
@@ -140,13 +161,10 @@ public enum TypeUtils {
 	}
 
 	protected static CustomConverter findCustomConverter(final Class<?> fromClass) {
-		for (CustomConverter converter : getConverterList()) {
-			if (converter.isCompatible(fromClass)) {
-				//				System.out.println("TEMP DEBUG found custom converter");
-				return converter;
-			}
+		if (converterList_.isEmpty()) {
+			return null;
 		}
-		return null;
+		return customConverterCache_.get(fromClass).orElse(null);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -365,168 +383,192 @@ public enum TypeUtils {
 		return convertToTarget(o, type, session);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings("unchecked")
 	public static <T> T convertToTarget(final Object o, final Class<T> type, final Session session) {
 		if (o == null) {
 			return null;
 		}
-		Object result = null;
 		if (type.isAssignableFrom(o.getClass())) {
 			return (T) o;
 		}
-		if (o instanceof Collection) {
-			result = collectionToClass((Collection) o, type, session);
-		}
-		if (type.isEnum() && o instanceof String) {
-			result = toEnum(o, type);
+		Object result = OBJECT_CONVERTERS.get(type).convert(o, session);
+		return checkResult(result, type);
+	}
+
+	/**
+	 * Converts a value to the target type of the converter
+	 */
+	private interface ObjectConverter {
+		Object convert(Object o, Session session);
+	}
+
+	/**
+	 * Converts the values of an item to the target type of the converter
+	 */
+	private interface CollectionConverter {
+		Object convert(Collection<?> v, Session session);
+	}
+
+	/*
+	 * Which conversion applies only depends on the target type, so it is resolved once per type. A ClassValue keeps the converter with
+	 * the class, so types from an NSF can still be unloaded
+	 */
+	private static final ClassValue<ObjectConverter> OBJECT_CONVERTERS = new ClassValue<ObjectConverter>() {
+		@Override
+		protected ObjectConverter computeValue(final Class<?> type) {
+			return resolveObjectConverter(type);
 		}
-		Class<?> CType = null;
-		if (type.equals(String[].class)) {
-			result = toStrings(o);
-			return (T) result;
+	};
+
+	private static final ClassValue<CollectionConverter> COLLECTION_CONVERTERS = new ClassValue<CollectionConverter>() {
+		@Override
+		protected CollectionConverter computeValue(final Class<?> type) {
+			return resolveCollectionConverter(type);
 		}
-		if (type.isArray()) {
-			if (String[].class.equals(type)) {
-				// System.out.println("Shallow route to string array");
-				result = toStrings(o);
-			} else {
-				CType = type.getComponentType();
-				if (CType.isPrimitive()) {
-					try {
-						result = toPrimitiveArray(o, CType);
-					} catch (DataNotCompatibleException e) {
-						throw e;
-					}
-				} else if (Number.class.isAssignableFrom(CType)) {
-					result = toNumberArray(o, CType);
-				} else {
-					if (CType == String.class) {
-						// System.out.println("Deep route to string array");
-						result = toStrings(o);
-					} else if (CType == BigString.class) {
-						result = toBigStrings(o);
-					} else if (CType == Pattern.class) {
-						result = toPatterns(o);
-					} else if (CType == java.lang.Enum.class || CType.isEnum()) {
-						result = toEnums(o);
-					} else if (Class.class.isAssignableFrom(CType)) {
-						result = toClasses(o);
-					} else if (Formula.class.isAssignableFrom(CType)) {
-						result = toFormulas(o);
-					} else if (CType == Date.class) {
-						result = toDates(o);
-					} else if (DateTime.class.isAssignableFrom(CType)) {
-						result = toDateTimes(o, session);
-					} else if (DateRange.class.isAssignableFrom(CType)) {
-						result = toDateRanges(o, session);
-					} else if (Name.class.isAssignableFrom(CType)) {
-						result = toNames(o, session);
-					} else if (CType == Boolean.class) {
-						result = toBooleans(o);
-					} else if (CType == java.lang.Object.class) {
-						result = toObjects(o);
-					} else {
-						throw new UnimplementedException("Arrays for " + CType.getName() + " not yet implemented");
-					}
+	};
+
+	@SuppressWarnings("unchecked")
+	private static <T> T checkResult(final Object result, final Class<T> type) {
+		if (result != null && !type.isAssignableFrom(result.getClass())) {
+			if (type.isPrimitive()) {
+				if (Integer.TYPE.equals(type) && result instanceof Integer) {
+					return (T) result;
 				}
+				if (Long.TYPE.equals(type) && result instanceof Long) {
+					return (T) result;
+				}
+				if (Boolean.TYPE.equals(type) && result instanceof Boolean) {
+					return (T) result;
+				}
+				if (Double.TYPE.equals(type) && result instanceof Double) {
+					return (T) result;
+				}
+			} else {
+				log_.log(Level.WARNING, "Auto-boxing requested a " + type.getName() + " but is returning a " + result.getClass().getName());
 			}
-		} else if (type.isPrimitive()) {
-			try {
-				result = toPrimitive(o, type);
-			} catch (DataNotCompatibleException e) {
-				throw e;
-			}
+		}
+		return (T) result;
+	}
+
+	private static ObjectConverter resolveArrayConverter(final Class<?> type) {
+		if (String[].class.equals(type)) {
+			return (o, session) -> toStrings(o);
+		}
+		final Class<?> CType = type.getComponentType();
+		if (CType.isPrimitive()) {
+			return (o, session) -> toPrimitiveArray(o, CType);
+		} else if (Number.class.isAssignableFrom(CType)) {
+			return (o, session) -> toNumberArray(o, CType);
+		} else if (CType == BigString.class) {
+			return (o, session) -> toBigStrings(o);
+		} else if (CType == Pattern.class) {
+			return (o, session) -> toPatterns(o);
+		} else if (CType == java.lang.Enum.class || CType.isEnum()) {
+			return (o, session) -> toEnums(o);
+		} else if (Class.class.isAssignableFrom(CType)) {
+			return (o, session) -> toClasses(o);
+		} else if (Formula.class.isAssignableFrom(CType)) {
+			return (o, session) -> toFormulas(o);
+		} else if (CType == Date.class) {
+			return (o, session) -> toDates(o);
+		} else if (DateTime.class.isAssignableFrom(CType)) {
+			return (o, session) -> toDateTimes(o, session);
+		} else if (DateRange.class.isAssignableFrom(CType)) {
+			return (o, session) -> toDateRanges(o, session);
+		} else if (Name.class.isAssignableFrom(CType)) {
+			return (o, session) -> toNames(o, session);
+		} else if (CType == Boolean.class) {
+			return (o, session) -> toBooleans(o);
+		} else if (CType == java.lang.Object.class) {
+			return (o, session) -> toObjects(o);
 		} else {
-			if (type == String.class) {
-				result = String.valueOf(o);
-			} else if (Enum.class.isAssignableFrom(type)) {
-				String str = String.valueOf(o);
-				result = toEnum(str);
-			} else if (BigString.class.isAssignableFrom(type)) {
-				result = new BigString(String.valueOf(o));
-			} else if (Pattern.class.isAssignableFrom(type)) {
-				result = Pattern.compile(String.valueOf(o));
-			} else if (Class.class.isAssignableFrom(type)) {
-				String cn = String.valueOf(o);
-				Class<?> cls = DominoUtils.getClass(cn);
-				result = cls;
-			} else if (Formula.class.isAssignableFrom(type)) {
-				Formula formula = new org.openntf.domino.helpers.Formula(String.valueOf(o));
-				result = formula;
-			} else if (java.util.Collection.class.equals(type)) {
-				result = new ArrayList();
-				((ArrayList) result).add(o);
-			} else if (java.util.Collection.class.isAssignableFrom(type)) {
+			return (o, session) -> {
+				throw new UnimplementedException("Arrays for " + CType.getName() + " not yet implemented");
+			};
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static ObjectConverter resolveObjectConverter(final Class<?> type) {
+		if (type.isArray()) {
+			return resolveArrayConverter(type);
+		} else if (type.isPrimitive()) {
+			return (o, session) -> toPrimitive(o, type);
+		} else if (type == String.class) {
+			return (o, session) -> String.valueOf(o);
+		} else if (Enum.class.isAssignableFrom(type)) {
+			return (o, session) -> toEnum(String.valueOf(o));
+		} else if (BigString.class.isAssignableFrom(type)) {
+			return (o, session) -> new BigString(String.valueOf(o));
+		} else if (Pattern.class.isAssignableFrom(type)) {
+			return (o, session) -> Pattern.compile(String.valueOf(o));
+		} else if (Class.class.isAssignableFrom(type)) {
+			return (o, session) -> DominoUtils.getClass(String.valueOf(o));
+		} else if (Formula.class.isAssignableFrom(type)) {
+			return (o, session) -> new org.openntf.domino.helpers.Formula(String.valueOf(o));
+		} else if (java.util.Collection.class.equals(type)) {
+			return (o, session) -> {
+				ArrayList result = new ArrayList();
+				result.add(o);
+				return result;
+			};
+		} else if (java.util.Collection.class.isAssignableFrom(type)) {
+			return (o, session) -> {
 				try {
-					result = type.newInstance();
-					Collection coll = (Collection) result;
+					Collection coll = (Collection) type.newInstance();
 					coll.addAll(toSerializables(o));
+					return coll;
 				} catch (IllegalAccessException e) {
 					DominoUtils.handleException(e);
 				} catch (InstantiationException e) {
 					DominoUtils.handleException(e);
 				}
-			} else if (Date.class.isAssignableFrom(type)) {
-				result = toDate(o);
-			} else if (java.util.Calendar.class.isAssignableFrom(type)) {
+				return null;
+			};
+		} else if (Date.class.isAssignableFrom(type)) {
+			return (o, session) -> toDate(o);
+		} else if (java.util.Calendar.class.isAssignableFrom(type)) {
+			return (o, session) -> {
 				Date tmpDate = toDate(o);
 				if (null == tmpDate) {
-					result = null;
-				} else {
-					Calendar tmp = Calendar.getInstance();
-					tmp.setTime(tmpDate);
-					result = tmp;
+					return null;
 				}
-			} else if (org.openntf.domino.DateTime.class.isAssignableFrom(type)) {
-				if (session != null) {
-					result = session.createDateTime(toDate(o));
-				} else {
+				Calendar tmp = Calendar.getInstance();
+				tmp.setTime(tmpDate);
+				return tmp;
+			};
+		} else if (org.openntf.domino.DateTime.class.isAssignableFrom(type)) {
+			return (o, session) -> {
+				if (session == null) {
 					throw new IllegalArgumentException(
 							"Cannont convert a " + o.getClass().getName() + " to DateTime without a valid Session object");
 				}
-			} else if (org.openntf.domino.DateRange.class.isAssignableFrom(type)) {
-				if (session != null) {
-					Date[] dates = toDates(o);
-					result = session.createDateRange(dates[0], dates[1]);
-				} else {
+				return session.createDateTime(toDate(o));
+			};
+		} else if (org.openntf.domino.DateRange.class.isAssignableFrom(type)) {
+			return (o, session) -> {
+				if (session == null) {
 					throw new IllegalArgumentException(
 							"Cannont convert a " + o.getClass().getName() + " to DateRange without a valid Session object");
 				}
-			} else if (org.openntf.domino.Name.class.isAssignableFrom(type)) {
-				if (session != null) {
-					result = session.createName(String.valueOf(o));
-				} else {
+				Date[] dates = toDates(o);
+				return session.createDateRange(dates[0], dates[1]);
+			};
+		} else if (org.openntf.domino.Name.class.isAssignableFrom(type)) {
+			return (o, session) -> {
+				if (session == null) {
 					throw new IllegalArgumentException(
 							"Cannont convert a " + o.getClass().getName() + " to Name without a valid Session object");
 				}
-			} else if (Boolean.class.equals(type)) {
-				result = toBoolean(o);
-			} else if (Number.class.isAssignableFrom(type)) {
-				result = toNumber(o, type);
-			} else {
-				result = type.cast(o);
-			}
-		}
-
-		if (result != null && !type.isAssignableFrom(result.getClass())) {
-			if (type.isPrimitive()) {
-				if (Integer.TYPE.equals(type) && result instanceof Integer) {
-					return (T) result;
-				}
-				if (Long.TYPE.equals(type) && result instanceof Long) {
-					return (T) result;
-				}
-				if (Boolean.TYPE.equals(type) && result instanceof Boolean) {
-					return (T) result;
-				}
-				if (Double.TYPE.equals(type) && result instanceof Double) {
-					return (T) result;
-				}
-			} else {
-				log_.log(Level.WARNING, "Auto-boxing requested a " + type.getName() + " but is returning a " + result.getClass().getName());
-			}
+				return session.createName(String.valueOf(o));
+			};
+		} else if (Boolean.class.equals(type)) {
+			return (o, session) -> toBoolean(o);
+		} else if (Number.class.isAssignableFrom(type)) {
+			return (o, session) -> toNumber(o, type);
+		} else {
+			return (o, session) -> type.cast(o);
 		}
-		return (T) result;
 	}
 
 	public static Comparable<?> toComparable(final Object value) {
@@ -584,198 +626,109 @@ public enum TypeUtils {
 		return collectionToClass(v, type, session);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@SuppressWarnings("rawtypes")
 	public static <T> T collectionToClass(final Collection v, final Class<T> type, final Session session) {
 		if (v == null) {
 			return null;
 		}
-		Object result = null;
-		Class<?> CType = null;
-		if (type.equals(String[].class)) {
-			result = toStrings(v);
-			return (T) result;
-		}
+		Object result = COLLECTION_CONVERTERS.get(type).convert(v, session);
+		return checkResult(result, type);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static CollectionConverter resolveCollectionConverter(final Class<?> type) {
 		if (type.isArray()) {
-			if (type == String[].class) {
-				// System.out.println("Shallow route to string array");
-				result = toStrings(v);
-			} else {
-				CType = type.getComponentType();
-				if (CType.isPrimitive()) {
-					try {
-						result = toPrimitiveArray(v, CType);
-					} catch (DataNotCompatibleException e) {
-						throw e;
-					}
-				} else if (Number.class.isAssignableFrom(CType)) {
-					result = toNumberArray(v, CType);
-				} else {
-					if (CType == String.class) {
-						// System.out.println("Deep route to string array");
-						result = toStrings(v);
-					} else if (CType == BigString.class) {
-						result = toBigStrings(v);
-					} else if (CType == Pattern.class) {
-						result = toPatterns(v);
-					} else if (CType == java.lang.Enum.class || CType.isEnum()) {
-						result = toEnums(v);
-					} else if (Class.class.isAssignableFrom(CType)) {
-						result = toClasses(v);
-					} else if (Formula.class.isAssignableFrom(CType)) {
-						result = toFormulas(v);
-					} else if (CType == Date.class) {
-						result = toDates(v);
-					} else if (DateTime.class.isAssignableFrom(CType)) {
-						result = toDateTimes(v, session);
-					} else if (DateRange.class.isAssignableFrom(CType)) {
-						result = toDateRanges(v, session);
-					} else if (Name.class.isAssignableFrom(CType)) {
-						result = toNames(v, session);
-					} else if (CType == Boolean.class) {
-						result = toBooleans(v);
-					} else if (CType == java.lang.Object.class) {
-						result = toObjects(v);
-					} else {
-						throw new UnimplementedException("Arrays for " + CType.getName() + " not yet implemented");
-					}
-				}
-			}
+			// the array conversions handle collections themselves
+			ObjectConverter arrayConverter = resolveArrayConverter(type);
+			return (v, session) -> arrayConverter.convert(v, session);
 		} else if (type.isPrimitive()) {
-			try {
-				result = toPrimitive(v, type);
-			} catch (DataNotCompatibleException e) {
-				throw e;
-			}
-		} else {
-			if (type == String.class) {
-				result = join(v);
-			} else if (Enum.class.isAssignableFrom(type)) {
-				String str = join(v);
-				//				System.out.println("Attempting to convert string " + str + " to Enum");
-				result = toEnum(str);
-				//				System.out.println("result was " + (result == null ? "null" : result.getClass().getName()));
-			} else if (BigString.class.isAssignableFrom(type)) {
-				result = new BigString(join(v));
-			} else if (Pattern.class.isAssignableFrom(type)) {
-				result = Pattern.compile(join(v));
-			} else if (Class.class.isAssignableFrom(type)) {
-				String cn = join(v);
-				Class<?> cls = DominoUtils.getClass(cn);
-				result = cls;
-			} else if (Formula.class.isAssignableFrom(type)) {
-				Formula formula = new org.openntf.domino.helpers.Formula(join(v));
-				result = formula;
-			} else if (type == java.util.Collection.class) {
-				result = new ArrayList();
-				if (v != null) {
-					((ArrayList) result).addAll(v);
-				}
-			} else if (java.util.Collection.class.isAssignableFrom(type)) {
+			return (v, session) -> toPrimitive((Collection<Object>) v, type);
+		} else if (type == String.class) {
+			return (v, session) -> join(v);
+		} else if (Enum.class.isAssignableFrom(type)) {
+			return (v, session) -> toEnum(join(v));
+		} else if (BigString.class.isAssignableFrom(type)) {
+			return (v, session) -> new BigString(join(v));
+		} else if (Pattern.class.isAssignableFrom(type)) {
+			return (v, session) -> Pattern.compile(join(v));
+		} else if (Class.class.isAssignableFrom(type)) {
+			return (v, session) -> DominoUtils.getClass(join(v));
+		} else if (Formula.class.isAssignableFrom(type)) {
+			return (v, session) -> new org.openntf.domino.helpers.Formula(join(v));
+		} else if (type == java.util.Collection.class) {
+			return (v, session) -> new ArrayList(v);
+		} else if (java.util.Collection.class.isAssignableFrom(type)) {
+			return (v, session) -> {
 				try {
 					// Support some known concrete implementations of collection interfaces
+					Collection coll;
 					if (List.class.equals(type)) {
-						result = new ArrayList<Object>();
+						coll = new ArrayList<Object>();
 					} else if (Set.class.equals(type)) {
-						result = new HashSet<Object>();
+						coll = new HashSet<Object>();
 					} else {
-						result = type.newInstance();
+						coll = (Collection) type.newInstance();
 					}
-
-					Collection coll = (Collection) result;
 					coll.addAll(DominoUtils.toSerializable(v));
+					return coll;
 				} catch (IllegalAccessException e) {
 					DominoUtils.handleException(e);
 				} catch (InstantiationException e) {
 					DominoUtils.handleException(e);
 				}
-			} else if(LocalDate.class.isAssignableFrom(type)) {
+				return null;
+			};
+		} else if (LocalDate.class.isAssignableFrom(type)) {
+			return (v, session) -> {
 				Date tmpDate = toDate(v);
-				if(null == tmpDate) {
-					result = null;
-				} else {
-					result = LocalDate.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
-				}
-			} else if(LocalTime.class.isAssignableFrom(type)) {
+				return tmpDate == null ? null : LocalDate.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
+			};
+		} else if (LocalTime.class.isAssignableFrom(type)) {
+			return (v, session) -> {
 				Date tmpDate = toDate(v);
-				if(null == tmpDate) {
-					result = null;
-				} else {
-					result = LocalTime.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
-				}
-			} else if(OffsetDateTime.class.isAssignableFrom(type)) {
+				return tmpDate == null ? null : LocalTime.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
+			};
+		} else if (OffsetDateTime.class.isAssignableFrom(type)) {
+			return (v, session) -> {
 				Date tmpDate = toDate(v);
-				if(null == tmpDate) {
-					result = null;
-				} else {
-					result = OffsetDateTime.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
-				}
-			} else if (Date.class.isAssignableFrom(type)) {
-				result = toDate(v);
-			} else if (java.util.Calendar.class.isAssignableFrom(type)) {
+				return tmpDate == null ? null : OffsetDateTime.ofInstant(tmpDate.toInstant(), ZoneId.systemDefault());
+			};
+		} else if (Date.class.isAssignableFrom(type)) {
+			return (v, session) -> toDate(v);
+		} else if (java.util.Calendar.class.isAssignableFrom(type)) {
+			return (v, session) -> {
 				Date tmpDate = toDate(v);
 				if (null == tmpDate) {
-					result = null;
-				} else {
-					Calendar tmp = Calendar.getInstance();
-					tmp.setTime(tmpDate);
-					result = tmp;
+					return null;
 				}
-			} else if (org.openntf.domino.DateTime.class.isAssignableFrom(type)) {
-				if (session != null) {
-					result = session.createDateTime(toDate(v));
-				} else {
+				Calendar tmp = Calendar.getInstance();
+				tmp.setTime(tmpDate);
+				return tmp;
+			};
+		} else if (org.openntf.domino.DateTime.class.isAssignableFrom(type)) {
+			return (v, session) -> {
+				if (session == null) {
 					throw new IllegalArgumentException("Cannont convert a Vector to DateTime without a valid Session object");
 				}
-			} else if (org.openntf.domino.Name.class.isAssignableFrom(type)) {
-				if (session != null) {
-					if (v.isEmpty()) {
-						result = session.createName("");
-					} else {
-						Iterator it = v.iterator();
-						result = session.createName(String.valueOf(it.next()));
-					}
-				} else {
+				return session.createDateTime(toDate(v));
+			};
+		} else if (org.openntf.domino.Name.class.isAssignableFrom(type)) {
+			return (v, session) -> {
+				if (session == null) {
 					throw new IllegalArgumentException("Cannont convert a Vector to Name without a valid Session object");
-
 				}
-			} else if (type == Boolean.class) {
 				if (v.isEmpty()) {
-					result = Boolean.FALSE;
-				} else {
-					Iterator it = v.iterator();
-					result = toBoolean(it.next());
-				}
-			} else {
-				if (!v.isEmpty()) {
-					if (Number.class.isAssignableFrom(type)) {
-						result = toNumber(v, type);
-					} else {
-						Iterator it = v.iterator();
-						result = it.next();
-					}
-				}
-			}
-		}
-
-		if (result != null && !type.isAssignableFrom(result.getClass())) {
-			if (type.isPrimitive()) {
-				if (Integer.TYPE.equals(type) && result instanceof Integer) {
-					return (T) result;
-				}
-				if (Long.TYPE.equals(type) && result instanceof Long) {
-					return (T) result;
+					return session.createName("");
 				}
-				if (Boolean.TYPE.equals(type) && result instanceof Boolean) {
-					return (T) result;
-				}
-				if (Double.TYPE.equals(type) && result instanceof Double) {
-					return (T) result;
-				}
-			} else {
-				log_.log(Level.WARNING, "Auto-boxing requested a " + type.getName() + " but is returning a " + result.getClass().getName());
-			}
+				return session.createName(String.valueOf(v.iterator().next()));
+			};
+		} else if (type == Boolean.class) {
+			return (v, session) -> v.isEmpty() ? Boolean.FALSE : toBoolean(v.iterator().next());
+		} else if (Number.class.isAssignableFrom(type)) {
+			return (v, session) -> v.isEmpty() ? null : toNumber(v, type);
+		} else {
+			return (v, session) -> v.isEmpty() ? null : v.iterator().next();
 		}
-		return (T) result;
 	}
 
 	private static final Logger log_ = Logger.getLogger(TypeUtils.class.getName());
@@ -1156,9 +1109,10 @@ public enum TypeUtils {
 		}
 		if (value instanceof Collection) {
 			return collectionToPrimitiveArray((Collection<Object>) value, ctype);
+		} else if (value instanceof Object[]) {
+			return collectionToPrimitiveArray(Arrays.asList((Object[]) value), ctype);
 		} else if (value.getClass().isArray()) {
-			//TODO NTF this could be better, but I'm tired
-			return collectionToPrimitiveArray(Arrays.asList(value), ctype);
+			return primitiveArrayToPrimitiveArray(value, ctype);
 		} else {
 			Object result = null;
 			if (ctype == Boolean.TYPE) {
@@ -1199,6 +1153,59 @@ public enum TypeUtils {
 		}
 	}
 
+	/*
+	 * Converts between arrays of primitive numbers without boxing the values. Array.getLong and Array.getDouble widen the values the way
+	 * the Number methods do
+	 */
+	private static Object primitiveArrayToPrimitiveArray(final Object value, final Class<?> ctype) {
+		Class<?> fromType = value.getClass().getComponentType();
+		if (fromType == ctype) {
+			return value;
+		}
+		int size = Array.getLength(value);
+		if (fromType == Boolean.TYPE || fromType == Character.TYPE || ctype == Boolean.TYPE || ctype == Character.TYPE
+				|| ctype == Byte.TYPE) {
+			List<Object> values = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				values.add(Array.get(value, i));
+			}
+			return collectionToPrimitiveArray(values, ctype);
+		}
+		boolean integral = fromType != Double.TYPE && fromType != Float.TYPE;
+		if (ctype == Double.TYPE) {
+			double[] outcome = new double[size];
+			for (int i = 0; i < size; i++) {
+				outcome[i] = Array.getDouble(value, i);
+			}
+			return outcome;
+		} else if (ctype == Float.TYPE) {
+			float[] outcome = new float[size];
+			for (int i = 0; i < size; i++) {
+				outcome[i] = (float) Array.getDouble(value, i);
+			}
+			return outcome;
+		} else if (ctype == Long.TYPE) {
+			long[] outcome = new long[size];
+			for (int i = 0; i < size; i++) {
+				outcome[i] = integral ? Array.getLong(value, i) : (long) Array.getDouble(value, i);
+			}
+			return outcome;
+		} else if (ctype == Integer.TYPE) {
+			int[] outcome = new int[size];
+			for (int i = 0; i < size; i++) {
+				outcome[i] = integral ? (int) Array.getLong(value, i) : (int) Array.getDouble(value, i);
+			}
+			return outcome;
+		} else if (ctype == Short.TYPE) {
+			short[] outcome = new short[size];
+			for (int i = 0; i < size; i++) {
+				outcome[i] = integral ? (short) Array.getLong(value, i) : (short) Array.getDouble(value, i);
+			}
+			return outcome;
+		}
+		return null;
+	}
+
 	public static Object collectionToPrimitiveArray(final Collection<Object> values, final Class<?> ctype)
 			throws DataNotCompatibleException {
 		Object result = null;
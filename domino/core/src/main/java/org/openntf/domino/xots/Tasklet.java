@@ -233,6 +233,22 @@ public @interface Tasklet {
 		PERMISSIVE
 	}
 
+	/**
+	 * The lane a ready tasklet is queued in, when the executor runs with lanes. Scheduled and delayed tasklets always run in the scheduled
+	 * lane
+	 */
+	public enum Priority {
+		/**
+		 * Short tasks that someone waits for. They are taken before bulk tasks
+		 */
+		INTERACTIVE,
+
+		/**
+		 * Long running or mass submitted tasks. They never take all worker threads, so interactive tasks still find a free worker
+		 */
+		BULK
+	}
+
 	Tasklet.Session session() default Tasklet.Session.CLONE;
 
 	Tasklet.Scope scope() default Tasklet.Scope.APPLICATION;
@@ -241,6 +257,8 @@ public @interface Tasklet {
 
 	Tasklet.ThreadConfig threadConfig() default Tasklet.ThreadConfig.CLONE;
 
+	Tasklet.Priority priority() default Tasklet.Priority.INTERACTIVE;
+
 	/**
 	 * specifies the schedule.
 	 * 
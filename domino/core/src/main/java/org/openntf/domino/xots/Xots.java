@@ -94,6 +94,19 @@ public class Xots {
 		return executor_.getQueue();
 	}
 
+	/**
+	 * Returns the counters of the Xots lanes
+	 * 
+	 * @return the counters by lane. Empty, if lanes are not enabled
+	 * @see AbstractDominoExecutor#enableLanes(int, int, int)
+	 */
+	public static Map<AbstractDominoExecutor.Lane, Map<String, Object>> getLaneStatistics() {
+		if (!isStarted()) {
+			return Collections.emptyMap();
+		}
+		return executor_.getLaneStatistics();
+	}
+
 	public static void remove(final Runnable task) {
 		if (isStarted()) {
 			executor_.remove(task);
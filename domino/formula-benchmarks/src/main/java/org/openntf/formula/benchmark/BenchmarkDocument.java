@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaParseException;
+import org.openntf.formula.FormulaParser;
+import org.openntf.formula.Formulas;
+
+/**
+ * Builds the Map-backed documents the benchmarks evaluate against, so that no Notes runtime is needed.
+ *
+ */
+@SuppressWarnings("nls")
+public enum BenchmarkDocument {
+	;
+
+	/**
+	 * Creates a document with some single value fields and lists of the given size
+	 *
+	 * @param listSize
+	 *            the number of entries in the multi value fields
+	 * @return the document
+	 */
+	public static Map<String, Object> create(final int listSize) {
+		Map<String, Object> doc = new HashMap<String, Object>();
+		doc.put("Form", "Invoice");
+		doc.put("Subject", "The quick brown fox jumps over the lazy dog");
+		doc.put("Customer", "CN=Jane Doe/OU=Sales/O=Acme");
+		doc.put("Quantity", 42);
+		doc.put("Price", 19.95);
+
+		List<Object> amounts = new ArrayList<Object>(listSize);
+		List<Object> counts = new ArrayList<Object>(listSize);
+		List<Object> names = new ArrayList<Object>(listSize);
+		for (int i = 0; i < listSize; i++) {
+			amounts.add(i * 1.25);
+			counts.add(i);
+			names.add("Item " + i);
+		}
+		doc.put("Amounts", amounts);
+		doc.put("Counts", counts);
+		doc.put("Names", names);
+		return doc;
+	}
+
+	/**
+	 * Returns a parser with a fixed locale, so that number and date literals are parsed the same on every machine
+	 */
+	public static FormulaParser createParser() {
+		return Formulas.getParser(Formulas.getFormatter(Locale.US), Formulas.getFunctionFactory());
+	}
+
+	public static FormulaContext createContext(final Map<String, Object> doc, final FormulaParser parser) {
+		return Formulas.createContext(doc, parser);
+	}
+
+	public static ASTNode parse(final FormulaParser parser, final String formula) {
+		try {
+			return parser.parse(formula);
+		} catch (FormulaParseException e) {
+			throw new IllegalArgumentException("Cannot parse " + formula, e);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.EvaluateException;
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaParser;
+import org.openntf.formula.FormulaReturnException;
+import org.openntf.formula.ValueHolder;
+
+/**
+ * Measures the variable lookup path of the {@link FormulaContext}. A fresh context reads every field from the document, a reused
+ * context serves them from its variable cache.
+ *
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextBenchmark {
+
+	private static final String FIELDS = "Form + Subject + Customer + @Text(Quantity) + @Text(Price) + @Text(@Elements(Names))";
+
+	private Map<String, Object> doc;
+	private FormulaParser parser;
+	private FormulaContext ctx;
+	private ASTNode readFields;
+
+	@Setup
+	public void setup() {
+		doc = BenchmarkDocument.create(100);
+		parser = BenchmarkDocument.createParser();
+		ctx = BenchmarkDocument.createContext(doc, parser);
+		ctx.setVarLC("tmp", ValueHolder.valueOf(42));
+		readFields = BenchmarkDocument.parse(parser, FIELDS);
+	}
+
+	@Benchmark
+	public ValueHolder getField() {
+		return ctx.getField("Subject");
+	}
+
+	@Benchmark
+	public ValueHolder getFieldList() {
+		return ctx.getField("Amounts");
+	}
+
+	@Benchmark
+	public ValueHolder getVariable() {
+		return ctx.getVarLC("tmp", "tmp");
+	}
+
+	@Benchmark
+	public void isAvailable(final Blackhole bh) {
+		bh.consume(ctx.isAvailableVarLC("subject", "Subject"));
+		bh.consume(ctx.isAvailableVarLC("missing", "Missing"));
+	}
+
+	@Benchmark
+	public List<Object> readFieldsCold() throws EvaluateException, FormulaReturnException {
+		return readFields.solve(BenchmarkDocument.createContext(doc, parser));
+	}
+
+	@Benchmark
+	public List<Object> readFieldsWarm() throws EvaluateException, FormulaReturnException {
+		return readFields.solve(ctx);
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.EvaluateException;
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaParser;
+import org.openntf.formula.FormulaReturnException;
+
+/**
+ * Measures single functions of {@link org.openntf.formula.function.DateTimeFunctions}. Dates are built with {@literal @}Date, so the
+ * results do not depend on the locale.
+ *
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateTimeFunctionsBenchmark {
+
+	private FormulaContext ctx;
+	private ASTNode date;
+	private ASTNode adjust;
+	private ASTNode parts;
+	private ASTNode compare;
+	private ASTNode text;
+	private ASTNode now;
+
+	@Setup
+	public void setup() {
+		FormulaParser parser = BenchmarkDocument.createParser();
+		ctx = BenchmarkDocument.createContext(BenchmarkDocument.create(10), parser);
+		date = BenchmarkDocument.parse(parser, "@Date(2020; 2; 29; 13; 45; 10)");
+		adjust = BenchmarkDocument.parse(parser, "@Adjust(@Date(2020; 2; 29); 1; 2; 3; 4; 5; 6)");
+		parts = BenchmarkDocument.parse(parser, "d := @Date(2020; 2; 29); @Year(d) + @Month(d) + @Day(d) + @Weekday(d)");
+		compare = BenchmarkDocument.parse(parser, "@Date(2020; 2; 29) < @Date(2021; 1; 1)");
+		text = BenchmarkDocument.parse(parser, "@Text(@Date(2020; 2; 29; 13; 45; 10))");
+		now = BenchmarkDocument.parse(parser, "@Adjust(@Today; 0; 0; 1; 0; 0; 0) > @Now");
+	}
+
+	@Benchmark
+	public List<Object> date() throws EvaluateException, FormulaReturnException {
+		return date.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> adjust() throws EvaluateException, FormulaReturnException {
+		return adjust.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> parts() throws EvaluateException, FormulaReturnException {
+		return parts.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> compare() throws EvaluateException, FormulaReturnException {
+		return compare.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> text() throws EvaluateException, FormulaReturnException {
+		return text.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> now() throws EvaluateException, FormulaReturnException {
+		return now.solve(ctx);
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.EvaluateException;
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaParser;
+import org.openntf.formula.FormulaReturnException;
+
+/**
+ * Evaluates representative formulas against a document with multi value fields of different sizes.
+ *
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+	@Param({ "arithmetic", "text", "date", "list", "sum", "for", "transform" })
+	public String kind;
+
+	@Param({ "10", "1000" })
+	public int listSize;
+
+	private ASTNode node;
+	private FormulaContext ctx;
+
+	@Setup
+	public void setup() {
+		String formula;
+		if ("arithmetic".equals(kind)) {
+			formula = "Quantity * Price - Quantity / 2";
+		} else if ("text".equals(kind)) {
+			formula = "@UpperCase(@Left(Subject; \" \")) + \": \" + @Right(Subject; \"lazy \")";
+		} else if ("date".equals(kind)) {
+			formula = "@Text(@Adjust(@Date(2020; 1; 31); 0; 1; 0; 0; 0; 0))";
+		} else if ("list".equals(kind)) {
+			formula = "@Elements(@Unique(@Trim(Names)))";
+		} else if ("sum".equals(kind)) {
+			formula = "@Sum(Amounts * 2 + Counts)";
+		} else if ("for".equals(kind)) {
+			formula = "s := 0; @For(n := 1; n <= 100; n := n + 1; s := s + n); s";
+		} else {
+			formula = "@Transform(Amounts; \"x\"; @If(x > 10; x * 2; x))";
+		}
+		Map<String, Object> doc = BenchmarkDocument.create(listSize);
+		FormulaParser parser = BenchmarkDocument.createParser();
+		node = BenchmarkDocument.parse(parser, formula);
+		ctx = BenchmarkDocument.createContext(doc, parser);
+	}
+
+	@Benchmark
+	public List<Object> solve() throws EvaluateException, FormulaReturnException {
+		return node.solve(ctx);
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.FormulaParseException;
+import org.openntf.formula.FormulaParser;
+
+/**
+ * Measures the parser. {@link #parse()} reads the formula from a Reader and therefore bypasses the formula cache, {@link #parseCached()}
+ * measures the cache lookup.
+ *
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({ "simple", "text", "list", "loop", "long" })
+	public String kind;
+
+	private String formula;
+	private FormulaParser parser;
+
+	@Setup
+	public void setup() {
+		parser = BenchmarkDocument.createParser();
+		if ("simple".equals(kind)) {
+			formula = "Quantity * Price";
+		} else if ("text".equals(kind)) {
+			formula = "@UpperCase(@Left(Subject; \" \")) + \": \" + @Middle(Customer; \"CN=\"; \"/\")";
+		} else if ("list".equals(kind)) {
+			formula = "@Implode(@Unique(@Sort(@Explode(Subject; \" \"))); \",\")";
+		} else if ("loop".equals(kind)) {
+			formula = "s := 0; @For(n := 1; n <= 10; n := n + 1; s := s + n); @Transform(Counts; \"x\"; x * s)";
+		} else {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < 50; i++) {
+				sb.append("v").append(i).append(" := @If(Quantity > ").append(i).append("; Price * ").append(i)
+						.append("; @Text(Quantity));\n");
+			}
+			sb.append("v49");
+			formula = sb.toString();
+		}
+	}
+
+	@Benchmark
+	public ASTNode parse() throws FormulaParseException {
+		return parser.parse(new StringReader(formula), false);
+	}
+
+	@Benchmark
+	public ASTNode parseCached() throws FormulaParseException {
+		return parser.parse(formula);
+	}
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openntf.formula.ASTNode;
+import org.openntf.formula.EvaluateException;
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaParser;
+import org.openntf.formula.FormulaReturnException;
+
+/**
+ * Measures single functions of {@link org.openntf.formula.function.TextFunctions}, applied to a single value and to a list of 100
+ * values.
+ *
+ */
+@SuppressWarnings("nls")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFunctionsBenchmark {
+
+	private FormulaContext ctx;
+	private ASTNode left;
+	private ASTNode word;
+	private ASTNode explodeImplode;
+	private ASTNode replaceSubstring;
+	private ASTNode proper;
+	private ASTNode contains;
+	private ASTNode text;
+	private ASTNode leftList;
+
+	@Setup
+	public void setup() {
+		FormulaParser parser = BenchmarkDocument.createParser();
+		ctx = BenchmarkDocument.createContext(BenchmarkDocument.create(100), parser);
+		left = BenchmarkDocument.parse(parser, "@Left(Subject; 9) + @RightBack(Subject; 3)");
+		word = BenchmarkDocument.parse(parser, "@Word(Subject; \" \"; 4)");
+		explodeImplode = BenchmarkDocument.parse(parser, "@Implode(@Explode(Subject; \" \"); \"-\")");
+		replaceSubstring = BenchmarkDocument.parse(parser, "@ReplaceSubstring(Subject; \"fox\":\"dog\"; \"cat\":\"mouse\")");
+		proper = BenchmarkDocument.parse(parser, "@ProperCase(Subject)");
+		contains = BenchmarkDocument.parse(parser, "@Contains(Names; \"9\")");
+		text = BenchmarkDocument.parse(parser, "@Text(Amounts)");
+		leftList = BenchmarkDocument.parse(parser, "@Left(Names; 4)");
+	}
+
+	@Benchmark
+	public List<Object> left() throws EvaluateException, FormulaReturnException {
+		return left.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> word() throws EvaluateException, FormulaReturnException {
+		return word.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> explodeImplode() throws EvaluateException, FormulaReturnException {
+		return explodeImplode.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> replaceSubstring() throws EvaluateException, FormulaReturnException {
+		return replaceSubstring.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> properCase() throws EvaluateException, FormulaReturnException {
+		return proper.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> containsList() throws EvaluateException, FormulaReturnException {
+		return contains.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> textList() throws EvaluateException, FormulaReturnException {
+		return text.solve(ctx);
+	}
+
+	@Benchmark
+	public List<Object> leftList() throws EvaluateException, FormulaReturnException {
+		return leftList.solve(ctx);
+	}
+}
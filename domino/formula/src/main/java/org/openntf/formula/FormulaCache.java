@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of parsed formulas that can be shared by all threads.
+ *
+ * Lookups do not lock. Every entry remembers the logical time of its last use, the clock advances on each insert. If the cache grows
+ * beyond its maximum size, one thread drops the least recently used entries until the cache is reduced to 3/4 of its maximum, other
+ * threads are not blocked by that.
+ *
+ * Parsed formulas are not modified while they are evaluated, so the same node can be solved concurrently.
+ */
+public class FormulaCache {
+
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private static final FormulaCache sharedInstance = new FormulaCache(DEFAULT_MAX_SIZE);
+
+	/**
+	 * Returns the cache that is used by all parsers
+	 *
+	 * @return the shared cache
+	 */
+	public static FormulaCache getSharedInstance() {
+		return sharedInstance;
+	}
+
+	private static class Entry {
+		final ASTNode node;
+		volatile long lastUse;
+
+		Entry(final ASTNode node, final long lastUse) {
+			this.node = node;
+			this.lastUse = lastUse;
+		}
+	}
+
+	private final Map<Object, Entry> cacheMap = new ConcurrentHashMap<Object, Entry>();
+	private final AtomicBoolean evicting = new AtomicBoolean();
+	private final AtomicLong clock = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private volatile int maxSize;
+
+	/**
+	 * Creates a new cache
+	 *
+	 * @param maxSize
+	 *            the number of formulas that are held at most
+	 */
+	public FormulaCache(final int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the cached node for the key
+	 *
+	 * @param key
+	 *            the key
+	 * @return the node or null, if it is not cached
+	 */
+	public ASTNode get(final Object key) {
+		Entry entry = cacheMap.get(key);
+		if (entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		entry.lastUse = clock.get();
+		return entry.node;
+	}
+
+	/**
+	 * Puts a node into the cache. If the cache is full, the least recently used nodes are evicted
+	 *
+	 * @param key
+	 *            the key
+	 * @param node
+	 *            the node
+	 */
+	public void put(final Object key, final ASTNode node) {
+		cacheMap.put(key, new Entry(node, clock.incrementAndGet()));
+		if (cacheMap.size() > maxSize) {
+			evict();
+		}
+	}
+
+	private void evict() {
+		if (!evicting.compareAndSet(false, true)) {
+			return; // another thread is already evicting
+		}
+		try {
+			int toRemove = cacheMap.size() - (maxSize - maxSize / 4);
+			if (toRemove <= 0) {
+				return;
+			}
+			long[] stamps = new long[cacheMap.size()];
+			int n = 0;
+			for (Entry entry : cacheMap.values()) {
+				if (n == stamps.length)
+					break;
+				stamps[n++] = entry.lastUse;
+			}
+			Arrays.sort(stamps, 0, n);
+			long threshold = stamps[Math.min(toRemove, n) - 1];
+
+			Iterator<Entry> it = cacheMap.values().iterator();
+			while (it.hasNext() && toRemove > 0) {
+				if (it.next().lastUse <= threshold) {
+					it.remove();
+					toRemove--;
+					evictionCount.incrementAndGet();
+				}
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	/**
+	 * Removes all formulas from the cache
+	 */
+	public void clear() {
+		cacheMap.clear();
+	}
+
+	public int size() {
+		return cacheMap.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(final int maxSize) {
+		this.maxSize = maxSize;
+		if (cacheMap.size() > maxSize) {
+			evict();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Returns the ratio of lookups that were served from the cache
+	 *
+	 * @return the hit rate between 0 and 1
+	 */
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long total = hits + missCount.get();
+		return total == 0 ? 1.0 : (double) hits / total;
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	@SuppressWarnings("nls")
+	@Override
+	public String toString() {
+		return "FormulaCache [size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions="
+				+ getEvictionCount() + "]";
+	}
+}
@@ -19,11 +19,8 @@ package org.openntf.formula;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 import org.openntf.formula.parse.AtFormulaParserImpl;
 import org.openntf.formula.parse.ParseException;
@@ -50,72 +47,55 @@ public abstract class FormulaParser {
 	protected boolean parsing = false;
 
 	public static final int MAX_FORMULA_CACHESIZE = 512;
-	public static final int REDUCE_FORMULA_CACHESIZE_TO = 256;
 
-	protected class FormulaCache {
-		class FormulaCacheEntry {
-			ASTNode node;
-			int usageCount;
-
-			FormulaCacheEntry(final ASTNode n) {
-				node = n;
-				usageCount = 1;
-			}
-		}
-
-		class FCMapEntryComparator implements Comparator<Object> {
-			@Override
-			public int compare(final Object ent1, final Object ent2) {
-				if (!(ent1 instanceof Map.Entry) || !(ent2 instanceof Map.Entry)) {
-					throw new IllegalArgumentException("FCMapEntryComparator"); //$NON-NLS-1$
-				}
-				@SuppressWarnings("unchecked")
-				int us1 = ((Map.Entry<String, FormulaCacheEntry>) ent1).getValue().usageCount;
-				@SuppressWarnings("unchecked")
-				int us2 = ((Map.Entry<String, FormulaCacheEntry>) ent2).getValue().usageCount;
-				return (us1 > us2) ? 1 : (us1 < us2) ? -1 : 0;
-			}
-		}
-
-		private Map<String, FormulaCacheEntry> cacheMap = new HashMap<String, FormulaCacheEntry>();
-
-		ASTNode get(final String key) {
-			FormulaCacheEntry fce = cacheMap.get(key);
-			if (fce == null) {
-				return null;
-			}
-			fce.usageCount++;
-			return fce.node;
+	/**
+	 * The key of a formula in the shared cache. A parsed formula depends on the formatter (for number and date literals), the functions
+	 * and the includes that were available at parse time.
+	 */
+	private static final class CacheKey {
+		private final String formula;
+		private final boolean useFocFormula;
+		private final Formatter formatter;
+		private final FunctionFactory functionFactory;
+		private final FormulaProvider<ASTNode> includeProvider;
+		private final int hash;
+
+		CacheKey(final String formula, final boolean useFocFormula, final Formatter formatter, final FunctionFactory functionFactory,
+				final FormulaProvider<ASTNode> includeProvider) {
+			this.formula = formula;
+			this.useFocFormula = useFocFormula;
+			this.formatter = formatter;
+			this.functionFactory = functionFactory;
+			this.includeProvider = includeProvider;
+			int h = formula.hashCode();
+			h = 31 * h + (useFocFormula ? 1 : 0);
+			h = 31 * h + System.identityHashCode(formatter);
+			h = 31 * h + System.identityHashCode(functionFactory);
+			hash = 31 * h + System.identityHashCode(includeProvider);
 		}
 
-		void reset() {
-			cacheMap.clear();
+		@Override
+		public int hashCode() {
+			return hash;
 		}
 
-		@SuppressWarnings("unchecked")
-		void put(final String key, final ASTNode node) {
-			if (cacheMap.size() > MAX_FORMULA_CACHESIZE) {
-				Object[] arr = cacheMap.entrySet().toArray();
-				Arrays.sort(arr, new FCMapEntryComparator());
-				int numToThrow = cacheMap.size() - REDUCE_FORMULA_CACHESIZE_TO;
-				String[] toThrow = new String[numToThrow];
-				for (int i = 0; i < numToThrow; i++) {
-					toThrow[i] = ((Map.Entry<String, FormulaCacheEntry>) arr[i]).getKey();
-				}
-				for (int i = 0; i < numToThrow; i++) {
-					cacheMap.remove(toThrow[i]);
-				}
-				Set<Map.Entry<String, FormulaCacheEntry>> cacheSet = cacheMap.entrySet();
-				for (Map.Entry<String, FormulaCacheEntry> ent : cacheSet) {
-					ent.getValue().usageCount = 1;
-				}
-			}
-			cacheMap.put(key, new FormulaCacheEntry(node));
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CacheKey))
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return hash == other.hash && useFocFormula == other.useFocFormula && formatter == other.formatter
+					&& functionFactory == other.functionFactory && includeProvider == other.includeProvider
+					&& formula.equals(other.formula);
 		}
 	}
 
-	protected FormulaCache ntfFormulaCache = new FormulaCache();
-	protected FormulaCache focFormulaCache = new FormulaCache();
+	/**
+	 * Formulas that use or declare custom functions depend on this parser and cannot be shared. They are cached here.
+	 */
+	protected FormulaCache localFormulaCache = new FormulaCache(MAX_FORMULA_CACHESIZE);
 
 	/**
 	 * Returns a the Formatter for this parser
@@ -131,8 +111,7 @@ public abstract class FormulaParser {
 	 */
 	public void reset() {
 		customFunc = new HashMap<String, Function>();
-		ntfFormulaCache.reset();
-		focFormulaCache.reset();
+		localFormulaCache.clear();
 	}
 
 	/**
@@ -239,8 +218,7 @@ public abstract class FormulaParser {
 		parser.functionFactory = getFunctionFactory();
 		parser.includeProvider = includeProvider;
 		parser.customFunc = getCustomFunc();
-		parser.focFormulaCache = focFormulaCache;
-		parser.ntfFormulaCache = ntfFormulaCache;
+		parser.localFormulaCache = localFormulaCache;
 		return parser;
 	}
 
@@ -271,13 +249,19 @@ public abstract class FormulaParser {
 	 *             see: {@link #parse(Reader, boolean)}
 	 */
 	final public ASTNode parse(final String formula, final boolean useFocFormula) throws FormulaParseException {
-		FormulaCache formulaCache = useFocFormula ? focFormulaCache : ntfFormulaCache;
-		ASTNode node = formulaCache.get(formula);
+		CacheKey key = new CacheKey(formula, useFocFormula, getFormatter(), getFunctionFactory(), includeProvider);
+		boolean shared = getCustomFunc().isEmpty();
+		FormulaCache formulaCache = shared ? FormulaCache.getSharedInstance() : localFormulaCache;
+		ASTNode node = formulaCache.get(key);
 		if (node == null) {
 			StringReader sr = new java.io.StringReader(formula);
 			node = parse(sr, useFocFormula);
 			node.setFormula(formula);
-			formulaCache.put(formula, node);
+			if (shared && !getCustomFunc().isEmpty()) {
+				// the formula has declared functions. Keep it local, so that they get declared on other parsers too
+				formulaCache = localFormulaCache;
+			}
+			formulaCache.put(key, node);
 		}
 		return node;
 	}
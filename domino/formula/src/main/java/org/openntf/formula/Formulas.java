@@ -81,6 +81,13 @@ public enum Formulas {
 		return functionFactory;
 	}
 
+	/**
+	 * Returns the cache of parsed formulas that is shared by all parsers
+	 */
+	public static FormulaCache getFormulaCache() {
+		return FormulaCache.getSharedInstance();
+	}
+
 	public static FormulaParser getMinimalParser() {
 		return getParser(getFormatter(), FunctionFactory.getMinimalFF());
 	}
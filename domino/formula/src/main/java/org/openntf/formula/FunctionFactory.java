@@ -16,6 +16,7 @@
  */
 package org.openntf.formula;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.security.AccessController;
@@ -25,10 +26,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.openntf.formula.impl.AtFunction;
+import org.openntf.formula.impl.AtFunctionDouble;
 import org.openntf.formula.impl.AtFunctionGeneric;
 import org.openntf.formula.impl.AtFunctionSimple;
 import org.openntf.service.IServiceLocator;
@@ -42,6 +45,11 @@ import org.openntf.service.ServiceLocatorFinder;
 public class FunctionFactory {
 	private static ThreadLocal<IServiceLocator> currentServiceLocator_ = new ThreadLocal<IServiceLocator>();
 
+	/**
+	 * Factories with the same functions are shared, so that the parsed formulas in the {@link FormulaCache} can be shared across threads
+	 */
+	private static final List<WeakReference<FunctionFactory>> instances_ = new ArrayList<WeakReference<FunctionFactory>>();
+
 	private final Map<String, Function> functions = new HashMap<String, Function>();
 	@SuppressWarnings("unused")
 	private boolean immutable;
@@ -92,6 +100,22 @@ public class FunctionFactory {
 
 		instance.setImmutable();
 
+		return intern(instance);
+	}
+
+	private static FunctionFactory intern(final FunctionFactory instance) {
+		synchronized (instances_) {
+			Iterator<WeakReference<FunctionFactory>> it = instances_.iterator();
+			while (it.hasNext()) {
+				FunctionFactory other = it.next().get();
+				if (other == null) {
+					it.remove();
+				} else if (other.functions.equals(instance.functions)) {
+					return other;
+				}
+			}
+			instances_.add(new WeakReference<FunctionFactory>(instance));
+		}
 		return instance;
 	}
 
@@ -154,9 +178,12 @@ public class FunctionFactory {
 								// here the magic happens. If the return type of the implemented function is
 								// a ValueHolder then we create an AtFunctionGeneric. You have to do multi value handling
 								// otherwise an AtFunctionSimple is created that does multi value handling for you.
+								// Functions that take and return plain doubles get an AtFunctionDouble, that does not box the values.
 								Function f;
 								if (ValueHolder.class.isAssignableFrom(method.getReturnType())) {
 									f = new AtFunctionGeneric(methodName, method);
+								} else if (AtFunctionDouble.isApplicable(method)) {
+									f = new AtFunctionDouble(methodName, method);
 								} else {
 									f = new AtFunctionSimple(methodName, method);
 								}
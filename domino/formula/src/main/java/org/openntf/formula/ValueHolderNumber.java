@@ -44,6 +44,26 @@ public class ValueHolderNumber extends ValueHolder implements Serializable {
 		valuesD = new double[size];
 	}
 
+	/**
+	 * For performance reasons we allow direct access to the values. The array may be longer than {@link #size} and must not be modified.
+	 * Every value is stored as double, regardless of the dataType.
+	 * 
+	 * @return the backing double array
+	 */
+	public double[] getDoubleArray() {
+		return valuesD;
+	}
+
+	/**
+	 * For performance reasons we allow direct access to the values. The array may be longer than {@link #size} and must not be modified.
+	 * It is only valid if the dataType is INTEGER.
+	 * 
+	 * @return the backing int array
+	 */
+	public int[] getIntArray() {
+		return valuesI;
+	}
+
 	@Override
 	public Number getObject(final int i) {
 		switch (dataType) {
@@ -229,9 +229,9 @@ public abstract class SimpleNode implements Node {
 	}
 
 	/**
-	 * Initializion of inspection is done once
+	 * Initializion of inspection is done once. Parsed nodes are shared between threads, so this is synchronized
 	 */
-	private void initInspection() {
+	private synchronized void initInspection() {
 		if (readFields != null)
 			return;
 		readFields = new HashSet<String>();
@@ -22,6 +22,7 @@ import org.openntf.formula.Function;
 import org.openntf.formula.FunctionFactory;
 import org.openntf.formula.FunctionSet;
 import org.openntf.formula.ValueHolder;
+import org.openntf.formula.ValueHolderNumber;
 import org.openntf.formula.annotation.OpenNTF;
 import org.openntf.formula.annotation.ParamCount;
 import org.openntf.formula.impl.ParameterCollectionDouble;
@@ -39,39 +40,39 @@ public enum MathFunctions {
 	}
 
 	@ParamCount(1)
-	public static Number atAbs(final Number arg) {
-		return Math.abs(arg.doubleValue());
+	public static double atAbs(final double arg) {
+		return Math.abs(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atACos(final Number arg) {
-		return Math.acos(arg.doubleValue());
+	public static double atACos(final double arg) {
+		return Math.acos(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atASin(final Number arg) {
-		return Math.asin(arg.doubleValue());
+	public static double atASin(final double arg) {
+		return Math.asin(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atATan(final Number arg) {
-		return Math.atan(arg.doubleValue());
+	public static double atATan(final double arg) {
+		return Math.atan(arg);
 	}
 
 	@ParamCount(2)
-	public static Number atATan2(final Number arg1, final Number arg2) {
+	public static double atATan2(final double arg1, final double arg2) {
 		// pay attention. Formula language expects the arguments in different order
-		return Math.atan2(arg2.doubleValue(), arg1.doubleValue());
+		return Math.atan2(arg2, arg1);
 	}
 
 	@ParamCount(1)
-	public static Number atCos(final Number arg) {
-		return Math.cos(arg.doubleValue());
+	public static double atCos(final double arg) {
+		return Math.cos(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atExp(final Number arg) {
-		return Math.exp(arg.doubleValue());
+	public static double atExp(final double arg) {
+		return Math.exp(arg);
 	}
 
 	@ParamCount({ 2, 3 })
@@ -86,13 +87,13 @@ public enum MathFunctions {
 	}
 
 	@ParamCount(1)
-	public static Number atLog(final Number arg) {
-		return Math.log10(arg.doubleValue());
+	public static double atLog(final double arg) {
+		return Math.log10(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atLn(final Number arg) {
-		return Math.log(arg.doubleValue());
+	public static double atLn(final double arg) {
+		return Math.log(arg);
 	}
 
 	// Max returns either the largest number in a single list, or the larger of two numbers or number lists.
@@ -102,8 +103,15 @@ public enum MathFunctions {
 		if (params.length == 1) {
 			ValueHolder vh = params[0];
 			double ret = Double.MIN_VALUE;
-			for (int i = 0; i < vh.size; i++) {
-				ret = Math.max(ret, vh.getDouble(i));
+			double[] values = getDoubleArray(vh);
+			if (values != null) {
+				for (int i = 0; i < vh.size; i++) {
+					ret = Math.max(ret, values[i]);
+				}
+			} else {
+				for (int i = 0; i < vh.size; i++) {
+					ret = Math.max(ret, vh.getDouble(i));
+				}
 			}
 			return ValueHolder.valueOf(ret);
 		} else if (ValueHolder.hasMultiValues(params)) {
@@ -130,8 +138,15 @@ public enum MathFunctions {
 		if (params.length == 1) {
 			double ret = Double.MAX_VALUE;
 			ValueHolder vh = params[0];
-			for (int i = 0; i < vh.size; i++) {
-				ret = Math.min(ret, vh.getDouble(i));
+			double[] values = getDoubleArray(vh);
+			if (values != null) {
+				for (int i = 0; i < vh.size; i++) {
+					ret = Math.min(ret, values[i]);
+				}
+			} else {
+				for (int i = 0; i < vh.size; i++) {
+					ret = Math.min(ret, vh.getDouble(i));
+				}
 			}
 			return ValueHolder.valueOf(ret);
 		} else if (ValueHolder.hasMultiValues(params)) {
@@ -172,8 +187,8 @@ public enum MathFunctions {
 	}
 
 	@ParamCount(2)
-	public static Number atPower(final Number arg1, final Number arg2) {
-		return Math.pow(arg1.doubleValue(), arg2.doubleValue());
+	public static double atPower(final double arg1, final double arg2) {
+		return Math.pow(arg1, arg2);
 	}
 
 	@ParamCount(0)
@@ -187,13 +202,13 @@ public enum MathFunctions {
 	}
 
 	@ParamCount(1)
-	public static Number atSin(final Number arg) {
-		return Math.sin(arg.doubleValue());
+	public static double atSin(final double arg) {
+		return Math.sin(arg);
 	}
 
 	@ParamCount(1)
-	public static Number atSqrt(final Number arg) {
-		return Math.sqrt(arg.doubleValue());
+	public static double atSqrt(final double arg) {
+		return Math.sqrt(arg);
 	}
 
 	@ParamCount({ 1, Integer.MAX_VALUE })
@@ -201,16 +216,33 @@ public enum MathFunctions {
 		double ret = 0;
 
 		for (ValueHolder valueHolder : params) {
-			for (int i = 0; i < valueHolder.size; i++) {
-				ret += valueHolder.getDouble(i);
+			double[] values = getDoubleArray(valueHolder);
+			if (values != null) {
+				for (int i = 0; i < valueHolder.size; i++) {
+					ret += values[i];
+				}
+			} else {
+				for (int i = 0; i < valueHolder.size; i++) {
+					ret += valueHolder.getDouble(i);
+				}
 			}
 		}
 		return ValueHolder.valueOf(ret);
 	}
 
+	/**
+	 * Returns the backing array of a numeric ValueHolder, so that lists can be aggregated without a call per element
+	 */
+	private static double[] getDoubleArray(final ValueHolder vh) {
+		if (vh instanceof ValueHolderNumber && vh.dataType.numeric) {
+			return ((ValueHolderNumber) vh).getDoubleArray();
+		}
+		return null;
+	}
+
 	@ParamCount(1)
-	public static Number atTan(final Number arg) {
-		return Math.tan(arg.doubleValue());
+	public static double atTan(final double arg) {
+		return Math.tan(arg);
 	}
 
 	@ParamCount(1)
@@ -227,20 +259,20 @@ public enum MathFunctions {
 	 */
 	@ParamCount(1)
 	@OpenNTF
-	public static Number atCbrt(final Number arg) {
-		return Math.cbrt(arg.doubleValue());
+	public static double atCbrt(final double arg) {
+		return Math.cbrt(arg);
 	}
 
 	@ParamCount(1)
 	@OpenNTF
-	public static Number atCeil(final Number arg) {
-		return Math.ceil(arg.doubleValue());
+	public static double atCeil(final double arg) {
+		return Math.ceil(arg);
 	}
 
 	@ParamCount(1)
 	@OpenNTF
-	public static Number atFloor(final Number arg) {
-		return Math.floor(arg.doubleValue());
+	public static double atFloor(final double arg) {
+		return Math.floor(arg);
 	}
 
 	// TODO: Implement the complete Math Functions
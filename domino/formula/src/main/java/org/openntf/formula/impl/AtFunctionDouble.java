@@ -0,0 +1,113 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.formula.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.Collection;
+
+import org.openntf.formula.FormulaContext;
+import org.openntf.formula.FormulaReturnException;
+import org.openntf.formula.ValueHolder;
+import org.openntf.formula.ValueHolder.DataType;
+
+/**
+ * This class does multi value handling for functions like <code>static double atSqrt(double)</code>. The values are passed as primitives,
+ * so nothing is boxed.
+ *
+ * Only methods with one or two double parameters and a double return type are supported, see {@link #isApplicable(Method)}
+ */
+@SuppressWarnings("nls")
+public class AtFunctionDouble extends AtFunctionSimple {
+
+	/**
+	 * Checks if the method can be handled by an AtFunctionDouble
+	 *
+	 * @param method
+	 *            the method
+	 * @return true, if the method takes one or two doubles and returns a double
+	 */
+	public static boolean isApplicable(final Method method) {
+		if (method.getReturnType() != double.class) {
+			return false;
+		}
+		Class<?>[] pt = method.getParameterTypes();
+		if (pt.length < 1 || pt.length > 2) {
+			return false;
+		}
+		for (Class<?> type : pt) {
+			if (type != double.class) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** the method with its exact primitive type, or null if it is not accessible */
+	private MethodHandle exactHandle;
+
+	public AtFunctionDouble(final String image, final Method method) {
+		super(image, method);
+		try {
+			exactHandle = MethodHandles.publicLookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			exactHandle = null;
+		}
+	}
+
+	@Override
+	public ValueHolder evaluate(final FormulaContext ctx, final ValueHolder[] params) throws FormulaReturnException {
+		if (exactHandle == null) {
+			return super.evaluate(ctx, params);
+		}
+		if (params != null) {
+			for (int i = 0; i < params.length; i++) {
+				if (params[i].dataType == DataType.ERROR)
+					return params[i];
+			}
+		}
+
+		try {
+			Collection<double[]> values = new ParameterCollectionDouble(params, false);
+			if (values.isEmpty()) {
+				return null;
+			}
+			ValueHolder ret = ValueHolder.createValueHolder(double.class, values.size());
+			if (paramCount == 1) {
+				for (double[] value : values) {
+					ret.add((double) exactHandle.invokeExact(value[0]));
+				}
+			} else {
+				for (double[] value : values) {
+					ret.add((double) exactHandle.invokeExact(value[0], value[1]));
+				}
+			}
+			return ret;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("Unexpected error occured in method " + method.getName(), t);
+		}
+	}
+
+	@Override
+	protected String getPrefix() {
+		return method.getDeclaringClass().getSimpleName() + " [double]";
+	}
+}
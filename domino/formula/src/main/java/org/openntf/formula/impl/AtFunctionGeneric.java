@@ -16,6 +16,9 @@
  */
 package org.openntf.formula.impl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -35,7 +38,15 @@ public class AtFunctionGeneric extends AtFunction {
 	// 2) Methods returning something else. MultiValueHandling is done automatically.
 	// 		you may specify a "FormulaContext ctx" as first parameter (optional) and the remaining parameter that the function needs
 	// 
+	// The method is compiled once into a MethodHandle, so that evaluation does not go through Method.invoke. If the method is not
+	// accessible for a handle, we fall back to reflection.
+	// 
+	private static final MethodType GENERIC_TYPE = MethodType.methodType(ValueHolder.class, FormulaContext.class, ValueHolder[].class);
+	private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
 	protected Method method;
+	/** the compiled method, see {@link #compile()} */
+	protected MethodHandle handle;
 	protected int paramCount;
 	protected boolean useContext;
 	protected Class<?> varArgClass;
@@ -62,34 +73,56 @@ public class AtFunctionGeneric extends AtFunction {
 			minArgs = pc.value()[0];
 			maxArgs = pc.value()[pc.value().length - 1];
 		}
+		handle = compile();
 	}
 
-	public int getMinArgs() {
-		return minArgs;
+	/**
+	 * Binds the method to a handle of type (FormulaContext, ValueHolder[])ValueHolder, regardless if it takes the context or the
+	 * parameters.
+	 * 
+	 * @return the handle or null, if the method cannot be accessed through a handle
+	 */
+	protected MethodHandle compile() {
+		if (paramCount > 1 || !ValueHolder.class.isAssignableFrom(method.getReturnType())) {
+			return null;
+		}
+		MethodHandle mh = unreflect(method);
+		if (mh == null) {
+			return null;
+		}
+		if (!useContext) {
+			mh = MethodHandles.dropArguments(mh, 0, FormulaContext.class);
+		}
+		if (paramCount == 0) {
+			mh = MethodHandles.dropArguments(mh, 1, ValueHolder[].class);
+		}
+		return mh.asType(GENERIC_TYPE);
 	}
 
-	public int getMaxArgs() {
-		return maxArgs;
+	/**
+	 * Binds the method to a handle of type (Object[])Object, that spreads the array over the parameters of the method.
+	 * 
+	 * @return the handle or null, if the method cannot be accessed through a handle
+	 */
+	protected MethodHandle compileSpread() {
+		MethodHandle mh = unreflect(method);
+		if (mh == null) {
+			return null;
+		}
+		return mh.asSpreader(Object[].class, method.getParameterTypes().length).asType(SPREAD_TYPE);
 	}
 
-	public ValueHolder evaluate(final FormulaContext ctx, final ValueHolder[] params) throws FormulaReturnException {
+	private static MethodHandle unreflect(final Method method) {
 		try {
-			switch (paramCount) {
-			case 0:
-				if (useContext) {
-					return (ValueHolder) method.invoke(null, new Object[] { ctx });
-				} else {
-					return (ValueHolder) method.invoke(null, (Object[]) null);
-				}
-			case 1:
-				if (useContext) {
-					return (ValueHolder) method.invoke(null, new Object[] { ctx, params });
-				} else {
-					return (ValueHolder) method.invoke(null, new Object[] { params });
-				}
-			default:
-				throw new IllegalArgumentException("Illegal parameter count: " + paramCount);
-			}
+			return MethodHandles.publicLookup().unreflect(method).asFixedArity();
+		} catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	protected Object invokeReflective(final Object[] args) throws FormulaReturnException {
+		try {
+			return method.invoke(null, args);
 		} catch (IllegalAccessException iax) {
 			throw new RuntimeException("Unexpected error while invoking method " + method.getName(), iax);
 		} catch (InvocationTargetException e) {
@@ -101,6 +134,46 @@ public class AtFunctionGeneric extends AtFunction {
 		}
 	}
 
+	public int getMinArgs() {
+		return minArgs;
+	}
+
+	public int getMaxArgs() {
+		return maxArgs;
+	}
+
+	public ValueHolder evaluate(final FormulaContext ctx, final ValueHolder[] params) throws FormulaReturnException {
+		if (handle != null) {
+			try {
+				return (ValueHolder) handle.invokeExact(ctx, params);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (FormulaReturnException e) {
+				throw e;
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException("Unexpected error occured in method " + method.getName(), t);
+			}
+		}
+		switch (paramCount) {
+		case 0:
+			if (useContext) {
+				return (ValueHolder) invokeReflective(new Object[] { ctx });
+			} else {
+				return (ValueHolder) invokeReflective((Object[]) null);
+			}
+		case 1:
+			if (useContext) {
+				return (ValueHolder) invokeReflective(new Object[] { ctx, params });
+			} else {
+				return (ValueHolder) invokeReflective(new Object[] { params });
+			}
+		default:
+			throw new IllegalArgumentException("Illegal parameter count: " + paramCount);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see org.openntf.formula.impl.AtFunction#getPrefix()
 	 */
@@ -16,7 +16,7 @@
  */
 package org.openntf.formula.impl;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
 import java.util.Collection;
 
@@ -38,6 +38,31 @@ public class AtFunctionSimple extends AtFunctionGeneric {
 		super(image, method);
 	}
 
+	/**
+	 * Simple functions are invoked once per parameter tuple, so the handle spreads an Object[] over the method parameters.
+	 */
+	@Override
+	protected MethodHandle compile() {
+		return compileSpread();
+	}
+
+	protected Object invoke(final Object[] args) throws FormulaReturnException {
+		if (handle == null) {
+			return invokeReflective(args);
+		}
+		try {
+			return (Object) handle.invokeExact(args);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (FormulaReturnException e) {
+			throw e;
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable t) {
+			throw new RuntimeException("Unexpected error occured in method " + method.getName(), t);
+		}
+	}
+
 	@SuppressWarnings({ "unchecked", "deprecation" })
 	@Override
 	public ValueHolder evaluate(final FormulaContext ctx, final ValueHolder[] params) throws FormulaReturnException {
@@ -51,71 +76,64 @@ public class AtFunctionSimple extends AtFunctionGeneric {
 			}
 		}
 
-		try {
-			if (varArgClass != null) {
+		if (varArgClass != null) {
 
-				Collection<Object[]> values = new ParameterCollectionObject<Object>(params, (Class<Object>) varArgClass, false);
+			Collection<Object[]> values = new ParameterCollectionObject<Object>(params, (Class<Object>) varArgClass, false);
 
-				// Our last parameter is a "varArg" this means, the LAST parameter is an array[]
-				Object[] tmpParams = new Object[paramCount];
-				for (Object[] value : values) {
-					int i = 0;
-					if (useContext) {
-						tmpParams[i++] = ctx;
-					}
-					if (i == paramCount) {
-						// that's not possible when useContext is true unless you specify FormulaContext... ctx
-					} else if (i == paramCount - 1) {
-						// exactly one parameter left. this is our vararg
-						tmpParams[i++] = value;
-					}
-					result = method.invoke(null, tmpParams);
-					if (result != null) {
-						if (ret == null) {
-							ret = ValueHolder.createValueHolder(result.getClass(), values.size());
-						}
-						ret.add(result);
+			// Our last parameter is a "varArg" this means, the LAST parameter is an array[]
+			Object[] tmpParams = new Object[paramCount];
+			for (Object[] value : values) {
+				int i = 0;
+				if (useContext) {
+					tmpParams[i++] = ctx;
+				}
+				if (i == paramCount) {
+					// that's not possible when useContext is true unless you specify FormulaContext... ctx
+				} else if (i == paramCount - 1) {
+					// exactly one parameter left. this is our vararg
+					tmpParams[i++] = value;
+				}
+				result = invoke(tmpParams);
+				if (result != null) {
+					if (ret == null) {
+						ret = ValueHolder.createValueHolder(result.getClass(), values.size());
 					}
+					ret.add(result);
 				}
-			} else {
-				Collection<Object[]> values = new ParameterCollectionObject<Object>(params, Object.class, false);
+			}
+		} else {
+			Collection<Object[]> values = new ParameterCollectionObject<Object>(params, Object.class, false);
+			// the context is always the first argument, so the argument array can be reused for every tuple
+			Object[] tmpParams = null;
+			if (useContext) {
+				tmpParams = new Object[paramCount + 1];
+				tmpParams[0] = ctx;
+			}
 
-				for (Object[] value : values) {
+			for (Object[] value : values) {
 
-					if (useContext) {
-						Object[] tmpParams;
-						if (value == null) {
-							tmpParams = new Object[1];
-						} else {
-							tmpParams = new Object[value.length + 1];
-							System.arraycopy(value, 0, tmpParams, 1, value.length);
+				if (useContext) {
+					if (value != null) {
+						if (value.length != paramCount) {
+							throw new IllegalArgumentException("Illegal parameter count: " + value.length);
 						}
-						tmpParams[0] = ctx;
-						result = method.invoke(null, tmpParams);
-					} else {
-						result = method.invoke(null, value);
+						System.arraycopy(value, 0, tmpParams, 1, value.length);
 					}
-					if (result != null) {
-						if (ret == null) {
-							ret = ValueHolder.createValueHolder(result.getClass(), values.size());
-						}
-						ret.add(result);
+					result = invoke(tmpParams);
+				} else {
+					result = invoke(value);
+				}
+				if (result != null) {
+					if (ret == null) {
+						ret = ValueHolder.createValueHolder(result.getClass(), values.size());
 					}
+					ret.add(result);
 				}
 			}
-
-			return ret;
-
-		} catch (IllegalAccessException iax) {
-			throw new RuntimeException("Unexpected error while invoking method " + method.getName(), iax);
-		} catch (InvocationTargetException e) {
-			if (e.getCause() instanceof RuntimeException)
-				throw (RuntimeException) e.getCause();
-			if (e.getCause() instanceof FormulaReturnException)
-				throw (FormulaReturnException) e.getCause();
-			throw new RuntimeException("Unexpected error occured in method " + method.getName(), e);
 		}
 
+		return ret;
+
 	}
 
 	@Override
@@ -58,6 +58,8 @@ public abstract class ParameterCollectionAbstract<T> extends AbstractCollection<
 		// Due performance reasons, the "ret" value is reused!
 		// this does not matter
 		int idx = 0;
+		// in permutative mode, the position in each parameter. It is advanced like an odometer, the last parameter changes fastest
+		private final int[] cursor = permutative && params != null ? new int[params.length] : null;
 
 		public boolean hasNext() {
 			return idx < size;
@@ -67,6 +69,13 @@ public abstract class ParameterCollectionAbstract<T> extends AbstractCollection<
 			T ret;
 			ret = getNext();
 			idx++;
+			if (cursor != null) {
+				for (int i = cursor.length - 1; i >= 0; i--) {
+					if (++cursor[i] < params[i].size)
+						break;
+					cursor[i] = 0;
+				}
+			}
 			return ret;
 		}
 
@@ -75,13 +84,8 @@ public abstract class ParameterCollectionAbstract<T> extends AbstractCollection<
 		}
 
 		protected int getIndex(final int pos) {
-			if (permutative) {
-				int currIdx = idx;
-				int mod = params[pos].size;
-				for (int i = pos + 1; i < params.length; i++) {
-					currIdx /= params[i].size;
-				}
-				return currIdx % mod;
+			if (cursor != null) {
+				return cursor[pos];
 			} else {
 				return idx;
 			}
@@ -19,6 +19,7 @@ package org.openntf.formula.impl;
 import java.util.Iterator;
 
 import org.openntf.formula.ValueHolder;
+import org.openntf.formula.ValueHolderNumber;
 
 public class ParameterCollectionDouble extends ParameterCollectionAbstract<double[]> {
 
@@ -33,11 +34,26 @@ public class ParameterCollectionDouble extends ParameterCollectionAbstract<doubl
 
 	protected class ParameterIteratorDouble extends ParameterIteratorAbstract {
 		double[] ret = new double[params.length];
+		// the backing arrays of numeric parameters, so that the values are read without a virtual call
+		double[][] arrays = new double[params.length][];
+
+		ParameterIteratorDouble() {
+			for (int i = 0; i < params.length; i++) {
+				if (params[i] instanceof ValueHolderNumber && params[i].dataType.numeric) {
+					arrays[i] = ((ValueHolderNumber) params[i]).getDoubleArray();
+				}
+			}
+		}
 
 		@Override
 		protected double[] getNext() {
 			for (int i = 0; i < ret.length; i++) {
-				ret[i] = params[i].getDouble(getIndex(i));
+				int index = getIndex(i);
+				if (arrays[i] == null) {
+					ret[i] = params[i].getDouble(index);
+				} else {
+					ret[i] = arrays[i][index < params[i].size ? index : params[i].size - 1];
+				}
 			}
 			return ret;
 		}
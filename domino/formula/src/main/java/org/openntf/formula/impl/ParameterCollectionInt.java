@@ -19,6 +19,8 @@ package org.openntf.formula.impl;
 import java.util.Iterator;
 
 import org.openntf.formula.ValueHolder;
+import org.openntf.formula.ValueHolder.DataType;
+import org.openntf.formula.ValueHolderNumber;
 
 public class ParameterCollectionInt extends ParameterCollectionAbstract<int[]> {
 
@@ -33,11 +35,26 @@ public class ParameterCollectionInt extends ParameterCollectionAbstract<int[]> {
 
 	protected class ParameterIteratorInt extends ParameterIteratorAbstract {
 		int[] ret = new int[params.length];
+		// the backing arrays of numeric parameters, so that the values are read without a virtual call
+		int[][] arrays = new int[params.length][];
+
+		ParameterIteratorInt() {
+			for (int i = 0; i < params.length; i++) {
+				if (params[i] instanceof ValueHolderNumber && params[i].dataType == DataType.INTEGER) {
+					arrays[i] = ((ValueHolderNumber) params[i]).getIntArray();
+				}
+			}
+		}
 
 		@Override
 		protected int[] getNext() {
 			for (int i = 0; i < ret.length; i++) {
-				ret[i] = params[i].getInt(getIndex(i));
+				int index = getIndex(i);
+				if (arrays[i] == null) {
+					ret[i] = params[i].getInt(index);
+				} else {
+					ret[i] = arrays[i][index < params[i].size ? index : params[i].size - 1];
+				}
 			}
 			return ret;
 		}
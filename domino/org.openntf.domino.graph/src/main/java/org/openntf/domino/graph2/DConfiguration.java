@@ -18,6 +18,7 @@ package org.openntf.domino.graph2;
 import java.io.Externalizable;
 import java.util.Map;
 
+import org.openntf.domino.graph2.impl.DElementCacheSettings;
 import org.openntf.domino.graph2.impl.DGraph;
 
 import com.tinkerpop.frames.EdgeFrame;
@@ -82,4 +83,15 @@ public interface DConfiguration extends Externalizable {
 
 	DElementStore getDefaultReverseProxyStore();
 
+	/**
+	 * @return the cache settings of element stores that have no settings of their own, or null for the defaults
+	 */
+	public DElementCacheSettings getElementCacheSettings();
+
+	/**
+	 * Sets the cache settings of element stores that have no settings of their own. Should be called before the graph is used; caches
+	 * that were already built keep their settings until they are flushed.
+	 */
+	public void setElementCacheSettings(DElementCacheSettings settings);
+
 }
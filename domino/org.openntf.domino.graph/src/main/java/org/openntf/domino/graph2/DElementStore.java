@@ -19,6 +19,7 @@ import java.io.Externalizable;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.tinkerpop.blueprints.Edge;
 import com.tinkerpop.blueprints.Element;
@@ -117,12 +118,29 @@ public interface DElementStore extends Externalizable {
 
 	public DElementIterable getElements(String key, Object value);
 
+	public DVertexIterable getVerticesStartingWith(String key, Object prefix);
+
+	public DEdgeIterable getEdgesStartingWith(String key, Object prefix);
+
+	/**
+	 * Declares a property whose values are kept in an index, so lookups by key and value or prefix do not need a formula search. Should be
+	 * called while the graph is configured.
+	 */
+	public void addIndexedKey(String key);
+
+	public Set<String> getIndexedKeys();
+
 	public void uncache(Element element);
 
 	public boolean isProxied();
 
 	public void flushCache();
 
+	/**
+	 * @return counters of the element cache of this store: size, hits, misses, loads, load time and evictions
+	 */
+	public Map<String, Object> getCacheStatistics();
+
 	public CustomProxyResolver getCustomProxyResolver();
 
 	Long getReverseProxyStoreKey();
@@ -238,6 +238,11 @@ public interface DGraph
 
 	public void flushCache(final String id);
 
+	/**
+	 * @return the element cache counters of each element store, by the replica id of the store
+	 */
+	public Map<String, Map<String, Object>> getCacheStatistics();
+
 	public Vertex addVertex(Object id, boolean temporary);
 
 }
@@ -30,6 +30,8 @@ import org.openntf.domino.View;
 import org.openntf.domino.big.IndexDatabase;
 import org.openntf.domino.big.impl.IScannerStateManager;
 import org.openntf.domino.big.impl.IndexHit;
+import org.openntf.domino.big.impl.PostingList;
+import org.openntf.domino.big.impl.TermPostings;
 import org.openntf.domino.graph2.DGraph;
 import org.openntf.domino.graph2.DVertex;
 import org.openntf.domino.graph2.builtin.identity.Name;
@@ -193,6 +195,11 @@ public class IndexStore extends DElementStore implements IndexDatabase, IScanner
 		return getInternalIndexDatabase().getTermUnidMap(term);
 	}
 
+	@Override
+	public TermPostings getTermPostings(final CharSequence term, final Set<CharSequence> dbids, final Set<CharSequence> itemNames) {
+		return getInternalIndexDatabase().getTermPostings(term, dbids, itemNames);
+	}
+
 	@Override
 	public Map<CharSequence, Set<CharSequence>> restoreTokenLocationMap(final CharSequence token, final Object mapKey) {
 		Map result = null;
@@ -203,7 +210,7 @@ public class IndexStore extends DElementStore implements IndexDatabase, IScanner
 		String itemName = TERM_MAP_PREFIX + String.valueOf(mapKey);
 		Document doc = tokenV.asDocument();
 		if (doc.hasItem(itemName)) {
-			result = doc.getItemValue(itemName, Map.class);
+			result = PostingList.toLocationMap(doc.getItemValue(itemName, Map.class));
 		} else {
 			result = new HashMap<CaseInsensitiveString, Set<String>>();
 		}
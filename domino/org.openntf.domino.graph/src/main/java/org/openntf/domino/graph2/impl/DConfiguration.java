@@ -907,6 +907,7 @@ public class DConfiguration extends FramedGraphConfiguration implements org.open
 	private Class<? extends EdgeFrame> defaultEdgeFrameType_ = EdgeFrame.class;
 	private Long defaultReverseProxyStoreKey_;
 	private DElementStore defaultReverseProxyStore_;
+	private DElementCacheSettings elementCacheSettings_;
 
 	//	private DTypeRegistry typeRegistry_;
 	//	private DTypeManager typeManager_;
@@ -1201,6 +1202,16 @@ public class DConfiguration extends FramedGraphConfiguration implements org.open
 		defaultEdgeFrameType_ = clazz;
 	}
 
+	@Override
+	public DElementCacheSettings getElementCacheSettings() {
+		return elementCacheSettings_;
+	}
+
+	@Override
+	public void setElementCacheSettings(final DElementCacheSettings settings) {
+		elementCacheSettings_ = settings;
+	}
+
 	public Class<?> getReplacementType(final Class<?> requestedType) {
 		Class<?> result = getTypeRegistry().replacesMap_.get(requestedType);
 		if (result != null) {
@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.graph2.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openntf.domino.Document;
+import org.openntf.domino.big.NoteCoordinate;
+
+/**
+ * The edge ids in an edge list item of a vertex, read one page at a time.
+ *
+ * Edge lists are written with {@link Document#writeBinary(String, byte[], int)} in chunks of {@link #PAGE_BYTES}, which is a whole number
+ * of ids, so each chunk item is a page that can be read without the others. Iterating holds one page in memory, independent of the
+ * number of edges, and nothing is kept after the iteration. Ids are returned in the order they were written.
+ *
+ * The pages reflect the saved state of the document. Lists with unsaved changes have to be read through the vertex.
+ */
+@SuppressWarnings("nls")
+public class DEdgeIdPages implements Iterable<NoteCoordinate> {
+	/** the size of a serialized NoteCoordinate */
+	public static final int ID_BYTES = 24;
+	public static final int PAGE_SIZE = 2048;
+	/** the chunk size edge lists are written with */
+	public static final int PAGE_BYTES = PAGE_SIZE * ID_BYTES;
+
+	private final Document doc_;
+	private final String itemName_;
+
+	public DEdgeIdPages(final Document doc, final String itemName) {
+		doc_ = doc;
+		itemName_ = itemName;
+	}
+
+	private String getChunkName(final int page) {
+		return page == 0 ? itemName_ : itemName_ + "$" + page;
+	}
+
+	public int getPageCount() {
+		int result = 0;
+		while (doc_.hasItem(getChunkName(result))) {
+			result++;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the raw bytes of a page, or null if the page does not exist
+	 */
+	protected byte[] readPage(final int page) {
+		if (!doc_.hasItem(getChunkName(page))) {
+			return null;
+		}
+		return doc_.readBinaryChunk(itemName_, page);
+	}
+
+	/**
+	 * @return the ids in a page. Empty if the page does not exist
+	 */
+	public List<NoteCoordinate> getPage(final int page) {
+		List<NoteCoordinate> result = new ArrayList<NoteCoordinate>(PAGE_SIZE);
+		byte[] bytes = readPage(page);
+		if (bytes != null) {
+			for (int pos = 0; pos + ID_BYTES <= bytes.length; pos += ID_BYTES) {
+				result.add(NoteCoordinate.Utils.getNoteCoordinate(Arrays.copyOfRange(bytes, pos, pos + ID_BYTES)));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the ids by the length of the pages, without creating them.
+	 */
+	public int size() {
+		long bytes = 0;
+		for (int page = 0;; page++) {
+			byte[] chunk = readPage(page);
+			if (chunk == null) {
+				break;
+			}
+			bytes += chunk.length;
+		}
+		return (int) (bytes / ID_BYTES);
+	}
+
+	@Override
+	public Iterator<NoteCoordinate> iterator() {
+		return new Iterator<NoteCoordinate>() {
+			private int page_ = 0;
+			private byte[] bytes_ = new byte[0];
+			private int pos_ = 0;
+
+			/*
+			 * Makes sure that the next id is in the buffer. Pages written with a chunk size that is not a multiple of the id size are
+			 * joined at the boundary.
+			 */
+			private boolean fill() {
+				while (bytes_.length - pos_ < ID_BYTES) {
+					byte[] next = readPage(page_);
+					if (next == null) {
+						return false;
+					}
+					page_++;
+					byte[] joined = new byte[bytes_.length - pos_ + next.length];
+					System.arraycopy(bytes_, pos_, joined, 0, bytes_.length - pos_);
+					System.arraycopy(next, 0, joined, bytes_.length - pos_, next.length);
+					bytes_ = joined;
+					pos_ = 0;
+				}
+				return true;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return fill();
+			}
+
+			@Override
+			public NoteCoordinate next() {
+				if (!fill()) {
+					throw new NoSuchElementException();
+				}
+				NoteCoordinate result = NoteCoordinate.Utils.getNoteCoordinate(Arrays.copyOfRange(bytes_, pos_, pos_ + ID_BYTES));
+				pos_ += ID_BYTES;
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
@@ -592,8 +592,7 @@ public abstract class DElement implements org.openntf.domino.graph2.DElement, Se
 						if (delegate instanceof Document) {
 							if (v instanceof NoteList) {
 								byte[] bytes = ((NoteList) v).toByteArray();
-								((Document) delegate).writeBinary(s, bytes, 2048 * 24);
-								//FIXME NTF .writeBinary needs to clear any extra items added to the document if the binary content shrank
+								((Document) delegate).writeBinary(s, bytes, DEdgeIdPages.PAGE_BYTES);
 								//							System.out.println("TEMP DEBUG: Writing a NoteList (" + ((NoteList) v).size() + ") of size " + bytes.length
 								//									+ " to a Document in " + s);
 							} else {
@@ -639,6 +638,12 @@ public abstract class DElement implements org.openntf.domino.graph2.DElement, Se
 				doc.save();
 			}
 		}
+		if (saveNeeded) {
+			org.openntf.domino.graph2.DElementStore store = getStore();
+			if (store instanceof DElementStore) {
+				((DElementStore) store).updateIndex(this);
+			}
+		}
 	}
 
 	@Override
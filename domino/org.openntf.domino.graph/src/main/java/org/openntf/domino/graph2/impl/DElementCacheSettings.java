@@ -0,0 +1,174 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.graph2.impl;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.openntf.domino.big.NoteCoordinate;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.tinkerpop.blueprints.Element;
+
+/**
+ * The settings of the element cache of an element store.
+ *
+ * <p>
+ * Settings can be given for all stores with {@link org.openntf.domino.graph2.DConfiguration#setElementCacheSettings(DElementCacheSettings)}
+ * and for a single store with {@link DElementStore#setCacheSettings(DElementCacheSettings)}. They are applied when the cache is built, so
+ * a store drops its cache when its settings change.
+ * </p>
+ *
+ * <p>
+ * By default a cache holds up to {@value #DEFAULT_MAXIMUM_SIZE} elements for 20 hours after they were loaded, and records statistics.
+ * With a maximum weight, the cache is bounded by the number of properties of its elements instead of the number of elements. Weighing
+ * reads the properties of an element when it is cached.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class DElementCacheSettings implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	public static final long DEFAULT_MAXIMUM_SIZE = 16384;
+	public static final long DEFAULT_EXPIRE_AFTER_WRITE = TimeUnit.HOURS.toSeconds(20);
+
+	private long maximumSize_ = DEFAULT_MAXIMUM_SIZE;
+	private long maximumWeight_ = 0;
+	private long expireAfterWrite_ = DEFAULT_EXPIRE_AFTER_WRITE;
+	private long expireAfterAccess_ = 0;
+	private boolean softValues_ = false;
+	private boolean recordStats_ = true;
+
+	/**
+	 * Weighs an element by the size of its property map. Elements that are not DElements weigh 1.
+	 */
+	public static class PropertyCountWeigher implements Weigher<NoteCoordinate, Element> {
+		@Override
+		public int weigh(final NoteCoordinate key, final Element value) {
+			if (value instanceof DElement) {
+				try {
+					return 1 + ((DElement) value).size();
+				} catch (Throwable t) {
+					// an element that can't be read is about to fail anyway
+				}
+			}
+			return 1;
+		}
+	}
+
+	public DElementCacheSettings() {
+	}
+
+	public DElementCacheSettings(final long maximumSize) {
+		maximumSize_ = maximumSize;
+	}
+
+	public long getMaximumSize() {
+		return maximumSize_;
+	}
+
+	/**
+	 * @param maximumSize
+	 *            the maximum number of elements. Ignored when a maximum weight is set
+	 */
+	public void setMaximumSize(final long maximumSize) {
+		maximumSize_ = maximumSize;
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight_;
+	}
+
+	/**
+	 * @param maximumWeight
+	 *            the maximum sum of the property counts of the cached elements, or 0 to bound the cache by the number of elements
+	 */
+	public void setMaximumWeight(final long maximumWeight) {
+		maximumWeight_ = maximumWeight;
+	}
+
+	/**
+	 * @return seconds after loading when an element is dropped, or 0 if it is never dropped for its age
+	 */
+	public long getExpireAfterWrite() {
+		return expireAfterWrite_;
+	}
+
+	public void setExpireAfterWrite(final long duration, final TimeUnit unit) {
+		expireAfterWrite_ = unit.toSeconds(duration);
+	}
+
+	/**
+	 * @return seconds after the last access when an element is dropped, or 0 if it is never dropped for being unused
+	 */
+	public long getExpireAfterAccess() {
+		return expireAfterAccess_;
+	}
+
+	public void setExpireAfterAccess(final long duration, final TimeUnit unit) {
+		expireAfterAccess_ = unit.toSeconds(duration);
+	}
+
+	public boolean isSoftValues() {
+		return softValues_;
+	}
+
+	/**
+	 * @param softValues
+	 *            true to let the garbage collector drop cached elements when memory is low
+	 */
+	public void setSoftValues(final boolean softValues) {
+		softValues_ = softValues;
+	}
+
+	public boolean isRecordStats() {
+		return recordStats_;
+	}
+
+	public void setRecordStats(final boolean recordStats) {
+		recordStats_ = recordStats;
+	}
+
+	public LoadingCache<NoteCoordinate, Element> buildCache(final CacheLoader<NoteCoordinate, Element> loader) {
+		CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+		if (expireAfterWrite_ > 0) {
+			builder.expireAfterWrite(expireAfterWrite_, TimeUnit.SECONDS);
+		}
+		if (expireAfterAccess_ > 0) {
+			builder.expireAfterAccess(expireAfterAccess_, TimeUnit.SECONDS);
+		}
+		if (softValues_) {
+			builder.softValues();
+		}
+		if (recordStats_) {
+			builder.recordStats();
+		}
+		if (maximumWeight_ > 0) {
+			return builder.maximumWeight(maximumWeight_).weigher(new PropertyCountWeigher()).build(loader);
+		}
+		return builder.maximumSize(maximumSize_).build(loader);
+	}
+
+	@Override
+	public String toString() {
+		return "DElementCacheSettings [maximumSize=" + maximumSize_ + ", maximumWeight=" + maximumWeight_ + ", expireAfterWrite="
+				+ expireAfterWrite_ + "s, expireAfterAccess=" + expireAfterAccess_ + "s, softValues=" + softValues_ + ", recordStats="
+				+ recordStats_ + "]";
+	}
+}
@@ -28,10 +28,17 @@ import com.tinkerpop.blueprints.Element;
 @SuppressWarnings("nls")
 public class DElementIterable implements org.openntf.domino.graph2.DElementIterable, List<Element> {
 
+	/**
+	 * Iterations over more ids than this are scans. Their elements are loaded without being added to the element cache, so that a scan
+	 * over a whole store does not evict the elements that are in use elsewhere.
+	 */
+	public static final int SCAN_THRESHOLD = 4096;
+
 	public static class DElementIterator implements org.openntf.domino.graph2.DElementIterable.DElementIterator {
 		protected final DElementStore elementStore_;
 		protected final List<NoteCoordinate> index_;
 		protected ListIterator<NoteCoordinate> iterator_;
+		protected boolean scan_;
 
 		public DElementIterator(final DElementStore store, final List<NoteCoordinate> index) {
 			elementStore_ = store;
@@ -40,11 +47,16 @@ public class DElementIterable implements org.openntf.domino.graph2.DElementItera
 
 		private ListIterator<NoteCoordinate> getIterator() {
 			if (iterator_ == null) {
+				scan_ = index_.size() > SCAN_THRESHOLD;
 				iterator_ = index_.listIterator();
 			}
 			return iterator_;
 		}
 
+		protected Element getElement(final NoteCoordinate nc) {
+			return scan_ ? elementStore_.getScanElement(nc) : elementStore_.getElement(nc);
+		}
+
 		@Override
 		public boolean hasNext() {
 			return getIterator().hasNext();
@@ -55,7 +67,7 @@ public class DElementIterable implements org.openntf.domino.graph2.DElementItera
 			Element result = null;
 			NoteCoordinate nc = getIterator().next();
 			if (nc != null) {
-				result = elementStore_.getElement(nc);
+				result = getElement(nc);
 			}
 			return result;
 		}
@@ -92,7 +104,7 @@ public class DElementIterable implements org.openntf.domino.graph2.DElementItera
 			Element result = null;
 			NoteCoordinate nc = getIterator().previous();
 			if (nc != null) {
-				result = elementStore_.getElement(nc);
+				result = getElement(nc);
 			}
 			return result;
 		}
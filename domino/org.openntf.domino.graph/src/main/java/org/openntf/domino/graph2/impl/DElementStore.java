@@ -19,12 +19,17 @@ import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openntf.domino.Database;
@@ -45,9 +50,9 @@ import org.openntf.domino.utils.DominoUtils;
 import org.openntf.domino.utils.Factory;
 
 import com.google.common.base.Strings;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
@@ -343,7 +348,20 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 	private transient Map<Object, NoteCoordinate> keyMap_;
 	//	private transient Map<Object, Element> elementCache_OLD;
 	private LoadingCache<NoteCoordinate, Element> elementCache_;
+	private DElementCacheSettings cacheSettings_;
+	/** the statistics of the caches that were dropped by flushCache() */
+	private transient CacheStats flushedCacheStats_ = new CacheStats(0, 0, 0, 0, 0, 0);
 	private transient org.openntf.domino.graph2.DConfiguration configuration_;
+	private final Set<String> indexedKeys_ = new ConcurrentSkipListSet<String>(String.CASE_INSENSITIVE_ORDER);
+	private transient volatile DPropertyIndex vertexIndex_;
+	private transient volatile DPropertyIndex edgeIndex_;
+
+	/** key of the note in the store database that holds the saved property indexes */
+	public static final String INDEX_NOTE_KEY = "$OpenGraphPropertyIndex";
+	public static final String VERTEX_INDEX_ITEM = "$VertexIndex";
+	public static final String EDGE_INDEX_ITEM = "$EdgeIndex";
+	/** changes this much older than a saved index are read again when it is loaded, to allow for clock differences */
+	private static final long INDEX_TIME_MARGIN = 60 * 1000;
 
 	protected void setTypes(final List<Class<?>> types) {
 		types_ = types;
@@ -351,12 +369,83 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 
 	protected LoadingCache<NoteCoordinate, Element> getElementCache() {
 		if (elementCache_ == null) {
-			elementCache_ = CacheBuilder.newBuilder().maximumSize(16384).expireAfterWrite(20, TimeUnit.HOURS)
-					.build(new ElementStoreCacheLoader(this));
+			elementCache_ = getCacheSettings().buildCache(new ElementStoreCacheLoader(this));
 		}
 		return elementCache_;
 	}
 
+	/**
+	 * @return the settings of this store, or the settings of the configuration if this store has none
+	 */
+	public DElementCacheSettings getCacheSettings() {
+		DElementCacheSettings result = cacheSettings_;
+		if (result == null && configuration_ != null) {
+			result = configuration_.getElementCacheSettings();
+		}
+		if (result == null) {
+			result = new DElementCacheSettings();
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the cache settings for this store. The current cache is dropped.
+	 *
+	 * @param settings
+	 *            the settings, or null to use the settings of the configuration
+	 */
+	public void setCacheSettings(final DElementCacheSettings settings) {
+		cacheSettings_ = settings;
+		dropElementCache();
+	}
+
+	private void dropElementCache() {
+		LoadingCache<NoteCoordinate, Element> cache = elementCache_;
+		elementCache_ = null;
+		if (cache != null) {
+			synchronized (this) {
+				flushedCacheStats_ = getFlushedCacheStats().plus(cache.stats());
+			}
+		}
+	}
+
+	private CacheStats getFlushedCacheStats() {
+		if (flushedCacheStats_ == null) {
+			flushedCacheStats_ = new CacheStats(0, 0, 0, 0, 0, 0);
+		}
+		return flushedCacheStats_;
+	}
+
+	/**
+	 * @return the statistics of the element cache since this store was created, including caches that were flushed. All zero if the
+	 *         settings don't record statistics
+	 */
+	public CacheStats getCacheStats() {
+		LoadingCache<NoteCoordinate, Element> cache = elementCache_;
+		synchronized (this) {
+			return cache == null ? getFlushedCacheStats() : getFlushedCacheStats().plus(cache.stats());
+		}
+	}
+
+	@Override
+	public Map<String, Object> getCacheStatistics() {
+		CacheStats stats = getCacheStats();
+		LoadingCache<NoteCoordinate, Element> cache = elementCache_;
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("size", cache == null ? 0L : cache.size());
+		result.put("requestCount", stats.requestCount());
+		result.put("hitCount", stats.hitCount());
+		result.put("missCount", stats.missCount());
+		result.put("hitRate", stats.hitRate());
+		result.put("loadCount", stats.loadCount());
+		result.put("loadExceptionCount", stats.loadExceptionCount());
+		result.put("averageLoadMillis", stats.averageLoadPenalty() / 1000000d);
+		result.put("totalLoadMillis", stats.totalLoadTime() / 1000000L);
+		result.put("evictionCount", stats.evictionCount());
+		result.put("settings", getCacheSettings().toString());
+		return result;
+	}
+
 	//	protected Map<Object, Element> getElementCache_OLD() {
 	//		if (elementCache_ == null) {
 	//			elementCache_ = new FastMap<Object, Element>().atomic();
@@ -864,6 +953,41 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 		}
 	}
 
+	/**
+	 * Returns an element for a scan over many elements. An element that is in the element cache is taken from there, any other element is
+	 * loaded without adding it to the cache, so a scan does not push out the elements that are in use by other requests. Elements that are
+	 * changed during the scan are added to the cache when they join the transaction.
+	 *
+	 * @param id
+	 *            the id of the element
+	 * @return the element, or null if there is no element with that id
+	 */
+	public Element getScanElement(final Object id) throws IllegalStateException {
+		try {
+			NoteCoordinate nc = normalizeId((Serializable) id);
+			Element result = getElementCache().getIfPresent(nc);
+			if (result == null) {
+				result = new ElementStoreCacheLoader(this).load(nc);
+			}
+			return result;
+		} catch (UserAccessException uae) {
+			throw uae;
+		} catch (Throwable t) {
+			throw new IllegalStateException("Unable to retrieve id " + String.valueOf(id), t);
+		}
+	}
+
+	/**
+	 * Adds an element that was loaded by {@link #getScanElement(Object)} to the element cache, unless the cache already has an element with
+	 * the same id.
+	 */
+	protected void cacheElement(final Element element) {
+		Object id = element.getId();
+		if (id instanceof NoteCoordinate) {
+			getElementCache().asMap().putIfAbsent((NoteCoordinate) id, element);
+		}
+	}
+
 	/*public Element getElement_OLD(final Object id, final Class<? extends Element> type) throws IllegalStateException {
 			Element result = null;
 			Element chk = getCachedElement(id, Element.class);
@@ -1307,6 +1431,7 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 	@Override
 	public void removeElementDelegate(final Element element) {
 		if (element instanceof DElement) {
+			unindex(element);
 			Object del = ((DElement) element).getDelegate();
 			if (del instanceof Document) {
 				((Document) del).remove(true);
@@ -1415,16 +1540,260 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 
 	@Override
 	public DVertexIterable getVertices(final String key, final Object value) {
+		DPropertyIndex index = getVertexIndex(key);
+		if (index != null) {
+			List<NoteCoordinate> ids = index.getEquals(key, value);
+			if (ids != null) {
+				return new DVertexIterable(this, ids);
+			}
+		}
 		String formulaFilter = org.openntf.domino.graph2.DGraph.Utils.getVertexFormula(key, value);
 		return getVertices(formulaFilter);
 	}
 
 	@Override
 	public DEdgeIterable getEdges(final String key, final Object value) {
+		DPropertyIndex index = getEdgeIndex(key);
+		if (index != null) {
+			List<NoteCoordinate> ids = index.getEquals(key, value);
+			if (ids != null) {
+				return new DEdgeIterable(this, ids);
+			}
+		}
 		String formulaFilter = org.openntf.domino.graph2.DGraph.Utils.getEdgeFormula(key, value);
 		return getEdges(formulaFilter);
 	}
 
+	@Override
+	public DVertexIterable getVerticesStartingWith(final String key, final Object prefix) {
+		DPropertyIndex index = getVertexIndex(key);
+		if (index != null) {
+			List<NoteCoordinate> ids = index.getStartsWith(key, prefix);
+			if (ids != null) {
+				return new DVertexIterable(this, ids);
+			}
+		}
+		String formulaFilter = org.openntf.domino.graph2.DVertex.FORMULA_FILTER + " & "
+				+ org.openntf.domino.graph2.DGraph.Utils.convertToStartsFormula(key, prefix);
+		return getVertices(formulaFilter);
+	}
+
+	@Override
+	public DEdgeIterable getEdgesStartingWith(final String key, final Object prefix) {
+		DPropertyIndex index = getEdgeIndex(key);
+		if (index != null) {
+			List<NoteCoordinate> ids = index.getStartsWith(key, prefix);
+			if (ids != null) {
+				return new DEdgeIterable(this, ids);
+			}
+		}
+		String formulaFilter = org.openntf.domino.graph2.DEdge.FORMULA_FILTER + " & "
+				+ org.openntf.domino.graph2.DGraph.Utils.convertToStartsFormula(key, prefix);
+		return getEdges(formulaFilter);
+	}
+
+	@Override
+	public void addIndexedKey(final String key) {
+		if (indexedKeys_.add(key)) {
+			// the indexes are built for a fixed set of keys
+			vertexIndex_ = null;
+			edgeIndex_ = null;
+		}
+	}
+
+	@Override
+	public Set<String> getIndexedKeys() {
+		return Collections.unmodifiableSet(indexedKeys_);
+	}
+
+	/*
+	 * Indexes are only kept for stores in a single NSF. Proxied stores resolve their elements through a second database.
+	 */
+	protected Database getIndexDatabase() {
+		if (indexedKeys_.isEmpty() || isProxied() || isReverseProxied()) {
+			return null;
+		}
+		Object raw = getStoreDelegate();
+		return raw instanceof Database ? (Database) raw : null;
+	}
+
+	protected DPropertyIndex getVertexIndex(final String key) {
+		if (key == null || !indexedKeys_.contains(key)) {
+			return null;
+		}
+		DPropertyIndex result = vertexIndex_;
+		if (result == null) {
+			synchronized (this) {
+				result = vertexIndex_;
+				if (result == null) {
+					Database db = getIndexDatabase();
+					if (db == null) {
+						return null;
+					}
+					result = loadIndex(db, VERTEX_INDEX_ITEM, org.openntf.domino.graph2.DVertex.FORMULA_FILTER);
+					vertexIndex_ = result;
+				}
+			}
+		}
+		refreshIndex(result, org.openntf.domino.graph2.DVertex.GRAPH_TYPE_VALUE);
+		return result;
+	}
+
+	protected DPropertyIndex getEdgeIndex(final String key) {
+		if (key == null || !indexedKeys_.contains(key)) {
+			return null;
+		}
+		DPropertyIndex result = edgeIndex_;
+		if (result == null) {
+			synchronized (this) {
+				result = edgeIndex_;
+				if (result == null) {
+					Database db = getIndexDatabase();
+					if (db == null) {
+						return null;
+					}
+					result = loadIndex(db, EDGE_INDEX_ITEM, org.openntf.domino.graph2.DEdge.FORMULA_FILTER);
+					edgeIndex_ = result;
+				}
+			}
+		}
+		refreshIndex(result, org.openntf.domino.graph2.DEdge.GRAPH_TYPE_VALUE);
+		return result;
+	}
+
+	/*
+	 * Reads the saved index and the changes made since it was saved, or builds the index from scratch with one formula search.
+	 */
+	protected DPropertyIndex loadIndex(final Database db, final String itemName, final String typeFilter) {
+		long start = System.currentTimeMillis();
+		DPropertyIndex result = null;
+		Document note = db.getDocumentWithKey(INDEX_NOTE_KEY);
+		if (note != null && note.hasItem(itemName)) {
+			try {
+				result = DPropertyIndex.fromByteArray(note.readBinary(itemName), indexedKeys_);
+			} catch (IOException e) {
+				log_.log(Level.WARNING, "Unable to read the saved property index " + itemName + " in " + db.getApiPath(), e);
+			}
+		}
+		if (result != null) {
+			NoteCollection nc = db.createNoteCollection(false);
+			nc.setSelectDocuments(true);
+			nc.setSelectionFormula(typeFilter);
+			nc.buildCollection();
+			Set<NoteCoordinate> live = new HashSet<NoteCoordinate>(nc.getCount());
+			for (String noteid : nc) {
+				live.add(NoteCoordinate.Utils.getNoteCoordinate(nc, noteid));
+			}
+			for (NoteCoordinate id : result.getIds()) {
+				if (!live.contains(id)) {
+					result.remove(id);
+				}
+			}
+			nc = db.createNoteCollection(false);
+			nc.setSelectDocuments(true);
+			nc.setSelectionFormula(typeFilter);
+			nc.setSinceTime(new Date(result.getAsOf()));
+			nc.buildCollection();
+			for (String noteid : nc) {
+				indexDocument(result, NoteCoordinate.Utils.getNoteCoordinate(nc, noteid), db.getDocumentByID(noteid));
+			}
+		} else {
+			result = new DPropertyIndex(indexedKeys_);
+			StringBuilder formula = new StringBuilder();
+			for (String key : result.getKeys()) {
+				formula.append(formula.length() == 0 ? "(" : " | ").append("@IsAvailable(").append(key).append(")");
+			}
+			NoteCollection nc = db.createNoteCollection(false);
+			nc.setSelectDocuments(true);
+			nc.setSelectionFormula(typeFilter + " & " + formula.append(")"));
+			nc.buildCollection();
+			for (String noteid : nc) {
+				indexDocument(result, NoteCoordinate.Utils.getNoteCoordinate(nc, noteid), db.getDocumentByID(noteid));
+			}
+		}
+		result.setAsOf(start - INDEX_TIME_MARGIN);
+		saveIndex(db, itemName, result);
+		if (log_.isLoggable(Level.FINE)) {
+			log_.log(Level.FINE, "Loaded " + result + " for " + db.getApiPath() + " in " + (System.currentTimeMillis() - start) + "ms");
+		}
+		return result;
+	}
+
+	protected void saveIndex(final Database db, final String itemName, final DPropertyIndex index) {
+		try {
+			Document note = db.getDocumentWithKey(INDEX_NOTE_KEY, true);
+			note.writeBinary(itemName, index.toByteArray(), 2048 * 24);
+			note.save();
+		} catch (Exception e) {
+			log_.log(Level.WARNING, "Unable to save the property index " + itemName + " in " + db.getApiPath(), e);
+		}
+	}
+
+	/**
+	 * Saves the property indexes that are loaded to the index note of the store, so they do not have to be built again when the store is
+	 * opened next time. Only the changes made after the save are then read from the database.
+	 */
+	public void saveIndexes() {
+		Database db = getIndexDatabase();
+		if (db != null) {
+			DPropertyIndex index = vertexIndex_;
+			if (index != null) {
+				saveIndex(db, VERTEX_INDEX_ITEM, index);
+			}
+			index = edgeIndex_;
+			if (index != null) {
+				saveIndex(db, EDGE_INDEX_ITEM, index);
+			}
+		}
+	}
+
+	/*
+	 * Reads the elements again that were changed outside of the graph, see flushCache(String)
+	 */
+	private void refreshIndex(final DPropertyIndex index, final String graphType) {
+		List<NoteCoordinate> stale = index.drainStale();
+		if (!stale.isEmpty()) {
+			Database db = getIndexDatabase();
+			for (NoteCoordinate id : stale) {
+				Document doc = db == null ? null : db.getDocumentByUNID(id.getUNID());
+				if (doc != null && !graphType.equals(doc.getItemValueString(org.openntf.domino.graph2.DElement.TYPE_FIELD))) {
+					doc = null; // not an element of this index
+				}
+				indexDocument(index, id, doc);
+			}
+		}
+	}
+
+	private void indexDocument(final DPropertyIndex index, final NoteCoordinate id, final Document doc) {
+		if (doc == null || doc.isDeleted()) {
+			index.remove(id);
+			return;
+		}
+		for (String key : index.getKeys()) {
+			index.put(id, key, doc.hasItem(key) ? doc.getItemValue(key) : null);
+		}
+	}
+
+	/*
+	 * Called by DElement once its changes have been saved
+	 */
+	void updateIndex(final DElement element) {
+		DPropertyIndex index = element instanceof Vertex ? vertexIndex_ : edgeIndex_;
+		Object id = element.getId();
+		Object delegate = element.getDelegate();
+		if (index != null && id instanceof NoteCoordinate && delegate instanceof Document) {
+			indexDocument(index, (NoteCoordinate) id, (Document) delegate);
+		}
+	}
+
+	private void unindex(final Element element) {
+		DPropertyIndex index = element instanceof Vertex ? vertexIndex_ : edgeIndex_;
+		Object id = element.getId();
+		if (index != null && id instanceof NoteCoordinate) {
+			index.remove((NoteCoordinate) id);
+		}
+	}
+
 	@Override
 	public DElementIterable getElements(final String key, final Object value) {
 		String formulaFilter = org.openntf.domino.graph2.DGraph.Utils.getElementFormula(key, value);
@@ -1624,7 +1993,9 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 	@Override
 	public void flushCache() {
 		keyMap_ = null;
-		elementCache_ = null;
+		dropElementCache();
+		vertexIndex_ = null;
+		edgeIndex_ = null;
 	}
 
 	@Override
@@ -1639,6 +2010,18 @@ public class DElementStore implements org.openntf.domino.graph2.DElementStore {
 		} catch (Throwable t) {
 			t.printStackTrace();
 		}
+		DPropertyIndex vertexIndex = vertexIndex_;
+		DPropertyIndex edgeIndex = edgeIndex_;
+		if (vertexIndex != null || edgeIndex != null) {
+			// the document may have been changed outside of the graph, so read it again before the next lookup
+			NoteCoordinate nc = NoteCoordinate.Utils.getNoteCoordinate(id);
+			if (vertexIndex != null) {
+				vertexIndex.invalidate(nc);
+			}
+			if (edgeIndex != null) {
+				edgeIndex.invalidate(nc);
+			}
+		}
 		try {
 			if (this.getElementCache() != null) {
 				NoteCoordinate nc = NoteCoordinate.Utils.getNoteCoordinate(id);
@@ -18,8 +18,11 @@ package org.openntf.domino.graph2.impl;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -292,29 +295,86 @@ public class DGraph implements org.openntf.domino.graph2.DGraph {
 
 	}
 
+	/*
+	 * An element of a transaction with the position it is written in
+	 */
+	private static class CommitEntry {
+		final DElement element;
+		final long dbKey;
+		final long noteId;
+
+		CommitEntry(final DElement element) {
+			this.element = element;
+			Object id = element.getId();
+			dbKey = id instanceof NoteCoordinate ? ((NoteCoordinate) id).getReplicaLong() : Long.MAX_VALUE;
+			long nid = Long.MAX_VALUE; // new notes have no note id yet, they are appended at the end of the database
+			Object delegate = element.getDelegate();
+			if (delegate instanceof Document) {
+				try {
+					long chk = Long.parseLong(((Document) delegate).getNoteID(), 16);
+					if (chk != 0) {
+						nid = chk;
+					}
+				} catch (NumberFormatException nfe) {
+				}
+			}
+			noteId = nid;
+		}
+	}
+
+	private static final int MAX_COMMIT_PASSES = 8;
+
+	private static final Comparator<CommitEntry> COMMIT_ORDER = new Comparator<CommitEntry>() {
+		@Override
+		public int compare(final CommitEntry o1, final CommitEntry o2) {
+			if (o1.dbKey != o2.dbKey) {
+				return o1.dbKey < o2.dbKey ? -1 : 1;
+			}
+			return o1.noteId < o2.noteId ? -1 : (o1.noteId == o2.noteId ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Writes the changes of all elements in the transaction of this thread.
+	 *
+	 * The elements are written grouped by database and in note id order within each database, so the saves follow the layout of the NSF
+	 * instead of the hash order of the transaction. A vertex has its edge lists and counts written once per commit, however many edges were
+	 * added to it. Elements that are added to the transaction while it is written, e.g. vertices whose edge lists change when an edge is
+	 * saved after them, are written in a further pass.
+	 */
 	@Override
 	public void commit() {
 		GraphTransaction txn = localTxn.get();
 		if (txn != null) {
-			Iterator<Element> it = txn.iterator();
 			int count = 0;
-			while (it.hasNext()) {
-				Element elem = it.next();
-				if (elem instanceof DElement) {
-					DElement delem = (DElement) elem;
+			int passes = 0;
+			while (!txn.isEmpty() && passes++ < MAX_COMMIT_PASSES) {
+				List<CommitEntry> entries = new ArrayList<CommitEntry>(txn.size());
+				Iterator<Element> it = txn.iterator();
+				while (it.hasNext()) {
+					Element elem = it.next();
+					if (elem instanceof DElement) {
+						entries.add(new CommitEntry((DElement) elem));
+					} else {
+						it.remove();
+					}
+				}
+				Collections.sort(entries, COMMIT_ORDER);
+				for (CommitEntry entry : entries) {
 					try {
-						delem.applyChanges();
-						//						delem.uncache();
+						entry.element.applyChanges();
 					} catch (DocumentWriteAccessException t) {
 						System.err.println(t.getMessage());
 					} catch (Throwable t) {
 						t.printStackTrace();
 					}
-					//					DElementStore store = findElementStore(elem.getId());
-					//				store.uncache(delem);
+					// removed after it is written, so a change another element makes to it later goes into the next pass
+					txn.remove(entry.element);
 					count++;
 				}
-				it.remove();
+			}
+			if (!txn.isEmpty()) {
+				log_.warning("Commit stopped after " + MAX_COMMIT_PASSES + " passes with " + txn.size() + " elements still changing");
 			}
 			//			System.out.println("TEMP DEBUG: Transaction committed changes to " + count + " elements");
 		}
@@ -349,7 +409,13 @@ public class DGraph implements org.openntf.domino.graph2.DGraph {
 	@Override
 	public void startTransaction(final Element elem) {
 		GraphTransaction txn = localTxn.get();
-		txn.add(elem);
+		if (txn.add(elem)) {
+			// an element from a scan may not be cached yet, but its pending changes must be seen by later lookups
+			DElementStore store = findElementStore(elem);
+			if (store instanceof org.openntf.domino.graph2.impl.DElementStore) {
+				((org.openntf.domino.graph2.impl.DElementStore) store).cacheElement(elem);
+			}
+		}
 	}
 
 	public void clearTransaction() {
@@ -764,6 +830,20 @@ public class DGraph implements org.openntf.domino.graph2.DGraph {
 		}
 	}
 
+	@Override
+	public Map<String, Map<String, Object>> getCacheStatistics() {
+		Map<String, Map<String, Object>> result = new LinkedHashMap<String, Map<String, Object>>();
+		// proxied stores are registered under more than one key
+		Set<DElementStore> seen = Collections.newSetFromMap(new IdentityHashMap<DElementStore, Boolean>());
+		for (DElementStore store : getElementStores().values()) {
+			if (seen.add(store)) {
+				Long key = store.getStoreKey();
+				result.put(key == null ? String.valueOf(store) : NoteCoordinate.Utils.getReplidFromLong(key), store.getCacheStatistics());
+			}
+		}
+		return result;
+	}
+
 	//TODO NTF - Add capability to handle a collection of ids for bulk deletes
 	@Override
 	public void flushCache(final String id) {
@@ -0,0 +1,396 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.graph2.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openntf.domino.DateTime;
+import org.openntf.domino.big.NoteCoordinate;
+
+/**
+ * An in-memory index of the values of some properties of the elements in a {@link DElementStore}.
+ *
+ * Values are compared the way the formula searches of the store compare them: numbers only match numbers and date/times only match
+ * date/times, text is case-insensitive, enums are compared as the text of their class and name, and a multi-value property matches each
+ * of its values. Prefix lookups follow {@link org.openntf.domino.graph2.DGraph.Utils#convertToStartsFormula(String, Object)} and only
+ * match text.
+ *
+ * The index is thread-safe: the changes to one element are applied atomically, lookups see either the old or the new values of an
+ * element that is being changed. It does not read the NSF itself; the store feeds it with {@link #put(NoteCoordinate, String, Object)}
+ * and {@link #remove(NoteCoordinate)}.
+ */
+@SuppressWarnings("nls")
+public class DPropertyIndex {
+	private static final int FORMAT_VERSION = 2;
+	/* the index values start with the type of the value, so the number 5 and the text "5" don't match */
+	private static final char NUMBER = 'n';
+	private static final char DATE = 'd';
+	private static final char TEXT = 't';
+	/** values longer than this are not indexed, lookups for them have to search the NSF */
+	public static final int MAX_VALUE_LENGTH = 512;
+
+	private final Set<String> keys_;
+	private final Map<String, ConcurrentSkipListMap<String, Set<NoteCoordinate>>> entries_ = //
+			new ConcurrentHashMap<String, ConcurrentSkipListMap<String, Set<NoteCoordinate>>>();
+	/** the index values of each element, to remove them when the element changes */
+	private final Map<NoteCoordinate, Map<String, List<String>>> elements_ = new ConcurrentHashMap<NoteCoordinate, Map<String, List<String>>>();
+	private final Set<NoteCoordinate> stale_ = Collections.newSetFromMap(new ConcurrentHashMap<NoteCoordinate, Boolean>());
+	private volatile long asOf_;
+
+	public DPropertyIndex(final Collection<String> keys) {
+		Set<String> localKeys = new TreeSet<String>();
+		for (String key : keys) {
+			localKeys.add(key.toLowerCase());
+		}
+		keys_ = Collections.unmodifiableSet(localKeys);
+		for (String key : keys_) {
+			entries_.put(key, new ConcurrentSkipListMap<String, Set<NoteCoordinate>>());
+		}
+	}
+
+	/**
+	 * @return the lower-cased names of the indexed properties
+	 */
+	public Set<String> getKeys() {
+		return keys_;
+	}
+
+	public boolean isIndexed(final String key) {
+		return key != null && keys_.contains(key.toLowerCase());
+	}
+
+	/**
+	 * Converts a value to the form it is indexed in.
+	 *
+	 * @return the index value, or null if the value cannot be indexed
+	 */
+	public static String toIndexValue(final Object value) {
+		if (value == null) {
+			return null;
+		} else if (value instanceof Number) {
+			double d = ((Number) value).doubleValue();
+			return NUMBER + (d == (long) d ? Long.toString((long) d) : Double.toString(d));
+		} else if (value instanceof DateTime) {
+			return DATE + Long.toString(((DateTime) value).toJavaDate().getTime());
+		} else if (value instanceof Date) {
+			return DATE + Long.toString(((Date) value).getTime());
+		} else {
+			return toTextValue(value);
+		}
+	}
+
+	/*
+	 * Converts a value to the index form of its text, the way the formulas of the store do
+	 */
+	private static String toTextValue(final Object value) {
+		String result;
+		if (value instanceof Enum<?>) {
+			result = ((Enum<?>) value).getDeclaringClass().getName() + " " + ((Enum<?>) value).name();
+		} else {
+			result = String.valueOf(value);
+		}
+		return result.length() > MAX_VALUE_LENGTH ? null : TEXT + result.toLowerCase();
+	}
+
+	private static List<String> toIndexValues(final Object value) {
+		List<String> result = new ArrayList<String>(1);
+		if (value instanceof Collection<?>) {
+			for (Object o : (Collection<?>) value) {
+				String s = toIndexValue(o);
+				if (s != null && !result.contains(s)) {
+					result.add(s);
+				}
+			}
+		} else if (value instanceof Object[]) {
+			for (Object o : (Object[]) value) {
+				String s = toIndexValue(o);
+				if (s != null && !result.contains(s)) {
+					result.add(s);
+				}
+			}
+		} else {
+			String s = toIndexValue(value);
+			if (s != null) {
+				result.add(s);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the value of a property of an element, replacing the value indexed before. A null value removes the property from the index.
+	 */
+	public void put(final NoteCoordinate id, final String key, final Object value) {
+		final String localKey = key.toLowerCase();
+		final ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries = entries_.get(localKey);
+		if (entries == null) {
+			return;
+		}
+		final List<String> values = toIndexValues(value);
+		// compute() runs one change of an element at a time
+		elements_.compute(id, (k, element) -> {
+			if (element == null) {
+				if (values.isEmpty()) {
+					return null;
+				}
+				element = new ConcurrentHashMap<String, List<String>>();
+			}
+			List<String> previous = values.isEmpty() ? element.remove(localKey) : element.put(localKey, values);
+			if (previous != null) {
+				for (String s : previous) {
+					if (!values.contains(s)) {
+						removeEntry(entries, s, id);
+					}
+				}
+			}
+			for (String s : values) {
+				addEntry(entries, s, id);
+			}
+			return element.isEmpty() ? null : element;
+		});
+	}
+
+	/**
+	 * Removes an element from the index
+	 */
+	public void remove(final NoteCoordinate id) {
+		elements_.computeIfPresent(id, (k, element) -> {
+			for (Map.Entry<String, List<String>> entry : element.entrySet()) {
+				ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries = entries_.get(entry.getKey());
+				for (String s : entry.getValue()) {
+					removeEntry(entries, s, id);
+				}
+			}
+			return null;
+		});
+	}
+
+	/*
+	 * The ids of a value are changed while holding their lock. A set that became empty is removed from the map under the lock, so
+	 * addEntry retries with a new set if it got one that was removed in the meantime.
+	 */
+	private static void addEntry(final ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries, final String value,
+			final NoteCoordinate id) {
+		while (true) {
+			Set<NoteCoordinate> ids = entries
+					.computeIfAbsent(value, k -> Collections.newSetFromMap(new ConcurrentHashMap<NoteCoordinate, Boolean>()));
+			synchronized (ids) {
+				if (entries.get(value) == ids) {
+					ids.add(id);
+					return;
+				}
+			}
+		}
+	}
+
+	private static void removeEntry(final ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries, final String value,
+			final NoteCoordinate id) {
+		Set<NoteCoordinate> ids = entries.get(value);
+		if (ids != null) {
+			synchronized (ids) {
+				ids.remove(id);
+				if (ids.isEmpty()) {
+					entries.remove(value, ids);
+				}
+			}
+		}
+	}
+
+	public boolean contains(final NoteCoordinate id) {
+		return elements_.containsKey(id);
+	}
+
+	/**
+	 * @return the ids of all indexed elements
+	 */
+	public Set<NoteCoordinate> getIds() {
+		return Collections.unmodifiableSet(elements_.keySet());
+	}
+
+	/**
+	 * Returns the elements which have the value in the property.
+	 *
+	 * @return the ids, or null if the property is not indexed or the value cannot be looked up in the index
+	 */
+	public List<NoteCoordinate> getEquals(final String key, final Object value) {
+		ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries = key == null ? null : entries_.get(key.toLowerCase());
+		String s = toIndexValue(value);
+		if (entries == null || s == null) {
+			return null;
+		}
+		Set<NoteCoordinate> ids = entries.get(s);
+		return ids == null ? new ArrayList<NoteCoordinate>(0) : new ArrayList<NoteCoordinate>(ids);
+	}
+
+	/**
+	 * Returns the elements which have a text value in the property that starts with the text of the prefix.
+	 *
+	 * @return the ids, or null if the property is not indexed or the prefix cannot be looked up in the index
+	 */
+	public List<NoteCoordinate> getStartsWith(final String key, final Object prefix) {
+		ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries = key == null ? null : entries_.get(key.toLowerCase());
+		String s = prefix == null ? null : toTextValue(prefix);
+		if (entries == null || s == null) {
+			return null;
+		}
+		Set<NoteCoordinate> result = new LinkedHashSet<NoteCoordinate>();
+		NavigableMap<String, Set<NoteCoordinate>> range = entries.subMap(s, true, s + Character.MAX_VALUE, false);
+		for (Set<NoteCoordinate> ids : range.values()) {
+			result.addAll(ids);
+		}
+		return new ArrayList<NoteCoordinate>(result);
+	}
+
+	/**
+	 * Marks an element as changed outside of the graph, so the store reads it again before the next lookup
+	 */
+	public void invalidate(final NoteCoordinate id) {
+		stale_.add(id);
+	}
+
+	/**
+	 * Returns and clears the elements that were invalidated since the last call
+	 */
+	public List<NoteCoordinate> drainStale() {
+		List<NoteCoordinate> result = new ArrayList<NoteCoordinate>();
+		for (NoteCoordinate id : stale_) {
+			if (stale_.remove(id)) {
+				result.add(id);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the time up to which changes to the NSF are reflected in the index
+	 */
+	public long getAsOf() {
+		return asOf_;
+	}
+
+	public void setAsOf(final long asOf) {
+		asOf_ = asOf;
+	}
+
+	public int size() {
+		return elements_.size();
+	}
+
+	/**
+	 * Writes the index in a compressed binary form, to be stored in an index note.
+	 */
+	public byte[] toByteArray() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(new GZIPOutputStream(baos));
+		out.writeInt(FORMAT_VERSION);
+		out.writeLong(asOf_);
+		out.writeInt(keys_.size());
+		for (String key : keys_) {
+			out.writeUTF(key);
+			ConcurrentSkipListMap<String, Set<NoteCoordinate>> entries = entries_.get(key);
+			List<Map.Entry<String, Set<NoteCoordinate>>> snapshot = new ArrayList<Map.Entry<String, Set<NoteCoordinate>>>(
+					entries.entrySet());
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Set<NoteCoordinate>> entry : snapshot) {
+				List<NoteCoordinate> ids = new ArrayList<NoteCoordinate>(entry.getValue());
+				out.writeUTF(entry.getKey());
+				out.writeInt(ids.size());
+				for (NoteCoordinate id : ids) {
+					out.writeLong(id.getReplicaLong());
+					out.writeLong(id.getX());
+					out.writeLong(id.getY());
+				}
+			}
+		}
+		out.close();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Reads an index that was written with {@link #toByteArray()}.
+	 *
+	 * @return the index, or null if it was written for different keys or in a different format
+	 */
+	public static DPropertyIndex fromByteArray(final byte[] bytes, final Collection<String> keys) throws IOException {
+		DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)));
+		try {
+			if (in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			DPropertyIndex result = new DPropertyIndex(keys);
+			result.setAsOf(in.readLong());
+			int keyCount = in.readInt();
+			if (keyCount != result.getKeys().size()) {
+				return null;
+			}
+			for (int k = 0; k < keyCount; k++) {
+				String key = in.readUTF();
+				if (!result.isIndexed(key)) {
+					return null;
+				}
+				int valueCount = in.readInt();
+				for (int v = 0; v < valueCount; v++) {
+					String value = in.readUTF();
+					int idCount = in.readInt();
+					for (int i = 0; i < idCount; i++) {
+						NoteCoordinate id = NoteCoordinate.Utils.getNoteCoordinate(in.readLong(), in.readLong(), in.readLong());
+						result.add(id, key, value);
+					}
+				}
+			}
+			return result;
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Adds a single value that is already in index form, used when the index is read back
+	 */
+	private void add(final NoteCoordinate id, final String key, final String value) {
+		elements_.compute(id, (k, element) -> {
+			if (element == null) {
+				element = new ConcurrentHashMap<String, List<String>>();
+			}
+			element.computeIfAbsent(key, k2 -> new ArrayList<String>(1)).add(value);
+			addEntry(entries_.get(key), value, id);
+			return element;
+		});
+	}
+
+	@Override
+	public String toString() {
+		return "DPropertyIndex [keys=" + keys_ + ", elements=" + size() + "]";
+	}
+}
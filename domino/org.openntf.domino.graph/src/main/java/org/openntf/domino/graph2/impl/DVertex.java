@@ -16,10 +16,13 @@
 package org.openntf.domino.graph2.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
@@ -28,6 +31,7 @@ import java.util.logging.Logger;
 import org.openntf.domino.Database;
 import org.openntf.domino.Document;
 import org.openntf.domino.View;
+import org.openntf.domino.big.NoteCoordinate;
 import org.openntf.domino.big.NoteList;
 import org.openntf.domino.graph2.DEdgeList;
 
@@ -106,16 +110,91 @@ public class DVertex extends DElement implements org.openntf.domino.graph2.DVert
 		}
 	}
 
+	/**
+	 * Returns the adjacent vertices. Edge lists that are saved and not loaded into this vertex are read page by page while the result is
+	 * iterated, so iterating the neighbours of a vertex with many edges neither loads its whole edge lists nor keeps them in the vertex.
+	 */
 	@Override
 	public Iterable<Vertex> getVertices(final Direction direction, final String... labels) {
+		List<Iterable<Vertex>> list = new ArrayList<Iterable<Vertex>>();
 		if (direction == Direction.BOTH) {
-			List<Iterable<Vertex>> list = new ArrayList<Iterable<Vertex>>();
-			list.add(new VerticesFromEdgesIterable(this, Direction.IN, labels));
-			list.add(new VerticesFromEdgesIterable(this, Direction.OUT, labels));
-			return new MultiIterable<Vertex>(list);
+			list.add(getVertices(Direction.IN, labels));
+			list.add(getVertices(Direction.OUT, labels));
 		} else {
-			return new VerticesFromEdgesIterable(this, direction, labels);
+			Collection<String> labelList = labels == null || labels.length == 0
+					? (direction == Direction.IN ? getInEdgeLabels() : getOutEdgeLabels()) : Arrays.asList(labels);
+			for (String label : labelList) {
+				Iterable<NoteCoordinate> edgeIds = getPagedEdgeIds(direction, label);
+				if (edgeIds == null) {
+					list.add(new VerticesFromEdgesIterable(this, direction, label));
+				} else {
+					list.add(getVerticesFromEdgeIds(edgeIds, direction));
+				}
+			}
+		}
+		return new MultiIterable<Vertex>(list);
+	}
+
+	/**
+	 * Returns the saved edge ids of a label page by page.
+	 *
+	 * @return the pages, or null if the edge list is loaded into this vertex or is not saved in an item of the document
+	 */
+	protected DEdgeIdPages getPagedEdgeIds(final Direction direction, final String label) {
+		Map<String, NoteList> loaded = direction == Direction.IN ? getInEdgesMap() : getOutEdgesMap();
+		if (label == null || loaded.containsKey(label)) {
+			return null;
+		}
+		String key = (direction == Direction.IN ? DVertex.IN_PREFIX : DVertex.OUT_PREFIX) + label;
+		Map<String, Object> delegate = getDelegate();
+		if (delegate instanceof Document && ((Document) delegate).hasItem(key)) {
+			return new DEdgeIdPages((Document) delegate, key);
 		}
+		return null;
+	}
+
+	protected Iterable<Vertex> getVerticesFromEdgeIds(final Iterable<NoteCoordinate> edgeIds, final Direction direction) {
+		final Direction opposite = direction.opposite();
+		return new Iterable<Vertex>() {
+			@Override
+			public Iterator<Vertex> iterator() {
+				final Iterator<NoteCoordinate> ids = edgeIds.iterator();
+				return new Iterator<Vertex>() {
+					private Vertex next_;
+
+					@Override
+					public boolean hasNext() {
+						while (next_ == null && ids.hasNext()) {
+							NoteCoordinate id = ids.next();
+							try {
+								Edge edge = getParent().getEdge(id);
+								if (edge != null) {
+									next_ = edge.getVertex(opposite);
+								}
+							} catch (Throwable t) {
+								log_.log(Level.WARNING, "Unable to get edge " + id + " of vertex " + getId(), t);
+							}
+						}
+						return next_ != null;
+					}
+
+					@Override
+					public Vertex next() {
+						if (!hasNext()) {
+							throw new NoSuchElementException();
+						}
+						Vertex result = next_;
+						next_ = null;
+						return result;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
 	}
 
 	@Override
@@ -295,6 +374,7 @@ public class DVertex extends DElement implements org.openntf.domino.graph2.DVert
 			NoteList list = getInEdgesSet(label);
 			int count = getInEdgeCount(label);
 			if (count != list.size()) {
+				// saved right away, read-only requests end with a rollback and would lose the repair
 				setProperty("_COUNT" + DVertex.IN_PREFIX + label, list.size());
 				applyChanges();
 			}
@@ -319,6 +399,7 @@ public class DVertex extends DElement implements org.openntf.domino.graph2.DVert
 			NoteList list = getOutEdgesSet(label);
 			int count = getOutEdgeCount(label);
 			if (count != list.size()) {
+				// saved right away, read-only requests end with a rollback and would lose the repair
 				setProperty("_COUNT" + DVertex.OUT_PREFIX + label, list.size());
 				applyChanges();
 			}
@@ -342,7 +423,8 @@ public class DVertex extends DElement implements org.openntf.domino.graph2.DVert
 		} else {
 			NoteList edgeIds = getInEdgesMap().get(label);
 			if (edgeIds == null) {
-				return getProperty("_COUNT" + DVertex.IN_PREFIX + label, Integer.class, false);
+				DEdgeIdPages pages = getPagedEdgeIds(Direction.IN, label);
+				return pages == null ? 0 : pages.size();
 			} else {
 				return edgeIds.size();
 			}
@@ -403,11 +485,8 @@ public class DVertex extends DElement implements org.openntf.domino.graph2.DVert
 		} else {
 			NoteList edgeIds = getOutEdgesMap().get(label);
 			if (edgeIds == null) {
-				try {
-					return getProperty("_COUNT" + DVertex.OUT_PREFIX + label, Integer.class, false);
-				} catch (Throwable t) {
-					throw new RuntimeException("Exception getting edge count for label " + label, t);
-				}
+				DEdgeIdPages pages = getPagedEdgeIds(Direction.OUT, label);
+				return pages == null ? 0 : pages.size();
 			} else {
 				return edgeIds.size();
 			}
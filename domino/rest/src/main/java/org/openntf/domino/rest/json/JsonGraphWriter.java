@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
@@ -52,6 +53,7 @@ public class JsonGraphWriter extends JsonWriter {
 	protected ParamMap parameters_;
 	protected JsonGraphFactory factory_;
 	protected boolean isCollectionRoute_;
+	protected Writer writer_;
 
 	private static ThreadLocal<SimpleDateFormat> ISO8601_UTC = new ThreadLocal<SimpleDateFormat>() {
 		@Override
@@ -88,6 +90,7 @@ public class JsonGraphWriter extends JsonWriter {
 	public JsonGraphWriter(final Writer arg1, final DFramedTransactionalGraph<?> graph, final ParamMap parameters, final boolean arg2,
 			final boolean forceLowerCaseKeys, final boolean isCollectionRoute) {
 		super(JsonGraphFactory.instance, arg1, arg2);
+		writer_ = arg1;
 		factory_ = JsonGraphFactory.instance;
 		forceLowerCaseKeys_ = forceLowerCaseKeys;
 		parameters_ = parameters;
@@ -351,6 +354,34 @@ public class JsonGraphWriter extends JsonWriter {
 		super.outArrayLiteral(arg0);
 	}
 
+	/**
+	 * Writes the elements as a JSON array while they are iterated. Unlike {@link #outArrayLiteral(Object)}, no element is held after it
+	 * has been written, and the underlying writer is flushed every <code>flushInterval</code> elements, so a writer on the response
+	 * stream sends the array in chunks and the memory used does not depend on the number of elements.
+	 *
+	 * @param elements
+	 *            the elements to write
+	 * @param flushInterval
+	 *            the number of elements after which the writer is flushed, or 0 to flush only at the end
+	 * @return the number of elements written
+	 */
+	public int outArrayStreamed(final Iterator<?> elements, final int flushInterval) throws IOException, JsonException {
+		int count = 0;
+		startArray();
+		while (elements.hasNext()) {
+			startArrayItem();
+			outLiteral(elements.next(), true);
+			endArrayItem();
+			count++;
+			if (flushInterval > 0 && count % flushInterval == 0) {
+				writer_.flush();
+			}
+		}
+		endArray();
+		writer_.flush();
+		return count;
+	}
+
 	@Override
 	protected void outLiteral(Object paramObject, final boolean paramBoolean) throws IOException, JsonException {
 		// System.out.println("TEMP DEBUG outputting a literal of "
@@ -15,9 +15,13 @@
  */
 package org.openntf.domino.rest.resources.frames;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Date;
@@ -42,6 +46,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.ResponseBuilder;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 import org.openntf.domino.big.NoteCoordinate;
@@ -74,6 +79,8 @@ import com.tinkerpop.frames.VertexFrame;
 @SuppressWarnings({ "rawtypes", "unchecked", "nls" })
 @Path(Routes.ROOT + "/" + Routes.FRAMES + "/" + Routes.NAMESPACE_PATH_PARAM)
 public class FramedCollectionResource extends AbstractCollectionResource {
+	/** number of elements after which a streamed response is flushed to the client */
+	public static final int STREAM_FLUSH_INTERVAL = 100;
 
 	public FramedCollectionResource(final ODAGraphService service) {
 		super(service);
@@ -107,6 +114,52 @@ public class FramedCollectionResource extends AbstractCollectionResource {
 		return berg;
 	}
 
+	/**
+	 * A collection is streamed if the request has a <code>stream</code> parameter, or if a threshold is configured for the service and the
+	 * collection has more elements. Streaming is off by default, because streamed responses cannot be cached or answered with a 304.
+	 */
+	protected boolean isStreamed(final ParamMap pm, final int size) {
+		if (pm.getStream()) {
+			return true;
+		}
+		int threshold = service_.getStreamThreshold();
+		return threshold > 0 && size > threshold;
+	}
+
+	/**
+	 * Creates a response that writes the elements to the response stream while they are iterated, instead of rendering them to a String
+	 * first. The response has no content length, so it is sent with chunked transfer encoding, and it has no ETag, because the body is not
+	 * known before it is sent.
+	 *
+	 * The entity is written by the container after this method has returned, but still within the service call, so the thread keeps its
+	 * session. Errors that occur while writing can no longer change the status, they abort the response. The graph is rolled back once the
+	 * elements are written, like at the end of a buffered request.
+	 */
+	protected Response getStreamingResponse(final DFramedTransactionalGraph graph, final ParamMap pm, final Iterable<?> elements) {
+		StreamingOutput output = new StreamingOutput() {
+			@Override
+			public void write(final OutputStream os) throws IOException {
+				Writer out = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+				JsonGraphWriter writer = new JsonGraphWriter(out, graph, pm, false, true, true);
+				try {
+					writer.outArrayStreamed(elements.iterator(), STREAM_FLUSH_INTERVAL);
+				} catch (JsonException e) {
+					throw new IOException(e);
+				} finally {
+					graph.rollback();
+				}
+			}
+		};
+		ResponseBuilder berg = Response.ok(output, MediaType.APPLICATION_JSON_TYPE);
+		berg.lastModified(new Date());
+		CacheControl cc = new CacheControl();
+		cc.setNoCache(true);
+		cc.setPrivate(true);
+		cc.setNoTransform(true);
+		berg.cacheControl(cc);
+		return berg.build();
+	}
+
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	public Response getFramedObject(@Context final UriInfo uriInfo, @PathParam(Routes.NAMESPACE) final String namespace,
@@ -144,10 +197,18 @@ public class FramedCollectionResource extends AbstractCollectionResource {
 
 					if (elements instanceof FramedEdgeList) {
 						List<?> result = sortAndLimitList((List<?>) elements, pm);
+						if (isStreamed(pm, result.size())) {
+							return getStreamingResponse(graph, pm, result);
+						}
 						writer.outArrayLiteral(result);
 					} else if (elements instanceof FramedVertexList) {
 						List<?> result = sortAndLimitList((List<?>) elements, pm);
+						if (isStreamed(pm, result.size())) {
+							return getStreamingResponse(graph, pm, result);
+						}
 						writer.outArrayLiteral(result);
+					} else if (pm.getStream()) {
+						return getStreamingResponse(graph, pm, elements);
 					} else {
 						List<Object> maps = new ArrayList<Object>();
 						for (Object element : elements) {
@@ -196,10 +257,16 @@ public class FramedCollectionResource extends AbstractCollectionResource {
 					}
 					if (vresult != null) {
 						List<?> result = sortAndLimitList(vresult, pm);
+						if (eresult == null && isStreamed(pm, result.size())) {
+							return getStreamingResponse(graph, pm, result);
+						}
 						writer.outArrayLiteral(result);
 					}
 					if (eresult != null) {
 						List<?> result = sortAndLimitList(eresult, pm);
+						if (vresult == null && isStreamed(pm, result.size())) {
+							return getStreamingResponse(graph, pm, result);
+						}
 						writer.outArrayLiteral(result);
 					}
 				}
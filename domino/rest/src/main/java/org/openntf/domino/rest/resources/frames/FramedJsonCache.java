@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.rest.resources.frames;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of rendered JSON, keyed by the version ETag of the request.
+ *
+ * <p>
+ * A version ETag covers the element's metaversal id and last modification, the effective user and the query string, so an entry can
+ * never be served for a different version of the element or a different view of it. Entries are evicted least recently used first, when
+ * either the number of entries or the total number of characters exceeds its limit.
+ * </p>
+ */
+@SuppressWarnings("nls")
+public class FramedJsonCache {
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+	public static final long DEFAULT_MAX_CHARS = 16L * 1024 * 1024;
+
+	private final int maxEntries_;
+	private final long maxChars_;
+	private long chars_;
+	private final Map<String, String> entries_ = new LinkedHashMap<String, String>(64, 0.75f, true);
+	private final AtomicLong hitCount_ = new AtomicLong();
+	private final AtomicLong missCount_ = new AtomicLong();
+
+	public FramedJsonCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_CHARS);
+	}
+
+	/**
+	 * @param maxEntries
+	 *            the maximum number of rendered responses held
+	 * @param maxChars
+	 *            the maximum number of characters held over all responses
+	 */
+	public FramedJsonCache(final int maxEntries, final long maxChars) {
+		maxEntries_ = maxEntries;
+		maxChars_ = maxChars;
+	}
+
+	public String get(final String etag) {
+		String result;
+		synchronized (entries_) {
+			result = entries_.get(etag);
+		}
+		if (result == null) {
+			missCount_.incrementAndGet();
+		} else {
+			hitCount_.incrementAndGet();
+		}
+		return result;
+	}
+
+	public void put(final String etag, final String json) {
+		if (json.length() > maxChars_ / 4) {
+			return; // a single large response should not flush the cache
+		}
+		synchronized (entries_) {
+			String previous = entries_.put(etag, json);
+			if (previous != null) {
+				chars_ -= previous.length();
+			}
+			chars_ += json.length();
+			Iterator<String> it = entries_.values().iterator();
+			while ((entries_.size() > maxEntries_ || chars_ > maxChars_) && it.hasNext()) {
+				chars_ -= it.next().length();
+				it.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (entries_) {
+			entries_.clear();
+			chars_ = 0;
+		}
+	}
+
+	public int size() {
+		synchronized (entries_) {
+			return entries_.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount_.get();
+	}
+
+	public long getMissCount() {
+		return missCount_.get();
+	}
+
+	@Override
+	public String toString() {
+		return "FramedJsonCache [size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+	}
+}
@@ -51,6 +51,7 @@ import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import org.openntf.domino.Database;
+import org.openntf.domino.DateTime;
 import org.openntf.domino.Document;
 import org.openntf.domino.Session;
 import org.openntf.domino.big.NoteCoordinate;
@@ -62,7 +63,9 @@ import org.openntf.domino.graph2.DKeyResolver;
 import org.openntf.domino.graph2.builtin.DEdgeFrame;
 import org.openntf.domino.graph2.builtin.DVertexFrame;
 import org.openntf.domino.graph2.impl.DEdgeEntryList.KeyNotFoundException;
+import org.openntf.domino.graph2.impl.DElement;
 import org.openntf.domino.graph2.impl.DFramedTransactionalGraph;
+import org.openntf.domino.graph2.impl.DProxyVertex;
 import org.openntf.domino.rest.json.JsonGraphFactory;
 import org.openntf.domino.rest.json.JsonGraphWriter;
 import org.openntf.domino.rest.resources.AbstractResource;
@@ -109,6 +112,7 @@ public class FramedResource extends AbstractResource {
 		JsonGraphWriter writer = new JsonGraphWriter(sw, graph, pm, false, true, false);
 		Date lastModified = new Date();
 		boolean getLastMod = false;
+		EntityTag versionTag = null;
 		try {
 			if (pm.get(Parameters.ID) != null) {
 				List<String> ids = pm.get(Parameters.ID);
@@ -192,6 +196,13 @@ public class FramedResource extends AbstractResource {
 						throw new WebApplicationException(
 								ErrorHelper.createErrorResponse(e, Response.Status.INTERNAL_SERVER_ERROR));
 					}
+					versionTag = getVersionTag(elem, namespace, pm, uriInfo);
+					if (versionTag != null) {
+						Response cached = getCachedResponse(versionTag, lastModified, request);
+						if (cached != null) {
+							return cached;
+						}
+					}
 					writer.outObject(elem);
 				} else {
 					List<Object> maps = new ArrayList<Object>();
@@ -242,12 +253,28 @@ public class FramedResource extends AbstractResource {
 						if (vf instanceof DVertexFrame) {
 							lastModified = ((DVertexFrame) vf).getModified();
 						}
+						versionTag = getVersionTag(vf, namespace, pm, uriInfo);
+						if (versionTag != null) {
+							Response cached = getCachedResponse(versionTag, lastModified, request);
+							if (cached != null) {
+								graph.rollback();
+								return cached;
+							}
+						}
 						writer.outObject(vf);
 					} else if (elem instanceof Edge) {
 						EdgeFrame ef = (EdgeFrame) graph.frame((Edge) elem, type);
 						if (ef instanceof DEdgeFrame) {
 							lastModified = ((DEdgeFrame) ef).getModified();
 						}
+						versionTag = getVersionTag(ef, namespace, pm, uriInfo);
+						if (versionTag != null) {
+							Response cached = getCachedResponse(versionTag, lastModified, request);
+							if (cached != null) {
+								graph.rollback();
+								return cached;
+							}
+						}
 						writer.outObject(ef);
 					}
 				} else {
@@ -285,14 +312,90 @@ public class FramedResource extends AbstractResource {
 		}
 
 		String jsonEntity = sw.toString();
-		ResponseBuilder berg = getBuilder(jsonEntity, lastModified, true, request);
+		if (versionTag != null && getService().getJsonCache() != null) {
+			getService().getJsonCache().put(versionTag.getValue(), jsonEntity);
+		}
+		ResponseBuilder berg = getBuilder(jsonEntity, lastModified, true, request, versionTag);
 		Response response = berg.build();
 		return response;
 	}
 
+	/**
+	 * Builds an ETag from the version of the element's document instead of from the rendered JSON, so a conditional request can be
+	 * answered before anything is rendered.
+	 *
+	 * @return the tag, or null if the response also contains data from other documents or the element has no stored document
+	 */
+	protected EntityTag getVersionTag(final Object elem, final String namespace, final ParamMap pm, final UriInfo uriInfo) {
+		// These pull in edges and adjacent vertices, which change without touching the element's own document
+		if (pm.get(Parameters.EDGES) != null || pm.get(Parameters.VERTICES) != null || pm.get(Parameters.COUNTS) != null
+				|| pm.get(Parameters.ACTIONS) != null || pm.get(Parameters.INPROPS) != null || pm.get(Parameters.OUTPROPS) != null
+				|| pm.get(Parameters.INVPROPS) != null || pm.get(Parameters.OUTVPROPS) != null || pm.get(Parameters.VERSION) != null
+				|| pm.get(Parameters.DEBUG) != null) {
+			return null;
+		}
+		Element element = null;
+		if (elem instanceof VertexFrame) {
+			element = ((VertexFrame) elem).asVertex();
+		} else if (elem instanceof EdgeFrame) {
+			element = ((EdgeFrame) elem).asEdge();
+		} else if (elem instanceof Element) {
+			element = (Element) elem;
+		}
+		// a proxy vertex combines the properties of two documents
+		if (!(element instanceof DElement) || element instanceof DProxyVertex) {
+			return null;
+		}
+		try {
+			Document doc = ((DElement) element).asDocument();
+			if (doc == null || doc.isNewNote()) {
+				return null;
+			}
+			DateTime lastMod = doc.getLastModified();
+			if (lastMod == null) {
+				return null;
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(namespace).append('|');
+			sb.append(doc.getMetaversalID()).append('|');
+			sb.append(lastMod.toJavaDate().getTime()).append('|');
+			sb.append(Factory.getSession(SessionType.CURRENT).getEffectiveUserName()).append('|');
+			sb.append(uriInfo.getRequestUri().getRawQuery());
+			return new EntityTag("v" + DominoUtils.md5(sb.toString()));
+		} catch (UserAccessException uae) {
+			throw uae;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return a 304 if the client has the current version, the cached JSON if there is one, or null if the element must be rendered
+	 */
+	private Response getCachedResponse(final EntityTag versionTag, final Date lastMod, final Request request) {
+		if (request != null) {
+			ResponseBuilder berg = request.evaluatePreconditions(versionTag);
+			if (berg != null) {
+				return berg.build();
+			}
+		}
+		FramedJsonCache cache = getService().getJsonCache();
+		if (cache != null) {
+			String jsonEntity = cache.get(versionTag.getValue());
+			if (jsonEntity != null) {
+				return getBuilder(jsonEntity, lastMod, true, null, versionTag).build();
+			}
+		}
+		return null;
+	}
+
 	private ResponseBuilder getBuilder(final String jsonEntity, final Date lastMod, final boolean includeEtag, final Request request) {
-		String etagSource = DominoUtils.md5(jsonEntity);
-		EntityTag etag = new EntityTag(etagSource);
+		return getBuilder(jsonEntity, lastMod, includeEtag, request, null);
+	}
+
+	private ResponseBuilder getBuilder(final String jsonEntity, final Date lastMod, final boolean includeEtag, final Request request,
+			final EntityTag versionTag) {
+		EntityTag etag = versionTag != null ? versionTag : new EntityTag(DominoUtils.md5(jsonEntity));
 		ResponseBuilder berg = null;
 		if (request != null) {
 			berg = request.evaluatePreconditions(etag);
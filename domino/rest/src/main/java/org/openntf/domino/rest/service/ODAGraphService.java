@@ -39,6 +39,7 @@ import org.openntf.domino.rest.resources.AbstractResource;
 import org.openntf.domino.rest.resources.ReferenceResource;
 import org.openntf.domino.rest.resources.command.CommandResource;
 import org.openntf.domino.rest.resources.frames.FramedCollectionResource;
+import org.openntf.domino.rest.resources.frames.FramedJsonCache;
 import org.openntf.domino.rest.resources.frames.FramedResource;
 import org.openntf.domino.rest.resources.info.InfoResource;
 import org.openntf.domino.rest.resources.search.SearchResource;
@@ -66,7 +67,17 @@ public class ODAGraphService extends RestService implements IRestServiceExt {
 	private List<IResourceProvider> resourceProviders_;
 	private Set<AbstractResource> externalSingletons_ = new HashSet<AbstractResource>();
 	private Set<Class<?>> externalClasses_ = new HashSet<Class<?>>();
+	private FramedJsonCache jsonCache_;
+	private int streamThreshold_ = DEFAULT_STREAM_THRESHOLD;
 	public static final String PREFIX = "ODA Graph Service: ";
+	/** notes.ini or system property with the number of rendered framed responses to cache. Caching is off if it is not set */
+	public static final String JSON_CACHE_SIZE_PROPERTY = "org.openntf.domino.rest.jsonCacheSize";
+	/**
+	 * notes.ini or system property with the number of elements above which collections are streamed. Streamed responses have no ETag and
+	 * are not cached by the client. 0 (the default) streams only on request
+	 */
+	public static final String STREAM_THRESHOLD_PROPERTY = "org.openntf.domino.rest.streamThreshold";
+	public static final int DEFAULT_STREAM_THRESHOLD = 0;
 
 	static void report(final String message) {
 		System.out.println(PREFIX + message);
@@ -232,9 +243,52 @@ public class ODAGraphService extends RestService implements IRestServiceExt {
 		return getGraphMap().remove(name);
 	}
 
+	/**
+	 * @return the cache for rendered framed elements, or null if caching is not enabled
+	 */
+	public FramedJsonCache getJsonCache() {
+		return jsonCache_;
+	}
+
+	protected void initJsonCache() {
+		String size = ODAPlatform.getEnvironmentString(JSON_CACHE_SIZE_PROPERTY);
+		if (size != null && size.trim().length() > 0) {
+			try {
+				int maxEntries = Integer.parseInt(size.trim());
+				if (maxEntries > 0) {
+					jsonCache_ = new FramedJsonCache(maxEntries, FramedJsonCache.DEFAULT_MAX_CHARS);
+					report("Caching up to " + maxEntries + " rendered framed elements");
+				}
+			} catch (NumberFormatException nfe) {
+				report("Ignoring invalid " + JSON_CACHE_SIZE_PROPERTY + " value " + size);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of elements above which a collection is streamed to the client instead of being rendered in memory, or 0 if
+	 *         collections are only streamed when the request asks for it
+	 */
+	public int getStreamThreshold() {
+		return streamThreshold_;
+	}
+
+	protected void initStreamThreshold() {
+		String threshold = ODAPlatform.getEnvironmentString(STREAM_THRESHOLD_PROPERTY);
+		if (threshold != null && threshold.trim().length() > 0) {
+			try {
+				streamThreshold_ = Math.max(Integer.parseInt(threshold.trim()), 0);
+			} catch (NumberFormatException nfe) {
+				report("Ignoring invalid " + STREAM_THRESHOLD_PROPERTY + " value " + threshold);
+			}
+		}
+	}
+
 	public void init() {
 		try {
 			ODAPlatform.start();
+			initJsonCache();
+			initStreamThreshold();
 			initDynamicGraphs();
 		} catch (Throwable t) {
 			t.printStackTrace();
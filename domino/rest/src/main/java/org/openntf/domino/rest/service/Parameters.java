@@ -29,7 +29,7 @@ import org.openntf.domino.types.CaseInsensitiveString;
 public enum Parameters {
 	DEBUG, ID, KEY, TYPE, EDGES, VERTICES, COUNTS, DESC, FILTERKEY, FILTERVALUE, LABEL, DIRECTION, START,
 	COUNT, ORDERBY, PROPS, HIDEPROPS, INPROPS, OUTPROPS, INVPROPS, OUTVPROPS, COMMAND, ITEM, SWITCH,
-	PARTIALKEY, PARTIALVALUE, STARTSKEY, STARTSVALUE, ADD, REMOVE, ACTION, ACTIONS, VERSION, REVERTTO;
+	PARTIALKEY, PARTIALVALUE, STARTSKEY, STARTSVALUE, ADD, REMOVE, ACTION, ACTIONS, VERSION, REVERTTO, STREAM;
 
 	private static final ThreadLocal<SimpleDateFormat> URL_DATE_FORMAT = ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyyMMddHHmmss")); //$NON-NLS-1$
 
@@ -189,6 +189,10 @@ public enum Parameters {
 			return get(Parameters.DESC) != null;
 		}
 
+		public boolean getStream() {
+			return get(Parameters.STREAM) != null;
+		}
+
 		public List<CharSequence> getVersion() {
 			return CaseInsensitiveString.toCaseInsensitive(get(Parameters.VERSION));
 		}
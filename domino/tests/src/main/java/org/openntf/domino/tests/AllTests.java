@@ -33,6 +33,9 @@ import org.openntf.domino.tests.general.TestDatabase;
 import org.openntf.domino.tests.general.TestDocuments;
 import org.openntf.domino.tests.general.TestFactory;
 import org.openntf.domino.tests.general.TestName;
+import org.openntf.domino.tests.general.TestNoteIdSet;
+import org.openntf.domino.tests.general.TestPostingList;
+import org.openntf.domino.tests.general.TestTaskLanes;
 import org.openntf.domino.tests.wrapper.TestDatabasePropertyWrapper;
 import org.openntf.domino.tests.wrapper.TestWrapperFactory;
 import org.openntf.domino.utils.Factory;
@@ -48,7 +51,10 @@ import lotus.domino.NotesThread;
 		TestDatabasePropertyWrapper.class,
 		TestName.class,
 		TestFactory.class,
-		TestDocuments.class
+		TestDocuments.class,
+		TestPostingList.class,
+		TestNoteIdSet.class,
+		TestTaskLanes.class
 })
 public class AllTests {
 	public static lotus.domino.Session lotusSession;
@@ -0,0 +1,232 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.tests.general;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.openntf.domino.big.impl.NoteIdSet;
+
+/**
+ * Checks {@link NoteIdSet} against a TreeSet of the same ids, ordered as unsigned ints like the set. The random sets mix sparse ids,
+ * which stay in array containers, with dense ranges of more than {@link NoteIdSet#ARRAY_MAX} ids, which turn into bitmaps.
+ */
+public class TestNoteIdSet {
+	private static final Comparator<Integer> UNSIGNED = new Comparator<Integer>() {
+		@Override
+		public int compare(final Integer o1, final Integer o2) {
+			return Integer.compareUnsigned(o1, o2);
+		}
+	};
+
+	private static TreeSet<Integer> reference() {
+		return new TreeSet<Integer>(UNSIGNED);
+	}
+
+	private static TreeSet<Integer> randomIds(final Random random) {
+		TreeSet<Integer> result = reference();
+		int sparse = random.nextInt(2000);
+		for (int i = 0; i < sparse; i++) {
+			// real note ids are multiples of 4, the set must work for any int
+			result.add(random.nextInt(1 << 20));
+		}
+		if (random.nextBoolean()) {
+			int start = random.nextInt(1 << 20);
+			int length = NoteIdSet.ARRAY_MAX + random.nextInt(20000);
+			for (int i = 0; i < length; i++) {
+				result.add(start + i * (1 + random.nextInt(2)));
+			}
+		}
+		if (random.nextInt(4) == 0) {
+			// ids with the high bit set sort after all others
+			result.add(0x80000000 | random.nextInt());
+			result.add(-4);
+		}
+		return result;
+	}
+
+	private static int[] toArray(final TreeSet<Integer> ids) {
+		int[] result = new int[ids.size()];
+		int pos = 0;
+		for (Integer id : ids) {
+			result[pos++] = id;
+		}
+		return result;
+	}
+
+	private static void assertMatches(final TreeSet<Integer> expected, final NoteIdSet actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		int[] expectedArray = toArray(expected);
+		assertArrayEquals(expectedArray, actual.toArray());
+		List<Integer> iterated = new ArrayList<Integer>();
+		PrimitiveIterator.OfInt it = actual.iterator();
+		while (it.hasNext()) {
+			iterated.add(it.nextInt());
+		}
+		assertEquals(new ArrayList<Integer>(expected), iterated);
+		for (int id : expectedArray) {
+			assertTrue(actual.contains(id));
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		NoteIdSet set = new NoteIdSet();
+		assertTrue(set.isEmpty());
+		assertEquals(0, set.size());
+		assertFalse(set.iterator().hasNext());
+		assertFalse(set.contains(0));
+		assertFalse(set.remove(4));
+	}
+
+	@Test
+	public void testAddRemoveContains() {
+		Random random = new Random(1);
+		NoteIdSet set = new NoteIdSet();
+		TreeSet<Integer> expected = reference();
+		for (int i = 0; i < 200000; i++) {
+			// a narrow range, so containers go from array to bitmap and back
+			int id = random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(40000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(id), set.remove(id));
+			} else {
+				assertEquals(expected.add(id), set.add(id));
+			}
+			if (i % 10000 == 0) {
+				assertMatches(expected, set);
+			}
+		}
+		assertMatches(expected, set);
+		for (int i = 0; i < 1000; i++) {
+			int id = random.nextInt(40000);
+			assertEquals(expected.contains(id), set.contains(id));
+		}
+		for (Integer id : new ArrayList<Integer>(expected)) {
+			assertTrue(set.remove(id));
+		}
+		assertTrue(set.isEmpty());
+	}
+
+	@Test
+	public void testConstructors() {
+		Random random = new Random(2);
+		TreeSet<Integer> expected = randomIds(random);
+		List<Integer> shuffled = new ArrayList<Integer>(expected);
+		Collections.shuffle(shuffled, random);
+		int[] array = new int[shuffled.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = shuffled.get(i);
+		}
+		assertMatches(expected, new NoteIdSet(array));
+		assertMatches(expected, new NoteIdSet(shuffled));
+	}
+
+	@Test
+	public void testSetOperations() {
+		Random random = new Random(3);
+		for (int round = 0; round < 50; round++) {
+			TreeSet<Integer> a = randomIds(random);
+			TreeSet<Integer> b = randomIds(random);
+			if (round % 5 == 0) {
+				// overlapping sets
+				b.addAll(a.headSet(a.isEmpty() ? 0 : a.first() + 10000));
+			}
+			NoteIdSet setA = new NoteIdSet(toArray(a));
+			NoteIdSet setB = new NoteIdSet(toArray(b));
+
+			TreeSet<Integer> union = reference();
+			union.addAll(a);
+			union.addAll(b);
+			TreeSet<Integer> intersection = reference();
+			intersection.addAll(a);
+			intersection.retainAll(b);
+			TreeSet<Integer> difference = reference();
+			difference.addAll(a);
+			difference.removeAll(b);
+
+			assertMatches(union, NoteIdSet.or(setA, setB));
+			assertMatches(intersection, NoteIdSet.and(setA, setB));
+			assertMatches(difference, NoteIdSet.andNot(setA, setB));
+			assertEquals(b.containsAll(a), setB.containsAll(setA));
+			assertTrue(NoteIdSet.or(setA, setB).containsAll(setA));
+
+			// the static operations must not change their arguments
+			assertMatches(a, setA);
+			assertMatches(b, setB);
+
+			NoteIdSet inPlace = setA.clone();
+			inPlace.addAll(setB);
+			assertMatches(union, inPlace);
+			inPlace = setA.clone();
+			inPlace.retainAll(setB);
+			assertMatches(intersection, inPlace);
+			inPlace = setA.clone();
+			inPlace.removeAll(setB);
+			assertMatches(difference, inPlace);
+			assertMatches(a, setA);
+		}
+	}
+
+	@Test
+	public void testCloneAndEquals() {
+		NoteIdSet set = new NoteIdSet(toArray(randomIds(new Random(4))));
+		NoteIdSet copy = set.clone();
+		assertNotSame(set, copy);
+		assertEquals(set, copy);
+		assertEquals(set.hashCode(), copy.hashCode());
+		copy.add(-8);
+		copy.remove(-8);
+		assertEquals(set, copy);
+		copy.add(-8);
+		assertFalse(set.equals(copy));
+		assertFalse(set.contains(-8));
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Random random = new Random(5);
+		for (int round = 0; round < 5; round++) {
+			TreeSet<Integer> expected = randomIds(random);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(new NoteIdSet(toArray(expected)));
+			out.close();
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+			NoteIdSet copy = (NoteIdSet) in.readObject();
+			assertMatches(expected, copy);
+			copy.add(12);
+			expected.add(12);
+			assertMatches(expected, copy);
+		}
+	}
+}
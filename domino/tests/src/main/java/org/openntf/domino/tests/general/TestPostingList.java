@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.tests.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.openntf.domino.big.impl.PostingList;
+
+/**
+ * Checks the encoding and the set operations of {@link PostingList} against a TreeMap of address strings. Upper case UNIDs sort as
+ * strings in the same order as the unsigned x/y longs of the posting list.
+ */
+@SuppressWarnings("nls")
+public class TestPostingList {
+	private static final String[] FORMS = { "Person", "Group", "", "Mémo" };
+
+	private static String unid(final long x, final long y) {
+		return String.format("%016X%016X", x, y);
+	}
+
+	/**
+	 * Creates random addresses. Every third UNID is drawn from a small range, so two lists share some UNIDs; the others use the full
+	 * unsigned range, including negative longs.
+	 */
+	private static Map<String, String> randomAddresses(final Random random, final int count) {
+		Map<String, String> result = new TreeMap<String, String>();
+		for (int i = 0; i < count; i++) {
+			long x = i % 3 == 0 ? random.nextInt(64) : random.nextLong();
+			long y = i % 3 == 0 ? random.nextInt(4) : random.nextLong();
+			String unid = unid(x, y);
+			if (!result.containsKey(unid)) {
+				result.put(unid, unid + (random.nextBoolean() ? "1" : "0") + FORMS[random.nextInt(FORMS.length)]);
+			}
+		}
+		return result;
+	}
+
+	private static void assertPostings(final Map<String, String> expected, final PostingList actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new ArrayList<String>(expected.values()), toStrings(actual));
+		for (String address : expected.values()) {
+			assertTrue(address, actual.contains(address));
+			assertTrue(address, actual.contains(address.substring(0, 32)));
+		}
+	}
+
+	private static List<String> toStrings(final PostingList list) {
+		List<String> result = new ArrayList<String>();
+		for (CharSequence address : list) {
+			result.add(address.toString());
+		}
+		return result;
+	}
+
+	@Test
+	public void testEmpty() {
+		PostingList empty = PostingList.fromAddresses(Collections.emptyList());
+		assertTrue(empty.isEmpty());
+		assertFalse(empty.iterator().hasNext());
+		assertTrue(PostingList.fromByteArray(empty.toByteArray()).isEmpty());
+	}
+
+	@Test
+	public void testBuildSortsAndRemovesDuplicates() {
+		Random random = new Random(1);
+		Map<String, String> expected = randomAddresses(random, 2000);
+		List<String> shuffled = new ArrayList<String>(expected.values());
+		shuffled.addAll(expected.values());
+		Collections.shuffle(shuffled, random);
+		assertPostings(expected, PostingList.fromAddresses(shuffled));
+	}
+
+	@Test
+	public void testContainsMissing() {
+		PostingList list = new PostingList.Builder().add(1, 2, "Person", false).add(-1, -1, "Person", true).build();
+		assertTrue(list.contains(1, 2));
+		assertTrue(list.contains(-1, -1));
+		assertFalse(list.contains(1, 3));
+		assertFalse(list.contains(unid(1, 2) + "1Person"));
+		assertFalse(list.contains(unid(1, 2) + "0Group"));
+		assertFalse(list.contains("not a unid"));
+		assertEquals(unid(1, 2) + "0Person", toStrings(list).get(0));
+	}
+
+	@Test
+	public void testByteArrayRoundTrip() {
+		Map<String, String> expected = randomAddresses(new Random(2), 5000);
+		PostingList list = PostingList.fromAddresses(expected.values());
+		PostingList copy = PostingList.fromByteArray(list.toByteArray());
+		assertPostings(expected, copy);
+		assertEquals(list.getEncodedLength(), copy.getEncodedLength());
+	}
+
+	@Test
+	public void testSerializationRoundTrip() throws Exception {
+		Map<String, String> expected = randomAddresses(new Random(3), 1000);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(PostingList.fromAddresses(expected.values()));
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertPostings(expected, (PostingList) in.readObject());
+	}
+
+	@Test
+	public void testUnion() {
+		Random random = new Random(4);
+		for (int round = 0; round < 20; round++) {
+			Map<String, String> left = randomAddresses(random, random.nextInt(300));
+			Map<String, String> right = randomAddresses(random, random.nextInt(300));
+			Map<String, String> expected = new TreeMap<String, String>(right);
+			expected.putAll(left); // form and readers flag come from the left list
+			PostingList union = PostingList.fromAddresses(left.values()).union(PostingList.fromAddresses(right.values()));
+			assertPostings(expected, union);
+			assertPostings(expected, PostingList.fromByteArray(union.toByteArray()));
+		}
+	}
+
+	@Test
+	public void testUnionWithEmpty() {
+		PostingList list = PostingList.fromAddresses(randomAddresses(new Random(5), 10).values());
+		PostingList empty = PostingList.fromAddresses(Collections.emptyList());
+		assertSame(list, list.union(empty));
+		assertSame(list, empty.union(list));
+	}
+
+	@Test
+	public void testIntersect() {
+		Random random = new Random(6);
+		for (int round = 0; round < 20; round++) {
+			Map<String, String> left = randomAddresses(random, random.nextInt(300));
+			Map<String, String> right = randomAddresses(random, random.nextInt(300));
+			Map<String, String> expected = new TreeMap<String, String>(left);
+			expected.keySet().retainAll(right.keySet());
+			PostingList intersection = PostingList.fromAddresses(left.values()).intersect(PostingList.fromAddresses(right.values()));
+			assertPostings(expected, intersection);
+			assertPostings(expected, PostingList.fromByteArray(intersection.toByteArray()));
+		}
+	}
+}
@@ -0,0 +1,298 @@
+/**
+ * Copyright © 2013-2023 The OpenNTF Domino API Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openntf.domino.tests.general;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Observer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openntf.domino.thread.AbstractDominoExecutor;
+import org.openntf.domino.thread.AbstractDominoExecutor.Lane;
+import org.openntf.domino.thread.IWrappedCallable;
+import org.openntf.domino.thread.IWrappedRunnable;
+import org.openntf.domino.xots.Tasklet;
+
+/**
+ * Checks the lanes of {@link AbstractDominoExecutor} with plain Java tasks: the round robin between modules, the limit of bulk workers and
+ * bulk tasks that wait for their own bulk subtasks.
+ */
+@SuppressWarnings("nls")
+public class TestTaskLanes {
+	private static final long TIMEOUT_SECONDS = 10;
+
+	/**
+	 * A task with the module and priority that a wrapped tasklet would get from its annotation
+	 */
+	private static class LaneTask<V> implements Callable<V> {
+		private final String module_;
+		private final Tasklet.Priority priority_;
+		private final Callable<V> body_;
+
+		LaneTask(final String module, final Tasklet.Priority priority, final Callable<V> body) {
+			module_ = module;
+			priority_ = priority;
+			body_ = body;
+		}
+
+		@Override
+		public V call() throws Exception {
+			return body_.call();
+		}
+	}
+
+	private static class WrappedTask<V> implements IWrappedCallable<V>, IWrappedRunnable {
+		private final Callable<V> inner_;
+
+		WrappedTask(final Callable<V> inner) {
+			inner_ = inner;
+		}
+
+		@Override
+		public V call() throws Exception {
+			return inner_.call();
+		}
+
+		@Override
+		public void run() {
+			try {
+				inner_.call();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void addObserver(final Observer o) {
+		}
+
+		@Override
+		public void stop() {
+		}
+
+		@Override
+		public String getDescription() {
+			return getModuleName() + " " + getPriority();
+		}
+
+		@Override
+		public String getModuleName() {
+			return inner_ instanceof LaneTask ? ((LaneTask<?>) inner_).module_ : null;
+		}
+
+		@Override
+		public Tasklet.Priority getPriority() {
+			return inner_ instanceof LaneTask ? ((LaneTask<?>) inner_).priority_ : Tasklet.Priority.INTERACTIVE;
+		}
+	}
+
+	private static class TestExecutor extends AbstractDominoExecutor {
+		TestExecutor(final int workers, final int maxBulk) {
+			super(1, "TestTaskLanes");
+			enableLanes(1, workers, maxBulk);
+		}
+
+		@Override
+		protected <V> IWrappedCallable<V> wrap(final Callable<V> inner) {
+			return new WrappedTask<V>(inner);
+		}
+
+		@Override
+		protected IWrappedRunnable wrap(final Runnable inner) {
+			return new WrappedTask<Object>(new Callable<Object>() {
+				@Override
+				public Object call() {
+					inner.run();
+					return null;
+				}
+			});
+		}
+
+		@Override
+		protected IWrappedCallable<?> wrap(final String moduleName, final String className, final Object... ctorArgs) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	private TestExecutor executor_;
+
+	@After
+	public void shutdown() throws InterruptedException {
+		if (executor_ != null) {
+			executor_.shutdownNow();
+			assertTrue(executor_.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		}
+	}
+
+	private static <V> LaneTask<V> task(final String module, final Tasklet.Priority priority, final Callable<V> body) {
+		return new LaneTask<V>(module, priority, body);
+	}
+
+	private Object getStatistic(final Lane lane, final String name) {
+		Map<String, Object> stats = executor_.getLaneStatistics().get(lane);
+		return stats.get(name);
+	}
+
+	/*
+	 * A future is done before the worker counts the task as completed, so the counter is polled
+	 */
+	private void assertCompleted(final Lane lane, final long expected) throws InterruptedException {
+		long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+		while (!Long.valueOf(expected).equals(getStatistic(lane, "completed")) && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, getStatistic(lane, "completed"));
+	}
+
+	@Test
+	public void testModulesAlternate() throws Exception {
+		// one bulk worker runs the tasks one after the other, in the order they are taken from the queue
+		executor_ = new TestExecutor(2, 1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch gate = new CountDownLatch(1);
+		Future<?> blocker = executor_.submit(task("gate", Tasklet.Priority.BULK, new Callable<Object>() {
+			@Override
+			public Object call() throws InterruptedException {
+				started.countDown();
+				assertTrue(gate.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+				return null;
+			}
+		}));
+		assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (final String module : new String[] { "a", "a", "a", "a", "b", "b", "b", "b" }) {
+			futures.add(executor_.submit(task(module, Tasklet.Priority.BULK, new Callable<Object>() {
+				@Override
+				public Object call() {
+					order.add(module);
+					return null;
+				}
+			})));
+		}
+		assertEquals(2, getStatistic(Lane.BULK, "modules"));
+		gate.countDown();
+		blocker.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		for (Future<?> future : futures) {
+			future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		assertEquals(Arrays.asList("a", "b", "a", "b", "a", "b", "a", "b"), order);
+	}
+
+	@Test
+	public void testBulkLimit() throws Exception {
+		executor_ = new TestExecutor(4, 2);
+		final CountDownLatch gate = new CountDownLatch(1);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(executor_.submit(task("bulk", Tasklet.Priority.BULK, new Callable<Object>() {
+				@Override
+				public Object call() throws InterruptedException {
+					int now = running.incrementAndGet();
+					int max = maxRunning.get();
+					while (now > max && !maxRunning.compareAndSet(max, now)) {
+						max = maxRunning.get();
+					}
+					try {
+						assertTrue(gate.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+					} finally {
+						running.decrementAndGet();
+					}
+					return null;
+				}
+			})));
+		}
+		long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+		while (running.get() < 2 && System.currentTimeMillis() < end) {
+			Thread.sleep(10);
+		}
+		// give a third bulk task the chance to start, it must not
+		Thread.sleep(200);
+		assertEquals(2, running.get());
+		assertEquals(8, getStatistic(Lane.BULK, "queued"));
+
+		// the workers that are left still run interactive tasks
+		Future<String> interactive = executor_.submit(task("ui", Tasklet.Priority.INTERACTIVE, new Callable<String>() {
+			@Override
+			public String call() {
+				return "done";
+			}
+		}));
+		assertEquals("done", interactive.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		gate.countDown();
+		for (Future<?> future : futures) {
+			future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		assertEquals(2, maxRunning.get());
+		assertCompleted(Lane.BULK, 10);
+	}
+
+	@Test
+	public void testBulkTaskWaitsForBulkSubtasks() throws Exception {
+		// the parent holds the only bulk slot while it waits, its subtasks can only run if it gives the slot back
+		executor_ = new TestExecutor(2, 1);
+		Future<Integer> parent = executor_.submit(task("bulk", Tasklet.Priority.BULK, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				List<Future<Integer>> shards = new ArrayList<Future<Integer>>();
+				for (int i = 1; i <= 4; i++) {
+					final int value = i;
+					shards.add(executor_.submit(task("bulk", Tasklet.Priority.BULK, new Callable<Integer>() {
+						@Override
+						public Integer call() {
+							return value;
+						}
+					})));
+				}
+				int sum = 0;
+				for (Future<Integer> shard : shards) {
+					sum += shard.get();
+				}
+				return sum;
+			}
+		}));
+		assertEquals(Integer.valueOf(10), parent.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertCompleted(Lane.BULK, 5);
+	}
+
+	@Test
+	public void testScheduledStatistics() throws Exception {
+		executor_ = new TestExecutor(2, 1);
+		Future<String> delayed = executor_.schedule(new Callable<String>() {
+			@Override
+			public String call() {
+				return "done";
+			}
+		}, 10, TimeUnit.MILLISECONDS);
+		assertEquals("done", delayed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		assertEquals(1L, getStatistic(Lane.SCHEDULED, "submitted"));
+	}
+}
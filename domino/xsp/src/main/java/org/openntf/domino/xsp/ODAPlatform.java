@@ -88,6 +88,19 @@ public enum ODAPlatform {
 					if (xotsTasks > 0) {
 						//					System.out.println("Starting XOTS with " + xotsTasks + " threads");
 						DominoExecutor executor = new XotsDominoExecutor(xotsTasks);
+						int scheduledTasks = cfg.getXotsScheduledTasks();
+						if (scheduledTasks > 0) {
+							int bulkTasks = cfg.getXotsBulkTasks();
+							if (bulkTasks <= 0) {
+								bulkTasks = xotsTasks - 1;
+							}
+							if (xotsTasks < 2 || bulkTasks >= xotsTasks) {
+								Factory.println("XOTS", "Lanes not enabled: XotsTasks=" + xotsTasks + " and XotsBulkTasks=" + bulkTasks //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+										+ " would let bulk tasks take all workers. XotsTasks must be at least 2 and XotsBulkTasks less than XotsTasks"); //$NON-NLS-1$
+							} else {
+								executor.enableLanes(scheduledTasks, xotsTasks, bulkTasks);
+							}
+						}
 						try {
 							Xots.start(executor);
 						} catch (Throwable e) {
@@ -28,6 +28,7 @@ import java.util.logging.Logger;
 import org.eclipse.osgi.framework.console.CommandInterpreter;
 import org.eclipse.osgi.framework.console.CommandProvider;
 import org.openntf.domino.thread.AbstractDominoExecutor.DominoFutureTask;
+import org.openntf.domino.thread.AbstractDominoExecutor.Lane;
 import org.openntf.domino.xots.Xots;
 
 import com.ibm.commons.util.StringUtil;
@@ -189,15 +190,23 @@ public class OsgiCommandProvider implements CommandProvider {
 	}
 
 	private void xotsTasks(final CommandInterpreter ci) {
-		ci.println("ID\tSTATE\tCLASS\tNEXT EXEC TIME");
+		ci.println("ID\tSTATE\tLANE\tCLASS\tNEXT EXEC TIME");
 
 		List<DominoFutureTask<?>> tasks = Xots.getTasks(null);
 		for (DominoFutureTask<?> task : tasks) {
 			ci.println(task.getId() + "\t" + // ID //$NON-NLS-1$
 					task.getState() + "\t" + // State //$NON-NLS-1$
+					task.getLane() + "\t" + // Lane //$NON-NLS-1$
 					task.getWrappedTask().getDescription() + "\t" + convertTimeUnit(task.getNextExecutionTimeInMillis())); //$NON-NLS-1$
 
 		}
+		Map<Lane, Map<String, Object>> lanes = Xots.getLaneStatistics();
+		if (!lanes.isEmpty()) {
+			ci.println("");
+			for (Map.Entry<Lane, Map<String, Object>> entry : lanes.entrySet()) {
+				ci.println(entry.getKey() + "\t" + entry.getValue()); //$NON-NLS-1$
+			}
+		}
 	}
 
 	private String convertTimeUnit(final long millis) {
@@ -80,6 +80,11 @@ public class XotsDominoExecutor extends DominoExecutor {
 		public V call() throws Exception {
 			return (V) callOrRun(module_);
 		}
+
+		@Override
+		public String getModuleName() {
+			return module_ == null ? null : module_.getModuleName();
+		}
 	}
 
 	/**
@@ -104,6 +109,11 @@ public class XotsDominoExecutor extends DominoExecutor {
 				log_.log(Level.SEVERE, "Could not execute " + module_.getModuleName() + "/" + getWrappedTask().getClass(), e);
 			}
 		}
+
+		@Override
+		public String getModuleName() {
+			return module_ == null ? null : module_.getModuleName();
+		}
 	}
 
 	/**
@@ -115,9 +125,11 @@ public class XotsDominoExecutor extends DominoExecutor {
 	protected static class XotsBundleTasklet extends XotsWrappedTask implements IWrappedCallable<Object> {
 
 		private String description;
+		private String bundleName;
 
 		public XotsBundleTasklet(final String bundleName, final String className, final Object[] args) {
 			super();
+			this.bundleName = bundleName;
 			final Bundle bundle = Platform.getBundle(bundleName);
 			Class<?> clazz = null;
 
@@ -149,6 +161,11 @@ public class XotsDominoExecutor extends DominoExecutor {
 		public String getDescription() {
 			return description;
 		}
+
+		@Override
+		public String getModuleName() {
+			return "bundle:" + bundleName;
+		}
 	}
 
 	protected static class XotsModuleTasklet extends XotsWrappedTask implements IWrappedCallable<Object> {
@@ -275,6 +292,11 @@ public class XotsDominoExecutor extends DominoExecutor {
 			return moduleName + ":" + className;
 		}
 
+		@Override
+		public String getModuleName() {
+			return moduleName;
+		}
+
 	}
 
 	public XotsDominoExecutor(final int corePoolSize) {